@@ -0,0 +1,43 @@
+#!/bin/sh
+# Builds the library and the benchmarks, runs all benchmarks, and writes
+# the results to jmh/baseline/results.json, and the JDK and hardware on
+# which they were measured to jmh/baseline/environment.txt.
+#
+# Additional arguments are passed to JMH, for example a regular expression
+# that selects benchmarks: ./run-baseline.sh AcceptBenchmark
+#
+# On a machine with a single CPU, the parallel and concurrent benchmarks
+# are excluded, because their results would only measure the overhead of
+# the fork-join pool and of the threads that take turns on that CPU.
+set -e
+cd "$(dirname "$0")/.."
+mvn -B -q install -DskipTests
+cd jmh
+mvn -B -q package
+mkdir -p baseline
+cpus=$(getconf _NPROCESSORS_ONLN)
+excluded=
+if [ "$cpus" -lt 2 ]; then
+    excluded='ConcurrentVarianceStatisticsBenchmark|CollectBenchmark\..*Parallel|ConfidenceBenchmark\.parallelSeries'
+fi
+{
+    echo "date: $(date -u +%Y-%m-%dT%H:%M:%SZ)"
+    echo "commit: $(git rev-parse HEAD)$(git diff --quiet HEAD -- ../src . || echo ' (modified)')"
+    echo "jdk: $(java -XshowSettings:properties -version 2>&1 | sed -n 's/^ *java.vm.version = //p') $(java -XshowSettings:properties -version 2>&1 | sed -n 's/^ *java.vm.name = //p')"
+    echo "os: $(uname -srm)"
+    if [ -r /proc/cpuinfo ]; then
+        echo "cpu: $(sed -n 's/^model name[^:]*: //p' /proc/cpuinfo | head -n 1)"
+    else
+        echo "cpu: $(sysctl -n machdep.cpu.brand_string 2>/dev/null || echo unknown)"
+    fi
+    echo "cpus: $cpus"
+    echo "jmh arguments: $*"
+    if [ -n "$excluded" ]; then
+        echo "excluded: $excluded (parallel and concurrent benchmarks, single CPU)"
+    fi
+} > baseline/environment.txt
+if [ -n "$excluded" ]; then
+    java -jar target/benchmarks.jar -rf json -rff baseline/results.json -e "$excluded" "$@"
+else
+    java -jar target/benchmarks.jar -rf json -rff baseline/results.json "$@"
+fi
@@ -0,0 +1,88 @@
+/*
+ * @(#)AcceptBenchmark.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.stats.jmh;
+
+import ch.randelshofer.stats.DoubleSum;
+import ch.randelshofer.stats.VarianceStatistics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.DoubleSummaryStatistics;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of adding values one by one with {@code accept},
+ * compared to {@link DoubleSummaryStatistics}, and the cost of adding
+ * an array with {@code acceptAll}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class AcceptBenchmark {
+    @Param({"1000", "1000000"})
+    public int size;
+    @Param({"UNIFORM", "GAUSSIAN", "OFFSET", "LOG_NORMAL"})
+    public Datasets.Distribution distribution;
+
+    private double[] values;
+
+    @Setup
+    public void setup() {
+        values = Datasets.create(distribution, size);
+    }
+
+    @Benchmark
+    public DoubleSummaryStatistics doubleSummaryStatistics() {
+        DoubleSummaryStatistics stats = new DoubleSummaryStatistics();
+        for (double v : values) {
+            stats.accept(v);
+        }
+        return stats;
+    }
+
+    @Benchmark
+    public VarianceStatistics varianceStatistics() {
+        VarianceStatistics stats = new VarianceStatistics();
+        for (double v : values) {
+            stats.accept(v);
+        }
+        return stats;
+    }
+
+    @Benchmark
+    public VarianceStatistics varianceStatisticsAcceptAll() {
+        VarianceStatistics stats = new VarianceStatistics();
+        stats.acceptAll(values, 0, values.length);
+        return stats;
+    }
+
+    @Benchmark
+    public DoubleSum doubleSum() {
+        DoubleSum stats = new DoubleSum();
+        for (double v : values) {
+            stats.accept(v);
+        }
+        return stats;
+    }
+
+    @Benchmark
+    public DoubleSum doubleSumAcceptAll() {
+        DoubleSum stats = new DoubleSum();
+        stats.acceptAll(values, 0, values.length);
+        return stats;
+    }
+}
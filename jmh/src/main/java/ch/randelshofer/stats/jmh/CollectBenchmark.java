@@ -0,0 +1,73 @@
+/*
+ * @(#)CollectBenchmark.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.stats.jmh;
+
+import ch.randelshofer.stats.VarianceStatistics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.DoubleSummaryStatistics;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.DoubleStream;
+
+/**
+ * Measures sequential against parallel {@code collect} on a double stream.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class CollectBenchmark {
+    @Param({"10000", "10000000"})
+    public int size;
+    @Param({"GAUSSIAN", "OFFSET"})
+    public Datasets.Distribution distribution;
+
+    private double[] values;
+
+    @Setup
+    public void setup() {
+        values = Datasets.create(distribution, size);
+    }
+
+    @Benchmark
+    public DoubleSummaryStatistics doubleSummaryStatisticsSequential() {
+        return DoubleStream.of(values).collect(DoubleSummaryStatistics::new,
+                DoubleSummaryStatistics::accept,
+                DoubleSummaryStatistics::combine);
+    }
+
+    @Benchmark
+    public DoubleSummaryStatistics doubleSummaryStatisticsParallel() {
+        return DoubleStream.of(values).parallel().collect(DoubleSummaryStatistics::new,
+                DoubleSummaryStatistics::accept,
+                DoubleSummaryStatistics::combine);
+    }
+
+    @Benchmark
+    public VarianceStatistics varianceStatisticsSequential() {
+        return DoubleStream.of(values).collect(VarianceStatistics::new,
+                VarianceStatistics::accept,
+                VarianceStatistics::combine);
+    }
+
+    @Benchmark
+    public VarianceStatistics varianceStatisticsParallel() {
+        return DoubleStream.of(values).parallel().collect(VarianceStatistics::new,
+                VarianceStatistics::accept,
+                VarianceStatistics::combine);
+    }
+}
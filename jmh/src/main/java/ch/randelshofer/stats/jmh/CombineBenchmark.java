@@ -0,0 +1,74 @@
+/*
+ * @(#)CombineBenchmark.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.stats.jmh;
+
+import ch.randelshofer.stats.DoubleSum;
+import ch.randelshofer.stats.VarianceStatistics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.DoubleSummaryStatistics;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of {@code combine}.
+ * <p>
+ * Each benchmark combines two filled accumulators into a new one,
+ * which is what a parallel stream does at every join.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class CombineBenchmark {
+    private DoubleSummaryStatistics doubleSummaryStatisticsA, doubleSummaryStatisticsB;
+    private VarianceStatistics varianceStatisticsA, varianceStatisticsB;
+    private DoubleSum doubleSumA, doubleSumB;
+
+    @Setup
+    public void setup() {
+        double[] values = Datasets.create(Datasets.Distribution.GAUSSIAN, 2000);
+        doubleSummaryStatisticsA = new DoubleSummaryStatistics();
+        doubleSummaryStatisticsB = new DoubleSummaryStatistics();
+        varianceStatisticsA = new VarianceStatistics();
+        varianceStatisticsB = new VarianceStatistics();
+        doubleSumA = new DoubleSum();
+        doubleSumB = new DoubleSum();
+        for (int i = 0; i < values.length; i++) {
+            boolean a = i < values.length / 2;
+            (a ? doubleSummaryStatisticsA : doubleSummaryStatisticsB).accept(values[i]);
+            (a ? varianceStatisticsA : varianceStatisticsB).accept(values[i]);
+            (a ? doubleSumA : doubleSumB).accept(values[i]);
+        }
+    }
+
+    @Benchmark
+    public DoubleSummaryStatistics doubleSummaryStatistics() {
+        DoubleSummaryStatistics stats = new DoubleSummaryStatistics();
+        stats.combine(doubleSummaryStatisticsA);
+        stats.combine(doubleSummaryStatisticsB);
+        return stats;
+    }
+
+    @Benchmark
+    public VarianceStatistics varianceStatistics() {
+        return new VarianceStatistics().combine(varianceStatisticsA).combine(varianceStatisticsB);
+    }
+
+    @Benchmark
+    public DoubleSum doubleSum() {
+        return new DoubleSum().combine(doubleSumA).combine(doubleSumB);
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * @(#)ConcurrentVarianceStatisticsBenchmark.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.stats.jmh;
+
+import ch.randelshofer.stats.ConcurrentVarianceStatistics;
+import ch.randelshofer.stats.VarianceStatistics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of many threads that add values to a shared
+ * {@link ConcurrentVarianceStatistics}, compared to a shared
+ * {@link VarianceStatistics} that is guarded by a lock.
+ * <p>
+ * Each variant is measured with 1, 4, 16 and 64 threads, to show how the
+ * throughput scales with the number of threads. The results are only
+ * meaningful on a machine with at least as many cores as threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class ConcurrentVarianceStatisticsBenchmark {
+    private ConcurrentVarianceStatistics concurrent;
+    private VarianceStatistics locked;
+
+    /**
+     * The values of a thread.
+     */
+    @State(Scope.Thread)
+    public static class Values {
+        private double[] values;
+        private int index;
+
+        @Setup
+        public void setup() {
+            values = Datasets.create(Datasets.Distribution.LOG_NORMAL, 1024);
+        }
+
+        double next() {
+            double v = values[index];
+            index = (index + 1) & (values.length - 1);
+            return v;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        concurrent = new ConcurrentVarianceStatistics();
+        locked = new VarianceStatistics();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void concurrentThreads01(Values values) {
+        concurrent.accept(values.next());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void concurrentThreads04(Values values) {
+        concurrent.accept(values.next());
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void concurrentThreads16(Values values) {
+        concurrent.accept(values.next());
+    }
+
+    @Benchmark
+    @Threads(64)
+    public void concurrentThreads64(Values values) {
+        concurrent.accept(values.next());
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void synchronizedThreads01(Values values) {
+        acceptLocked(values.next());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void synchronizedThreads04(Values values) {
+        acceptLocked(values.next());
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void synchronizedThreads16(Values values) {
+        acceptLocked(values.next());
+    }
+
+    @Benchmark
+    @Threads(64)
+    public void synchronizedThreads64(Values values) {
+        acceptLocked(values.next());
+    }
+
+    private void acceptLocked(double v) {
+        synchronized (locked) {
+            locked.accept(v);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * @(#)ConfidenceBenchmark.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.stats.jmh;
+
+import ch.randelshofer.stats.Stats;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Stats#confidence}.
+ * <p>
+ * {@link #allRows} evaluates every row and every column of the former
+ * lookup table of the Student's t distribution, this is more entries than
+ * fit into the cache of the quantiles. {@link #single} evaluates the same
+ * entry over and over, which is always answered from the cache.
+ * <p>
+ * {@link #scalarSeries}, {@link #batchSeries} and {@link #parallelSeries}
+ * compute the confidence values of many series with random sample sizes,
+ * with the scalar method in a loop, and with the batch method sequentially
+ * and in parallel.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class ConfidenceBenchmark {
+    /**
+     * The alphas of the columns of the former lookup table.
+     */
+    private final static double[] ALPHAS = {0.2, 0.1, 0.08, 0.05, 0.04, 0.025, 0.02, 0.01, 0.002, 0.001};
+    /**
+     * The sample sizes of the rows of the former lookup table.
+     */
+    private final static long[] SIZES = {
+            2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20,
+            21, 22, 23, 24, 25, 26, 27, 28, 29, 30, 31, 36, 41, 51, 61, 71, 81, 91,
+            101, 151, 201, 251, 301, 401, 501, 601, 801, 1001};
+
+    @State(Scope.Benchmark)
+    public static class Lookup {
+        @Param({"0.05", "0.001"})
+        public double alpha;
+        @Param({"10", "1000"})
+        public long size;
+    }
+
+    @State(Scope.Benchmark)
+    public static class Series {
+        @Param({"100000"})
+        public int count;
+        public double[] stdevs;
+        public long[] sizes;
+        public double[] out;
+
+        @Setup
+        public void setup() {
+            Random r = new Random(0);
+            stdevs = new double[count];
+            sizes = new long[count];
+            out = new double[count];
+            for (int i = 0; i < count; i++) {
+                stdevs[i] = r.nextDouble();
+                sizes[i] = 2 + r.nextInt(200);
+            }
+        }
+    }
+
+    @Benchmark
+    public double single(Lookup lookup) {
+        return Stats.confidence(lookup.alpha, 1.0, lookup.size);
+    }
+
+    @Benchmark
+    public void allRows(Blackhole bh) {
+        for (long n : SIZES) {
+            for (double a : ALPHAS) {
+                bh.consume(Stats.confidence(a, 1.0, n));
+            }
+        }
+    }
+
+    @Benchmark
+    public double[] scalarSeries(Series series) {
+        double[] stdevs = series.stdevs;
+        long[] sizes = series.sizes;
+        double[] out = series.out;
+        for (int i = 0; i < out.length; i++) {
+            out[i] = Stats.confidence(0.05, stdevs[i], sizes[i]);
+        }
+        return out;
+    }
+
+    @Benchmark
+    public double[] batchSeries(Series series) {
+        Stats.confidence(0.05, series.stdevs, series.sizes, series.out);
+        return series.out;
+    }
+
+    @Benchmark
+    public double[] parallelSeries(Series series) {
+        Stats.confidence(0.05, series.stdevs, series.sizes, series.out, ForkJoinPool.commonPool());
+        return series.out;
+    }
+}
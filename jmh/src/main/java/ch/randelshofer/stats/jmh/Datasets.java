@@ -0,0 +1,114 @@
+/*
+ * @(#)Datasets.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.stats.jmh;
+
+import java.util.SplittableRandom;
+
+/**
+ * Generates reproducible datasets for the benchmarks.
+ */
+public final class Datasets {
+    /**
+     * The seed of all datasets, so that every run measures the same values.
+     */
+    private final static long SEED = 0x5DEECE66DL;
+
+    /**
+     * The distribution of the values in a dataset.
+     */
+    public enum Distribution {
+        /**
+         * Uniformly distributed in [0, 1).
+         */
+        UNIFORM,
+        /**
+         * Normally distributed with mean 0 and standard deviation 1.
+         */
+        GAUSSIAN,
+        /**
+         * Normally distributed with mean 1e9 and standard deviation 1.
+         * This is the worst case for the sum of square.
+         */
+        OFFSET,
+        /**
+         * Log-normally distributed, like latencies.
+         */
+        LOG_NORMAL,
+        /**
+         * Pairs of a value {@code x} with a magnitude of up to {@code 2^60},
+         * and the value {@code -x + u}, where {@code u} is uniformly
+         * distributed in [0, 1). The pairs are shuffled. The sum is tiny
+         * compared to the sum of the absolute values, so that naive
+         * summation loses all digits.
+         */
+        ILL_CONDITIONED
+    }
+
+    private Datasets() {
+        // prevent instantiation
+    }
+
+    /**
+     * Creates a new dataset.
+     *
+     * @param distribution the distribution of the values
+     * @param size         the number of values
+     * @return the values
+     */
+    static double[] create(Distribution distribution, int size) {
+        SplittableRandom rnd = new SplittableRandom(SEED);
+        double[] a = new double[size];
+        if (distribution == Distribution.ILL_CONDITIONED) {
+            return illConditioned(rnd, a);
+        }
+        for (int i = 0; i < size; i++) {
+            switch (distribution) {
+                case UNIFORM:
+                    a[i] = rnd.nextDouble();
+                    break;
+                case GAUSSIAN:
+                    a[i] = gaussian(rnd);
+                    break;
+                case OFFSET:
+                    a[i] = 1e9 + gaussian(rnd);
+                    break;
+                case LOG_NORMAL:
+                    a[i] = Math.exp(gaussian(rnd));
+                    break;
+                default:
+                    throw new IllegalArgumentException("unsupported distribution: " + distribution);
+            }
+        }
+        return a;
+    }
+
+    private static double[] illConditioned(SplittableRandom rnd, double[] a) {
+        int n = a.length;
+        for (int i = 0; i < n - 1; i += 2) {
+            double x = Math.scalb(gaussian(rnd), rnd.nextInt(61));
+            a[i] = x;
+            a[i + 1] = -x + rnd.nextDouble();
+        }
+        if (n % 2 != 0) {
+            a[n - 1] = rnd.nextDouble();
+        }
+        for (int i = n - 1; i > 0; i--) {
+            int j = rnd.nextInt(i + 1);
+            double t = a[i];
+            a[i] = a[j];
+            a[j] = t;
+        }
+        return a;
+    }
+
+    /**
+     * Returns a normally distributed value with the Box-Muller transform.
+     */
+    private static double gaussian(SplittableRandom rnd) {
+        double u = 1.0 - rnd.nextDouble();
+        double v = rnd.nextDouble();
+        return Math.sqrt(-2.0 * Math.log(u)) * Math.cos(2.0 * Math.PI * v);
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * @(#)QuantileSketchBenchmark.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.stats.jmh;
+
+import ch.randelshofer.stats.QuantileSketch;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the p99 of a dataset with a {@link QuantileSketch}, compared to
+ * sorting a copy of the dataset.
+ * <p>
+ * The sketch retains at most about {@code 3·k} items plus {@code O(log(n))},
+ * see {@link QuantileSketch}. The exact method retains all {@code n} values.
+ * The {@link #retainedSize} benchmark reports the number of retained items
+ * and their size in bytes of both methods as secondary results.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class QuantileSketchBenchmark {
+    @Param({"10000", "1000000"})
+    public int size;
+    @Param({"UNIFORM", "LOG_NORMAL"})
+    public Datasets.Distribution distribution;
+
+    private double[] values;
+
+    @Setup
+    public void setup() {
+        values = Datasets.create(distribution, size);
+    }
+
+    @Benchmark
+    public double quantileSketch() {
+        QuantileSketch sketch = new QuantileSketch();
+        for (double v : values) {
+            sketch.accept(v);
+        }
+        return sketch.quantile(0.99);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(1)
+    public double retainedSize(RetainedSize retained) {
+        QuantileSketch sketch = new QuantileSketch();
+        for (double v : values) {
+            sketch.accept(v);
+        }
+        retained.sketchItems = sketch.getRetainedItems();
+        retained.sketchBytes = (long) sketch.getRetainedItems() * Double.BYTES;
+        retained.exactItems = values.length;
+        retained.exactBytes = (long) values.length * Double.BYTES;
+        return sketch.quantile(0.99);
+    }
+
+    /**
+     * The number of items that are retained by the sketch and by the exact
+     * method, and their size in bytes, without the object headers.
+     * The counters are set once per invocation of {@link #retainedSize}.
+     * JMH sums event counters over all iterations, therefore the benchmark
+     * runs a single measurement iteration in a single fork.
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class RetainedSize {
+        public long sketchItems;
+        public long sketchBytes;
+        public long exactItems;
+        public long exactBytes;
+    }
+
+    @Benchmark
+    public double exactSort() {
+        double[] copy = values.clone();
+        Arrays.sort(copy);
+        return copy[(int) Math.min(copy.length - 1, Math.ceil(0.99 * copy.length) - 1)];
+    }
+}
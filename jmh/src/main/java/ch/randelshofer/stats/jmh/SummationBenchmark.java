@@ -0,0 +1,117 @@
+/*
+ * @(#)SummationBenchmark.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.stats.jmh;
+
+import ch.randelshofer.stats.DoubleSum;
+import ch.randelshofer.stats.SummationMode;
+import ch.randelshofer.stats.VarianceStatistics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of the {@link SummationMode}s of {@link DoubleSum}
+ * and of the sum of square of {@link VarianceStatistics}.
+ * <p>
+ * The accuracy is not a JMH metric. Run the {@link #main} method of this
+ * class to print the relative error of each mode against the exact sum,
+ * which is computed with {@link BigDecimal}:
+ * <pre>
+ * java -cp target/benchmarks.jar ch.randelshofer.stats.jmh.SummationBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class SummationBenchmark {
+    @Param({"1000", "1000000"})
+    public int size;
+    @Param({"GAUSSIAN", "OFFSET", "ILL_CONDITIONED"})
+    public Datasets.Distribution distribution;
+    @Param({"NAIVE", "PAIRWISE", "KAHAN", "NEUMAIER", "DOUBLE_DOUBLE", "EXACT"})
+    public SummationMode mode;
+
+    private double[] values;
+
+    @Setup
+    public void setup() {
+        values = Datasets.create(distribution, size);
+    }
+
+    @Benchmark
+    public double accept() {
+        DoubleSum sum = new DoubleSum(mode);
+        for (double v : values) {
+            sum.accept(v);
+        }
+        return sum.getSum();
+    }
+
+    @Benchmark
+    public double acceptAll() {
+        DoubleSum sum = new DoubleSum(mode);
+        sum.acceptAll(values, 0, values.length);
+        return sum.getSum();
+    }
+
+    @Benchmark
+    public double varianceStatisticsAcceptAll() {
+        VarianceStatistics stats = new VarianceStatistics(mode);
+        stats.acceptAll(values, 0, values.length);
+        return stats.getSampleVariance();
+    }
+
+    /**
+     * Prints the relative error of the sum of each mode and distribution,
+     * for {@code accept} and {@code acceptAll}.
+     *
+     * @param args the size of the datasets, default 1000000
+     */
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        System.out.printf("%-16s %-14s %14s %14s%n", "distribution", "mode", "accept", "acceptAll");
+        for (Datasets.Distribution distribution : Datasets.Distribution.values()) {
+            double[] values = Datasets.create(distribution, size);
+            BigDecimal exact = BigDecimal.ZERO;
+            for (double v : values) {
+                exact = exact.add(new BigDecimal(v));
+            }
+            for (SummationMode mode : SummationMode.values()) {
+                DoubleSum single = new DoubleSum(mode);
+                for (double v : values) {
+                    single.accept(v);
+                }
+                DoubleSum array = new DoubleSum(mode);
+                array.acceptAll(values, 0, values.length);
+                System.out.printf("%-16s %-14s %14.3e %14.3e%n", distribution, mode,
+                        relativeError(exact, single.getSum()), relativeError(exact, array.getSum()));
+            }
+        }
+    }
+
+    private static double relativeError(BigDecimal exact, double actual) {
+        if (!Double.isFinite(actual)) {
+            return Double.POSITIVE_INFINITY;
+        }
+        BigDecimal error = new BigDecimal(actual).subtract(exact).abs();
+        return exact.signum() == 0 ? error.doubleValue()
+                : error.divide(exact.abs(), MathContext.DECIMAL64).doubleValue();
+    }
+}
@@ -0,0 +1,385 @@
+/*
+ * @(#)BivariateStatistics.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.stats;
+
+import java.util.Objects;
+
+import static java.lang.Math.sqrt;
+
+/**
+ * This collector computes covariance, correlation and a simple linear
+ * regression of {@code (x, y)} pairs in a single pass.
+ * <p>
+ * The collector uses the "Computing shifted data" algorithm: it keeps
+ * {@code Σ(x-Kx)}, {@code Σ(y-Ky)}, {@code Σ(x-Kx)²}, {@code Σ(y-Ky)²}
+ * and {@code Σ(x-Kx)(y-Ky)}, where the shift {@code (Kx, Ky)} is the first
+ * pair of the sample. All sums are computed with the Neumaier compensation
+ * algorithm.
+ * <p>
+ * Usage with a stream of pairs:
+ * <pre>
+ * BivariateStatistics stats = stream.collect(BivariateStatistics::new,
+ *                                               (s, p) -&gt; s.accept(p.x, p.y),
+ *                                               BivariateStatistics::combine);
+ * </pre>
+ *
+ * <p>
+ * References:
+ * <ul>
+ * <li>Algorithms for calculating variance. Covariance.<br>
+ * Wikipedia.
+ * <a href="https://en.wikipedia.org/wiki/Algorithms_for_calculating_variance#Covariance">link</a>
+ * </li>
+ * <li>Simple linear regression.<br>
+ * Wikipedia.
+ * <a href="https://en.wikipedia.org/wiki/Simple_linear_regression">link</a>
+ * </li>
+ * </ul>
+ * </p>
+ */
+public class BivariateStatistics {
+    private final static int X = 0, Y = 1, XX = 2, YY = 3, XY = 4;
+    private long count;
+    /**
+     * The shift {@code (Kx, Ky)}.
+     */
+    private double shiftX, shiftY;
+    /**
+     * The sums {@code Σdx, Σdy, Σdx², Σdy², Σdx·dy} with {@code dx = x-Kx}
+     * and {@code dy = y-Ky}, and their compensations.
+     */
+    private final double[] sums = new double[5];
+    private final double[] compensations = new double[5];
+
+    /**
+     * Creates a new instance with an empty sample.
+     */
+    public BivariateStatistics() {
+    }
+
+    /**
+     * Adds a pair to the sample.
+     *
+     * @param x the x value
+     * @param y the y value
+     */
+    public void accept(double x, double y) {
+        if (count == 0) {
+            shiftX = x;
+            shiftY = y;
+        }
+        count++;
+        double dx = x - shiftX, dy = y - shiftY;
+        DoubleSum.sumWithCompensation(sums, compensations, X, dx);
+        DoubleSum.sumWithCompensation(sums, compensations, Y, dy);
+        DoubleSum.sumWithCompensation(sums, compensations, XX, dx * dx);
+        DoubleSum.sumWithCompensation(sums, compensations, YY, dy * dy);
+        DoubleSum.sumWithCompensation(sums, compensations, XY, dx * dy);
+    }
+
+    /**
+     * Adds the pairs {@code (xs[i], ys[i])} to the sample.
+     *
+     * @param xs the x values
+     * @param ys the y values
+     * @throws IllegalArgumentException if the arrays have different lengths
+     */
+    public void acceptAll(double[] xs, double[] ys) {
+        if (xs.length != ys.length) {
+            throw new IllegalArgumentException("xs and ys must have the same length, xs.length="
+                    + xs.length + ", ys.length=" + ys.length);
+        }
+        acceptAll(xs, ys, 0, xs.length);
+    }
+
+    /**
+     * Adds the pairs {@code (xs[i], ys[i])} for {@code i} from {@code from}
+     * (inclusive) to {@code to} (exclusive) to the sample.
+     * <p>
+     * The sums are computed in local variables with the branch-free TwoSum
+     * algorithm, and are then added to the sums of this collector with the
+     * Neumaier algorithm. The result is therefore not necessarily
+     * bit-identical to calling {@link #accept} for each pair, but it has
+     * the same error bound.
+     *
+     * @param xs   the x values
+     * @param ys   the y values
+     * @param from the index of the first pair (inclusive)
+     * @param to   the index of the last pair (exclusive)
+     * @throws IndexOutOfBoundsException if the range is out of bounds
+     *                                   of one of the arrays
+     */
+    public void acceptAll(double[] xs, double[] ys, int from, int to) {
+        Objects.checkFromToIndex(from, to, xs.length);
+        Objects.checkFromToIndex(from, to, ys.length);
+        if (from == to) {
+            return;
+        }
+        if (count == 0) {
+            shiftX = xs[from];
+            shiftY = ys[from];
+        }
+        double kx = shiftX, ky = shiftY;
+        double sx = 0.0, sy = 0.0, sxx = 0.0, syy = 0.0, sxy = 0.0;
+        double cx = 0.0, cy = 0.0, cxx = 0.0, cyy = 0.0, cxy = 0.0;
+        for (int i = from; i < to; i++) {
+            double dx = xs[i] - kx, dy = ys[i] - ky;
+            double dxx = dx * dx, dyy = dy * dy, dxy = dx * dy;
+
+            double tx = sx + dx, ty = sy + dy, txx = sxx + dxx, tyy = syy + dyy, txy = sxy + dxy;
+            double zx = tx - sx, zy = ty - sy, zxx = txx - sxx, zyy = tyy - syy, zxy = txy - sxy;
+            cx += (sx - (tx - zx)) + (dx - zx);
+            cy += (sy - (ty - zy)) + (dy - zy);
+            cxx += (sxx - (txx - zxx)) + (dxx - zxx);
+            cyy += (syy - (tyy - zyy)) + (dyy - zyy);
+            cxy += (sxy - (txy - zxy)) + (dxy - zxy);
+            sx = tx;
+            sy = ty;
+            sxx = txx;
+            syy = tyy;
+            sxy = txy;
+        }
+        count += to - from;
+        add(X, sx, cx);
+        add(Y, sy, cy);
+        add(XX, sxx, cxx);
+        add(YY, syy, cyy);
+        add(XY, sxy, cxy);
+    }
+
+    private void add(int index, double sum, double compensation) {
+        DoubleSum.sumWithCompensation(sums, compensations, index, sum);
+        DoubleSum.sumWithCompensation(sums, compensations, index, compensation);
+    }
+
+    /**
+     * Combines the state of another {@code BivariateStatistics} into this one.
+     *
+     * @param other another {@code BivariateStatistics}
+     * @return this
+     */
+    public BivariateStatistics combine(BivariateStatistics other) {
+        if (other.count == 0) {
+            return this;
+        }
+        if (count == 0) {
+            shiftX = other.shiftX;
+            shiftY = other.shiftY;
+        }
+        // Re-shift the sums of the other sample from its shift to our shift,
+        // see ShiftedVarianceStatistics.
+        double deltaX = other.shiftX - shiftX, deltaY = other.shiftY - shiftY;
+        long n = other.count;
+        double otherX = other.getSum(X), otherY = other.getSum(Y);
+        add(XX, other.sums[XX], other.compensations[XX]);
+        DoubleSum.sumWithCompensation(sums, compensations, XX, 2 * deltaX * otherX);
+        DoubleSum.sumWithCompensation(sums, compensations, XX, n * deltaX * deltaX);
+        add(YY, other.sums[YY], other.compensations[YY]);
+        DoubleSum.sumWithCompensation(sums, compensations, YY, 2 * deltaY * otherY);
+        DoubleSum.sumWithCompensation(sums, compensations, YY, n * deltaY * deltaY);
+        add(XY, other.sums[XY], other.compensations[XY]);
+        DoubleSum.sumWithCompensation(sums, compensations, XY, deltaY * otherX);
+        DoubleSum.sumWithCompensation(sums, compensations, XY, deltaX * otherY);
+        DoubleSum.sumWithCompensation(sums, compensations, XY, n * deltaX * deltaY);
+        add(X, other.sums[X], other.compensations[X]);
+        DoubleSum.sumWithCompensation(sums, compensations, X, n * deltaX);
+        add(Y, other.sums[Y], other.compensations[Y]);
+        DoubleSum.sumWithCompensation(sums, compensations, Y, n * deltaY);
+        count += n;
+        return this;
+    }
+
+    private double getSum(int index) {
+        return sums[index] + compensations[index];
+    }
+
+    /**
+     * Returns the sum of the squared deviations of x from its mean.
+     */
+    private double getSxx() {
+        double s = getSum(X);
+        return Math.max(0.0, getSum(XX) - s * s / count);
+    }
+
+    /**
+     * Returns the sum of the squared deviations of y from its mean.
+     */
+    private double getSyy() {
+        double s = getSum(Y);
+        return Math.max(0.0, getSum(YY) - s * s / count);
+    }
+
+    /**
+     * Returns the sum of the products of the deviations of x and y from
+     * their means.
+     */
+    private double getSxy() {
+        return getSum(XY) - getSum(X) * getSum(Y) / count;
+    }
+
+    /**
+     * Returns the number of pairs in the sample.
+     *
+     * @return the count
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the arithmetic mean of the x values.
+     *
+     * @return the average, or zero if the sample is empty
+     */
+    public double getAverageX() {
+        return count > 0 ? shiftX + getSum(X) / count : 0.0d;
+    }
+
+    /**
+     * Returns the arithmetic mean of the y values.
+     *
+     * @return the average, or zero if the sample is empty
+     */
+    public double getAverageY() {
+        return count > 0 ? shiftY + getSum(Y) / count : 0.0d;
+    }
+
+    /**
+     * Returns the (unbiased) variance of the x values of the sample.
+     *
+     * @return the variance, or zero if the sample contains less than two pairs
+     */
+    public double getSampleVarianceX() {
+        return count > 1 ? getSxx() / (count - 1) : 0.0d;
+    }
+
+    /**
+     * Returns the (unbiased) variance of the y values of the sample.
+     *
+     * @return the variance, or zero if the sample contains less than two pairs
+     */
+    public double getSampleVarianceY() {
+        return count > 1 ? getSyy() / (count - 1) : 0.0d;
+    }
+
+    /**
+     * Returns the (unbiased) covariance of the sample.
+     *
+     * @return the covariance, or zero if the sample contains less than two pairs
+     */
+    public double getSampleCovariance() {
+        return count > 1 ? getSxy() / (count - 1) : 0.0d;
+    }
+
+    /**
+     * Returns the covariance of the population.
+     * <p>
+     * Use this method only if the entire population has been sampled.
+     *
+     * @return the covariance, or zero if the sample is empty
+     */
+    public double getPopulationCovariance() {
+        return count > 0 ? getSxy() / count : 0.0d;
+    }
+
+    /**
+     * Returns the Pearson correlation coefficient {@code r}.
+     *
+     * @return the correlation in [-1, 1], or {@code NaN} if the x values
+     * or the y values have no variance
+     */
+    public double getCorrelation() {
+        double r = getSxy() / sqrt(getSxx() * getSyy());
+        return Math.max(-1.0, Math.min(1.0, r));
+    }
+
+    /**
+     * Returns the coefficient of determination {@code R²} of the linear
+     * regression.
+     *
+     * @return {@code r²}, or {@code NaN} if the x values or the y values
+     * have no variance
+     */
+    public double getRSquare() {
+        double r = getCorrelation();
+        return r * r;
+    }
+
+    /**
+     * Returns the slope {@code b} of the least squares regression line
+     * {@code y = a + b·x}.
+     *
+     * @return the slope, or {@code NaN} if the x values have no variance
+     */
+    public double getSlope() {
+        return getSxy() / getSxx();
+    }
+
+    /**
+     * Returns the intercept {@code a} of the least squares regression line
+     * {@code y = a + b·x}.
+     *
+     * @return the intercept, or {@code NaN} if the x values have no variance
+     */
+    public double getIntercept() {
+        return getAverageY() - getSlope() * getAverageX();
+    }
+
+    /**
+     * Returns the standard error of the slope.
+     *
+     * @return the standard error, or {@code NaN} if the sample contains
+     * less than three pairs or if the x values have no variance
+     */
+    public double getSlopeStandardError() {
+        if (count < 3) {
+            return Double.NaN;
+        }
+        double sxx = getSxx();
+        double residual = Math.max(0.0, getSyy() - getSxy() * getSxy() / sxx);
+        return sqrt(residual / (count - 2) / sxx);
+    }
+
+    /**
+     * Returns the confidence value for the slope using the Student's t
+     * distribution with {@code n - 2} degrees of freedom.
+     * <p>
+     * The confidence interval can be constructed by subtracting and adding
+     * the returned value {@code c} from the slope:
+     * {@code [slope - c, slope + c]}.
+     *
+     * @param alpha the significance level.
+     *              The confidence level equals {@code 1 - alpha}.
+     *              An alpha of 0.05 indicates a 95 percent confidence.
+     * @return the confidence value {@code c}, or {@code NaN} if the sample
+     * contains less than three pairs or if the x values have no variance
+     * @throws IllegalArgumentException if alpha is not in (0, 1)
+     */
+    public double getSlopeConfidence(double alpha) {
+        double se = getSlopeStandardError();
+        if (Double.isNaN(se)) {
+            return Double.NaN;
+        }
+        // confidenceT computes t(1 - alpha/2, size - 1)·stdev/√size.
+        // With size = n - 1 and stdev = se·√size this is t(1 - alpha/2, n - 2)·se.
+        long size = count - 1;
+        return Stats.confidenceT(alpha, se * sqrt(size), size);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "%s{count=%d, avgx=%f, avgy=%f, covs=%f, r=%f, slope=%f, intercept=%f}",
+                this.getClass().getSimpleName(),
+                getCount(),
+                getAverageX(),
+                getAverageY(),
+                getSampleCovariance(),
+                getCorrelation(),
+                getSlope(),
+                getIntercept()
+        );
+    }
+}
@@ -0,0 +1,478 @@
+/*
+ * @(#)Bootstrap.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.stats;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import static java.lang.Math.abs;
+import static java.lang.Math.sqrt;
+
+/**
+ * Computes bootstrap confidence intervals of a statistic of a sample.
+ * <p>
+ * The bootstrap does not assume that the sample is normally distributed.
+ * It draws {@code B} resamples of the sample with replacement, computes the
+ * statistic of each resample, and derives the confidence interval from the
+ * distribution of these replicates. This works for skewed data, and for
+ * statistics like the median or the 99th percentile, for which there is no
+ * simple formula.
+ * <p>
+ * The resamples are computed in parallel on a fork-join pool. They are
+ * divided into chunks of a fixed size, and each chunk has its own
+ * {@link SplittableRandom}, whose seed is derived from the seed of the
+ * bootstrap. The result is therefore reproducible, and does not depend on
+ * the parallelism of the pool. Each thread reuses a scratch buffer for the
+ * resamples, so that no arrays are allocated per resample. The scratch
+ * buffers are kept as long as the {@code Bootstrap} instance is reachable.
+ * <p>
+ * Usage:
+ * <pre>
+ * Bootstrap bootstrap = new Bootstrap(10_000, seed);
+ * Bootstrap.Result result = bootstrap.run(latencies, Bootstrap.quantile(0.99));
+ * double[] interval = result.getBcaInterval(0.05);
+ * </pre>
+ *
+ * <p>
+ * References:
+ * <ul>
+ * <li>Bradley Efron. Better Bootstrap Confidence Intervals.<br>
+ * Journal of the American Statistical Association 82(397), 171–185 (1987).
+ * </li>
+ * <li>Bradley Efron, Robert J. Tibshirani. An Introduction to the Bootstrap.<br>
+ * Chapman &amp; Hall/CRC (1993).
+ * </li>
+ * <li>Daniel Lemire. Fast Random Integer Generation in an Interval.<br>
+ * ACM Transactions on Modeling and Computer Simulation 29(1) (2019).
+ * </li>
+ * </ul>
+ * </p>
+ */
+public class Bootstrap {
+    /**
+     * Computes a statistic of a sample.
+     */
+    @FunctionalInterface
+    public interface Statistic {
+        /**
+         * Computes the statistic of the values {@code sample[0]} (inclusive)
+         * to {@code sample[length]} (exclusive).
+         * <p>
+         * The array is a scratch buffer. The statistic may rearrange the
+         * values, but must not keep a reference to the array.
+         *
+         * @param sample the values
+         * @param length the number of values, at least 1
+         * @return the statistic
+         */
+        double apply(double[] sample, int length);
+    }
+
+    /**
+     * The arithmetic mean.
+     * <p>
+     * The values are summed up with the Neumaier algorithm, like
+     * {@link DoubleSum}, but in local variables, so that no object is
+     * allocated per resample.
+     */
+    public final static Statistic MEAN = (sample, length) -> {
+        double sum = 0.0, c = 0.0;
+        for (int i = 0; i < length; i++) {
+            double x = sample[i];
+            double t = sum + x;
+            if (abs(sum) >= abs(x)) {
+                c += (sum - t) + x;
+            } else {
+                c += (x - t) + sum;
+            }
+            sum = t;
+        }
+        return (sum + c) / length;
+    };
+
+    /**
+     * Number of resamples that share a random number generator.
+     */
+    private final static int CHUNK_RESAMPLES = 16;
+    /**
+     * Maximal number of groups of the jackknife, which estimates the
+     * acceleration of the BCa interval.
+     */
+    private final static int JACKKNIFE_GROUPS = 128;
+    private final int resamples;
+    private final long seed;
+    private final ForkJoinPool pool;
+    private final ThreadLocal<double[]> scratch = new ThreadLocal<>();
+
+    /**
+     * Creates a new instance that uses the common fork-join pool.
+     *
+     * @param resamples the number of resamples {@code B}
+     * @param seed      the seed of the random number generator
+     * @throws IllegalArgumentException if resamples is not positive
+     */
+    public Bootstrap(int resamples, long seed) {
+        this(resamples, seed, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param resamples the number of resamples {@code B}
+     * @param seed      the seed of the random number generator
+     * @param pool      the fork-join pool
+     * @throws IllegalArgumentException if resamples is not positive
+     */
+    public Bootstrap(int resamples, long seed, ForkJoinPool pool) {
+        if (resamples <= 0) {
+            throw new IllegalArgumentException("resamples must be positive, resamples=" + resamples);
+        }
+        this.resamples = resamples;
+        this.seed = seed;
+        this.pool = Objects.requireNonNull(pool, "pool");
+    }
+
+    /**
+     * Returns a statistic that computes the {@code p}-quantile with linear
+     * interpolation between order statistics. The values are selected in
+     * linear time, without sorting them.
+     *
+     * @param p the probability in [0, 1]
+     * @return the statistic
+     * @throws IllegalArgumentException if p is not in [0, 1]
+     */
+    public static Statistic quantile(double p) {
+        if (!(p >= 0 && p <= 1)) {
+            throw new IllegalArgumentException("p must be in [0, 1], p=" + p);
+        }
+        return (sample, length) -> Selection.quantile(sample, 0, length, p);
+    }
+
+    /**
+     * Draws the resamples of a sample and computes the replicates of the
+     * statistic.
+     * <p>
+     * The acceleration of the BCa interval is estimated with a grouped
+     * jackknife: the values are assigned to up to 128 groups by their
+     * index modulo the number of groups, and the statistic is computed
+     * with each group left out. This costs a fixed number of evaluations
+     * of the statistic, instead of one per value.
+     *
+     * @param sample    the sample, is not modified
+     * @param statistic the statistic
+     * @return the result
+     * @throws IllegalArgumentException if the sample is empty
+     */
+    public Result run(double[] sample, Statistic statistic) {
+        Objects.requireNonNull(statistic, "statistic");
+        int n = sample.length;
+        if (n == 0) {
+            throw new IllegalArgumentException("sample must not be empty");
+        }
+        double[] copy = sample.clone();
+        double estimate = statistic.apply(copy, n);
+
+        int chunks = (resamples + CHUNK_RESAMPLES - 1) / CHUNK_RESAMPLES;
+        long[] seeds = new long[chunks];
+        SplittableRandom root = new SplittableRandom(seed);
+        for (int c = 0; c < chunks; c++) {
+            seeds[c] = root.nextLong();
+        }
+        double[] replicates = new double[resamples];
+        pool.invoke(new ResampleTask(sample, statistic, seeds, replicates, 0, chunks));
+        Arrays.sort(replicates);
+
+        int groups = Math.min(n, JACKKNIFE_GROUPS);
+        double acceleration = 0.0;
+        if (groups > 1) {
+            double[] jackknife = new double[groups];
+            pool.invoke(new JackknifeTask(sample, statistic, jackknife, 0, groups));
+            acceleration = acceleration(jackknife);
+        }
+        return new Result(estimate, replicates, acceleration);
+    }
+
+    private double[] getScratch(int length) {
+        double[] s = scratch.get();
+        if (s == null || s.length < length) {
+            s = new double[length];
+            scratch.set(s);
+        }
+        return s;
+    }
+
+    /**
+     * Returns the acceleration {@code a = Σd³ / (6·(Σd²)^(3/2))}, where
+     * {@code d} are the deviations of the jackknife values from their mean.
+     */
+    private static double acceleration(double[] jackknife) {
+        double mean = 0.0;
+        for (double v : jackknife) {
+            mean += v;
+        }
+        mean /= jackknife.length;
+        double sum2 = 0.0, sum3 = 0.0;
+        for (double v : jackknife) {
+            double d = mean - v;
+            sum2 += d * d;
+            sum3 += d * d * d;
+        }
+        return sum2 > 0 ? sum3 / (6.0 * sum2 * sqrt(sum2)) : 0.0;
+    }
+
+    /**
+     * Computes the replicates of the chunks {@code from} (inclusive) to
+     * {@code to} (exclusive).
+     */
+    private class ResampleTask extends RecursiveAction {
+        private final static long serialVersionUID = 0L;
+        private final double[] sample;
+        private final transient Statistic statistic;
+        private final long[] seeds;
+        private final double[] replicates;
+        private final int from;
+        private final int to;
+
+        ResampleTask(double[] sample, Statistic statistic, long[] seeds, double[] replicates, int from, int to) {
+            this.sample = sample;
+            this.statistic = statistic;
+            this.seeds = seeds;
+            this.replicates = replicates;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new ResampleTask(sample, statistic, seeds, replicates, from, mid),
+                        new ResampleTask(sample, statistic, seeds, replicates, mid, to));
+                return;
+            }
+            int n = sample.length;
+            double[] s = getScratch(n);
+            SplittableRandom rnd = new SplittableRandom(seeds[from]);
+            long threshold = (1L << 32) % n;
+            for (int r = from * CHUNK_RESAMPLES, end = Math.min(resamples, r + CHUNK_RESAMPLES); r < end; r++) {
+                for (int i = 0; i < n; i++) {
+                    s[i] = sample[nextIndex(rnd, n, threshold)];
+                }
+                replicates[r] = statistic.apply(s, n);
+            }
+        }
+    }
+
+    /**
+     * Returns a uniformly distributed index in {@code [0, n)} with Lemire's
+     * multiply-shift method, which avoids the division of
+     * {@link SplittableRandom#nextInt(int)} in almost all cases.
+     *
+     * @param rnd       the random number generator
+     * @param n         the bound
+     * @param threshold {@code 2^32 mod n}
+     * @return the index
+     */
+    private static int nextIndex(SplittableRandom rnd, int n, long threshold) {
+        long m = (rnd.nextInt() & 0xffffffffL) * n;
+        while ((m & 0xffffffffL) < threshold) {
+            m = (rnd.nextInt() & 0xffffffffL) * n;
+        }
+        return (int) (m >>> 32);
+    }
+
+    /**
+     * Computes the jackknife values of the groups {@code from} (inclusive)
+     * to {@code to} (exclusive).
+     */
+    private class JackknifeTask extends RecursiveAction {
+        private final static long serialVersionUID = 0L;
+        private final double[] sample;
+        private final transient Statistic statistic;
+        private final double[] jackknife;
+        private final int from;
+        private final int to;
+
+        JackknifeTask(double[] sample, Statistic statistic, double[] jackknife, int from, int to) {
+            this.sample = sample;
+            this.statistic = statistic;
+            this.jackknife = jackknife;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new JackknifeTask(sample, statistic, jackknife, from, mid),
+                        new JackknifeTask(sample, statistic, jackknife, mid, to));
+                return;
+            }
+            int n = sample.length, groups = jackknife.length;
+            double[] s = getScratch(n);
+            int length = 0;
+            for (int i = 0; i < n; i++) {
+                if (i % groups != from) {
+                    s[length++] = sample[i];
+                }
+            }
+            jackknife[from] = statistic.apply(s, length);
+        }
+    }
+
+    /**
+     * The result of a bootstrap.
+     */
+    public static class Result {
+        private final double estimate;
+        private final double[] replicates;
+        private final double acceleration;
+
+        Result(double estimate, double[] replicates, double acceleration) {
+            this.estimate = estimate;
+            this.replicates = replicates;
+            this.acceleration = acceleration;
+        }
+
+        /**
+         * Returns the statistic of the original sample.
+         *
+         * @return the estimate
+         */
+        public double getEstimate() {
+            return estimate;
+        }
+
+        /**
+         * Returns the replicates of the statistic in ascending order.
+         *
+         * @return a new array with the replicates
+         */
+        public double[] getReplicates() {
+            return replicates.clone();
+        }
+
+        /**
+         * Returns the bootstrap estimate of the standard error: the
+         * standard deviation of the replicates.
+         *
+         * @return the standard error
+         */
+        public double getStandardError() {
+            VarianceStatistics stats = new VarianceStatistics();
+            stats.acceptAll(replicates, 0, replicates.length);
+            return stats.getSampleStandardDeviation();
+        }
+
+        /**
+         * Returns the bias correction {@code z0} of the BCa interval:
+         * the normal quantile of the fraction of replicates that are
+         * less than the estimate.
+         *
+         * @return the bias correction, or an infinite value if all
+         * replicates are on one side of the estimate
+         */
+        public double getBiasCorrection() {
+            int less = 0, equal = 0;
+            for (double r : replicates) {
+                if (r < estimate) {
+                    less++;
+                } else if (r == estimate) {
+                    equal++;
+                }
+            }
+            double p = (less + 0.5 * equal) / replicates.length;
+            if (p <= 0.0 || p >= 1.0) {
+                return p <= 0.0 ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+            }
+            return Quantiles.normal(p);
+        }
+
+        /**
+         * Returns the acceleration {@code a} of the BCa interval, which is
+         * estimated with a grouped jackknife.
+         *
+         * @return the acceleration
+         */
+        public double getAcceleration() {
+            return acceleration;
+        }
+
+        /**
+         * Returns the percentile confidence interval: the {@code alpha/2} and
+         * {@code 1 - alpha/2} quantiles of the replicates.
+         *
+         * @param alpha the significance level.
+         *              The confidence level equals {@code 1 - alpha}.
+         *              Supported values: any value in (0, 1).
+         * @return the interval {@code {lower, upper}}
+         * @throws IllegalArgumentException if alpha is not in (0, 1)
+         */
+        public double[] getPercentileInterval(double alpha) {
+            Stats.checkAlpha(alpha);
+            return new double[]{quantile(alpha / 2), quantile(1 - alpha / 2)};
+        }
+
+        /**
+         * Returns the bias-corrected and accelerated (BCa) confidence interval.
+         * <p>
+         * The BCa interval adjusts the quantiles of the percentile interval
+         * for the bias and the skewness of the distribution of the replicates.
+         * It is second-order accurate, while the percentile interval is only
+         * first-order accurate.
+         *
+         * @param alpha the significance level.
+         *              The confidence level equals {@code 1 - alpha}.
+         *              Supported values: any value in (0, 1).
+         * @return the interval {@code {lower, upper}}, or {@code {NaN, NaN}}
+         * if all replicates are on one side of the estimate
+         * @throws IllegalArgumentException if alpha is not in (0, 1)
+         */
+        public double[] getBcaInterval(double alpha) {
+            Stats.checkAlpha(alpha);
+            double z0 = getBiasCorrection();
+            if (Double.isInfinite(z0)) {
+                return new double[]{Double.NaN, Double.NaN};
+            }
+            return new double[]{quantile(bcaLevel(z0, Quantiles.normal(alpha / 2))),
+                    quantile(bcaLevel(z0, Quantiles.normal(1 - alpha / 2)))};
+        }
+
+        private double bcaLevel(double z0, double z) {
+            double w = z0 + z;
+            return Quantiles.normalCdf(z0 + w / (1 - acceleration * w));
+        }
+
+        /**
+         * Returns the {@code p}-quantile of the sorted replicates with
+         * linear interpolation.
+         */
+        private double quantile(double p) {
+            double h = p * (replicates.length - 1);
+            int k = (int) h;
+            if (k >= replicates.length - 1) {
+                return replicates[replicates.length - 1];
+            }
+            return replicates[k] + (h - k) * (replicates[k + 1] - replicates[k]);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "%s{resamples=%d, estimate=%f, se=%f, z0=%f, a=%f}",
+                    this.getClass().getSimpleName(),
+                    replicates.length,
+                    getEstimate(),
+                    getStandardError(),
+                    getBiasCorrection(),
+                    getAcceleration()
+            );
+        }
+    }
+}
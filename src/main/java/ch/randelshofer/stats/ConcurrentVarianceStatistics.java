@@ -0,0 +1,278 @@
+/*
+ * @(#)ConcurrentVarianceStatistics.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.stats;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.DoubleConsumer;
+
+import static java.lang.Math.abs;
+
+/**
+ * A thread-safe variant of {@link VarianceStatistics} for many concurrent
+ * writers.
+ * <p>
+ * Each writer thread adds its values into a cell of its own, which holds
+ * count, sum, compensation, sum of square, min and max, and is padded to
+ * its own cache line. Since a cell has a single writer, {@link #accept}
+ * does not use compare-and-set and never waits: it is wait-free. The
+ * first value that a thread adds registers its cell with a compare-and-set
+ * loop.
+ * <p>
+ * A reader reads each cell with a sequence lock: the writer increments a
+ * version before and after each update, and the reader retries a cell if
+ * the version was odd or has changed while it read the fields. A preempted
+ * writer therefore never blocks a reader; a reader only retries a cell
+ * while its writer is updating it.
+ * <p>
+ * The first value of a new writer thread takes over the cell of a
+ * terminated thread, and keeps adding to it. Only if there is no such
+ * cell, a new cell is appended to the array of cells. The number of cells
+ * is therefore bounded by the largest number of writer threads that have
+ * been alive at the same time, regardless of how many threads come and go.
+ * <p>
+ * Usage:
+ * <pre>
+ * ConcurrentVarianceStatistics stats = new ConcurrentVarianceStatistics();
+ * // in many threads:
+ * stats.accept(latency);
+ * // in a reader thread:
+ * VarianceStatistics snapshot = stats.snapshot();
+ * </pre>
+ * <p>
+ * References:
+ * <ul>
+ * <li>Hans-J. Boehm. Can seqlocks get along with programming language
+ * memory models?<br>
+ * MSPC '12, 12–20 (2012).
+ * </li>
+ * </ul>
+ * </p>
+ */
+public class ConcurrentVarianceStatistics implements DoubleConsumer {
+    private final static Cell[] NO_CELLS = new Cell[0];
+
+    private final AtomicReference<Cell[]> cells = new AtomicReference<>(NO_CELLS);
+    private final ThreadLocal<Cell> localCell = ThreadLocal.withInitial(this::register);
+
+    /**
+     * Creates a new instance.
+     */
+    public ConcurrentVarianceStatistics() {
+    }
+
+    /**
+     * Adds a value to the sample.
+     * <p>
+     * This method is thread-safe and wait-free.
+     *
+     * @param value a new value
+     */
+    @Override
+    public void accept(double value) {
+        localCell.get().accept(value);
+    }
+
+    /**
+     * Returns a snapshot of the sample.
+     * <p>
+     * This method is thread-safe and does not block writers. Each cell is
+     * read consistently, but values that are added concurrently to the
+     * snapshot may or may not be included.
+     *
+     * @return a new {@code VarianceStatistics}
+     */
+    public VarianceStatistics snapshot() {
+        VarianceStatistics stats = new VarianceStatistics();
+        Cell copy = new Cell(null);
+        for (Cell cell : cells.get()) {
+            cell.copyTo(copy);
+            stats.combine(copy.toVarianceStatistics());
+        }
+        return stats;
+    }
+
+    /**
+     * Returns the cell of the current thread. Takes over the cell of a
+     * terminated thread, or appends a new cell if there is none.
+     */
+    private Cell register() {
+        Thread thread = Thread.currentThread();
+        for (Cell cell : cells.get()) {
+            if (cell.adopt(thread)) {
+                return cell;
+            }
+        }
+        Cell cell = new Cell(thread);
+        Cell[] current, next;
+        do {
+            current = cells.get();
+            next = Arrays.copyOf(current, current.length + 1);
+            next[current.length] = cell;
+        } while (!cells.compareAndSet(current, next));
+        return cell;
+    }
+
+    /**
+     * Returns the number of cells.
+     */
+    int getCellCount() {
+        return cells.get().length;
+    }
+
+    @Override
+    public String toString() {
+        return snapshot().toString().replaceFirst(VarianceStatistics.class.getSimpleName(),
+                getClass().getSimpleName());
+    }
+
+    /**
+     * Padding in front of the fields of a cell.
+     */
+    @SuppressWarnings("unused")
+    private static class CellPadding {
+        long p00, p01, p02, p03, p04, p05, p06, p07;
+    }
+
+    /**
+     * The fields of a cell.
+     */
+    private static class CellFields extends CellPadding {
+        final static VarHandle VERSION;
+
+        static {
+            try {
+                VERSION = MethodHandles.lookup().findVarHandle(CellFields.class, "version", long.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        /**
+         * The version of the fields, odd while the writer updates them.
+         */
+        volatile long version;
+        long count;
+        double sum;
+        double c;
+        double simpleSum;
+        double sumOfSquare;
+        double cOfSquare;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * A cell, padded on both sides.
+     */
+    @SuppressWarnings("unused")
+    private static class Cell extends CellFields {
+        final static VarHandle OWNER;
+
+        static {
+            try {
+                OWNER = MethodHandles.lookup().findVarHandle(Cell.class, "owner", WeakReference.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        long p10, p11, p12, p13, p14, p15, p16, p17;
+        private volatile WeakReference<Thread> owner;
+
+        Cell(Thread owner) {
+            this.owner = new WeakReference<>(owner);
+        }
+
+        /**
+         * Makes the given thread the owner of this cell, if the current
+         * owner has terminated.
+         *
+         * @return true on success
+         */
+        boolean adopt(Thread thread) {
+            WeakReference<Thread> current = owner;
+            Thread t = current.get();
+            if (t != null && t.isAlive()
+                    || !OWNER.compareAndSet(this, current, new WeakReference<>(thread))) {
+                return false;
+            }
+            // Pairs with the release of the last update of the previous
+            // owner, so that the new owner continues from its state.
+            VERSION.getAcquire(this);
+            return true;
+        }
+
+        /**
+         * Adds a value to the cell. Must only be called by the owner.
+         */
+        void accept(double value) {
+            long v = (long) VERSION.getOpaque(this);
+            VERSION.setOpaque(this, v + 1);
+            VarHandle.storeStoreFence();
+
+            count++;
+            simpleSum += value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+
+            // Neumaier Sum, see DoubleSum
+            double t = sum + value;
+            if (abs(sum) >= abs(value)) {
+                c += (sum - t) + value;
+            } else {
+                c += (value - t) + sum;
+            }
+            sum = t;
+
+            double square = value * value;
+            t = sumOfSquare + square;
+            if (abs(sumOfSquare) >= abs(square)) {
+                cOfSquare += (sumOfSquare - t) + square;
+            } else {
+                cOfSquare += (square - t) + sumOfSquare;
+            }
+            sumOfSquare = t;
+
+            VERSION.setRelease(this, v + 2);
+        }
+
+        /**
+         * Copies a consistent state of this cell into another cell.
+         * Retries while the owner updates this cell.
+         */
+        void copyTo(Cell dst) {
+            while (true) {
+                long v = (long) VERSION.getAcquire(this);
+                if ((v & 1) == 0) {
+                    dst.count = count;
+                    dst.sum = sum;
+                    dst.c = c;
+                    dst.simpleSum = simpleSum;
+                    dst.sumOfSquare = sumOfSquare;
+                    dst.cOfSquare = cOfSquare;
+                    dst.min = min;
+                    dst.max = max;
+                    VarHandle.loadLoadFence();
+                    if ((long) VERSION.getOpaque(this) == v) {
+                        return;
+                    }
+                }
+                Thread.onSpinWait();
+            }
+        }
+
+        /**
+         * Converts the cell into a {@code VarianceStatistics}.
+         * Must only be called on a copy of a cell.
+         */
+        VarianceStatistics toVarianceStatistics() {
+            return VarianceStatistics.fromSums(count, min, max, sum, c, simpleSum, sumOfSquare + cOfSquare);
+        }
+    }
+}
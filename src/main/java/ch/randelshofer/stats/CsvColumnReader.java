@@ -0,0 +1,604 @@
+/*
+ * @(#)CsvColumnReader.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.stats;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+
+/**
+ * Reads selected columns of CSV text or log lines and feeds the values
+ * as doubles into accumulators.
+ * <p>
+ * The text is streamed through a reusable byte buffer, and the numbers are
+ * parsed directly from the bytes. Reading does not allocate any objects per
+ * line or per field.
+ * <p>
+ * Numbers with at most 15 significant digits and a decimal exponent in
+ * [-22, 22] are parsed with Clinger's fast path, which yields the correctly
+ * rounded result with a single floating point operation. Other numbers with
+ * at most 19 significant digits, which includes the shortest representation
+ * of every double, are parsed with the Eisel-Lemire algorithm. The few
+ * numbers that neither algorithm can round correctly, such as subnormal
+ * numbers, numbers with more than 19 significant digits, as well as
+ * {@code NaN} and {@code Infinity}, are parsed with
+ * {@link Double#parseDouble}. Fields that are not numbers, for example in a
+ * header line, are skipped.
+ * <p>
+ * Lines are separated by {@code '\n'} or {@code "\r\n"}. Fields are separated
+ * by the delimiter, may be surrounded by spaces, and may be enclosed in
+ * double quotes. A delimiter inside double quotes does not separate fields,
+ * but a line separator always ends the line. The text must be encoded in an
+ * ASCII compatible charset, such as UTF-8.
+ * <p>
+ * Usage:
+ * <pre>
+ * CsvColumnReader reader = new CsvColumnReader(',', 3);
+ * VarianceStatistics latency = new VarianceStatistics();
+ * reader.read(channel, (column, value) -&gt; latency.accept(value));
+ * </pre>
+ * <p>
+ * Usage with multiple threads:
+ * <pre>
+ * CsvColumnReader reader = new CsvColumnReader(',', 3, 5);
+ * VarianceStatistics[] stats = reader.summarize(path);
+ * </pre>
+ *
+ * <p>
+ * References:
+ * <ul>
+ * <li>William D. Clinger. How to Read Floating Point Numbers Accurately.<br>
+ * ACM SIGPLAN Notices, Vol. 25, No. 6 (1990).
+ * </li>
+ * <li>Daniel Lemire. Number Parsing at a Gigabyte per Second.<br>
+ * Software: Practice and Experience, Vol. 51, No. 8 (2021).
+ * </li>
+ * </ul>
+ * </p>
+ */
+public class CsvColumnReader {
+    /**
+     * Receives the values of the selected columns.
+     */
+    @FunctionalInterface
+    public interface ColumnConsumer {
+        /**
+         * Accepts a value.
+         *
+         * @param column the index of the column in the array of
+         *               selected columns that was passed to the constructor
+         * @param value  the value
+         */
+        void accept(int column, double value);
+    }
+
+    private final static int BUFFER_SIZE = 1 << 16;
+    /**
+     * Approximate number of bytes that are read by a single task
+     * in {@link #read(Path, Supplier, BinaryOperator, ForkJoinPool)}.
+     */
+    private final static long SPLIT_SIZE = 16L << 20;
+    /**
+     * Powers of ten that can be represented exactly as doubles.
+     */
+    private final static double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20,
+            1e21, 1e22
+    };
+
+    private final byte delimiter;
+    private final int columnCount;
+    /**
+     * Maps a column number in the text to the index of the selected column,
+     * or to -1 if the column is not selected.
+     */
+    private final int[] selected;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param delimiter the field delimiter, must be an ASCII character
+     *                  other than a line separator or a double quote
+     * @param columns   the zero based numbers of the columns that are read
+     * @throws IllegalArgumentException if the delimiter is illegal, if no
+     *                                  columns are given, or if a column
+     *                                  number is negative or given twice
+     */
+    public CsvColumnReader(char delimiter, int... columns) {
+        if (delimiter >= 128 || delimiter == '\n' || delimiter == '\r' || delimiter == '"') {
+            throw new IllegalArgumentException("illegal delimiter: " + (int) delimiter);
+        }
+        if (columns.length == 0) {
+            throw new IllegalArgumentException("no columns given");
+        }
+        int maxColumn = -1;
+        for (int column : columns) {
+            if (column < 0) {
+                throw new IllegalArgumentException("column must not be negative, column=" + column);
+            }
+            maxColumn = Math.max(maxColumn, column);
+        }
+        this.delimiter = (byte) delimiter;
+        this.columnCount = columns.length;
+        this.selected = new int[maxColumn + 1];
+        Arrays.fill(selected, -1);
+        for (int i = 0; i < columns.length; i++) {
+            if (selected[columns[i]] != -1) {
+                throw new IllegalArgumentException("column given twice, column=" + columns[i]);
+            }
+            selected[columns[i]] = i;
+        }
+    }
+
+    /**
+     * Reads the selected columns from a character sequence.
+     * Characters outside the ASCII range are treated as non-numeric.
+     *
+     * @param text     the text
+     * @param consumer the consumer of the values
+     */
+    public void read(CharSequence text, ColumnConsumer consumer) {
+        int[] position = {0};
+        try {
+            new Parser().read(dst -> {
+                int pos = position[0];
+                if (pos == text.length()) {
+                    return -1;
+                }
+                int n = Math.min(dst.remaining(), text.length() - pos);
+                for (int i = 0; i < n; i++) {
+                    char ch = text.charAt(pos + i);
+                    dst.put(ch < 128 ? (byte) ch : (byte) '?');
+                }
+                position[0] = pos + n;
+                return n;
+            }, consumer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);// can not happen
+        }
+    }
+
+    /**
+     * Reads the selected columns from a channel until the end of the stream.
+     *
+     * @param channel  the channel
+     * @param consumer the consumer of the values
+     * @throws IOException if reading fails
+     */
+    public void read(ReadableByteChannel channel, ColumnConsumer consumer) throws IOException {
+        new Parser().read(channel::read, consumer);
+    }
+
+    /**
+     * Reads the selected columns from a file with the common fork-join pool.
+     *
+     * @param file     the file
+     * @param supplier creates a new accumulator for each range
+     * @param combiner combines two accumulators, the first accumulator
+     *                 contains the values of the lines before the second one
+     * @param <R>      the type of the accumulator
+     * @return the combined accumulator
+     * @throws IOException if reading fails
+     * @see #read(Path, Supplier, BinaryOperator, ForkJoinPool)
+     */
+    public <R extends ColumnConsumer> R read(Path file, Supplier<R> supplier, BinaryOperator<R> combiner) throws IOException {
+        return read(file, supplier, combiner, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Reads the selected columns from a file.
+     * <p>
+     * The file is split into ranges of about 16 MiB at line boundaries.
+     * Each range is read by its own task on the fork-join pool into a new
+     * accumulator from the supplier. The accumulators are merged with the
+     * combiner in file order.
+     *
+     * @param file     the file
+     * @param supplier creates a new accumulator for each range
+     * @param combiner combines two accumulators, the first accumulator
+     *                 contains the values of the lines before the second one
+     * @param pool     the fork-join pool
+     * @param <R>      the type of the accumulator
+     * @return the combined accumulator
+     * @throws IOException if reading fails
+     */
+    public <R extends ColumnConsumer> R read(Path file, Supplier<R> supplier, BinaryOperator<R> combiner,
+                                             ForkJoinPool pool) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long[] boundaries = splitAtLines(channel);
+            return pool.invoke(new ReadTask<>(channel, boundaries, 0, boundaries.length - 1, supplier, combiner));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Computes the statistics of the selected columns of a file with the
+     * common fork-join pool.
+     *
+     * @param file the file
+     * @return a {@code VarianceStatistics} for each selected column
+     * @throws IOException if reading fails
+     * @see #summarize(Path, ForkJoinPool)
+     */
+    public VarianceStatistics[] summarize(Path file) throws IOException {
+        return summarize(file, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Computes the statistics of the selected columns of a file.
+     *
+     * @param file the file
+     * @param pool the fork-join pool
+     * @return a {@code VarianceStatistics} for each selected column
+     * @throws IOException if reading fails
+     * @see #read(Path, Supplier, BinaryOperator, ForkJoinPool)
+     */
+    public VarianceStatistics[] summarize(Path file, ForkJoinPool pool) throws IOException {
+        return read(file, StatisticsConsumer::new, StatisticsConsumer::combine, pool).stats;
+    }
+
+    /**
+     * Returns the offsets of the line starts where the file is split,
+     * including 0 and the size of the file.
+     */
+    private long[] splitAtLines(FileChannel channel) throws IOException {
+        long size = channel.size();
+        int n = (int) Math.max(1, (size + SPLIT_SIZE - 1) / SPLIT_SIZE);
+        long[] boundaries = new long[n + 1];
+        int count = 1;
+        ByteBuffer buf = ByteBuffer.allocate(4096);
+        for (int k = 1; k < n; k++) {
+            long pos = Math.max(k * SPLIT_SIZE, boundaries[count - 1]);
+            long boundary = size;
+            search:
+            while (pos < size) {
+                buf.clear();
+                int read = channel.read(buf, pos);
+                if (read <= 0) {
+                    break;
+                }
+                for (int i = 0; i < read; i++) {
+                    if (buf.get(i) == '\n') {
+                        boundary = pos + i + 1;
+                        break search;
+                    }
+                }
+                pos += read;
+            }
+            if (boundary < size && boundary > boundaries[count - 1]) {
+                boundaries[count++] = boundary;
+            }
+        }
+        boundaries[count++] = size;
+        return Arrays.copyOf(boundaries, count);
+    }
+
+    /**
+     * Reads bytes into a buffer.
+     */
+    @FunctionalInterface
+    private interface ByteSource {
+        /**
+         * Reads bytes into the remaining space of the buffer.
+         *
+         * @return the number of bytes read, or -1 at the end of the source
+         */
+        int read(ByteBuffer dst) throws IOException;
+    }
+
+    /**
+     * Holds the buffer and the parsing state of one thread.
+     */
+    private class Parser {
+        private byte[] buf = new byte[BUFFER_SIZE];
+        private ByteBuffer byteBuffer = ByteBuffer.wrap(buf);
+        /**
+         * The value of the last successful {@link #parseDouble} call.
+         */
+        private double value;
+
+        void read(ByteSource source, ColumnConsumer consumer) throws IOException {
+            int len = 0;
+            while (true) {
+                if (len == buf.length) {
+                    // the line is longer than the buffer
+                    buf = Arrays.copyOf(buf, buf.length * 2);
+                    byteBuffer = ByteBuffer.wrap(buf);
+                }
+                byteBuffer.limit(buf.length).position(len);
+                int n = source.read(byteBuffer);
+                if (n < 0) {
+                    parseLines(0, len, consumer);
+                    return;
+                }
+                len += n;
+                int end = len;
+                while (end > 0 && buf[end - 1] != '\n') {
+                    end--;
+                }
+                if (end > 0) {
+                    parseLines(0, end, consumer);
+                    System.arraycopy(buf, end, buf, 0, len - end);
+                    len -= end;
+                }
+            }
+        }
+
+        /**
+         * Parses the lines in {@code buf[from, to)}. The last line does
+         * not need to be terminated by a line separator.
+         * <p>
+         * Each double quote toggles the quoted state, so that an escaped
+         * quote {@code ""} inside a quoted field leaves it unchanged.
+         */
+        private void parseLines(int from, int to, ColumnConsumer consumer) {
+            byte[] b = buf;
+            int[] sel = selected;
+            int column = 0;
+            int fieldStart = from;
+            boolean quoted = false;
+            for (int i = from; i < to; i++) {
+                byte ch = b[i];
+                if (ch == '"') {
+                    quoted = !quoted;
+                } else if (ch == delimiter && !quoted) {
+                    parseField(fieldStart, i, column, sel, consumer);
+                    column++;
+                    fieldStart = i + 1;
+                } else if (ch == '\n') {
+                    parseField(fieldStart, i, column, sel, consumer);
+                    column = 0;
+                    fieldStart = i + 1;
+                    quoted = false;
+                }
+            }
+            if (fieldStart < to) {
+                parseField(fieldStart, to, column, sel, consumer);
+            }
+        }
+
+        private void parseField(int from, int to, int column, int[] sel, ColumnConsumer consumer) {
+            if (column >= sel.length || sel[column] < 0) {
+                return;
+            }
+            byte[] b = buf;
+            while (from < to && (b[from] == ' ' || b[from] == '\t')) {
+                from++;
+            }
+            while (to > from && (b[to - 1] == ' ' || b[to - 1] == '\t' || b[to - 1] == '\r')) {
+                to--;
+            }
+            if (to - from >= 2 && b[from] == '"' && b[to - 1] == '"') {
+                from++;
+                to--;
+            }
+            if (parseDouble(b, from, to)) {
+                consumer.accept(sel[column], value);
+            }
+        }
+
+        /**
+         * Parses a double from {@code b[from, to)}.
+         *
+         * @return true on success, the value is stored in {@link #value}
+         */
+        private boolean parseDouble(byte[] b, int from, int to) {
+            int i = from;
+            if (i == to) {
+                return false;
+            }
+            boolean negative = false;
+            byte ch = b[i];
+            if (ch == '-' || ch == '+') {
+                negative = ch == '-';
+                i++;
+            }
+            long mantissa = 0;
+            int digits = 0;
+            int exponent = 0;
+            boolean anyDigits = false;
+            boolean truncated = false;
+            for (; i < to && (ch = b[i]) >= '0' && ch <= '9'; i++) {
+                anyDigits = true;
+                if (mantissa == 0 && ch == '0') {
+                    continue;
+                }
+                if (digits < 19) {
+                    mantissa = mantissa * 10 + (ch - '0');
+                    digits++;
+                } else {
+                    exponent++;
+                    truncated = true;
+                }
+            }
+            if (i < to && b[i] == '.') {
+                for (i++; i < to && (ch = b[i]) >= '0' && ch <= '9'; i++) {
+                    anyDigits = true;
+                    if (mantissa == 0 && ch == '0') {
+                        exponent--;
+                    } else if (digits < 19) {
+                        mantissa = mantissa * 10 + (ch - '0');
+                        digits++;
+                        exponent--;
+                    } else {
+                        truncated = true;
+                    }
+                }
+            }
+            if (anyDigits && i < to && (b[i] == 'e' || b[i] == 'E')) {
+                i++;
+                boolean negativeExponent = false;
+                if (i < to && (b[i] == '-' || b[i] == '+')) {
+                    negativeExponent = b[i] == '-';
+                    i++;
+                }
+                int exp = 0;
+                boolean anyExponentDigits = false;
+                for (; i < to && (ch = b[i]) >= '0' && ch <= '9'; i++) {
+                    anyExponentDigits = true;
+                    if (exp < 100_000) {
+                        exp = exp * 10 + (ch - '0');
+                    }
+                }
+                if (!anyExponentDigits) {
+                    return false;
+                }
+                exponent += negativeExponent ? -exp : exp;
+            }
+            if (!anyDigits || i != to || truncated) {
+                return parseDoubleSlow(b, from, to);
+            }
+            // The mantissa has at most 19 digits, and is an unsigned long.
+            double v;
+            if (mantissa >= 0 && mantissa <= (1L << 53) && exponent >= -22 && exponent <= 22) {
+                v = mantissa == 0 ? 0.0
+                        : exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent]
+                        : mantissa * POWERS_OF_TEN[exponent];
+            } else {
+                v = Decimals.toDouble(mantissa, exponent);
+                if (Double.isNaN(v)) {
+                    return parseDoubleSlow(b, from, to);
+                }
+            }
+            value = negative ? -v : v;
+            return true;
+        }
+
+        private boolean parseDoubleSlow(byte[] b, int from, int to) {
+            // Double.parseDouble also accepts type suffixes and hex numbers,
+            // but only decimal numbers, NaN and Infinity are supported here.
+            int i = from;
+            boolean negative = false;
+            if (b[i] == '-' || b[i] == '+') {
+                negative = b[i] == '-';
+                i++;
+            }
+            if (equals(b, i, to, "NaN")) {
+                value = Double.NaN;
+                return true;
+            }
+            if (equals(b, i, to, "Infinity")) {
+                value = negative ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+                return true;
+            }
+            for (; i < to; i++) {
+                byte ch = b[i];
+                if (!(ch >= '0' && ch <= '9' || ch == '.' || ch == '-' || ch == '+' || ch == 'e' || ch == 'E')) {
+                    return false;
+                }
+            }
+            try {
+                value = Double.parseDouble(new String(b, from, to - from, StandardCharsets.ISO_8859_1));
+                return true;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+
+        private boolean equals(byte[] b, int from, int to, String str) {
+            if (to - from != str.length()) {
+                return false;
+            }
+            for (int i = 0; i < str.length(); i++) {
+                if (b[from + i] != str.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Reads the range {@code [boundaries[lo], boundaries[hi])} of a file.
+     */
+    private class ReadTask<R extends ColumnConsumer> extends RecursiveTask<R> {
+        private final static long serialVersionUID = 0L;
+        private final transient FileChannel channel;
+        private final long[] boundaries;
+        private final int lo, hi;
+        private final transient Supplier<R> supplier;
+        private final transient BinaryOperator<R> combiner;
+
+        ReadTask(FileChannel channel, long[] boundaries, int lo, int hi, Supplier<R> supplier, BinaryOperator<R> combiner) {
+            this.channel = channel;
+            this.boundaries = boundaries;
+            this.lo = lo;
+            this.hi = hi;
+            this.supplier = supplier;
+            this.combiner = combiner;
+        }
+
+        @Override
+        protected R compute() {
+            if (hi - lo == 1) {
+                R result = supplier.get();
+                long[] position = {boundaries[lo]};
+                long end = boundaries[hi];
+                try {
+                    new Parser().read(dst -> {
+                        long pos = position[0];
+                        if (pos >= end) {
+                            return -1;
+                        }
+                        int limit = dst.limit();
+                        dst.limit((int) Math.min(limit, dst.position() + (end - pos)));
+                        int n = channel.read(dst, pos);
+                        dst.limit(limit);
+                        if (n > 0) {
+                            position[0] = pos + n;
+                        }
+                        return n;
+                    }, result);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return result;
+            }
+            int mid = (lo + hi) >>> 1;
+            ReadTask<R> left = new ReadTask<>(channel, boundaries, lo, mid, supplier, combiner);
+            ReadTask<R> right = new ReadTask<>(channel, boundaries, mid, hi, supplier, combiner);
+            right.fork();
+            R r = left.compute();
+            return combiner.apply(r, right.join());
+        }
+    }
+
+    /**
+     * Accumulates a {@code VarianceStatistics} for each selected column.
+     */
+    private class StatisticsConsumer implements ColumnConsumer {
+        private final VarianceStatistics[] stats = new VarianceStatistics[columnCount];
+
+        StatisticsConsumer() {
+            for (int i = 0; i < stats.length; i++) {
+                stats[i] = new VarianceStatistics();
+            }
+        }
+
+        @Override
+        public void accept(int column, double value) {
+            stats[column].accept(value);
+        }
+
+        StatisticsConsumer combine(StatisticsConsumer other) {
+            for (int i = 0; i < stats.length; i++) {
+                stats[i].combine(other.stats[i]);
+            }
+            return this;
+        }
+    }
+}
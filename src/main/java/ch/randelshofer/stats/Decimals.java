@@ -0,0 +1,148 @@
+/*
+ * @(#)Decimals.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.stats;
+
+import java.math.BigInteger;
+
+/**
+ * Converts decimal numbers with up to 19 significant digits to the nearest
+ * double with the Eisel-Lemire algorithm.
+ * <p>
+ * The algorithm multiplies the significand by a 128-bit approximation of
+ * the power of ten. In the rare cases where the approximation does not
+ * determine the correctly rounded result, it gives up, and the caller has
+ * to fall back to an exact algorithm, such as {@link Double#parseDouble}.
+ * <p>
+ * References:
+ * <ul>
+ * <li>Daniel Lemire. Number Parsing at a Gigabyte per Second.<br>
+ * Software: Practice and Experience, Vol. 51, No. 8 (2021).
+ * </li>
+ * </ul>
+ * </p>
+ */
+final class Decimals {
+    /**
+     * The smallest power of ten in the table. Below this, every
+     * significand with at most 19 digits is rounded to zero.
+     */
+    private final static int MIN_EXPONENT = -342;
+    /**
+     * The largest power of ten in the table. Above this, every non-zero
+     * significand is rounded to infinity.
+     */
+    private final static int MAX_EXPONENT = 308;
+    /**
+     * 128-bit approximations of the powers of five {@code 5^q} for
+     * {@code q} in {@code [MIN_EXPONENT, MAX_EXPONENT]}, normalized so that
+     * the most significant bit is set. The high part of {@code 5^q} is at
+     * index {@code 2·(q - MIN_EXPONENT)}, the low part at the next index.
+     * Positive powers are truncated, negative powers are rounded up.
+     */
+    private final static long[] POWERS_OF_FIVE = createPowersOfFive();
+
+    private Decimals() {
+        // prevent instantiation
+    }
+
+    private static long[] createPowersOfFive() {
+        long[] table = new long[2 * (MAX_EXPONENT - MIN_EXPONENT + 1)];
+        BigInteger two128 = BigInteger.ONE.shiftLeft(128);
+        for (int q = MIN_EXPONENT; q <= MAX_EXPONENT; q++) {
+            BigInteger c;
+            if (q < 0) {
+                BigInteger power5 = BigInteger.valueOf(5).pow(-q);
+                int z = power5.bitLength();
+                int b = q >= -27 ? z + 127 : 2 * z + 128;
+                c = BigInteger.ONE.shiftLeft(b).divide(power5).add(BigInteger.ONE);
+                if (c.compareTo(two128) >= 0) {
+                    c = c.shiftRight(c.bitLength() - 128);
+                }
+            } else {
+                c = BigInteger.valueOf(5).pow(q);
+                c = c.bitLength() < 128 ? c.shiftLeft(128 - c.bitLength()) : c.shiftRight(c.bitLength() - 128);
+            }
+            int index = 2 * (q - MIN_EXPONENT);
+            table[index] = c.shiftRight(64).longValue();
+            table[index + 1] = c.longValue();
+        }
+        return table;
+    }
+
+    /**
+     * Converts {@code significand·10^exponent} to the nearest double.
+     *
+     * @param significand the significand, an unsigned 64-bit integer
+     * @param exponent    the decimal exponent
+     * @return the non-negative double, or NaN if the correctly rounded
+     * result can not be determined
+     */
+    static double toDouble(long significand, int exponent) {
+        if (significand == 0 || exponent < MIN_EXPONENT) {
+            return 0.0;
+        }
+        if (exponent > MAX_EXPONENT) {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        // Normalize the significand, so that its most significant bit is set.
+        int lz = Long.numberOfLeadingZeros(significand);
+        long w = significand << lz;
+        // floor(log2(10)·exponent) + 64 + 1023 - lz
+        long exp2 = ((217706L * exponent) >> 16) + 64 + 1023 - lz;
+
+        int index = 2 * (exponent - MIN_EXPONENT);
+        long powerHi = POWERS_OF_FIVE[index];
+        long powerLo = POWERS_OF_FIVE[index + 1];
+        long xHi = unsignedMultiplyHigh(w, powerHi);
+        long xLo = w * powerHi;
+        if ((xHi & 0x1FF) == 0x1FF && Long.compareUnsigned(xLo + w, w) < 0) {
+            // The lower 9 bits are all ones, and adding the product of the
+            // low part of the power may carry into them.
+            long yHi = unsignedMultiplyHigh(w, powerLo);
+            long yLo = w * powerLo;
+            long mergedHi = xHi;
+            long mergedLo = xLo + yHi;
+            if (Long.compareUnsigned(mergedLo, xLo) < 0) {
+                mergedHi++;
+            }
+            if ((mergedHi & 0x1FF) == 0x1FF && mergedLo == -1L && Long.compareUnsigned(yLo + w, w) < 0) {
+                return Double.NaN;
+            }
+            xHi = mergedHi;
+            xLo = mergedLo;
+        }
+
+        // Shift the product to 54 bits.
+        long msb = xHi >>> 63;
+        long mantissa = xHi >>> (msb + 9);
+        exp2 -= 1 ^ msb;
+
+        if (xLo == 0 && (xHi & 0x1FF) == 0 && (mantissa & 3) == 1) {
+            // The value may be exactly halfway between two doubles.
+            return Double.NaN;
+        }
+
+        // Round to 53 bits.
+        mantissa += mantissa & 1;
+        mantissa >>>= 1;
+        if ((mantissa >>> 53) > 0) {
+            mantissa >>>= 1;
+            exp2++;
+        }
+        if (exp2 <= 0 || exp2 >= 0x7FF) {
+            // Subnormal or infinite, this is handled by the caller.
+            return Double.NaN;
+        }
+        return Double.longBitsToDouble(exp2 << 52 | mantissa & 0x000F_FFFF_FFFF_FFFFL);
+    }
+
+    /**
+     * Returns the high part of the unsigned 128-bit product {@code a·b}.
+     */
+    private static long unsignedMultiplyHigh(long a, long b) {
+        return Math.multiplyHigh(a, b) + ((a >> 63) & b) + ((b >> 63) & a);
+    }
+}
@@ -0,0 +1,320 @@
+/*
+ * @(#)DoubleSampleBuffer.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.stats;
+
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Objects;
+import java.util.function.DoubleConsumer;
+
+/**
+ * This collector keeps all values of a sample in a growable
+ * {@code double[]}, and computes exact quantiles with quickselect.
+ * <p>
+ * A quantile is computed in expected {@code O(n)} time, without sorting
+ * the sample. Multiple quantiles are computed in one call with a
+ * multi-select, which partitions the sample recursively around the
+ * requested ranks in expected {@code O(n·log m)} time for {@code m}
+ * quantiles. The buffer remembers the ranks that have been selected, so
+ * that later queries only partition the ranges between them. Adding values
+ * discards this state.
+ * <p>
+ * Quantiles are interpolated linearly between order statistics, see
+ * {@link #quantile(double)}. NaN values are not counted.
+ * <p>
+ * Usage with a double stream:
+ * <pre>
+ * DoubleSampleBuffer buffer = doubleStream.collect(DoubleSampleBuffer::new,
+ *                                                DoubleSampleBuffer::accept,
+ *                                                DoubleSampleBuffer::combine);
+ * double[] p = buffer.quantiles(0.5, 0.9, 0.99);
+ * VarianceStatistics stats = buffer.toVarianceStatistics();
+ * </pre>
+ * <p>
+ * References:
+ * <ul>
+ * <li>Rob J. Hyndman, Yanan Fan. Sample Quantiles in Statistical Packages.<br>
+ * The American Statistician 50(4), 361–365 (1996).
+ * </li>
+ * <li>Krzysztof C. Kiwiel. Partitioning schemes for quicksort and quickselect.<br>
+ * <a href="https://arxiv.org/abs/cs/0312054">arXiv</a>
+ * </li>
+ * </ul>
+ * </p>
+ */
+public class DoubleSampleBuffer implements DoubleConsumer {
+    /**
+     * The maximal capacity of the buffer.
+     */
+    private final static int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+    private double[] values;
+    private int size;
+    /**
+     * The indices of the values that are at their sorted position. All
+     * values before such an index are less than or equal to its value,
+     * all values after it are greater than or equal to its value.
+     */
+    private final BitSet selected = new BitSet();
+
+    /**
+     * Creates a new instance with an empty sample.
+     */
+    public DoubleSampleBuffer() {
+        this(16);
+    }
+
+    /**
+     * Creates a new instance with an empty sample and the given
+     * initial capacity.
+     *
+     * @param initialCapacity the initial capacity
+     * @throws IllegalArgumentException if initialCapacity is negative
+     */
+    public DoubleSampleBuffer(int initialCapacity) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("initialCapacity must not be negative, initialCapacity=" + initialCapacity);
+        }
+        values = new double[initialCapacity];
+    }
+
+    /**
+     * Adds a value to the sample.
+     *
+     * @param value a new value, NaN values are ignored
+     */
+    @Override
+    public void accept(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        if (size == values.length) {
+            grow(size + 1);
+        }
+        values[size++] = value;
+        selected.clear();
+    }
+
+    /**
+     * Adds the values {@code a[from]} (inclusive) to {@code a[to]} (exclusive)
+     * to the sample.
+     *
+     * @param a    an array of values, NaN values are ignored
+     * @param from the index of the first value (inclusive)
+     * @param to   the index of the last value (exclusive)
+     * @throws IndexOutOfBoundsException if the range is out of bounds
+     */
+    public void acceptAll(double[] a, int from, int to) {
+        Objects.checkFromToIndex(from, to, a.length);
+        ensureCapacity(size + (to - from));
+        double[] v = values;
+        int n = size;
+        for (int i = from; i < to; i++) {
+            double x = a[i];
+            v[n] = x;
+            n += x == x ? 1 : 0;// skip NaN without a branch
+        }
+        size = n;
+        selected.clear();
+    }
+
+    /**
+     * Adds all remaining values of the buffer to the sample.
+     * <p>
+     * The buffer may be a direct buffer. Upon return, the position of the
+     * buffer is equal to its limit.
+     *
+     * @param b a buffer of values, NaN values are ignored
+     */
+    public void acceptAll(DoubleBuffer b) {
+        if (b.hasArray()) {
+            int offset = b.arrayOffset();
+            acceptAll(b.array(), offset + b.position(), offset + b.limit());
+            b.position(b.limit());
+            return;
+        }
+        int n = b.remaining();
+        ensureCapacity(size + n);
+        b.get(values, size, n);
+        // compact the NaN values away
+        int j = size;
+        for (int i = size, end = size + n; i < end; i++) {
+            double x = values[i];
+            values[j] = x;
+            j += x == x ? 1 : 0;
+        }
+        size = j;
+        selected.clear();
+    }
+
+    /**
+     * Combines the values of another {@code DoubleSampleBuffer} into this one.
+     *
+     * @param other another {@code DoubleSampleBuffer}
+     * @return this
+     */
+    public DoubleSampleBuffer combine(DoubleSampleBuffer other) {
+        ensureCapacity(size + other.size);
+        System.arraycopy(other.values, 0, values, size, other.size);
+        size += other.size;
+        selected.clear();
+        return this;
+    }
+
+    private void ensureCapacity(int minCapacity) {
+        if (minCapacity > values.length) {
+            grow(minCapacity);
+        }
+    }
+
+    private void grow(int minCapacity) {
+        if (minCapacity < 0 || minCapacity > MAX_CAPACITY) {
+            throw new OutOfMemoryError("sample buffer is too large, capacity=" + Integer.toUnsignedString(minCapacity));
+        }
+        int newCapacity = (int) Math.min(MAX_CAPACITY, Math.max((long) values.length * 2, minCapacity));
+        values = Arrays.copyOf(values, newCapacity);
+    }
+
+    /**
+     * Returns the number of values in the sample.
+     *
+     * @return the count
+     */
+    public long getCount() {
+        return size;
+    }
+
+    /**
+     * Returns the {@code q}-quantile of the sample.
+     * <p>
+     * The quantile is interpolated linearly between the order statistics
+     * {@code x[floor(h)]} and {@code x[floor(h) + 1]} with
+     * {@code h = q·(n - 1)}. This is definition 7 of Hyndman and Fan,
+     * which is also used by R and NumPy by default.
+     * {@code quantile(0)} returns the minimum, {@code quantile(1)}
+     * the maximum.
+     * <p>
+     * This method rearranges the values in the buffer.
+     *
+     * @param q the normalized rank in [0, 1], for example 0.99 for p99
+     * @return the quantile, or {@code NaN} if the sample is empty
+     * @throws IllegalArgumentException if q is not in [0, 1]
+     */
+    public double quantile(double q) {
+        checkQuantile(q);
+        if (size == 0) {
+            return Double.NaN;
+        }
+        return interpolate(q);
+    }
+
+    /**
+     * Returns the quantiles of the sample for the given normalized ranks.
+     * <p>
+     * All ranks are selected with a single multi-select, before the
+     * quantiles are interpolated as in {@link #quantile(double)}.
+     *
+     * @param qs the normalized ranks in [0, 1]
+     * @return a new array with the quantiles, or with {@code NaN} values
+     * if the sample is empty
+     * @throws IllegalArgumentException if a rank is not in [0, 1]
+     */
+    public double[] quantiles(double... qs) {
+        for (double q : qs) {
+            checkQuantile(q);
+        }
+        double[] result = new double[qs.length];
+        if (size == 0) {
+            Arrays.fill(result, Double.NaN);
+            return result;
+        }
+        int[] ranks = new int[2 * qs.length];
+        int n = 0;
+        for (double q : qs) {
+            double h = q * (size - 1);
+            int k = (int) h;
+            ranks[n++] = k;
+            if (h != k) {
+                ranks[n++] = k + 1;
+            }
+        }
+        Arrays.sort(ranks, 0, n);
+        selectAll(ranks, 0, n);
+        for (int i = 0; i < qs.length; i++) {
+            result[i] = interpolate(qs[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Returns a new {@code VarianceStatistics} of the sample.
+     *
+     * @return a new {@code VarianceStatistics}
+     */
+    public VarianceStatistics toVarianceStatistics() {
+        VarianceStatistics stats = new VarianceStatistics();
+        stats.acceptAll(values, 0, size);
+        return stats;
+    }
+
+    private static void checkQuantile(double q) {
+        if (!(q >= 0 && q <= 1)) {
+            throw new IllegalArgumentException("q must be in [0, 1], q=" + q);
+        }
+    }
+
+    private double interpolate(double q) {
+        double h = q * (size - 1);
+        int k = (int) h;
+        double lower = select(k);
+        double fraction = h - k;
+        if (fraction == 0.0) {
+            return lower;
+        }
+        return lower + fraction * (select(k + 1) - lower);
+    }
+
+    /**
+     * Selects the sorted ranks {@code ranks[from]} (inclusive) to
+     * {@code ranks[to]} (exclusive). The middle rank is selected first,
+     * so that the ranks to its left and to its right are selected in
+     * disjoint ranges of the buffer.
+     */
+    private void selectAll(int[] ranks, int from, int to) {
+        if (from >= to) {
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        select(ranks[mid]);
+        selectAll(ranks, from, mid);
+        selectAll(ranks, mid + 1, to);
+    }
+
+    /**
+     * Returns the value with rank {@code k}, and moves it to index
+     * {@code k}. Only the range between the nearest selected indices
+     * around {@code k} is partitioned.
+     */
+    private double select(int k) {
+        if (!selected.get(k)) {
+            int lo = selected.previousSetBit(k) + 1;
+            int hi = selected.nextSetBit(k);
+            Selection.select(values, lo, hi < 0 ? size : hi, k);
+            selected.set(k);
+        }
+        return values[k];
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "%s{count=%d, capacity=%d}",
+                this.getClass().getSimpleName(),
+                getCount(),
+                values.length
+        );
+    }
+}
@@ -5,12 +5,22 @@
 
 package ch.randelshofer.stats;
 
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+import java.util.Objects;
 import java.util.function.DoubleConsumer;
 
 import static java.lang.Math.abs;
 
 /**
- * Computes the sum of doubles with the Neumaier compensation algorithm.
+ * Computes the sum of doubles.
+ * <p>
+ * By default, the values are added with the Neumaier compensation algorithm.
+ * Faster or more accurate algorithms can be selected with a
+ * {@link SummationMode}.
  * <p>
  * Usage with a double stream:
  * <pre>
@@ -28,8 +38,94 @@ import static java.lang.Math.abs;
  * </p>
  */
 public class DoubleSum implements DoubleConsumer {
+    /**
+     * Number of values that are copied from a {@link DoubleBuffer} in one go
+     * by {@link #acceptAll(DoubleBuffer)}.
+     */
+    private final static int CHUNK_SIZE = 1024;
+    /**
+     * The number of bytes of a snapshot, see {@link #writeTo(ByteBuffer)}.
+     */
+    public final static int SNAPSHOT_BYTES = Snapshots.HEADER_BYTES + 2 * Double.BYTES;
+    /**
+     * The type of the snapshot: "DS".
+     */
+    private final static short SNAPSHOT_TYPE = 0x4453;
+    /**
+     * Number of values that are added up naively in {@link SummationMode#PAIRWISE}
+     * mode, before the sum is added to the binary tree.
+     */
+    private final static int BLOCK_SIZE = 128;
+    private final SummationMode mode;
+    /**
+     * The sum, or the high part of the double-double sum.
+     */
     private double sum = 0.0;
+    /**
+     * The compensation, or the low part of the double-double sum.
+     */
     private double c = 0.0;
+    /**
+     * {@link SummationMode#PAIRWISE}: the values of the current block.<br>
+     * {@link SummationMode#EXACT}: the non-overlapping partial sums in
+     * increasing order of magnitude.
+     */
+    private double[] buffer;
+    /**
+     * The number of values in {@link #buffer}.
+     */
+    private int size;
+    /**
+     * {@link SummationMode#PAIRWISE}: the sum of {@code 2^k} blocks at
+     * index {@code k}, if bit {@code k} of {@link #blocks} is set.
+     */
+    private double[] tree;
+    /**
+     * {@link SummationMode#PAIRWISE}: the number of blocks in the tree.
+     */
+    private long blocks;
+    /**
+     * {@link SummationMode#EXACT}: the sum of the infinite and NaN values,
+     * and of the intermediate sums that overflowed.
+     */
+    private double special = 0.0;
+
+    /**
+     * Creates a new instance that uses the {@link SummationMode#NEUMAIER}
+     * algorithm.
+     */
+    public DoubleSum() {
+        this(SummationMode.NEUMAIER);
+    }
+
+    /**
+     * Creates a new instance that uses the specified algorithm.
+     *
+     * @param mode the summation mode
+     */
+    public DoubleSum(SummationMode mode) {
+        this.mode = Objects.requireNonNull(mode, "mode");
+        switch (mode) {
+            case PAIRWISE:
+                buffer = new double[BLOCK_SIZE];
+                tree = new double[Long.SIZE];
+                break;
+            case EXACT:
+                buffer = new double[8];
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Returns the summation mode.
+     *
+     * @return the summation mode
+     */
+    public SummationMode getSummationMode() {
+        return mode;
+    }
 
     /**
      * Adds a value to the sample.
@@ -38,28 +134,550 @@ public class DoubleSum implements DoubleConsumer {
      */
     @Override
     public void accept(double value) {
-        sumWithCompensation(value);
+        switch (mode) {
+            case NAIVE:
+                sum += value;
+                break;
+            case PAIRWISE:
+                buffer[size++] = value;
+                if (size == BLOCK_SIZE) {
+                    addBlock(blockSum(buffer, 0, BLOCK_SIZE));
+                    size = 0;
+                }
+                break;
+            case KAHAN: {
+                double y = value + c;
+                double t = sum + y;
+                c = y - (t - sum);
+                sum = t;
+                break;
+            }
+            case DOUBLE_DOUBLE: {
+                double t = sum + value;
+                double z = t - sum;
+                double e = (sum - (t - z)) + (value - z) + c;
+                sum = t + e;
+                c = e - (sum - t);
+                break;
+            }
+            case EXACT:
+                addExact(value);
+                break;
+            case NEUMAIER:
+            default:
+                sumWithCompensation(value);
+                break;
+        }
+    }
+
+    /**
+     * Adds the square of a value to the sample.
+     * <p>
+     * In {@link SummationMode#EXACT} mode, the exact square is added as the
+     * sum of the rounded square and its rounding error. In all other modes,
+     * the rounded square is added.
+     *
+     * @param value a value
+     */
+    void acceptSquare(double value) {
+        double square = value * value;
+        accept(square);
+        if (mode == SummationMode.EXACT && Double.isFinite(square)) {
+            accept(Math.fma(value, value, -square));
+        }
+    }
+
+    /**
+     * Adds the product {@code a·b} to the sample.
+     * <p>
+     * In {@link SummationMode#EXACT} mode, the exact product is added as the
+     * sum of the rounded product and its rounding error. In all other modes,
+     * the rounded product is added.
+     *
+     * @param a the first factor
+     * @param b the second factor
+     */
+    void acceptProduct(double a, double b) {
+        double product = a * b;
+        accept(product);
+        if (mode == SummationMode.EXACT && Double.isFinite(product)) {
+            accept(Math.fma(a, b, -product));
+        }
+    }
+
+    /**
+     * Adds the weighted square {@code weight·value²} to the sample.
+     * <p>
+     * In {@link SummationMode#EXACT} mode, the square is split into the
+     * rounded square and its rounding error, and both are multiplied with
+     * the weight with {@link #acceptProduct}. In all other modes, the
+     * rounded weighted square is added.
+     *
+     * @param value  a value
+     * @param weight the weight of the value
+     */
+    void acceptWeightedSquare(double value, double weight) {
+        double square = value * value;
+        if (mode == SummationMode.EXACT && Double.isFinite(square)) {
+            acceptProduct(square, weight);
+            acceptProduct(Math.fma(value, value, -square), weight);
+        } else {
+            accept(square * weight);
+        }
+    }
+
+    /**
+     * Adds the squares of the values {@code a[from]} (inclusive) to
+     * {@code a[to]} (exclusive) to the sample.
+     *
+     * @param a    an array of values
+     * @param from the index of the first value (inclusive)
+     * @param to   the index of the last value (exclusive)
+     */
+    void acceptAllSquares(double[] a, int from, int to) {
+        if (mode == SummationMode.NAIVE) {
+            double s0 = 0.0, s1 = 0.0, s2 = 0.0, s3 = 0.0;
+            int i = from;
+            for (int n = to - 3; i < n; i += 4) {
+                double x0 = a[i], x1 = a[i + 1], x2 = a[i + 2], x3 = a[i + 3];
+                s0 += x0 * x0;
+                s1 += x1 * x1;
+                s2 += x2 * x2;
+                s3 += x3 * x3;
+            }
+            for (; i < to; i++) {
+                s0 += a[i] * a[i];
+            }
+            sum += (s0 + s1) + (s2 + s3);
+            return;
+        }
+        for (int i = from; i < to; i++) {
+            acceptSquare(a[i]);
+        }
     }
 
     /**
-     * Combines the state of another {@code VarianceStatistics} into this one.
+     * Removes a value from the sample.
+     * <p>
+     * The value is subtracted with the summation mode of this sum. With the
+     * compensated modes, the sum stays accurate after many add and remove
+     * cycles.
      *
-     * @param other another {@code VarianceStatistics}
+     * @param value a value that has been added before
+     */
+    public void remove(double value) {
+        accept(-value);
+    }
+
+    /**
+     * Adds the values {@code a[from]} (inclusive) to {@code a[to]} (exclusive)
+     * to the sample.
+     * <p>
+     * In {@link SummationMode#NEUMAIER} and {@link SummationMode#DOUBLE_DOUBLE}
+     * mode, the values are summed up in four independent lanes with the
+     * branch-free TwoSum algorithm. The lanes are then added to this sum
+     * with the algorithm of the mode. The result is therefore not necessarily
+     * bit-identical to calling {@link #accept} for each value, but it has
+     * the same error bound: the absolute error is at most
+     * {@code 2·ε·|sum| + O(n·ε²)·Σ|a[i]|}, where {@code ε = 2^-53}.
+     * <p>
+     * In {@link SummationMode#NAIVE} mode, the values are summed up in four
+     * independent lanes. In {@link SummationMode#PAIRWISE} mode, the blocks
+     * are summed up directly from the array. In all other modes, the values
+     * are added one by one.
+     *
+     * @param a    an array of values
+     * @param from the index of the first value (inclusive)
+     * @param to   the index of the last value (exclusive)
+     * @throws IndexOutOfBoundsException if the range is out of bounds
+     */
+    public void acceptAll(double[] a, int from, int to) {
+        Objects.checkFromToIndex(from, to, a.length);
+        switch (mode) {
+            case NEUMAIER:
+            case DOUBLE_DOUBLE:
+                acceptAllTwoSum(a, from, to);
+                break;
+            case NAIVE:
+                sum += blockSum(a, from, to - from);
+                break;
+            case PAIRWISE:
+                acceptAllPairwise(a, from, to);
+                break;
+            default:
+                for (int i = from; i < to; i++) {
+                    accept(a[i]);
+                }
+                break;
+        }
+    }
+
+    private void acceptAllTwoSum(double[] a, int from, int to) {
+        double s0 = 0.0, s1 = 0.0, s2 = 0.0, s3 = 0.0;
+        double c0 = 0.0, c1 = 0.0, c2 = 0.0, c3 = 0.0;
+        int i = from;
+        for (int n = to - 3; i < n; i += 4) {
+            double x0 = a[i], x1 = a[i + 1], x2 = a[i + 2], x3 = a[i + 3];
+            double t0 = s0 + x0, t1 = s1 + x1, t2 = s2 + x2, t3 = s3 + x3;
+            double z0 = t0 - s0, z1 = t1 - s1, z2 = t2 - s2, z3 = t3 - s3;
+            c0 += (s0 - (t0 - z0)) + (x0 - z0);
+            c1 += (s1 - (t1 - z1)) + (x1 - z1);
+            c2 += (s2 - (t2 - z2)) + (x2 - z2);
+            c3 += (s3 - (t3 - z3)) + (x3 - z3);
+            s0 = t0;
+            s1 = t1;
+            s2 = t2;
+            s3 = t3;
+        }
+        for (; i < to; i++) {
+            double x0 = a[i];
+            double t0 = s0 + x0;
+            double z0 = t0 - s0;
+            c0 += (s0 - (t0 - z0)) + (x0 - z0);
+            s0 = t0;
+        }
+        accept(s0);
+        accept(s1);
+        accept(s2);
+        accept(s3);
+        accept(c0);
+        accept(c1);
+        accept(c2);
+        accept(c3);
+    }
+
+    private void acceptAllPairwise(double[] a, int from, int to) {
+        int i = from;
+        if (size > 0) {
+            int n = Math.min(BLOCK_SIZE - size, to - i);
+            System.arraycopy(a, i, buffer, size, n);
+            size += n;
+            i += n;
+            if (size == BLOCK_SIZE) {
+                addBlock(blockSum(buffer, 0, BLOCK_SIZE));
+                size = 0;
+            }
+        }
+        for (; to - i >= BLOCK_SIZE; i += BLOCK_SIZE) {
+            addBlock(blockSum(a, i, BLOCK_SIZE));
+        }
+        System.arraycopy(a, i, buffer, size, to - i);
+        size += to - i;
+    }
+
+    /**
+     * Returns the naive sum of {@code length} values starting at {@code offset},
+     * computed with four independent accumulators.
+     */
+    private static double blockSum(double[] a, int offset, int length) {
+        double s0 = 0.0, s1 = 0.0, s2 = 0.0, s3 = 0.0;
+        int i = offset;
+        for (int n = offset + length - 3; i < n; i += 4) {
+            s0 += a[i];
+            s1 += a[i + 1];
+            s2 += a[i + 2];
+            s3 += a[i + 3];
+        }
+        for (int n = offset + length; i < n; i++) {
+            s0 += a[i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * Adds the sum of a block to the binary tree of {@link SummationMode#PAIRWISE}
+     * mode. This works like incrementing a binary counter: the sums of
+     * equally sized subtrees are added up, until a free level is found.
+     */
+    private void addBlock(double blockSum) {
+        int level = 0;
+        for (; (blocks >>> level & 1) != 0; level++) {
+            blockSum = tree[level] + blockSum;
+        }
+        tree[level] = blockSum;
+        blocks++;
+    }
+
+    /**
+     * Adds a value to the partial sums of {@link SummationMode#EXACT} mode
+     * with Shewchuk's algorithm.
+     */
+    private void addExact(double x) {
+        if (!Double.isFinite(x)) {
+            special += x;
+            return;
+        }
+        double[] p = buffer;
+        int i = 0;
+        for (int j = 0; j < size; j++) {
+            double y = p[j];
+            if (abs(x) < abs(y)) {
+                double t = x;
+                x = y;
+                y = t;
+            }
+            double hi = x + y;
+            double lo = y - (hi - x);
+            if (lo != 0.0) {
+                p[i++] = lo;
+            }
+            x = hi;
+        }
+        if (!Double.isFinite(x)) {
+            special += x;// An intermediate sum has overflowed
+            size = i;
+            return;
+        }
+        if (i == p.length) {
+            buffer = p = Arrays.copyOf(p, p.length * 2);
+        }
+        p[i++] = x;
+        size = i;
+    }
+
+    /**
+     * Returns the exact sum of the partial sums of {@link SummationMode#EXACT}
+     * mode, rounded to the nearest double with ties to even.
+     */
+    private double getExactSum() {
+        if (special != 0.0) {
+            return special;// The sum is infinite or NaN
+        }
+        double[] p = buffer;
+        int n = size;
+        if (n == 0) {
+            return 0.0;
+        }
+        double hi = p[--n];
+        double lo = 0.0;
+        while (n > 0) {
+            double x = hi;
+            double y = p[--n];
+            hi = x + y;
+            lo = y - (hi - x);
+            if (lo != 0.0) {
+                break;
+            }
+        }
+        // If lo is exactly half an ulp of hi, the partial sums below lo
+        // decide in which direction we have to round.
+        if (n > 0 && ((lo < 0.0 && p[n - 1] < 0.0) || (lo > 0.0 && p[n - 1] > 0.0))) {
+            double y = lo * 2.0;
+            double x = hi + y;
+            if (y == x - hi) {
+                hi = x;
+            }
+        }
+        return hi;
+    }
+
+    /**
+     * Returns the terms that make up this sum, so that they can be added
+     * to another sum.
+     */
+    private double[] getTerms() {
+        switch (mode) {
+            case PAIRWISE: {
+                double[] terms = new double[Long.bitCount(blocks) + 1];
+                int k = 0;
+                for (int level = 0; level < Long.SIZE; level++) {
+                    if ((blocks >>> level & 1) != 0) {
+                        terms[k++] = tree[level];
+                    }
+                }
+                terms[k] = blockSum(buffer, 0, size);
+                return terms;
+            }
+            case EXACT: {
+                double[] terms = Arrays.copyOf(buffer, size + 1);
+                terms[size] = special;
+                return terms;
+            }
+            default:
+                return new double[]{sum, c};
+        }
+    }
+
+    /**
+     * Adds all remaining values of the buffer to the sample.
+     * <p>
+     * Upon return, the position of the buffer is equal to its limit.
+     * See {@link #acceptAll(double[], int, int)} for the error bound.
+     *
+     * @param b a buffer of values
+     */
+    public void acceptAll(DoubleBuffer b) {
+        if (b.hasArray()) {
+            int offset = b.arrayOffset();
+            acceptAll(b.array(), offset + b.position(), offset + b.limit());
+            b.position(b.limit());
+            return;
+        }
+        double[] chunk = new double[Math.min(CHUNK_SIZE, b.remaining())];
+        while (b.hasRemaining()) {
+            int n = Math.min(chunk.length, b.remaining());
+            b.get(chunk, 0, n);
+            acceptAll(chunk, 0, n);
+        }
+    }
+
+    /**
+     * Combines the state of another {@code DoubleSum} into this one.
+     * <p>
+     * The other sum may use a different summation mode. Its terms are
+     * added to this sum with the summation mode of this sum.
+     *
+     * @param other another {@code DoubleSum}
      * @return this
      */
     public DoubleSum combine(DoubleSum other) {
-        sumWithCompensation(other.sum);
-        sumWithCompensation(other.c);
+        if (other.mode != SummationMode.PAIRWISE && other.mode != SummationMode.EXACT) {
+            accept(other.sum);
+            accept(other.c);
+        } else {
+            for (double term : other.getTerms()) {
+                accept(term);
+            }
+        }
         return this;
     }
 
+    /**
+     * Writes a snapshot of the state of this sum into the buffer.
+     * <p>
+     * The snapshot has a fixed width of {@link #SNAPSHOT_BYTES} bytes.
+     * It consists of a header with the type and the version of the format,
+     * followed by the sum and its compensation as big-endian doubles.
+     * The byte order of the buffer is ignored.
+     * <p>
+     * The summation mode is not part of the snapshot. In
+     * {@link SummationMode#PAIRWISE} mode, the snapshot contains the sum
+     * without a compensation. In {@link SummationMode#EXACT} mode, it
+     * contains the rounded sum, and the rounded difference to the exact sum
+     * as the compensation.
+     *
+     * @param buf the buffer
+     * @throws BufferOverflowException if the buffer has fewer than
+     *                                 {@link #SNAPSHOT_BYTES} bytes remaining
+     */
+    public void writeTo(ByteBuffer buf) {
+        Snapshots.putHeader(buf, SNAPSHOT_TYPE, SNAPSHOT_BYTES);
+        writeState(buf);
+    }
+
+    /**
+     * Reads a snapshot that has been written by {@link #writeTo(ByteBuffer)}.
+     * <p>
+     * The new instance uses the {@link SummationMode#NEUMAIER} algorithm.
+     * If the snapshot has been written in this mode, the new instance has
+     * the same internal state as the instance that wrote the snapshot.
+     * Therefore, combining it gives bit-identical results to combining the
+     * original instance.
+     *
+     * @param buf the buffer
+     * @return a new instance
+     * @throws BufferUnderflowException if the buffer has fewer than
+     *                                  {@link #SNAPSHOT_BYTES} bytes remaining
+     * @throws IllegalArgumentException if the buffer does not contain a
+     *                                  snapshot of this class and version
+     */
+    public static DoubleSum readFrom(ByteBuffer buf) {
+        Snapshots.getHeader(buf, SNAPSHOT_TYPE, SNAPSHOT_BYTES);
+        DoubleSum s = new DoubleSum();
+        s.readState(buf);
+        return s;
+    }
+
+    /**
+     * Reads all snapshots that remain in the buffer, and combines them
+     * into this sum.
+     * <p>
+     * This method does not allocate any objects. The result is
+     * bit-identical to combining each snapshot with
+     * {@code combine(DoubleSum.readFrom(buf))}.
+     *
+     * @param buf the buffer, must contain a sequence of snapshots
+     * @return this
+     * @throws BufferUnderflowException if the buffer ends with an incomplete snapshot
+     * @throws IllegalArgumentException if the buffer contains a snapshot
+     *                                  of another class or version
+     */
+    public DoubleSum combineAll(ByteBuffer buf) {
+        while (buf.hasRemaining()) {
+            Snapshots.getHeader(buf, SNAPSHOT_TYPE, SNAPSHOT_BYTES);
+            accept(Snapshots.getDouble(buf));
+            accept(Snapshots.getDouble(buf));
+        }
+        return this;
+    }
+
+    /**
+     * Resets this sum to zero.
+     */
+    void reset() {
+        sum = 0.0;
+        c = 0.0;
+        size = 0;
+        blocks = 0;
+        special = 0.0;
+    }
+
+    /**
+     * Writes the sum and its compensation without a header.
+     */
+    void writeState(ByteBuffer buf) {
+        switch (mode) {
+            case PAIRWISE:
+                Snapshots.putDouble(buf, getSum());
+                Snapshots.putDouble(buf, 0.0);
+                break;
+            case EXACT: {
+                double hi = getSum();
+                DoubleSum residual = new DoubleSum(SummationMode.EXACT).combine(this);
+                residual.accept(-hi);
+                Snapshots.putDouble(buf, hi);
+                Snapshots.putDouble(buf, Double.isFinite(hi) ? residual.getSum() : 0.0);
+                break;
+            }
+            default:
+                Snapshots.putDouble(buf, sum);
+                Snapshots.putDouble(buf, c);
+                break;
+        }
+    }
+
+    /**
+     * Reads the sum and its compensation without a header.
+     * This instance must use the {@link SummationMode#NEUMAIER} algorithm.
+     */
+    void readState(ByteBuffer buf) {
+        sum = Snapshots.getDouble(buf);
+        c = Snapshots.getDouble(buf);
+    }
+
     /**
      * Returns the sum.
      *
-     * @return the sum of square
+     * @return the sum
      */
     public double getSum() {
-        return sum + c;
+        switch (mode) {
+            case NAIVE:
+                return sum;
+            case PAIRWISE: {
+                double s = blockSum(buffer, 0, size);
+                for (int level = 0; level < Long.SIZE; level++) {
+                    if ((blocks >>> level & 1) != 0) {
+                        s = tree[level] + s;
+                    }
+                }
+                return s;
+            }
+            case EXACT:
+                return getExactSum();
+            default:
+                return sum + c;
+        }
     }
 
     /**
@@ -67,7 +685,7 @@ public class DoubleSum implements DoubleConsumer {
      *
      * @param input the new input value
      */
-    private void sumWithCompensation(double input) {
+    void sumWithCompensation(double input) {
         double t = sum + input;
         if (abs(sum) >= abs(input)) {
             c += (sum - t) + input;// If sum is bigger, low-order digits of input are lost.
@@ -76,4 +694,38 @@ public class DoubleSum implements DoubleConsumer {
         }
         sum = t;
     }
+
+    /**
+     * Returns the rounding error of {@code sum = a + b} with the branch-free
+     * TwoSum algorithm, so that {@code a + b == sum + error} holds exactly.
+     *
+     * @param a   the first summand
+     * @param b   the second summand
+     * @param sum the rounded sum {@code a + b}
+     * @return the rounding error
+     */
+    static double twoSumError(double a, double b, double sum) {
+        double z = sum - a;
+        return (a - (sum - z)) + (b - z);
+    }
+
+    /**
+     * Performs the Neumaier Sum algorithm on an element of parallel
+     * arrays of sums and compensations.
+     *
+     * @param sums          the sums
+     * @param compensations the compensations
+     * @param index         the index of the element
+     * @param input         the new input value
+     */
+    static void sumWithCompensation(double[] sums, double[] compensations, int index, double input) {
+        double sum = sums[index];
+        double t = sum + input;
+        if (abs(sum) >= abs(input)) {
+            compensations[index] += (sum - t) + input;// If sum is bigger, low-order digits of input are lost.
+        } else {
+            compensations[index] += (input - t) + sum;// Else low-order digits of sum are lost
+        }
+        sums[index] = t;
+    }
 }
@@ -0,0 +1,177 @@
+/*
+ * @(#)EwmaVarianceStatistics.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.stats;
+
+import java.time.Duration;
+import java.util.function.DoubleConsumer;
+import java.util.function.LongSupplier;
+
+import static java.lang.Math.exp;
+import static java.lang.Math.sqrt;
+
+/**
+ * Computes an exponentially weighted moving average and variance.
+ * <p>
+ * The weight of a value decays exponentially with its age:
+ * a value that is {@code t} nanoseconds old has the weight
+ * {@code exp(-t / tau)}. The mean and the variance are updated with the
+ * weighted incremental algorithm by West, so that the variance does
+ * not suffer from catastrophic cancellation.
+ * <p>
+ * The clock is allowed to have gaps: after a long gap, old values simply
+ * have a negligible weight. If the clock jumps backwards, the values are
+ * treated as if no time had passed. Adding a value does not allocate any
+ * objects.
+ * <p>
+ * This class is not thread-safe.
+ * <p>
+ * Usage:
+ * <pre>
+ * EwmaVarianceStatistics stats = new EwmaVarianceStatistics(Duration.ofSeconds(60));
+ * stats.accept(latency);
+ * double avg = stats.getAverage();
+ * </pre>
+ *
+ * <p>
+ * References:
+ * <ul>
+ * <li>D. H. D. West. Updating Mean and Variance Estimates: An Improved Method.<br>
+ * Communications of the ACM, Vol. 22, No. 9 (1979).
+ * </li>
+ * </ul>
+ * </p>
+ */
+public class EwmaVarianceStatistics implements DoubleConsumer {
+    private final double tauNanos;
+    private final LongSupplier nanoClock;
+    private long count;
+    private long lastTimeNanos;
+    /**
+     * The sum of the decayed weights.
+     */
+    private double weight;
+    private double mean;
+    /**
+     * The weighted sum of the squared deviations from the mean.
+     */
+    private double s;
+
+    /**
+     * Creates a new instance that uses {@link System#nanoTime()} as its clock.
+     *
+     * @param tau the time constant of the exponential decay. The weight of
+     *            a value decays to {@code 1/e} after this duration.
+     * @throws IllegalArgumentException if tau is not positive
+     */
+    public EwmaVarianceStatistics(Duration tau) {
+        this(tau.toNanos(), System::nanoTime);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param tauNanos  the time constant of the exponential decay in nanoseconds
+     * @param nanoClock the clock, returns the current time in nanoseconds
+     * @throws IllegalArgumentException if tauNanos is not positive
+     */
+    public EwmaVarianceStatistics(long tauNanos, LongSupplier nanoClock) {
+        if (tauNanos <= 0) {
+            throw new IllegalArgumentException("tauNanos must be positive, tauNanos=" + tauNanos);
+        }
+        this.tauNanos = tauNanos;
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Adds a value to the sample.
+     *
+     * @param value a new value
+     */
+    @Override
+    public void accept(double value) {
+        accept(nanoClock.getAsLong(), value);
+    }
+
+    /**
+     * Adds a value with the given timestamp.
+     *
+     * @param timeNanos the time of the value in nanoseconds, on the same
+     *                  time scale as the clock
+     * @param value     a new value
+     */
+    public void accept(long timeNanos, double value) {
+        if (count == 0) {
+            lastTimeNanos = timeNanos;
+        } else if (timeNanos - lastTimeNanos > 0) {
+            double decay = exp(-(timeNanos - lastTimeNanos) / tauNanos);
+            weight *= decay;
+            s *= decay;
+            lastTimeNanos = timeNanos;
+        }
+        count++;
+        weight += 1.0;
+        double delta = value - mean;
+        mean += delta / weight;
+        s += delta * (value - mean);
+    }
+
+    /**
+     * Returns the number of values that have been added.
+     *
+     * @return the count
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the sum of the weights of all values at the time of the
+     * most recent value.
+     *
+     * @return the weight
+     */
+    public double getWeight() {
+        return weight;
+    }
+
+    /**
+     * Returns the exponentially weighted moving average.
+     *
+     * @return the average, or zero if no values have been added
+     */
+    public double getAverage() {
+        return mean;
+    }
+
+    /**
+     * Returns the exponentially weighted moving variance.
+     *
+     * @return the variance, or zero if no values have been added
+     */
+    public double getVariance() {
+        return weight > 0 ? Math.max(0.0, s / weight) : 0.0;
+    }
+
+    /**
+     * Returns the exponentially weighted moving standard deviation.
+     *
+     * @return the standard deviation
+     */
+    public double getStandardDeviation() {
+        return sqrt(getVariance());
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "%s{count=%d, weight=%f, avg=%f, stdev=%f}",
+                this.getClass().getSimpleName(),
+                getCount(),
+                getWeight(),
+                getAverage(),
+                getStandardDeviation()
+        );
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * @(#)Int128.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.stats;
+
+import java.math.BigInteger;
+
+/**
+ * Helper functions for signed 128-bit integers that are stored in two
+ * longs: the high part {@code hi} and the unsigned low part {@code lo}.
+ */
+final class Int128 {
+    private Int128() {
+        // prevent instantiation
+    }
+
+    /**
+     * Returns the carry out of the unsigned addition {@code sum = a + b}.
+     *
+     * @param a   the first summand
+     * @param b   the second summand
+     * @param sum {@code a + b}
+     * @return 1 if the unsigned addition overflowed, 0 otherwise
+     */
+    static long carry(long a, long b, long sum) {
+        return ((a & b) | ((a | b) & ~sum)) >>> 63;
+    }
+
+    /**
+     * Converts a 128-bit integer to a {@code BigInteger}.
+     *
+     * @param hi the high part
+     * @param lo the low part
+     * @return the value
+     */
+    static BigInteger toBigInteger(long hi, long lo) {
+        BigInteger unsignedLo = BigInteger.valueOf(lo >>> 1).shiftLeft(1).add(BigInteger.valueOf(lo & 1));
+        return BigInteger.valueOf(hi).shiftLeft(64).add(unsignedLo);
+    }
+
+    /**
+     * Converts a 128-bit integer to the nearest double.
+     *
+     * @param hi the high part
+     * @param lo the low part
+     * @return the value
+     */
+    static double toDouble(long hi, long lo) {
+        if (hi == (lo >> 63)) {
+            return (double) lo;// the value fits into a long
+        }
+        return toBigInteger(hi, lo).doubleValue();
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * @(#)IntKeyedVarianceStatistics.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.stats;
+
+/**
+ * Computes a {@link VarianceStatistics} for each group of a sample that
+ * is grouped by an {@code int} key.
+ * <p>
+ * The groups are kept in a {@link LongKeyedVarianceStatistics}, with the
+ * keys widened to {@code long}. Adding a value to an existing group does not
+ * allocate any objects.
+ * <p>
+ * Usage:
+ * <pre>
+ * IntKeyedVarianceStatistics stats = new IntKeyedVarianceStatistics();
+ * stats.accept(endpointId, latency);
+ *
+ * IntKeyedVarianceStatistics.Cursor cursor = stats.cursor();
+ * while (cursor.next()) {
+ *     int key = cursor.getKey();
+ *     double avg = cursor.getAverage();
+ * }
+ * </pre>
+ */
+public class IntKeyedVarianceStatistics {
+    private final LongKeyedVarianceStatistics groups;
+
+    /**
+     * Creates a new instance with a default initial capacity.
+     */
+    public IntKeyedVarianceStatistics() {
+        groups = new LongKeyedVarianceStatistics();
+    }
+
+    /**
+     * Creates a new instance that can hold the given number of groups
+     * without resizing.
+     *
+     * @param expectedSize the expected number of groups
+     * @throws IllegalArgumentException if expectedSize is negative
+     */
+    public IntKeyedVarianceStatistics(int expectedSize) {
+        groups = new LongKeyedVarianceStatistics(expectedSize);
+    }
+
+    /**
+     * Adds a value to the group with the given key.
+     *
+     * @param key   the key of the group
+     * @param value a new value
+     */
+    public void accept(int key, double value) {
+        groups.accept(key, value);
+    }
+
+    /**
+     * Combines the state of another {@code IntKeyedVarianceStatistics} into this one.
+     *
+     * @param other another {@code IntKeyedVarianceStatistics}
+     * @return this
+     */
+    public IntKeyedVarianceStatistics combine(IntKeyedVarianceStatistics other) {
+        groups.combine(other.groups);
+        return this;
+    }
+
+    /**
+     * Returns the number of groups.
+     *
+     * @return the number of groups
+     */
+    public int size() {
+        return groups.size();
+    }
+
+    /**
+     * Returns the statistics of the group with the given key.
+     *
+     * @param key the key of the group
+     * @return a new {@code VarianceStatistics}, or null if there is no such group
+     */
+    public VarianceStatistics get(int key) {
+        return groups.get(key);
+    }
+
+    /**
+     * Returns a cursor over all groups.
+     * <p>
+     * The cursor does not allocate any objects while iterating.
+     * The cursor must not be used after a group has been added.
+     *
+     * @return a new cursor
+     */
+    public Cursor cursor() {
+        return new Cursor(groups.cursor());
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{size=" + size() + "}";
+    }
+
+    /**
+     * A cursor over the groups of an {@link IntKeyedVarianceStatistics}.
+     * <p>
+     * The cursor is initially positioned before the first group.
+     */
+    public final static class Cursor {
+        private final LongKeyedVarianceStatistics.Cursor cursor;
+
+        private Cursor(LongKeyedVarianceStatistics.Cursor cursor) {
+            this.cursor = cursor;
+        }
+
+        /**
+         * Moves the cursor to the next group.
+         *
+         * @return true on success, false if there are no more groups
+         */
+        public boolean next() {
+            return cursor.next();
+        }
+
+        /**
+         * Returns the key of the current group.
+         *
+         * @return the key
+         */
+        public int getKey() {
+            return (int) cursor.getKey();
+        }
+
+        /**
+         * Returns the number of values in the current group.
+         *
+         * @return the count
+         */
+        public long getCount() {
+            return cursor.getCount();
+        }
+
+        /**
+         * Returns the sum of the values in the current group.
+         *
+         * @return the sum
+         */
+        public double getSum() {
+            return cursor.getSum();
+        }
+
+        /**
+         * Returns the sum of square of the values in the current group.
+         *
+         * @return the sum of square
+         */
+        public double getSumOfSquare() {
+            return cursor.getSumOfSquare();
+        }
+
+        /**
+         * Returns the minimum of the current group.
+         *
+         * @return the minimum
+         */
+        public double getMin() {
+            return cursor.getMin();
+        }
+
+        /**
+         * Returns the maximum of the current group.
+         *
+         * @return the maximum
+         */
+        public double getMax() {
+            return cursor.getMax();
+        }
+
+        /**
+         * Returns the arithmetic mean of the current group.
+         *
+         * @return the average
+         */
+        public double getAverage() {
+            return cursor.getAverage();
+        }
+
+        /**
+         * Returns the (unbiased) variance {@code s^2} of the current group.
+         *
+         * @return the variance of the sample
+         */
+        public double getSampleVariance() {
+            return cursor.getSampleVariance();
+        }
+
+        /**
+         * Returns the standard deviation {@code stdev} of the current group.
+         *
+         * @return the standard deviation of the sample
+         */
+        public double getSampleStandardDeviation() {
+            return cursor.getSampleStandardDeviation();
+        }
+
+        /**
+         * Returns the variance {@code s^2} of the population of the current group.
+         *
+         * @return the variance of the population
+         */
+        public double getPopulationVariance() {
+            return cursor.getPopulationVariance();
+        }
+
+        /**
+         * Returns the standard deviation {@code stdev} of the population of the current group.
+         *
+         * @return the standard deviation of the population
+         */
+        public double getPopulationStandardDeviation() {
+            return cursor.getPopulationStandardDeviation();
+        }
+
+        /**
+         * Returns the statistics of the current group.
+         *
+         * @return a new {@code VarianceStatistics}
+         */
+        public VarianceStatistics toVarianceStatistics() {
+            return cursor.toVarianceStatistics();
+        }
+    }
+}
@@ -0,0 +1,276 @@
+/*
+ * @(#)IntVarianceStatistics.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.stats;
+
+import java.math.BigInteger;
+import java.util.Objects;
+import java.util.function.IntConsumer;
+
+import static java.lang.Math.sqrt;
+
+/**
+ * This collector computes count, sum, min, max, average, sample variance
+ * and population variance of {@code int} values with exact integer
+ * arithmetic.
+ * <p>
+ * The square of an {@code int} value fits into a {@code long}, so the
+ * sum of square only needs a carry into the high part of a 128-bit
+ * integer. Since all sums are exact, the variance is computed from
+ * {@code n·Σx² - (Σx)²} and is only rounded once when it is converted
+ * to a double.
+ * <p>
+ * Usage with an int stream:
+ * <pre>
+ * IntVarianceStatistics stats = intStream.collect(IntVarianceStatistics::new,
+ *                                               IntVarianceStatistics::accept,
+ *                                               IntVarianceStatistics::combine);
+ * </pre>
+ */
+public class IntVarianceStatistics implements IntConsumer {
+    private long count;
+    private int min = Integer.MAX_VALUE;
+    private int max = Integer.MIN_VALUE;
+    /**
+     * The sum as a signed 128-bit integer.
+     */
+    private long sumHi, sumLo;
+    /**
+     * The sum of square as a signed 128-bit integer.
+     */
+    private long sumOfSquareHi, sumOfSquareLo;
+
+    /**
+     * Creates a new instance with an empty sample.
+     */
+    public IntVarianceStatistics() {
+    }
+
+    /**
+     * Adds a value to the sample.
+     *
+     * @param value a new value
+     */
+    @Override
+    public void accept(int value) {
+        count++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+
+        long x = value;
+        long lo = sumLo + x;
+        sumHi += (x >> 63) + Int128.carry(sumLo, x, lo);
+        sumLo = lo;
+
+        long sq = x * x;
+        lo = sumOfSquareLo + sq;
+        sumOfSquareHi += Int128.carry(sumOfSquareLo, sq, lo);
+        sumOfSquareLo = lo;
+    }
+
+    /**
+     * Adds all values of the array to the sample.
+     *
+     * @param a an array of values
+     */
+    public void acceptAll(int[] a) {
+        acceptAll(a, 0, a.length);
+    }
+
+    /**
+     * Adds the values {@code a[from]} (inclusive) to {@code a[to]} (exclusive)
+     * to the sample.
+     * <p>
+     * An array has less than {@code 2^31} values, so the sum of the range
+     * fits into a {@code long}, and only the sum of square needs a carry.
+     * The result is identical to calling {@link #accept} for each value.
+     *
+     * @param a    an array of values
+     * @param from the index of the first value (inclusive)
+     * @param to   the index of the last value (exclusive)
+     * @throws IndexOutOfBoundsException if the range is out of bounds
+     */
+    public void acceptAll(int[] a, int from, int to) {
+        Objects.checkFromToIndex(from, to, a.length);
+        int mn = Integer.MAX_VALUE, mx = Integer.MIN_VALUE;
+        long sum = 0, qHi = 0, qLo = 0;
+        for (int i = from; i < to; i++) {
+            int x = a[i];
+            mn = Math.min(mn, x);
+            mx = Math.max(mx, x);
+            sum += x;
+
+            long sq = (long) x * x;
+            long lo = qLo + sq;
+            qHi += Int128.carry(qLo, sq, lo);
+            qLo = lo;
+        }
+        combine(to - from, mn, mx, sum >> 63, sum, qHi, qLo);
+    }
+
+    /**
+     * Combines the state of another {@code IntVarianceStatistics} into this one.
+     *
+     * @param other another {@code IntVarianceStatistics}
+     * @return this
+     */
+    public IntVarianceStatistics combine(IntVarianceStatistics other) {
+        combine(other.count, other.min, other.max,
+                other.sumHi, other.sumLo, other.sumOfSquareHi, other.sumOfSquareLo);
+        return this;
+    }
+
+    private void combine(long otherCount, int otherMin, int otherMax,
+                         long otherSumHi, long otherSumLo, long otherSumOfSquareHi, long otherSumOfSquareLo) {
+        count += otherCount;
+        min = Math.min(min, otherMin);
+        max = Math.max(max, otherMax);
+
+        long lo = sumLo + otherSumLo;
+        sumHi += otherSumHi + Int128.carry(sumLo, otherSumLo, lo);
+        sumLo = lo;
+
+        lo = sumOfSquareLo + otherSumOfSquareLo;
+        sumOfSquareHi += otherSumOfSquareHi + Int128.carry(sumOfSquareLo, otherSumOfSquareLo, lo);
+        sumOfSquareLo = lo;
+    }
+
+    /**
+     * Returns the number of values in the sample.
+     *
+     * @return the count
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the minimum of the sample.
+     *
+     * @return the minimum, or {@code Integer.MAX_VALUE} if the sample is empty
+     */
+    public int getMin() {
+        return min;
+    }
+
+    /**
+     * Returns the maximum of the sample.
+     *
+     * @return the maximum, or {@code Integer.MIN_VALUE} if the sample is empty
+     */
+    public int getMax() {
+        return max;
+    }
+
+    /**
+     * Returns the exact sum of the sample.
+     *
+     * @return the sum
+     */
+    public BigInteger getExactSum() {
+        return Int128.toBigInteger(sumHi, sumLo);
+    }
+
+    /**
+     * Returns the exact sum of square of the sample.
+     *
+     * @return the sum of square
+     */
+    public BigInteger getExactSumOfSquare() {
+        return Int128.toBigInteger(sumOfSquareHi, sumOfSquareLo);
+    }
+
+    /**
+     * Returns the sum of the sample, rounded to the nearest double.
+     *
+     * @return the sum
+     */
+    public double getSum() {
+        return Int128.toDouble(sumHi, sumLo);
+    }
+
+    /**
+     * Returns the sum of square of the sample, rounded to the nearest double.
+     *
+     * @return the sum of square
+     */
+    public double getSumOfSquare() {
+        return Int128.toDouble(sumOfSquareHi, sumOfSquareLo);
+    }
+
+    /**
+     * Returns the arithmetic mean of the sample.
+     *
+     * @return the average, or zero if the sample is empty
+     */
+    public double getAverage() {
+        return count > 0 ? getSum() / count : 0.0d;
+    }
+
+    /**
+     * Returns {@code n·Σx² - (Σx)²}, which is {@code n} times the sum of
+     * the squared deviations from the mean, rounded to the nearest double.
+     */
+    private double getScaledSumOfSquaredDeviations() {
+        BigInteger sum = getExactSum();
+        return getExactSumOfSquare().multiply(BigInteger.valueOf(count))
+                .subtract(sum.multiply(sum)).doubleValue();
+    }
+
+    /**
+     * Returns the (unbiased) variance {@code s^2} of the sample.
+     *
+     * @return the variance of the sample, or zero if the sample
+     * contains less than two values
+     */
+    public double getSampleVariance() {
+        return count > 1 ? getScaledSumOfSquaredDeviations() / ((double) count * (count - 1)) : 0.0d;
+    }
+
+    /**
+     * Returns the standard deviation {@code stdev} of the sample.
+     *
+     * @return the standard deviation of the sample
+     */
+    public double getSampleStandardDeviation() {
+        return sqrt(getSampleVariance());
+    }
+
+    /**
+     * Returns the variance {@code s^2} of the population.
+     * <p>
+     * Use this method only if the entire population has been sampled.
+     *
+     * @return the variance of the population
+     */
+    public double getPopulationVariance() {
+        return count > 0 ? getScaledSumOfSquaredDeviations() / ((double) count * count) : 0.0d;
+    }
+
+    /**
+     * Returns the standard deviation {@code stdev} of the population.
+     * <p>
+     * Use this method only if the entire population has been sampled.
+     *
+     * @return the standard deviation of the population
+     */
+    public double getPopulationStandardDeviation() {
+        return sqrt(getPopulationVariance());
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "%s{count=%d, sum=%f, min=%d, avg=%f, max=%d, stdevs=%f, stdevp=%f}",
+                this.getClass().getSimpleName(),
+                getCount(),
+                getSum(),
+                getMin(),
+                getAverage(),
+                getMax(),
+                getSampleStandardDeviation(),
+                getPopulationStandardDeviation()
+        );
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * @(#)IntervalStatistics.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.stats;
+
+import static java.lang.Math.sqrt;
+
+/**
+ * The statistics of the values that an {@link IntervalStatisticsRecorder}
+ * has recorded during an interval.
+ * <p>
+ * Instances are reused by the recorder, so that harvesting an interval
+ * does not allocate objects. The values of an instance are valid until
+ * the next call of {@link IntervalStatisticsRecorder#getIntervalStatistics()}.
+ * Use {@link #toVarianceStatistics()} to keep them longer.
+ */
+public final class IntervalStatistics {
+    private long count;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private final DoubleSum sum = new DoubleSum();
+    private double simpleSum;
+    private final DoubleSum sumOfSquare = new DoubleSum();
+    private long startTimeMillis;
+    private long endTimeMillis;
+
+    /**
+     * Creates a new instance with an empty sample.
+     */
+    IntervalStatistics() {
+    }
+
+    /**
+     * Adds a value to the sample.
+     */
+    void accept(double value) {
+        count++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        sum.accept(value);
+        simpleSum += value;
+        sumOfSquare.accept(value * value);
+    }
+
+    /**
+     * Adds the sample of another instance to this one.
+     */
+    void combine(IntervalStatistics other) {
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        sum.combine(other.sum);
+        simpleSum += other.simpleSum;
+        sumOfSquare.combine(other.sumOfSquare);
+    }
+
+    /**
+     * Empties the sample.
+     */
+    void reset() {
+        count = 0;
+        min = Double.POSITIVE_INFINITY;
+        max = Double.NEGATIVE_INFINITY;
+        sum.reset();
+        simpleSum = 0.0;
+        sumOfSquare.reset();
+    }
+
+    void setInterval(long startTimeMillis, long endTimeMillis) {
+        this.startTimeMillis = startTimeMillis;
+        this.endTimeMillis = endTimeMillis;
+    }
+
+    /**
+     * Returns the start time of the interval.
+     *
+     * @return the start time in milliseconds since the epoch
+     */
+    public long getStartTimeMillis() {
+        return startTimeMillis;
+    }
+
+    /**
+     * Returns the end time of the interval.
+     *
+     * @return the end time in milliseconds since the epoch
+     */
+    public long getEndTimeMillis() {
+        return endTimeMillis;
+    }
+
+    /**
+     * Returns the number of values in the sample.
+     *
+     * @return the count
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the minimum of the sample.
+     *
+     * @return the minimum, or {@code Double.POSITIVE_INFINITY} if the sample is empty
+     */
+    public double getMin() {
+        return min;
+    }
+
+    /**
+     * Returns the maximum of the sample.
+     *
+     * @return the maximum, or {@code Double.NEGATIVE_INFINITY} if the sample is empty
+     */
+    public double getMax() {
+        return max;
+    }
+
+    /**
+     * Returns the sum of the sample.
+     *
+     * @return the sum
+     */
+    public double getSum() {
+        double s = sum.getSum();
+        return Double.isNaN(s) ? simpleSum : s;
+    }
+
+    /**
+     * Returns the sum of square of the sample.
+     *
+     * @return the sum of square
+     */
+    public double getSumOfSquare() {
+        return sumOfSquare.getSum();
+    }
+
+    /**
+     * Returns the arithmetic mean of the sample.
+     *
+     * @return the average, or zero if the sample is empty
+     */
+    public double getAverage() {
+        return count > 0 ? getSum() / count : 0.0d;
+    }
+
+    /**
+     * Returns the (unbiased) variance {@code s^2} of the sample.
+     *
+     * @return the variance of the sample, or zero if the sample
+     * contains less than two values
+     */
+    public double getSampleVariance() {
+        double avg = getAverage();
+        return count > 1 ? (getSumOfSquare() - avg * avg * count) / (count - 1) : 0.0d;
+    }
+
+    /**
+     * Returns the standard deviation {@code stdev} of the sample.
+     *
+     * @return the standard deviation of the sample
+     */
+    public double getSampleStandardDeviation() {
+        return sqrt(getSampleVariance());
+    }
+
+    /**
+     * Returns the confidence value for the mean of the sample,
+     * see {@link Stats#confidence(double, double, long)}.
+     *
+     * @param alpha the significance level in (0, 1)
+     * @return the confidence value {@code c} for constructing the
+     * confidence interval {@code [mean - c, mean + c]}
+     * @throws IllegalArgumentException if alpha is not in (0, 1)
+     */
+    public double getConfidence(double alpha) {
+        return Stats.confidence(alpha, getSampleStandardDeviation(), count);
+    }
+
+    /**
+     * Returns a copy of the sample as a new {@code VarianceStatistics}.
+     *
+     * @return a new {@code VarianceStatistics}
+     */
+    public VarianceStatistics toVarianceStatistics() {
+        return VarianceStatistics.fromSums(count, min, max, sum.getSum(), 0.0, simpleSum, getSumOfSquare());
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "%s{count=%d, sum=%f, min=%f, avg=%f, max=%f, stdevs=%f, start=%d, end=%d}",
+                this.getClass().getSimpleName(),
+                getCount(),
+                getSum(),
+                getMin(),
+                getAverage(),
+                getMax(),
+                getSampleStandardDeviation(),
+                getStartTimeMillis(),
+                getEndTimeMillis()
+        );
+    }
+}
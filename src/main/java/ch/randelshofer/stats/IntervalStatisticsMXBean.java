@@ -0,0 +1,71 @@
+/*
+ * @(#)IntervalStatisticsMXBean.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.stats;
+
+/**
+ * The management interface of an interval statistics that is published
+ * by an {@link IntervalStatisticsRegistry}.
+ * <p>
+ * All attributes describe the last interval that has been harvested.
+ */
+public interface IntervalStatisticsMXBean {
+    /**
+     * Returns the number of values in the interval.
+     *
+     * @return the count
+     */
+    long getCount();
+
+    /**
+     * Returns the arithmetic mean of the interval.
+     *
+     * @return the average
+     */
+    double getAverage();
+
+    /**
+     * Returns the sample standard deviation of the interval.
+     *
+     * @return the standard deviation
+     */
+    double getStandardDeviation();
+
+    /**
+     * Returns the confidence value for the mean of the interval at the
+     * significance level of the registry,
+     * see {@link Stats#confidence(double, double, long)}.
+     *
+     * @return the confidence value
+     */
+    double getConfidence();
+
+    /**
+     * Returns the minimum of the interval.
+     *
+     * @return the minimum
+     */
+    double getMin();
+
+    /**
+     * Returns the maximum of the interval.
+     *
+     * @return the maximum
+     */
+    double getMax();
+
+    /**
+     * Returns the start time of the interval.
+     *
+     * @return the start time in milliseconds since the epoch
+     */
+    long getStartTimeMillis();
+
+    /**
+     * Returns the end time of the interval.
+     *
+     * @return the end time in milliseconds since the epoch
+     */
+    long getEndTimeMillis();
+}
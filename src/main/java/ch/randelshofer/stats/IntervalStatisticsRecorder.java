@@ -0,0 +1,179 @@
+/*
+ * @(#)IntervalStatisticsRecorder.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.stats;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Records the statistics of values in intervals, for example the latencies
+ * of requests per second.
+ * <p>
+ * Each recording thread writes into a slot of its own, which holds an
+ * active and an inactive {@link IntervalStatistics}. A reader harvests an
+ * interval by flipping the active and the inactive accumulators of all
+ * slots with a writer-reader phaser, and then combines the inactive
+ * accumulators into a snapshot.
+ * <p>
+ * Recording is wait-free: {@link #accept} enters and exits the phaser with
+ * one atomic fetch-and-add each, and updates an accumulator that no other
+ * thread writes to. The first value that a thread records registers its
+ * slot with a compare-and-set loop.
+ * <p>
+ * Harvesting with {@link #getIntervalStatistics()} does not allocate
+ * objects. It returns the same snapshot every time, so that the values of
+ * the previous interval are overwritten.
+ * <p>
+ * Usage:
+ * <pre>
+ * IntervalStatisticsRecorder recorder = new IntervalStatisticsRecorder();
+ * // in many threads:
+ * recorder.accept(latency);
+ * // in a reader thread, once per interval:
+ * IntervalStatistics interval = recorder.getIntervalStatistics();
+ * </pre>
+ * <p>
+ * References:
+ * <ul>
+ * <li>HdrHistogram. Recorder.<br>
+ * <a href="https://github.com/HdrHistogram/HdrHistogram/blob/master/src/main/java/org/HdrHistogram/Recorder.java">github</a>
+ * </li>
+ * </ul>
+ * </p>
+ */
+public class IntervalStatisticsRecorder implements DoubleConsumer {
+    private final static Slot[] NO_SLOTS = new Slot[0];
+
+    private final WriterReaderPhaser phaser = new WriterReaderPhaser();
+    private final AtomicReference<Slot[]> slots = new AtomicReference<>(NO_SLOTS);
+    private final ThreadLocal<Slot> localSlot = ThreadLocal.withInitial(this::register);
+    private final IntervalStatistics snapshot = new IntervalStatistics();
+    /**
+     * The index of the active accumulator in each slot.
+     */
+    private volatile int activeIndex;
+    private long startTimeMillis = System.currentTimeMillis();
+
+    /**
+     * Creates a new instance. The first interval starts now.
+     */
+    public IntervalStatisticsRecorder() {
+    }
+
+    /**
+     * Adds a value to the current interval.
+     * <p>
+     * This method is thread-safe and wait-free.
+     *
+     * @param value a new value
+     */
+    @Override
+    public void accept(double value) {
+        Slot slot = localSlot.get();
+        long criticalValue = phaser.writerCriticalSectionEnter();
+        try {
+            slot.accumulators[activeIndex].accept(value);
+        } finally {
+            phaser.writerCriticalSectionExit(criticalValue);
+        }
+    }
+
+    /**
+     * Ends the current interval, and returns its statistics.
+     * The next interval starts now.
+     * <p>
+     * This method is thread-safe. The returned instance is reused by
+     * the next call of this method.
+     *
+     * @return the statistics of the interval that has just ended
+     */
+    public IntervalStatistics getIntervalStatistics() {
+        phaser.readerLock();
+        try {
+            int inactiveIndex = activeIndex;
+            activeIndex = 1 - inactiveIndex;
+            phaser.flipPhase();
+            long endTimeMillis = System.currentTimeMillis();
+
+            snapshot.reset();
+            boolean hasDeadSlots = false;
+            for (Slot slot : slots.get()) {
+                IntervalStatistics inactive = slot.accumulators[inactiveIndex];
+                snapshot.combine(inactive);
+                inactive.reset();
+                hasDeadSlots |= slot.isDead(1 - inactiveIndex);
+            }
+            if (hasDeadSlots) {
+                removeDeadSlots();
+            }
+            snapshot.setInterval(startTimeMillis, endTimeMillis);
+            startTimeMillis = endTimeMillis;
+            return snapshot;
+        } finally {
+            phaser.readerUnlock();
+        }
+    }
+
+    private Slot register() {
+        Slot slot = new Slot(Thread.currentThread());
+        Slot[] current, next;
+        do {
+            current = slots.get();
+            next = new Slot[current.length + 1];
+            System.arraycopy(current, 0, next, 0, current.length);
+            next[current.length] = slot;
+        } while (!slots.compareAndSet(current, next));
+        return slot;
+    }
+
+    /**
+     * Removes the slots of terminated threads, after the values of their
+     * last interval have been harvested. Must be called while holding
+     * the reader lock.
+     */
+    private void removeDeadSlots() {
+        int active = activeIndex;
+        Slot[] current, next;
+        do {
+            current = slots.get();
+            int n = 0;
+            for (Slot slot : current) {
+                if (!slot.isDead(active)) {
+                    n++;
+                }
+            }
+            next = new Slot[n];
+            n = 0;
+            for (Slot slot : current) {
+                if (!slot.isDead(active)) {
+                    next[n++] = slot;
+                }
+            }
+        } while (!slots.compareAndSet(current, next));
+    }
+
+    /**
+     * The accumulators of a single recording thread.
+     */
+    private static class Slot {
+        private final WeakReference<Thread> owner;
+        private final IntervalStatistics[] accumulators = {new IntervalStatistics(), new IntervalStatistics()};
+
+        Slot(Thread owner) {
+            this.owner = new WeakReference<>(owner);
+        }
+
+        /**
+         * Returns true if the owner has terminated and the active
+         * accumulator is empty.
+         */
+        boolean isDead(int activeIndex) {
+            Thread thread = owner.get();
+            return (thread == null || !thread.isAlive())
+                    && accumulators[activeIndex].getCount() == 0;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * @(#)IntervalStatisticsRegistry.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.stats;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A registry of named {@link IntervalStatisticsRecorder}s, which publishes
+ * the statistics of their last interval as JMX MBeans.
+ * <p>
+ * Each recorder is published with the object name
+ * {@code ch.randelshofer.stats:type=IntervalStatistics,name=<quoted name>}
+ * and the attributes of {@link IntervalStatisticsMXBean}. The attributes
+ * are updated when {@link #harvest()} is called, typically once per
+ * interval by a scheduled executor.
+ * <p>
+ * Usage:
+ * <pre>
+ * IntervalStatisticsRegistry registry = new IntervalStatisticsRegistry(0.05);
+ * IntervalStatisticsRecorder latency = registry.register("latency");
+ * executor.scheduleAtFixedRate(registry::harvest, 1, 1, TimeUnit.SECONDS);
+ * // in many threads:
+ * latency.accept(nanos);
+ * </pre>
+ */
+public class IntervalStatisticsRegistry implements AutoCloseable {
+    private final static String DOMAIN = "ch.randelshofer.stats";
+
+    private final MBeanServer server;
+    private final double alpha;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new registry, which publishes to the platform MBean server.
+     *
+     * @param alpha the significance level in (0, 1) for the confidence attribute
+     * @throws IllegalArgumentException if alpha is not in (0, 1)
+     */
+    public IntervalStatisticsRegistry(double alpha) {
+        this(ManagementFactory.getPlatformMBeanServer(), alpha);
+    }
+
+    /**
+     * Creates a new registry.
+     *
+     * @param server the MBean server
+     * @param alpha  the significance level in (0, 1) for the confidence attribute
+     * @throws IllegalArgumentException if alpha is not in (0, 1)
+     */
+    public IntervalStatisticsRegistry(MBeanServer server, double alpha) {
+        if (!(alpha > 0 && alpha < 1)) {
+            throw new IllegalArgumentException("alpha must be in (0, 1), alpha=" + alpha);
+        }
+        this.server = server;
+        this.alpha = alpha;
+    }
+
+    /**
+     * Returns the object name under which the recorder with the
+     * given name is published.
+     *
+     * @param name the name of a recorder
+     * @return the object name
+     */
+    public static ObjectName getObjectName(String name) {
+        try {
+            return new ObjectName(DOMAIN + ":type=IntervalStatistics,name=" + ObjectName.quote(name));
+        } catch (JMException e) {
+            throw new IllegalArgumentException("illegal name, name=" + name, e);
+        }
+    }
+
+    /**
+     * Returns the recorder with the given name, and publishes it if
+     * it has not been registered yet.
+     *
+     * @param name the name of the recorder
+     * @return the recorder
+     * @throws IllegalStateException if the MBean server rejects the MBean
+     */
+    public IntervalStatisticsRecorder register(String name) {
+        return entries.computeIfAbsent(name, this::createEntry).recorder;
+    }
+
+    private Entry createEntry(String name) {
+        Entry entry = new Entry(getObjectName(name), alpha);
+        try {
+            server.registerMBean(new StandardMBean(entry, IntervalStatisticsMXBean.class, true), entry.objectName);
+        } catch (JMException e) {
+            throw new IllegalStateException("could not register MBean, name=" + name, e);
+        }
+        return entry;
+    }
+
+    /**
+     * Unregisters the recorder with the given name.
+     *
+     * @param name the name of the recorder
+     * @return true if the recorder was registered
+     * @throws IllegalStateException if the MBean server rejects the request
+     */
+    public boolean unregister(String name) {
+        Entry entry = entries.remove(name);
+        if (entry == null) {
+            return false;
+        }
+        try {
+            server.unregisterMBean(entry.objectName);
+        } catch (JMException e) {
+            throw new IllegalStateException("could not unregister MBean, name=" + name, e);
+        }
+        return true;
+    }
+
+    /**
+     * Ends the current interval of all recorders, and updates the
+     * attributes of their MBeans.
+     */
+    public void harvest() {
+        for (Entry entry : entries.values()) {
+            entry.harvest();
+        }
+    }
+
+    /**
+     * Unregisters all recorders.
+     *
+     * @throws IllegalStateException if the MBean server rejects the request
+     */
+    @Override
+    public void close() {
+        for (String name : entries.keySet()) {
+            unregister(name);
+        }
+    }
+
+    /**
+     * A recorder and the attributes of its last interval.
+     */
+    private static class Entry implements IntervalStatisticsMXBean {
+        private final ObjectName objectName;
+        private final double alpha;
+        private final IntervalStatisticsRecorder recorder = new IntervalStatisticsRecorder();
+        private long count;
+        private double average;
+        private double standardDeviation;
+        private double confidence;
+        private double min;
+        private double max;
+        private long startTimeMillis;
+        private long endTimeMillis;
+
+        Entry(ObjectName objectName, double alpha) {
+            this.objectName = objectName;
+            this.alpha = alpha;
+        }
+
+        synchronized void harvest() {
+            IntervalStatistics s = recorder.getIntervalStatistics();
+            count = s.getCount();
+            average = s.getAverage();
+            standardDeviation = s.getSampleStandardDeviation();
+            confidence = s.getConfidence(alpha);
+            min = s.getMin();
+            max = s.getMax();
+            startTimeMillis = s.getStartTimeMillis();
+            endTimeMillis = s.getEndTimeMillis();
+        }
+
+        @Override
+        public synchronized long getCount() {
+            return count;
+        }
+
+        @Override
+        public synchronized double getAverage() {
+            return average;
+        }
+
+        @Override
+        public synchronized double getStandardDeviation() {
+            return standardDeviation;
+        }
+
+        @Override
+        public synchronized double getConfidence() {
+            return confidence;
+        }
+
+        @Override
+        public synchronized double getMin() {
+            return min;
+        }
+
+        @Override
+        public synchronized double getMax() {
+            return max;
+        }
+
+        @Override
+        public synchronized long getStartTimeMillis() {
+            return startTimeMillis;
+        }
+
+        @Override
+        public synchronized long getEndTimeMillis() {
+            return endTimeMillis;
+        }
+    }
+}
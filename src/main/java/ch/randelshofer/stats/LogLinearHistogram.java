@@ -0,0 +1,361 @@
+/*
+ * @(#)LogLinearHistogram.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.stats;
+
+import java.util.function.DoubleConsumer;
+
+import static java.lang.Math.sqrt;
+
+/**
+ * A histogram with log-linear buckets in fixed memory, similar to
+ * HdrHistogram.
+ * <p>
+ * Every power of two between the lowest and the highest trackable value
+ * is divided into {@code 2^subBucketBits} linear sub-buckets, so that every
+ * bucket covers a relative range that is at most {@code 10^-significantDigits}.
+ * The bucket of a value is computed in constant time from the bits of its
+ * IEEE 754 representation: the exponent selects the power of two, and the
+ * top bits of the mantissa select the sub-bucket.
+ * <p>
+ * Adding a value takes constant time and does not allocate any objects.
+ * Count, minimum and maximum are exact. Quantiles, the average and the
+ * variance are derived from the buckets, and are accurate to
+ * {@code significantDigits} decimal digits.
+ * <p>
+ * Usage with a double stream:
+ * <pre>
+ * LogLinearHistogram stats = doubleStream.collect(() -&gt; new LogLinearHistogram(1e-6, 3600, 3),
+ *                                               LogLinearHistogram::accept,
+ *                                               LogLinearHistogram::combine);
+ * </pre>
+ *
+ * <p>
+ * References:
+ * <ul>
+ * <li>HdrHistogram: A High Dynamic Range Histogram.<br>
+ * <a href="http://hdrhistogram.org/">link</a>
+ * </li>
+ * </ul>
+ * </p>
+ */
+public class LogLinearHistogram implements DoubleConsumer {
+    private final double lowestTrackableValue;
+    private final double highestTrackableValue;
+    private final int significantDigits;
+    /**
+     * Number of bits that are used from the mantissa to select the sub-bucket.
+     */
+    private final int subBucketBits;
+    /**
+     * {@code 52 - subBucketBits}.
+     */
+    private final int shift;
+    /**
+     * The raw bits of the lowest trackable value shifted right by {@link #shift}.
+     */
+    private final long offset;
+    private final long[] counts;
+    private long count;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param lowestTrackableValue  the lowest value that can be distinguished from 0,
+     *                              must be at least {@link Double#MIN_NORMAL}
+     * @param highestTrackableValue the highest value that can be tracked
+     * @param significantDigits     the number of significant decimal digits, in [0, 5]
+     * @throws IllegalArgumentException if the arguments are out of range
+     */
+    public LogLinearHistogram(double lowestTrackableValue, double highestTrackableValue, int significantDigits) {
+        // Subnormal values have no exponent bits, the bucket index can not
+        // be computed from their raw bits.
+        if (!(lowestTrackableValue >= Double.MIN_NORMAL && lowestTrackableValue < Double.POSITIVE_INFINITY)
+                || !Double.isFinite(highestTrackableValue)
+                || !(highestTrackableValue >= 2 * lowestTrackableValue)) {
+            throw new IllegalArgumentException("illegal trackable range, lowestTrackableValue=" + lowestTrackableValue
+                    + ", highestTrackableValue=" + highestTrackableValue);
+        }
+        if (significantDigits < 0 || significantDigits > 5) {
+            throw new IllegalArgumentException("significantDigits must be in [0, 5], significantDigits=" + significantDigits);
+        }
+        this.lowestTrackableValue = lowestTrackableValue;
+        this.highestTrackableValue = highestTrackableValue;
+        this.significantDigits = significantDigits;
+        this.subBucketBits = (int) Math.ceil(significantDigits * Math.log(10) / Math.log(2));
+        this.shift = 52 - subBucketBits;
+        long lowestBits = Double.doubleToRawLongBits(lowestTrackableValue);
+        this.offset = (lowestBits >>> 52 << 52) >>> shift;
+        long highestBits = Double.doubleToRawLongBits(highestTrackableValue);
+        int bucketCount = (int) ((highestBits >>> shift) - offset + 1);
+        this.counts = new long[bucketCount];
+    }
+
+    /**
+     * Adds a value to the sample.
+     * <p>
+     * Values below the lowest trackable value are counted in the first
+     * bucket. Values above the highest trackable value are counted in the
+     * last bucket.
+     *
+     * @param value a new value
+     * @throws IllegalArgumentException if value is negative or NaN
+     */
+    @Override
+    public void accept(double value) {
+        if (!(value >= 0)) {
+            throw new IllegalArgumentException("value must not be negative, value=" + value);
+        }
+        counts[indexOf(value)]++;
+        count++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Combines the state of another {@code LogLinearHistogram} into this one.
+     *
+     * @param other another {@code LogLinearHistogram} with the same configuration
+     * @return this
+     * @throws IllegalArgumentException if the other histogram has a different configuration
+     */
+    public LogLinearHistogram combine(LogLinearHistogram other) {
+        if (other.lowestTrackableValue != lowestTrackableValue
+                || other.highestTrackableValue != highestTrackableValue
+                || other.significantDigits != significantDigits) {
+            throw new IllegalArgumentException("other histogram has a different configuration: " + other);
+        }
+        long[] otherCounts = other.counts;
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += otherCounts[i];
+        }
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        return this;
+    }
+
+    private int indexOf(double value) {
+        if (value <= lowestTrackableValue) {
+            return 0;
+        }
+        if (value >= highestTrackableValue) {
+            return counts.length - 1;
+        }
+        return (int) ((Double.doubleToRawLongBits(value) >>> shift) - offset);
+    }
+
+    /**
+     * Returns the lowest value of the bucket with the given index.
+     */
+    private double lowestValueOf(int index) {
+        return Double.longBitsToDouble((index + offset) << shift);
+    }
+
+    /**
+     * Returns the representative value of the bucket with the given index.
+     * This is the midpoint of the bucket, clamped to the minimum and the
+     * maximum of the sample.
+     */
+    private double valueOf(int index) {
+        double value = 0.5 * (lowestValueOf(index) + lowestValueOf(index + 1));
+        return Math.min(max, Math.max(min, value));
+    }
+
+    /**
+     * Returns the number of values in the sample.
+     *
+     * @return the count
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the exact minimum of the sample.
+     *
+     * @return the minimum, or {@code Double.POSITIVE_INFINITY} if the sample is empty
+     */
+    public double getMin() {
+        return min;
+    }
+
+    /**
+     * Returns the exact maximum of the sample.
+     *
+     * @return the maximum, or {@code Double.NEGATIVE_INFINITY} if the sample is empty
+     */
+    public double getMax() {
+        return max;
+    }
+
+    /**
+     * Returns the number of buckets.
+     *
+     * @return the number of buckets
+     */
+    public int getBucketCount() {
+        return counts.length;
+    }
+
+    /**
+     * Returns the arithmetic mean of the sample, derived from the buckets.
+     *
+     * @return the average, or zero if the sample is empty
+     */
+    public double getAverage() {
+        if (count == 0) {
+            return 0.0;
+        }
+        DoubleSum sum = new DoubleSum();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] != 0) {
+                sum.accept(counts[i] * valueOf(i));
+            }
+        }
+        return sum.getSum() / count;
+    }
+
+    /**
+     * Returns the sum of the squared deviations from the mean, derived
+     * from the buckets.
+     */
+    private double getSumOfSquaredDeviations() {
+        double avg = getAverage();
+        DoubleSum sum = new DoubleSum();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] != 0) {
+                double d = valueOf(i) - avg;
+                sum.accept(counts[i] * d * d);
+            }
+        }
+        return sum.getSum();
+    }
+
+    /**
+     * Returns the (unbiased) variance {@code s^2} of the sample, derived
+     * from the buckets.
+     *
+     * @return the variance of the sample, or zero if the sample
+     * contains less than two values
+     */
+    public double getSampleVariance() {
+        return count > 1 ? getSumOfSquaredDeviations() / (count - 1) : 0.0d;
+    }
+
+    /**
+     * Returns the standard deviation {@code stdev} of the sample, derived
+     * from the buckets.
+     *
+     * @return the standard deviation of the sample
+     */
+    public double getSampleStandardDeviation() {
+        return sqrt(getSampleVariance());
+    }
+
+    /**
+     * Returns the variance {@code s^2} of the population, derived from
+     * the buckets.
+     * <p>
+     * Use this method only if the entire population has been sampled.
+     *
+     * @return the variance of the population
+     */
+    public double getPopulationVariance() {
+        return count > 0 ? getSumOfSquaredDeviations() / count : 0.0d;
+    }
+
+    /**
+     * Returns the standard deviation {@code stdev} of the population,
+     * derived from the buckets.
+     * <p>
+     * Use this method only if the entire population has been sampled.
+     *
+     * @return the standard deviation of the population
+     */
+    public double getPopulationStandardDeviation() {
+        return sqrt(getPopulationVariance());
+    }
+
+    /**
+     * Returns the {@code q}-quantile of the sample.
+     * <p>
+     * {@code quantile(0)} returns the exact minimum, {@code quantile(1)}
+     * the exact maximum.
+     *
+     * @param q the normalized rank in [0, 1], for example 0.99 for p99
+     * @return the quantile, or {@code NaN} if the sample is empty
+     * @throws IllegalArgumentException if q is not in [0, 1]
+     */
+    public double quantile(double q) {
+        if (!(q >= 0 && q <= 1)) {
+            throw new IllegalArgumentException("q must be in [0, 1], q=" + q);
+        }
+        if (count == 0) {
+            return Double.NaN;
+        }
+        if (q == 0) {
+            return min;
+        }
+        if (q == 1) {
+            return max;
+        }
+        long target = Math.max(1, (long) Math.ceil(q * count));
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            if (cumulative >= target) {
+                return valueOf(i);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Returns the cumulative distribution function of the sample at the
+     * given value, this is the fraction of values that are less than or
+     * equal to {@code x}.
+     * <p>
+     * The values in the bucket of {@code x} are counted as less than or
+     * equal to {@code x}.
+     *
+     * @param x a value
+     * @return the normalized rank of {@code x} in [0, 1], or {@code NaN}
+     * if the sample is empty
+     */
+    public double cdf(double x) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        if (x < min) {
+            return 0.0;
+        }
+        if (x >= max) {
+            return 1.0;
+        }
+        int index = indexOf(x);
+        long cumulative = 0;
+        for (int i = 0; i <= index; i++) {
+            cumulative += counts[i];
+        }
+        return (double) cumulative / count;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "%s{count=%d, min=%f, avg=%f, p50=%f, p99=%f, max=%f, stdevs=%f}",
+                this.getClass().getSimpleName(),
+                getCount(),
+                getMin(),
+                getAverage(),
+                quantile(0.5),
+                quantile(0.99),
+                getMax(),
+                getSampleStandardDeviation()
+        );
+    }
+}
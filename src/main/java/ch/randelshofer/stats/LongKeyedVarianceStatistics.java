@@ -0,0 +1,371 @@
+/*
+ * @(#)LongKeyedVarianceStatistics.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.stats;
+
+import static java.lang.Math.sqrt;
+
+/**
+ * Computes a {@link VarianceStatistics} for each group of a sample that
+ * is grouped by a {@code long} key.
+ * <p>
+ * The state of all groups is kept in parallel primitive arrays of an
+ * open-addressing hash table with linear probing. Adding a value to an
+ * existing group does not allocate any objects.
+ * <p>
+ * Usage:
+ * <pre>
+ * LongKeyedVarianceStatistics stats = new LongKeyedVarianceStatistics();
+ * stats.accept(tenantId, latency);
+ *
+ * LongKeyedVarianceStatistics.Cursor cursor = stats.cursor();
+ * while (cursor.next()) {
+ *     long key = cursor.getKey();
+ *     double avg = cursor.getAverage();
+ * }
+ * </pre>
+ */
+public class LongKeyedVarianceStatistics {
+    private final static int MIN_CAPACITY = 16;
+    private long[] keys;
+    /**
+     * The count of each group. A count of zero marks an empty slot.
+     */
+    private long[] counts;
+    private double[] sums;
+    private double[] compensations;
+    private double[] simpleSums;
+    private double[] sumOfSquares;
+    private double[] squareCompensations;
+    private double[] mins;
+    private double[] maxs;
+    private int size;
+    /**
+     * {@code 64 - log2(capacity)}.
+     */
+    private int shift;
+
+    /**
+     * Creates a new instance with a default initial capacity.
+     */
+    public LongKeyedVarianceStatistics() {
+        this(MIN_CAPACITY / 2);
+    }
+
+    /**
+     * Creates a new instance that can hold the given number of groups
+     * without resizing.
+     *
+     * @param expectedSize the expected number of groups
+     * @throws IllegalArgumentException if expectedSize is negative
+     */
+    public LongKeyedVarianceStatistics(int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("expectedSize must not be negative, expectedSize=" + expectedSize);
+        }
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * 2L) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        counts = new long[capacity];
+        sums = new double[capacity];
+        compensations = new double[capacity];
+        simpleSums = new double[capacity];
+        sumOfSquares = new double[capacity];
+        squareCompensations = new double[capacity];
+        mins = new double[capacity];
+        maxs = new double[capacity];
+        shift = 64 - Integer.numberOfTrailingZeros(capacity);
+    }
+
+    /**
+     * Adds a value to the group with the given key.
+     *
+     * @param key   the key of the group
+     * @param value a new value
+     */
+    public void accept(long key, double value) {
+        int slot = slotOf(key);
+        if (counts[slot] == 0) {
+            slot = insert(key, slot);
+        }
+        counts[slot]++;
+        mins[slot] = Math.min(mins[slot], value);
+        maxs[slot] = Math.max(maxs[slot], value);
+        DoubleSum.sumWithCompensation(sums, compensations, slot, value);
+        simpleSums[slot] += value;
+        DoubleSum.sumWithCompensation(sumOfSquares, squareCompensations, slot, value * value);
+    }
+
+    /**
+     * Combines the state of another {@code LongKeyedVarianceStatistics} into this one.
+     *
+     * @param other another {@code LongKeyedVarianceStatistics}
+     * @return this
+     */
+    public LongKeyedVarianceStatistics combine(LongKeyedVarianceStatistics other) {
+        long[] otherCounts = other.counts;
+        for (int i = 0; i < otherCounts.length; i++) {
+            if (otherCounts[i] != 0) {
+                long key = other.keys[i];
+                int slot = slotOf(key);
+                if (counts[slot] == 0) {
+                    slot = insert(key, slot);
+                }
+                counts[slot] += otherCounts[i];
+                mins[slot] = Math.min(mins[slot], other.mins[i]);
+                maxs[slot] = Math.max(maxs[slot], other.maxs[i]);
+                DoubleSum.sumWithCompensation(sums, compensations, slot, other.sums[i]);
+                DoubleSum.sumWithCompensation(sums, compensations, slot, other.compensations[i]);
+                simpleSums[slot] += other.simpleSums[i];
+                DoubleSum.sumWithCompensation(sumOfSquares, squareCompensations, slot, other.sumOfSquares[i]);
+                DoubleSum.sumWithCompensation(sumOfSquares, squareCompensations, slot, other.squareCompensations[i]);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Returns the number of groups.
+     *
+     * @return the number of groups
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the statistics of the group with the given key.
+     *
+     * @param key the key of the group
+     * @return a new {@code VarianceStatistics}, or null if there is no such group
+     */
+    public VarianceStatistics get(long key) {
+        int slot = slotOf(key);
+        return counts[slot] == 0 ? null : toVarianceStatistics(slot);
+    }
+
+    /**
+     * Returns a cursor over all groups.
+     * <p>
+     * The cursor does not allocate any objects while iterating.
+     * The cursor must not be used after a group has been added.
+     *
+     * @return a new cursor
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Returns the slot of the given key, or the empty slot where the key
+     * can be inserted.
+     */
+    private int slotOf(long key) {
+        int mask = keys.length - 1;
+        int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+        while (counts[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Inserts a new group at the given empty slot.
+     *
+     * @return the slot of the group, may be different if the table has been resized
+     */
+    private int insert(long key, int slot) {
+        if (size * 2 >= keys.length) {
+            grow();
+            slot = slotOf(key);
+        }
+        size++;
+        keys[slot] = key;
+        mins[slot] = Double.POSITIVE_INFINITY;
+        maxs[slot] = Double.NEGATIVE_INFINITY;
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        long[] oldCounts = counts;
+        double[] oldSums = sums;
+        double[] oldCompensations = compensations;
+        double[] oldSimpleSums = simpleSums;
+        double[] oldSumOfSquares = sumOfSquares;
+        double[] oldSquareCompensations = squareCompensations;
+        double[] oldMins = mins;
+        double[] oldMaxs = maxs;
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldCounts[i] != 0) {
+                int slot = slotOf(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                counts[slot] = oldCounts[i];
+                sums[slot] = oldSums[i];
+                compensations[slot] = oldCompensations[i];
+                simpleSums[slot] = oldSimpleSums[i];
+                sumOfSquares[slot] = oldSumOfSquares[i];
+                squareCompensations[slot] = oldSquareCompensations[i];
+                mins[slot] = oldMins[i];
+                maxs[slot] = oldMaxs[i];
+            }
+        }
+    }
+
+    private VarianceStatistics toVarianceStatistics(int slot) {
+        return VarianceStatistics.fromSums(counts[slot], mins[slot], maxs[slot],
+                sums[slot], compensations[slot], simpleSums[slot],
+                sumOfSquares[slot] + squareCompensations[slot]);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{size=" + size + "}";
+    }
+
+    /**
+     * A cursor over the groups of a {@link LongKeyedVarianceStatistics}.
+     * <p>
+     * The cursor is initially positioned before the first group.
+     */
+    public final class Cursor {
+        private int slot = -1;
+
+        private Cursor() {
+        }
+
+        /**
+         * Moves the cursor to the next group.
+         *
+         * @return true on success, false if there are no more groups
+         */
+        public boolean next() {
+            while (++slot < counts.length) {
+                if (counts[slot] != 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Returns the key of the current group.
+         *
+         * @return the key
+         */
+        public long getKey() {
+            return keys[slot];
+        }
+
+        /**
+         * Returns the number of values in the current group.
+         *
+         * @return the count
+         */
+        public long getCount() {
+            return counts[slot];
+        }
+
+        /**
+         * Returns the sum of the values in the current group.
+         *
+         * @return the sum
+         */
+        public double getSum() {
+            double sum = sums[slot] + compensations[slot];
+            return Double.isNaN(sum) ? simpleSums[slot] : sum;
+        }
+
+        /**
+         * Returns the sum of square of the values in the current group.
+         *
+         * @return the sum of square
+         */
+        public double getSumOfSquare() {
+            return sumOfSquares[slot] + squareCompensations[slot];
+        }
+
+        /**
+         * Returns the minimum of the current group.
+         *
+         * @return the minimum
+         */
+        public double getMin() {
+            return mins[slot];
+        }
+
+        /**
+         * Returns the maximum of the current group.
+         *
+         * @return the maximum
+         */
+        public double getMax() {
+            return maxs[slot];
+        }
+
+        /**
+         * Returns the arithmetic mean of the current group.
+         *
+         * @return the average
+         */
+        public double getAverage() {
+            return getSum() / getCount();
+        }
+
+        /**
+         * Returns the (unbiased) variance {@code s^2} of the current group.
+         *
+         * @return the variance of the sample
+         */
+        public double getSampleVariance() {
+            double avg = getAverage();
+            long n = getCount();
+            return (getSumOfSquare() - avg * avg * n) / (n - 1);
+        }
+
+        /**
+         * Returns the standard deviation {@code stdev} of the current group.
+         *
+         * @return the standard deviation of the sample
+         */
+        public double getSampleStandardDeviation() {
+            return sqrt(getSampleVariance());
+        }
+
+        /**
+         * Returns the variance {@code s^2} of the population of the current group.
+         *
+         * @return the variance of the population
+         */
+        public double getPopulationVariance() {
+            double avg = getAverage();
+            return (getSumOfSquare() / getCount()) - avg * avg;
+        }
+
+        /**
+         * Returns the standard deviation {@code stdev} of the population of the current group.
+         *
+         * @return the standard deviation of the population
+         */
+        public double getPopulationStandardDeviation() {
+            return sqrt(getPopulationVariance());
+        }
+
+        /**
+         * Returns the statistics of the current group.
+         *
+         * @return a new {@code VarianceStatistics}
+         */
+        public VarianceStatistics toVarianceStatistics() {
+            return LongKeyedVarianceStatistics.this.toVarianceStatistics(slot);
+        }
+    }
+}
@@ -0,0 +1,309 @@
+/*
+ * @(#)LongVarianceStatistics.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.stats;
+
+import java.math.BigInteger;
+import java.util.Objects;
+import java.util.function.LongConsumer;
+
+import static java.lang.Math.sqrt;
+
+/**
+ * This collector computes count, sum, min, max, average, sample variance
+ * and population variance of {@code long} values with exact integer
+ * arithmetic.
+ * <p>
+ * The sum and the sum of square are kept as 128-bit integers. The square
+ * of a value is computed with {@link Math#multiplyHigh}, and the carries
+ * are propagated without branches. Since all sums are exact, the variance
+ * is computed from {@code n·Σx² - (Σx)²} and is only rounded once when it
+ * is converted to a double.
+ * <p>
+ * The sum of square overflows if it exceeds {@code 2^127}, for example
+ * with more than {@code 2^31} values of magnitude {@code 2^48}, which is
+ * about 3 days in nanoseconds. An {@link ArithmeticException} is thrown in
+ * this case.
+ * <p>
+ * Usage with a long stream:
+ * <pre>
+ * LongVarianceStatistics stats = longStream.collect(LongVarianceStatistics::new,
+ *                                               LongVarianceStatistics::accept,
+ *                                               LongVarianceStatistics::combine);
+ * </pre>
+ */
+public class LongVarianceStatistics implements LongConsumer {
+    private long count;
+    private long min = Long.MAX_VALUE;
+    private long max = Long.MIN_VALUE;
+    /**
+     * The sum as a signed 128-bit integer.
+     */
+    private long sumHi, sumLo;
+    /**
+     * The sum of square as a signed 128-bit integer.
+     */
+    private long sumOfSquareHi, sumOfSquareLo;
+
+    /**
+     * Creates a new instance with an empty sample.
+     */
+    public LongVarianceStatistics() {
+    }
+
+    /**
+     * Adds a value to the sample.
+     * <p>
+     * If the sum of square overflows, an exception is thrown, and the state
+     * of this collector is not changed.
+     *
+     * @param value a new value
+     * @throws ArithmeticException if the sum of square overflows
+     */
+    @Override
+    public void accept(long value) {
+        long sqLo = value * value;
+        long qLo = sumOfSquareLo + sqLo;
+        long qHi = sumOfSquareHi + Math.multiplyHigh(value, value) + Int128.carry(sumOfSquareLo, sqLo, qLo);
+        if (qHi < 0) {
+            throw new ArithmeticException("sum of square overflow");
+        }
+        sumOfSquareHi = qHi;
+        sumOfSquareLo = qLo;
+
+        count++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+
+        long lo = sumLo + value;
+        sumHi += (value >> 63) + Int128.carry(sumLo, value, lo);
+        sumLo = lo;
+    }
+
+    /**
+     * Adds all values of the array to the sample.
+     *
+     * @param a an array of values
+     * @throws ArithmeticException if the sum of square overflows
+     */
+    public void acceptAll(long[] a) {
+        acceptAll(a, 0, a.length);
+    }
+
+    /**
+     * Adds the values {@code a[from]} (inclusive) to {@code a[to]} (exclusive)
+     * to the sample.
+     * <p>
+     * The sums are computed in local variables, and are added to the sums
+     * of this collector at the end. The result is identical to calling
+     * {@link #accept} for each value. If the sum of square overflows, an
+     * exception is thrown, and the state of this collector is not changed.
+     *
+     * @param a    an array of values
+     * @param from the index of the first value (inclusive)
+     * @param to   the index of the last value (exclusive)
+     * @throws IndexOutOfBoundsException if the range is out of bounds
+     * @throws ArithmeticException       if the sum of square overflows
+     */
+    public void acceptAll(long[] a, int from, int to) {
+        Objects.checkFromToIndex(from, to, a.length);
+        long mn = Long.MAX_VALUE, mx = Long.MIN_VALUE;
+        long sHi = 0, sLo = 0, qHi = 0, qLo = 0;
+        for (int i = from; i < to; i++) {
+            long x = a[i];
+            mn = Math.min(mn, x);
+            mx = Math.max(mx, x);
+
+            long lo = sLo + x;
+            sHi += (x >> 63) + Int128.carry(sLo, x, lo);
+            sLo = lo;
+
+            long sqLo = x * x;
+            lo = qLo + sqLo;
+            qHi += Math.multiplyHigh(x, x) + Int128.carry(qLo, sqLo, lo);
+            qLo = lo;
+            // A square is at most 2^126, so the local sum of square can not
+            // skip over the negative range without being checked here.
+            if (qHi < 0) {
+                throw new ArithmeticException("sum of square overflow");
+            }
+        }
+        combine(to - from, mn, mx, sHi, sLo, qHi, qLo);
+    }
+
+    /**
+     * Combines the state of another {@code LongVarianceStatistics} into this one.
+     * <p>
+     * If the sum of square overflows, an exception is thrown, and the state
+     * of this collector is not changed.
+     *
+     * @param other another {@code LongVarianceStatistics}
+     * @return this
+     * @throws ArithmeticException if the sum of square overflows
+     */
+    public LongVarianceStatistics combine(LongVarianceStatistics other) {
+        combine(other.count, other.min, other.max,
+                other.sumHi, other.sumLo, other.sumOfSquareHi, other.sumOfSquareLo);
+        return this;
+    }
+
+    private void combine(long otherCount, long otherMin, long otherMax,
+                         long otherSumHi, long otherSumLo, long otherSumOfSquareHi, long otherSumOfSquareLo) {
+        long qLo = sumOfSquareLo + otherSumOfSquareLo;
+        long qHi = sumOfSquareHi + otherSumOfSquareHi + Int128.carry(sumOfSquareLo, otherSumOfSquareLo, qLo);
+        // Both sums of square are less than 2^127, so their sum is less
+        // than 2^128, and can not wrap around to a non-negative value.
+        if (qHi < 0) {
+            throw new ArithmeticException("sum of square overflow");
+        }
+        sumOfSquareHi = qHi;
+        sumOfSquareLo = qLo;
+
+        count += otherCount;
+        min = Math.min(min, otherMin);
+        max = Math.max(max, otherMax);
+
+        long lo = sumLo + otherSumLo;
+        sumHi += otherSumHi + Int128.carry(sumLo, otherSumLo, lo);
+        sumLo = lo;
+    }
+
+    /**
+     * Returns the number of values in the sample.
+     *
+     * @return the count
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the minimum of the sample.
+     *
+     * @return the minimum, or {@code Long.MAX_VALUE} if the sample is empty
+     */
+    public long getMin() {
+        return min;
+    }
+
+    /**
+     * Returns the maximum of the sample.
+     *
+     * @return the maximum, or {@code Long.MIN_VALUE} if the sample is empty
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * Returns the exact sum of the sample.
+     *
+     * @return the sum
+     */
+    public BigInteger getExactSum() {
+        return Int128.toBigInteger(sumHi, sumLo);
+    }
+
+    /**
+     * Returns the exact sum of square of the sample.
+     *
+     * @return the sum of square
+     */
+    public BigInteger getExactSumOfSquare() {
+        return Int128.toBigInteger(sumOfSquareHi, sumOfSquareLo);
+    }
+
+    /**
+     * Returns the sum of the sample, rounded to the nearest double.
+     *
+     * @return the sum
+     */
+    public double getSum() {
+        return Int128.toDouble(sumHi, sumLo);
+    }
+
+    /**
+     * Returns the sum of square of the sample, rounded to the nearest double.
+     *
+     * @return the sum of square
+     */
+    public double getSumOfSquare() {
+        return Int128.toDouble(sumOfSquareHi, sumOfSquareLo);
+    }
+
+    /**
+     * Returns the arithmetic mean of the sample.
+     *
+     * @return the average, or zero if the sample is empty
+     */
+    public double getAverage() {
+        return count > 0 ? getSum() / count : 0.0d;
+    }
+
+    /**
+     * Returns {@code n·Σx² - (Σx)²}, which is {@code n} times the sum of
+     * the squared deviations from the mean, rounded to the nearest double.
+     */
+    private double getScaledSumOfSquaredDeviations() {
+        BigInteger sum = getExactSum();
+        return getExactSumOfSquare().multiply(BigInteger.valueOf(count))
+                .subtract(sum.multiply(sum)).doubleValue();
+    }
+
+    /**
+     * Returns the (unbiased) variance {@code s^2} of the sample.
+     *
+     * @return the variance of the sample, or zero if the sample
+     * contains less than two values
+     */
+    public double getSampleVariance() {
+        return count > 1 ? getScaledSumOfSquaredDeviations() / ((double) count * (count - 1)) : 0.0d;
+    }
+
+    /**
+     * Returns the standard deviation {@code stdev} of the sample.
+     *
+     * @return the standard deviation of the sample
+     */
+    public double getSampleStandardDeviation() {
+        return sqrt(getSampleVariance());
+    }
+
+    /**
+     * Returns the variance {@code s^2} of the population.
+     * <p>
+     * Use this method only if the entire population has been sampled.
+     *
+     * @return the variance of the population
+     */
+    public double getPopulationVariance() {
+        return count > 0 ? getScaledSumOfSquaredDeviations() / ((double) count * count) : 0.0d;
+    }
+
+    /**
+     * Returns the standard deviation {@code stdev} of the population.
+     * <p>
+     * Use this method only if the entire population has been sampled.
+     *
+     * @return the standard deviation of the population
+     */
+    public double getPopulationStandardDeviation() {
+        return sqrt(getPopulationVariance());
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "%s{count=%d, sum=%f, min=%d, avg=%f, max=%d, stdevs=%f, stdevp=%f}",
+                this.getClass().getSimpleName(),
+                getCount(),
+                getSum(),
+                getMin(),
+                getAverage(),
+                getMax(),
+                getSampleStandardDeviation(),
+                getPopulationStandardDeviation()
+        );
+    }
+}
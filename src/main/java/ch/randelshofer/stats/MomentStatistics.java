@@ -0,0 +1,288 @@
+/*
+ * @(#)MomentStatistics.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.stats;
+
+import java.util.function.DoubleConsumer;
+
+import static java.lang.Math.sqrt;
+
+/**
+ * This collector computes the central moments up to the fourth order
+ * in a single pass. In addition to the mean and the variance, it provides
+ * the skewness and the excess kurtosis of the sample.
+ * <p>
+ * The moments are updated with the online algorithm by Welford and
+ * Terriberry, and combined with the pairwise formulas by Pébay.
+ * Since only deviations from the running mean are accumulated, the
+ * algorithm stays numerically stable if the values have a large offset.
+ * <p>
+ * Usage with a double stream:
+ * <pre>
+ * MomentStatistics stats = doubleStream.collect(MomentStatistics::new,
+ *                                               MomentStatistics::accept,
+ *                                               MomentStatistics::combine);
+ * </pre>
+ *
+ * <p>
+ * References:
+ * <ul>
+ * <li>Algorithms for calculating variance, Higher-order statistics.<br>
+ * Wikipedia.
+ * <a href="https://en.wikipedia.org/wiki/Algorithms_for_calculating_variance#Higher-order_statistics">link</a>
+ * </li>
+ * <li>Philippe Pébay. Formulas for Robust, One-Pass Parallel Computation
+ * of Covariances and Arbitrary-Order Statistical Moments.<br>
+ * Sandia Report SAND2008-6212, 2008.
+ * </li>
+ * </ul>
+ * </p>
+ */
+public class MomentStatistics implements DoubleConsumer {
+    private long count;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private double mean;
+    /**
+     * Sum of the squared deviations from the mean {@code Σ(x-mean)²}.
+     */
+    private double m2;
+    /**
+     * Sum of the cubed deviations from the mean {@code Σ(x-mean)³}.
+     */
+    private double m3;
+    /**
+     * Sum of the fourth powers of the deviations from the mean {@code Σ(x-mean)⁴}.
+     */
+    private double m4;
+
+    /**
+     * Creates a new instance with an empty sample.
+     */
+    public MomentStatistics() {
+    }
+
+    /**
+     * Adds a value to the sample.
+     *
+     * @param value a new value
+     */
+    @Override
+    public void accept(double value) {
+        long n1 = count;
+        count++;
+        double n = count;
+        double delta = value - mean;
+        double deltaN = delta / n;
+        double deltaN2 = deltaN * deltaN;
+        double term1 = delta * deltaN * n1;
+        mean += deltaN;
+        m4 += term1 * deltaN2 * (n * n - 3 * n + 3) + 6 * deltaN2 * m2 - 4 * deltaN * m3;
+        m3 += term1 * deltaN * (n - 2) - 3 * deltaN * m2;
+        m2 += term1;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Combines the state of another {@code MomentStatistics} into this one.
+     *
+     * @param other another {@code MomentStatistics}
+     * @return this
+     */
+    public MomentStatistics combine(MomentStatistics other) {
+        if (other.count == 0) {
+            return this;
+        }
+        if (count == 0) {
+            count = other.count;
+            min = other.min;
+            max = other.max;
+            mean = other.mean;
+            m2 = other.m2;
+            m3 = other.m3;
+            m4 = other.m4;
+            return this;
+        }
+        double na = count;
+        double nb = other.count;
+        double n = na + nb;
+        double delta = other.mean - mean;
+        double delta2 = delta * delta;
+        double delta3 = delta2 * delta;
+        double delta4 = delta2 * delta2;
+
+        double newM4 = m4 + other.m4
+                + delta4 * na * nb * (na * na - na * nb + nb * nb) / (n * n * n)
+                + 6 * delta2 * (na * na * other.m2 + nb * nb * m2) / (n * n)
+                + 4 * delta * (na * other.m3 - nb * m3) / n;
+        double newM3 = m3 + other.m3
+                + delta3 * na * nb * (na - nb) / (n * n)
+                + 3 * delta * (na * other.m2 - nb * m2) / n;
+        double newM2 = m2 + other.m2 + delta2 * na * nb / n;
+
+        mean += delta * nb / n;
+        m2 = newM2;
+        m3 = newM3;
+        m4 = newM4;
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        return this;
+    }
+
+    /**
+     * Returns the number of values in the sample.
+     *
+     * @return the count
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the sum of the values in the sample.
+     *
+     * @return the sum, or zero if the sample is empty
+     */
+    public double getSum() {
+        return mean * count;
+    }
+
+    /**
+     * Returns the minimum of the sample.
+     *
+     * @return the minimum, or {@code Double.POSITIVE_INFINITY} if the sample is empty
+     */
+    public double getMin() {
+        return min;
+    }
+
+    /**
+     * Returns the maximum of the sample.
+     *
+     * @return the maximum, or {@code Double.NEGATIVE_INFINITY} if the sample is empty
+     */
+    public double getMax() {
+        return max;
+    }
+
+    /**
+     * Returns the arithmetic mean of the sample.
+     *
+     * @return the average, or zero if the sample is empty
+     */
+    public double getAverage() {
+        return mean;
+    }
+
+    /**
+     * Returns the (unbiased) variance {@code s^2} of the sample.
+     *
+     * @return the variance of the sample, or zero if the sample
+     * contains less than two values
+     */
+    public double getSampleVariance() {
+        return count > 1 ? m2 / (count - 1) : 0.0d;
+    }
+
+    /**
+     * Returns the standard deviation {@code stdev} of the sample.
+     *
+     * @return the standard deviation of the sample
+     */
+    public double getSampleStandardDeviation() {
+        return sqrt(getSampleVariance());
+    }
+
+    /**
+     * Returns the variance {@code s^2} of the population.
+     * <p>
+     * Use this method only if the entire population has been sampled.
+     *
+     * @return the variance of the population
+     */
+    public double getPopulationVariance() {
+        return count > 0 ? m2 / count : 0.0d;
+    }
+
+    /**
+     * Returns the standard deviation {@code stdev} of the population.
+     * <p>
+     * Use this method only if the entire population has been sampled.
+     *
+     * @return the standard deviation of the population
+     */
+    public double getPopulationStandardDeviation() {
+        return sqrt(getPopulationVariance());
+    }
+
+    /**
+     * Returns the skewness {@code g1} of the population.
+     * <p>
+     * Use this method only if the entire population has been sampled.
+     *
+     * @return the skewness of the population, or {@code NaN} if the
+     * variance is zero
+     */
+    public double getPopulationSkewness() {
+        return sqrt(count) * m3 / (m2 * sqrt(m2));
+    }
+
+    /**
+     * Returns the adjusted Fisher-Pearson skewness {@code G1} of the sample.
+     *
+     * @return the skewness of the sample, or {@code NaN} if the
+     * sample contains less than three values
+     */
+    public double getSampleSkewness() {
+        double n = count;
+        return count > 2 ? getPopulationSkewness() * sqrt(n * (n - 1)) / (n - 2) : Double.NaN;
+    }
+
+    /**
+     * Returns the excess kurtosis {@code g2} of the population.
+     * <p>
+     * The excess kurtosis of a normal distribution is 0.
+     * Use this method only if the entire population has been sampled.
+     *
+     * @return the excess kurtosis of the population, or {@code NaN} if the
+     * variance is zero
+     */
+    public double getPopulationKurtosis() {
+        return count * m4 / (m2 * m2) - 3.0;
+    }
+
+    /**
+     * Returns the (bias corrected) excess kurtosis {@code G2} of the sample.
+     * <p>
+     * The excess kurtosis of a normal distribution is 0.
+     *
+     * @return the excess kurtosis of the sample, or {@code NaN} if the
+     * sample contains less than four values
+     */
+    public double getSampleKurtosis() {
+        double n = count;
+        return count > 3
+                ? ((n + 1) * getPopulationKurtosis() + 6) * (n - 1) / ((n - 2) * (n - 3))
+                : Double.NaN;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "%s{count=%d, sum=%f, min=%f, avg=%f, max=%f, stdevs=%f, stdevp=%f, skews=%f, kurts=%f}",
+                this.getClass().getSimpleName(),
+                getCount(),
+                getSum(),
+                getMin(),
+                getAverage(),
+                getMax(),
+                getSampleStandardDeviation(),
+                getPopulationStandardDeviation(),
+                getSampleSkewness(),
+                getSampleKurtosis()
+        );
+    }
+}
@@ -0,0 +1,388 @@
+/*
+ * @(#)MultivariateStatistics.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.stats;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+import static java.lang.Math.sqrt;
+
+/**
+ * This collector computes the mean vector and the covariance matrix of
+ * rows of {@code dims} values in a single pass.
+ * <p>
+ * The co-moments {@code C[i][j] = Σ(x[i]-mean[i])(x[j]-mean[j])} are kept
+ * in a flat array that packs the upper triangle of the symmetric matrix
+ * row by row. Single rows are added with Welford's online update, which
+ * costs {@code dims·(dims+1)/2} multiply-adds per row. Blocks of rows are
+ * copied in tiles of rows that fit into the cache, centered on their own
+ * mean, reduced to co-moments with dot products over the columns of the
+ * tiles, and then merged with the update formula of Chan et al.
+ * All values are shifted by the first row of the sample, so that the
+ * co-moments do not suffer from cancellation if the means are large
+ * compared to the standard deviations.
+ * <p>
+ * Usage with a stream of rows:
+ * <pre>
+ * MultivariateStatistics stats = rowStream.collect(() -&gt; new MultivariateStatistics(dims),
+ *                                               MultivariateStatistics::accept,
+ *                                               MultivariateStatistics::combine);
+ * </pre>
+ *
+ * <p>
+ * References:
+ * <ul>
+ * <li>Algorithms for calculating variance. Covariance.<br>
+ * Wikipedia.
+ * <a href="https://en.wikipedia.org/wiki/Algorithms_for_calculating_variance#Covariance">link</a>
+ * </li>
+ * <li>Tony F. Chan, Gene H. Golub, Randall J. LeVeque. Updating Formulae
+ * and a Pairwise Algorithm for Computing Sample Variances.<br>
+ * Stanford University, Technical Report STAN-CS-79-773 (1979).
+ * </li>
+ * </ul>
+ * </p>
+ */
+public class MultivariateStatistics implements Consumer<double[]> {
+    /**
+     * Number of rows of a block that are reduced together, so that the
+     * columns of a tile stay in the cache.
+     */
+    private final static int TILE_ROWS = 256;
+    private final int dims;
+    private long count;
+    /**
+     * The shift {@code K}: the first row of the sample.
+     */
+    private final double[] shift;
+    /**
+     * The mean of {@code x - K}.
+     */
+    private final double[] mean;
+    /**
+     * The packed upper triangle of the co-moment matrix.
+     */
+    private final double[] comoments;
+    /**
+     * Reusable scratch space: the deltas of a row, or a centered tile
+     * of a block.
+     */
+    private double[] scratch;
+    private final double[] blockMean;
+    private final double[] blockComoments;
+    private final double[] delta;
+
+    /**
+     * Creates a new instance with an empty sample.
+     *
+     * @param dims the number of values in a row
+     * @throws IllegalArgumentException if dims is not positive
+     */
+    public MultivariateStatistics(int dims) {
+        if (dims <= 0) {
+            throw new IllegalArgumentException("dims must be positive, dims=" + dims);
+        }
+        this.dims = dims;
+        this.shift = new double[dims];
+        this.mean = new double[dims];
+        this.comoments = new double[dims * (dims + 1) / 2];
+        this.blockMean = new double[dims];
+        this.blockComoments = new double[comoments.length];
+        this.delta = new double[dims];
+        this.scratch = new double[dims];
+    }
+
+    /**
+     * Returns the index of {@code C[i][j]} with {@code i ≤ j} in the
+     * packed array.
+     */
+    private int indexOf(int i, int j) {
+        return i * (2 * dims - i + 1) / 2 + (j - i);
+    }
+
+    /**
+     * Adds a row to the sample.
+     *
+     * @param row a row of {@code dims} values
+     * @throws IllegalArgumentException if the row does not have {@code dims} values
+     */
+    @Override
+    public void accept(double[] row) {
+        if (row.length != dims) {
+            throw new IllegalArgumentException("row must have " + dims + " values, row.length=" + row.length);
+        }
+        if (count == 0) {
+            System.arraycopy(row, 0, shift, 0, dims);
+        }
+        count++;
+        double[] d = scratch;
+        for (int i = 0; i < dims; i++) {
+            d[i] = (row[i] - shift[i]) - mean[i];
+            mean[i] += d[i] / count;
+        }
+        // C[i][j] += (x[i] - oldMean[i])·(x[j] - newMean[j])
+        //          = (n-1)/n·d[i]·d[j]
+        double f = (double) (count - 1) / count;
+        double[] c = comoments;
+        int k = 0;
+        for (int i = 0; i < dims; i++) {
+            double fdi = f * d[i];
+            for (int j = i; j < dims; j++) {
+                c[k++] += fdi * d[j];
+            }
+        }
+    }
+
+    /**
+     * Adds a block of rows in column-major order to the sample.
+     * <p>
+     * The value of column {@code j} in row {@code r} is
+     * {@code block[j * rows + r]}.
+     *
+     * @param block the values of the rows in column-major order
+     * @param rows  the number of rows in the block
+     * @throws IllegalArgumentException  if rows is negative
+     * @throws IndexOutOfBoundsException if the block has less than
+     *                                   {@code rows * dims} values
+     */
+    public void acceptAll(double[] block, int rows) {
+        if (rows < 0) {
+            throw new IllegalArgumentException("rows must not be negative, rows=" + rows);
+        }
+        Objects.checkFromIndexSize(0, Math.multiplyExact(rows, dims), block.length);
+        if (rows == 0) {
+            return;
+        }
+
+        if (count == 0) {
+            for (int j = 0; j < dims; j++) {
+                shift[j] = block[j * rows];
+            }
+        }
+
+        // Compute the mean of the block relative to the shift.
+        for (int j = 0; j < dims; j++) {
+            int offset = j * rows;
+            double k = shift[j], sum = 0.0;
+            for (int r = 0; r < rows; r++) {
+                sum += block[offset + r] - k;
+            }
+            blockMean[j] = sum / rows;
+        }
+
+        // Copy the block tile by tile into the scratch space, centered on
+        // the mean of the block, and reduce the tile to co-moments.
+        if (scratch.length < TILE_ROWS * dims) {
+            scratch = new double[TILE_ROWS * dims];
+        }
+        double[] z = scratch;
+        double[] c = blockComoments;
+        Arrays.fill(c, 0.0);
+        for (int r0 = 0; r0 < rows; r0 += TILE_ROWS) {
+            int t = Math.min(rows - r0, TILE_ROWS);
+            for (int j = 0; j < dims; j++) {
+                int src = j * rows + r0, dst = j * t;
+                double k = shift[j], m = blockMean[j];
+                for (int r = 0; r < t; r++) {
+                    z[dst + r] = (block[src + r] - k) - m;
+                }
+            }
+            int k = 0;
+            for (int i = 0; i < dims; i++) {
+                for (int j = i; j < dims; j++) {
+                    c[k++] += dot(z, i * t, j * t, t);
+                }
+            }
+        }
+        merge(rows, shift, blockMean, c);
+    }
+
+    /**
+     * Returns {@code Σ a[oi + r]·a[oj + r]} for {@code r} in {@code [0, length)},
+     * computed with four independent accumulators.
+     */
+    private static double dot(double[] a, int oi, int oj, int length) {
+        double s0 = 0.0, s1 = 0.0, s2 = 0.0, s3 = 0.0;
+        int r = 0;
+        for (int n = length - 3; r < n; r += 4) {
+            s0 += a[oi + r] * a[oj + r];
+            s1 += a[oi + r + 1] * a[oj + r + 1];
+            s2 += a[oi + r + 2] * a[oj + r + 2];
+            s3 += a[oi + r + 3] * a[oj + r + 3];
+        }
+        for (; r < length; r++) {
+            s0 += a[oi + r] * a[oj + r];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * Combines the state of another {@code MultivariateStatistics} into this one.
+     *
+     * @param other another {@code MultivariateStatistics} with the same number of dimensions
+     * @return this
+     * @throws IllegalArgumentException if the other instance has a different
+     *                                  number of dimensions
+     */
+    public MultivariateStatistics combine(MultivariateStatistics other) {
+        if (other.dims != dims) {
+            throw new IllegalArgumentException("other must have " + dims + " dims, other.dims=" + other.dims);
+        }
+        merge(other.count, other.shift, other.mean, other.comoments);
+        return this;
+    }
+
+    /**
+     * Merges a sample with the given count, shift, mean relative to the shift,
+     * and co-moments into this one.
+     */
+    private void merge(long otherCount, double[] otherShift, double[] otherMean, double[] otherComoments) {
+        if (otherCount == 0) {
+            return;
+        }
+        if (count == 0) {
+            count = otherCount;
+            System.arraycopy(otherShift, 0, shift, 0, dims);
+            System.arraycopy(otherMean, 0, mean, 0, dims);
+            System.arraycopy(otherComoments, 0, comoments, 0, comoments.length);
+            return;
+        }
+        long n = count + otherCount;
+        for (int i = 0; i < dims; i++) {
+            delta[i] = (otherShift[i] - shift[i]) + (otherMean[i] - mean[i]);
+        }
+        // C[i][j] = Ca[i][j] + Cb[i][j] + δ[i]·δ[j]·na·nb/n
+        double f = (double) count * otherCount / n;
+        double[] c = comoments;
+        int k = 0;
+        for (int i = 0; i < dims; i++) {
+            double fdi = f * delta[i];
+            for (int j = i; j < dims; j++, k++) {
+                c[k] += otherComoments[k] + fdi * delta[j];
+            }
+        }
+        double g = (double) otherCount / n;
+        for (int i = 0; i < dims; i++) {
+            mean[i] += delta[i] * g;
+        }
+        count = n;
+    }
+
+    /**
+     * Returns the number of values in a row.
+     *
+     * @return the number of dimensions
+     */
+    public int getDimensions() {
+        return dims;
+    }
+
+    /**
+     * Returns the number of rows in the sample.
+     *
+     * @return the count
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the arithmetic mean of a column.
+     *
+     * @param i the index of the column
+     * @return the average, or zero if the sample is empty
+     */
+    public double getAverage(int i) {
+        Objects.checkIndex(i, dims);
+        return count > 0 ? shift[i] + mean[i] : 0.0d;
+    }
+
+    /**
+     * Returns the mean vector.
+     *
+     * @return a new array with the averages of all columns
+     */
+    public double[] getAverages() {
+        double[] averages = new double[dims];
+        for (int i = 0; i < dims; i++) {
+            averages[i] = getAverage(i);
+        }
+        return averages;
+    }
+
+    private double getComoment(int i, int j) {
+        Objects.checkIndex(i, dims);
+        Objects.checkIndex(j, dims);
+        return i <= j ? comoments[indexOf(i, j)] : comoments[indexOf(j, i)];
+    }
+
+    /**
+     * Returns the (unbiased) covariance of two columns of the sample.
+     *
+     * @param i the index of the first column
+     * @param j the index of the second column
+     * @return the covariance, or zero if the sample contains less than two rows
+     */
+    public double getSampleCovariance(int i, int j) {
+        double c = getComoment(i, j);
+        return count > 1 ? c / (count - 1) : 0.0d;
+    }
+
+    /**
+     * Returns the covariance of two columns of the population.
+     * <p>
+     * Use this method only if the entire population has been sampled.
+     *
+     * @param i the index of the first column
+     * @param j the index of the second column
+     * @return the covariance, or zero if the sample is empty
+     */
+    public double getPopulationCovariance(int i, int j) {
+        double c = getComoment(i, j);
+        return count > 0 ? c / count : 0.0d;
+    }
+
+    /**
+     * Returns the Pearson correlation coefficient of two columns.
+     *
+     * @param i the index of the first column
+     * @param j the index of the second column
+     * @return the correlation in [-1, 1], or {@code NaN} if one of the
+     * columns has no variance
+     */
+    public double getCorrelation(int i, int j) {
+        double r = getComoment(i, j) / sqrt(getComoment(i, i) * getComoment(j, j));
+        return Math.max(-1.0, Math.min(1.0, r));
+    }
+
+    /**
+     * Returns the (unbiased) covariance matrix of the sample.
+     *
+     * @return a new {@code dims × dims} matrix
+     */
+    public double[][] getSampleCovarianceMatrix() {
+        double[][] m = new double[dims][dims];
+        double divisor = count > 1 ? count - 1 : Double.POSITIVE_INFINITY;
+        int k = 0;
+        for (int i = 0; i < dims; i++) {
+            for (int j = i; j < dims; j++) {
+                m[i][j] = m[j][i] = comoments[k++] / divisor;
+            }
+        }
+        return m;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "%s{count=%d, dims=%d, avg=%s}",
+                this.getClass().getSimpleName(),
+                getCount(),
+                getDimensions(),
+                Arrays.toString(getAverages())
+        );
+    }
+}
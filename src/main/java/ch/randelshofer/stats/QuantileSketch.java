@@ -0,0 +1,366 @@
+/*
+ * @(#)QuantileSketch.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.stats;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Computes approximate quantiles of a sample with bounded memory,
+ * using the KLL sketch.
+ * <p>
+ * The sketch keeps a hierarchy of compactors. An item at level {@code h}
+ * represents {@code 2^h} values of the sample. When a level is full, it is
+ * sorted, and every other item is promoted to the next level. The capacity
+ * of level {@code h} is {@code k·(2/3)^(H-h-1)}, where {@code H} is the
+ * number of levels, so the sketch holds at most about {@code 3·k} items
+ * plus {@code O(log(n))}.
+ * <p>
+ * Rank error: for a value {@code x} returned by {@code quantile(q)}, the
+ * true normalized rank of {@code x} differs from {@code q} by at most
+ * {@code ε} with high probability, where {@code ε} is in {@code O(1/k)}.
+ * With the default {@code k = 200}, {@code ε} is about 0.017 with
+ * probability 99%. The error bound does not depend on the number of values,
+ * and it holds for sketches that have been combined.
+ * <p>
+ * Usage with a double stream:
+ * <pre>
+ * QuantileSketch stats = doubleStream.collect(QuantileSketch::new,
+ *                                               QuantileSketch::accept,
+ *                                               QuantileSketch::combine);
+ * double p99 = stats.quantile(0.99);
+ * </pre>
+ * <p>
+ * References:
+ * <ul>
+ * <li>Zohar Karnin, Kevin Lang, Edo Liberty. Optimal Quantile Approximation
+ * in Streams.<br>
+ * IEEE 57th Annual Symposium on Foundations of Computer Science (FOCS), 2016.
+ * <a href="https://arxiv.org/abs/1603.05346">arxiv</a>
+ * </li>
+ * </ul>
+ * </p>
+ */
+public class QuantileSketch implements DoubleConsumer {
+    private final static int DEFAULT_K = 200;
+    private final static double C = 2.0 / 3.0;
+    private final static int MIN_LEVEL_CAPACITY = 2;
+
+    private final int k;
+    private double[][] levels;
+    private int[] sizes;
+    private int numLevels;
+    /**
+     * Number of items in all levels.
+     */
+    private int totalSize;
+    /**
+     * Sum of the capacities of all levels.
+     */
+    private int maxSize;
+    private long count;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    /**
+     * Sorted view of all items, or null if the sketch has been modified.
+     */
+    private double[] sortedItems;
+    /**
+     * Cumulative weights of the sorted items.
+     */
+    private long[] cumulativeWeights;
+
+    /**
+     * Creates a new instance with {@code k = 200}.
+     */
+    public QuantileSketch() {
+        this(DEFAULT_K);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param k the accuracy parameter, the rank error is in {@code O(1/k)}
+     * @throws IllegalArgumentException if k is less than 8
+     */
+    public QuantileSketch(int k) {
+        if (k < 8) {
+            throw new IllegalArgumentException("k must be at least 8, k=" + k);
+        }
+        this.k = k;
+        levels = new double[4][];
+        sizes = new int[4];
+        grow();
+    }
+
+    /**
+     * Adds a value to the sample.
+     *
+     * @param value a new value
+     */
+    @Override
+    public void accept(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        sortedItems = null;
+        count++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        append(0, value);
+        totalSize++;
+        if (totalSize >= maxSize) {
+            compress();
+        }
+    }
+
+    /**
+     * Combines the state of another {@code QuantileSketch} into this one.
+     *
+     * @param other another {@code QuantileSketch}
+     * @return this
+     */
+    public QuantileSketch combine(QuantileSketch other) {
+        if (other.count == 0) {
+            return this;
+        }
+        sortedItems = null;
+        while (numLevels < other.numLevels) {
+            grow();
+        }
+        for (int h = 0; h < other.numLevels; h++) {
+            double[] items = other.levels[h];
+            for (int i = 0, n = other.sizes[h]; i < n; i++) {
+                append(h, items[i]);
+            }
+            totalSize += other.sizes[h];
+        }
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        while (totalSize >= maxSize) {
+            compress();
+        }
+        return this;
+    }
+
+    /**
+     * Returns the number of values in the sample.
+     * <p>
+     * NaN values are not counted.
+     *
+     * @return the count
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the exact minimum of the sample.
+     *
+     * @return the minimum, or {@code Double.POSITIVE_INFINITY} if the sample is empty
+     */
+    public double getMin() {
+        return min;
+    }
+
+    /**
+     * Returns the exact maximum of the sample.
+     *
+     * @return the maximum, or {@code Double.NEGATIVE_INFINITY} if the sample is empty
+     */
+    public double getMax() {
+        return max;
+    }
+
+    /**
+     * Returns the accuracy parameter {@code k}.
+     *
+     * @return k
+     */
+    public int getK() {
+        return k;
+    }
+
+    /**
+     * Returns the number of items that are retained by the sketch.
+     *
+     * @return the number of retained items
+     */
+    public int getRetainedItems() {
+        return totalSize;
+    }
+
+    /**
+     * Returns an approximation of the {@code q}-quantile of the sample.
+     * <p>
+     * {@code quantile(0)} returns the exact minimum, {@code quantile(1)}
+     * the exact maximum.
+     *
+     * @param q the normalized rank in [0, 1], for example 0.99 for p99
+     * @return the approximate quantile, or {@code NaN} if the sample is empty
+     * @throws IllegalArgumentException if q is not in [0, 1]
+     */
+    public double quantile(double q) {
+        if (!(q >= 0 && q <= 1)) {
+            throw new IllegalArgumentException("q must be in [0, 1], q=" + q);
+        }
+        if (count == 0) {
+            return Double.NaN;
+        }
+        if (q == 0) {
+            return min;
+        }
+        if (q == 1) {
+            return max;
+        }
+        ensureSorted();
+        long target = (long) Math.ceil(q * count);
+        int index = Arrays.binarySearch(cumulativeWeights, target);
+        if (index < 0) {
+            index = -1 - index;
+        }
+        return sortedItems[Math.min(index, sortedItems.length - 1)];
+    }
+
+    /**
+     * Returns an approximation of the cumulative distribution function
+     * of the sample at the given value, this is the fraction of values
+     * that are less than or equal to {@code x}.
+     *
+     * @param x a value
+     * @return the approximate normalized rank of {@code x} in [0, 1],
+     * or {@code NaN} if the sample is empty
+     */
+    public double cdf(double x) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        if (x < min) {
+            return 0.0;
+        }
+        if (x >= max) {
+            return 1.0;
+        }
+        ensureSorted();
+        int lo = 0, hi = sortedItems.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sortedItems[mid] <= x) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo == 0 ? 0.0 : (double) cumulativeWeights[lo - 1] / count;
+    }
+
+    private int capacity(int h) {
+        int height = numLevels - h - 1;
+        return Math.max(MIN_LEVEL_CAPACITY, (int) Math.ceil(k * Math.pow(C, height)));
+    }
+
+    private void grow() {
+        if (numLevels == levels.length) {
+            levels = Arrays.copyOf(levels, numLevels * 2);
+            sizes = Arrays.copyOf(sizes, numLevels * 2);
+        }
+        numLevels++;
+        maxSize = 0;
+        for (int h = 0; h < numLevels; h++) {
+            maxSize += capacity(h);
+        }
+        int h = numLevels - 1;
+        levels[h] = new double[capacity(h) + 1];
+    }
+
+    private void append(int h, double value) {
+        double[] items = levels[h];
+        int size = sizes[h];
+        if (size == items.length) {
+            items = levels[h] = Arrays.copyOf(items, size * 2);
+        }
+        items[size] = value;
+        sizes[h] = size + 1;
+    }
+
+    /**
+     * Compacts the lowest level that is at its capacity.
+     */
+    private void compress() {
+        for (int h = 0; h < numLevels; h++) {
+            if (sizes[h] >= capacity(h)) {
+                if (h + 1 == numLevels) {
+                    grow();
+                }
+                compact(h);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Sorts level {@code h} and promotes every other item to level
+     * {@code h + 1}. If the level has an odd number of items, its smallest
+     * item stays in the level.
+     */
+    private void compact(int h) {
+        double[] items = levels[h];
+        int size = sizes[h];
+        Arrays.sort(items, 0, size);
+        int start = size & 1;
+        int offset = ThreadLocalRandom.current().nextBoolean() ? 1 : 0;
+        for (int i = start + offset; i < size; i += 2) {
+            append(h + 1, items[i]);
+        }
+        sizes[h] = start;
+        totalSize -= (size - start) / 2;
+    }
+
+    private void ensureSorted() {
+        if (sortedItems != null) {
+            return;
+        }
+        double[] values = new double[totalSize];
+        long[] weights = new long[totalSize];
+        for (int h = 0; h < numLevels; h++) {
+            Arrays.sort(levels[h], 0, sizes[h]);
+        }
+        // k-way merge of the sorted levels
+        int[] heads = new int[numLevels];
+        for (int i = 0; i < totalSize; i++) {
+            int best = -1;
+            double bestValue = 0;
+            for (int h = 0; h < numLevels; h++) {
+                if (heads[h] < sizes[h] && (best == -1 || levels[h][heads[h]] < bestValue)) {
+                    best = h;
+                    bestValue = levels[h][heads[h]];
+                }
+            }
+            values[i] = bestValue;
+            weights[i] = (i == 0 ? 0 : weights[i - 1]) + (1L << best);
+            heads[best]++;
+        }
+        sortedItems = values;
+        cumulativeWeights = weights;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "%s{count=%d, min=%f, p50=%f, p99=%f, max=%f, k=%d, retained=%d}",
+                this.getClass().getSimpleName(),
+                getCount(),
+                getMin(),
+                quantile(0.5),
+                quantile(0.99),
+                getMax(),
+                getK(),
+                getRetainedItems()
+        );
+    }
+}
@@ -0,0 +1,495 @@
+/*
+ * @(#)Quantiles.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.stats;
+
+import static java.lang.Math.PI;
+import static java.lang.Math.abs;
+import static java.lang.Math.cos;
+import static java.lang.Math.exp;
+import static java.lang.Math.expm1;
+import static java.lang.Math.log;
+import static java.lang.Math.pow;
+import static java.lang.Math.sin;
+import static java.lang.Math.sqrt;
+
+/**
+ * Computes quantiles and cumulative distribution functions of the normal
+ * distribution and of the Student's t distribution.
+ * <p>
+ * Quantiles are memoized in a small direct-mapped cache that is keyed by
+ * {@code (p, df)}. The cache is thread-safe, a cache hit does not allocate
+ * any objects.
+ * <p>
+ * References:
+ * <ul>
+ * <li>Michael J. Wichura. Algorithm AS 241: The Percentage Points of the
+ * Normal Distribution.<br>
+ * Journal of the Royal Statistical Society. Series C, Vol. 37, No. 3 (1988).
+ * </li>
+ * <li>G. W. Hill. Algorithm 396: Student's t-Quantiles.<br>
+ * Communications of the ACM, Vol. 13, No. 10 (1970).
+ * </li>
+ * <li>Incomplete beta function, continued fraction.<br>
+ * Numerical Recipes, Chapter 6.4.
+ * </li>
+ * <li>M. Abramowitz, I. A. Stegun. Handbook of Mathematical Functions.<br>
+ * Formula 26.7.5, Cornish-Fisher expansion of the t quantile.
+ * </li>
+ * </ul>
+ * </p>
+ */
+final class Quantiles {
+    /**
+     * Number of entries in the cache. Must be a power of two.
+     */
+    private final static int CACHE_SIZE = 256;
+    private final static Entry[] cache = new Entry[CACHE_SIZE];
+    /**
+     * The Student's t quantile is computed with the Cornish-Fisher expansion
+     * instead of the incomplete beta function if
+     * {@code df ≥ max(CORNISH_FISHER_DF, CORNISH_FISHER_DF_PER_Z2·z²)}.
+     */
+    private final static double CORNISH_FISHER_DF = 1000;
+    private final static double CORNISH_FISHER_DF_PER_Z2 = 256;
+
+    private Quantiles() {
+        // prevent instantiation
+    }
+
+    /**
+     * An immutable cache entry.
+     */
+    private static class Entry {
+        final double p;
+        final double df;
+        final double value;
+
+        Entry(double p, double df, double value) {
+            this.p = p;
+            this.df = df;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Evaluates the inverse of the cumulative normal distribution function
+     * of {@code expected value = 0, variance = 1}.
+     *
+     * @param p the probability in (0, 1)
+     * @return the quantile
+     * @throws IllegalArgumentException if p is not in (0, 1)
+     */
+    static double normal(double p) {
+        return studentT(p, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Evaluates the inverse of the cumulative Student's t-distribution
+     * function.
+     * <p>
+     * A Student's t-distribution with infinite degrees of freedom is
+     * the normal distribution.
+     *
+     * @param p  the probability in (0, 1)
+     * @param df the degrees of freedom &gt; 0, may be non-integral or infinite
+     * @return the quantile
+     * @throws IllegalArgumentException if p is not in (0, 1) or df is not positive
+     */
+    static double studentT(double p, double df) {
+        long bits = Double.doubleToLongBits(p) * 31 + Double.doubleToLongBits(df);
+        int index = (int) ((bits * 0x9E3779B97F4A7C15L) >>> 56) & (CACHE_SIZE - 1);
+        Entry entry = cache[index];
+        if (entry != null && entry.p == p && entry.df == df) {
+            return entry.value;
+        }
+        if (!(p > 0 && p < 1)) {
+            throw new IllegalArgumentException("p must be in (0, 1), p=" + p);
+        }
+        if (!(df > 0)) {
+            throw new IllegalArgumentException("df must be positive, df=" + df);
+        }
+        double value = df == Double.POSITIVE_INFINITY ? computeNormal(p) : computeStudentT(p, df);
+        cache[index] = new Entry(p, df, value);
+        return value;
+    }
+
+    /**
+     * Evaluates the cumulative Student's t-distribution function.
+     *
+     * @param t  the value
+     * @param df the degrees of freedom &gt; 0, may be non-integral or infinite
+     * @return the probability {@code P(T ≤ t)}
+     */
+    static double studentTCdf(double t, double df) {
+        if (df == Double.POSITIVE_INFINITY) {
+            return normalCdf(t);
+        }
+        double tail = studentTTail(abs(t), df);
+        return t < 0 ? tail : 1 - tail;
+    }
+
+    /**
+     * Evaluates the cumulative normal distribution function of
+     * {@code expected value = 0, variance = 1}.
+     *
+     * @param x the value
+     * @return the probability {@code P(X ≤ x)}
+     */
+    static double normalCdf(double x) {
+        // P(X ≤ x) = 0.5·Q(0.5, x²/2) for x < 0, where Q is the
+        // regularized upper incomplete gamma function.
+        double tail = 0.5 * regularizedGammaQ(0.5, 0.5 * x * x);
+        return x < 0 ? tail : 1 - tail;
+    }
+
+    /**
+     * Returns the upper tail {@code P(T > t)} for {@code t ≥ 0} and finite
+     * degrees of freedom.
+     * <p>
+     * Unlike {@code 1 - studentTCdf(t, df)}, this does not lose precision
+     * for small tails.
+     */
+    static double studentTTail(double t, double df) {
+        double t2 = t * t;
+        // 1 - x is computed directly, it would lose all digits for small t
+        return 0.5 * regularizedBeta(df / (df + t2), t2 / (df + t2), 0.5 * df, 0.5);
+    }
+
+    /**
+     * Algorithm AS 241, PPND16.
+     */
+    private static double computeNormal(double p) {
+        double q = p - 0.5;
+        double r;
+        if (abs(q) <= 0.425) {
+            r = 0.180625 - q * q;
+            return q * (((((((2.5090809287301226727e+3 * r
+                    + 3.3430575583588128105e+4) * r
+                    + 6.7265770927008700853e+4) * r
+                    + 4.5921953931549871457e+4) * r
+                    + 1.3731693765509461125e+4) * r
+                    + 1.9715909503065514427e+3) * r
+                    + 1.3314166789178437745e+2) * r
+                    + 3.3871328727963666080e0)
+                    / (((((((5.2264952788528545610e+3 * r
+                    + 2.8729085735721942674e+4) * r
+                    + 3.9307895800092710610e+4) * r
+                    + 2.1213794301586595867e+4) * r
+                    + 5.3941960214247511077e+3) * r
+                    + 6.8718700749205790830e+2) * r
+                    + 4.2313330701600911252e+1) * r
+                    + 1.0);
+        }
+        r = q < 0 ? p : 1 - p;
+        r = sqrt(-log(r));
+        double value;
+        if (r <= 5) {
+            r -= 1.6;
+            value = (((((((7.74545014278341407640e-4 * r
+                    + 2.27238449892691845833e-2) * r
+                    + 2.41780725177450611770e-1) * r
+                    + 1.27045825245236838258e0) * r
+                    + 3.64784832476320460504e0) * r
+                    + 5.76949722146069140550e0) * r
+                    + 4.63033784615654529590e0) * r
+                    + 1.42343711074968357734e0)
+                    / (((((((1.05075007164441684324e-9 * r
+                    + 5.47593808499534494600e-4) * r
+                    + 1.51986665636164571966e-2) * r
+                    + 1.48103976427480074590e-1) * r
+                    + 6.89767334985100004550e-1) * r
+                    + 1.67638483018380384940e0) * r
+                    + 2.05319162663775882187e0) * r
+                    + 1.0);
+        } else {
+            r -= 5;
+            value = (((((((2.01033439929228813265e-7 * r
+                    + 2.71155556874348757815e-5) * r
+                    + 1.24266094738807843860e-3) * r
+                    + 2.65321895265761230930e-2) * r
+                    + 2.96560571828504891230e-1) * r
+                    + 1.78482653991729133580e0) * r
+                    + 5.46378491116411436990e0) * r
+                    + 6.65790464350110377720e0)
+                    / (((((((2.04426310338993978564e-15 * r
+                    + 1.42151175831644588870e-7) * r
+                    + 1.84631831751005468180e-5) * r
+                    + 7.86869131145613259100e-4) * r
+                    + 1.48753612908506148525e-2) * r
+                    + 1.36929880922735805310e-1) * r
+                    + 5.99832206555887937690e-1) * r
+                    + 1.0);
+        }
+        return q < 0 ? -value : value;
+    }
+
+    /**
+     * Computes an initial approximation with Hill's algorithm 396, and
+     * refines it with Newton iterations on the cumulative distribution
+     * function.
+     * <p>
+     * For large degrees of freedom, the differences of {@link #logGamma}
+     * in the incomplete beta function lose digits, so that the result would
+     * fall below the normal quantile. The quantile is then computed with
+     * the Cornish-Fisher expansion around the normal quantile instead.
+     */
+    private static double computeStudentT(double p, double df) {
+        if (df >= CORNISH_FISHER_DF) {
+            double z = computeNormal(p);
+            if (df >= CORNISH_FISHER_DF_PER_Z2 * z * z) {
+                return cornishFisher(z, df);
+            }
+        }
+        boolean upper = p > 0.5;
+        double tail = upper ? 1 - p : p;
+        if (tail == 0.5) {
+            return 0.0;
+        }
+
+        double t;
+        if (df == 1) {
+            t = cos(PI * tail) / sin(PI * tail);
+        } else if (df == 2) {
+            double twoTail = 2 * tail;
+            t = sqrt(2 / (twoTail * (2 - twoTail)) - 2);
+        } else if (df < 1) {
+            t = bisect(tail, df);
+        } else {
+            t = hill(2 * tail, df);
+            double logNorm = logGamma(0.5 * (df + 1)) - logGamma(0.5 * df) - 0.5 * log(df * PI);
+            for (int i = 0; i < 8; i++) {
+                double pdf = exp(logNorm - 0.5 * (df + 1) * Math.log1p(t * t / df));
+                double delta = (studentTTail(t, df) - tail) / pdf;
+                t += delta;
+                if (abs(delta) <= 1e-14 * abs(t)) {
+                    break;
+                }
+            }
+        }
+        return upper ? t : -t;
+    }
+
+    /**
+     * Cornish-Fisher expansion of the Student's t quantile around the
+     * normal quantile {@code z}, with the terms up to {@code df^-4}.
+     * <p>
+     * The next term is about {@code 7.3·10^-5·z^11/df^5}, which is below
+     * the precision of a double for {@code df ≥ 256·z²}.
+     */
+    private static double cornishFisher(double z, double df) {
+        double z2 = z * z;
+        double g1 = (z2 + 1) * z / 4;
+        double g2 = ((5 * z2 + 16) * z2 + 3) * z / 96;
+        double g3 = (((3 * z2 + 19) * z2 + 17) * z2 - 15) * z / 384;
+        double g4 = ((((79 * z2 + 776) * z2 + 1482) * z2 - 1920) * z2 - 945) * z / 92160;
+        return z + (g1 + (g2 + (g3 + g4 / df) / df) / df) / df;
+    }
+
+    /**
+     * Finds the value {@code t > 0} with {@code P(T > t) = tail} by geometric
+     * bisection on the upper tail.
+     * <p>
+     * This is used for {@code df < 1}, where the start value of Hill's
+     * algorithm is not valid, and the tails are so heavy that Newton
+     * iterations overshoot. The bracket {@code [lo, 2·lo]} is found by
+     * doubling or halving from 1, and is then halved geometrically until
+     * it is narrower than the precision of a double.
+     */
+    private static double bisect(double tail, double df) {
+        double lo = 1, hi = 1;
+        if (studentTTail(1, df) > tail) {
+            do {
+                lo = hi;
+                hi *= 2;
+            } while (studentTTail(hi, df) > tail && hi < Double.MAX_VALUE);
+        } else {
+            do {
+                hi = lo;
+                lo *= 0.5;
+            } while (studentTTail(lo, df) < tail && lo > Double.MIN_NORMAL);
+        }
+        for (int i = 0; i < 64 && hi - lo > 0x1p-52 * hi; i++) {
+            double mid = sqrt(lo) * sqrt(hi);
+            if (studentTTail(mid, df) > tail) {
+                lo = mid;
+            } else {
+                hi = mid;
+            }
+        }
+        return 0.5 * (lo + hi);
+    }
+
+    /**
+     * Hill's algorithm 396 for the upper quantile of the two-tailed
+     * probability {@code twoTail}.
+     */
+    private static double hill(double twoTail, double n) {
+        double a = 1 / (n - 0.5);
+        double b = 48 / (a * a);
+        double c = ((20700 * a / b - 98) * a - 16) * a + 96.36;
+        double d = ((94.5 / (b + c) - 3) / b + 1) * sqrt(a * PI / 2) * n;
+        double x = d * twoTail;
+        double y = pow(x, 2 / n);
+        if (y > 0.05 + a) {
+            x = computeNormal(0.5 * twoTail);
+            y = x * x;
+            if (n < 5) {
+                c += 0.3 * (n - 4.5) * (x + 0.6);
+            }
+            c = (((0.05 * d * x - 5) * x - 7) * x - 2) * x + b + c;
+            y = (((((0.4 * y + 6.3) * y + 36) * y + 94.5) / c - y - 3) / b + 1) * x;
+            y = expm1(a * y * y);
+        } else {
+            y = ((1 / (((n + 6) / (n * y) - 0.089 * d - 0.822) * (n + 2) * 3)
+                    + 0.5 / (n + 4)) * y - 1) * (n + 1) / (n + 2) + 1 / y;
+        }
+        return sqrt(n * y);
+    }
+
+    /**
+     * Lanczos approximation of {@code log(Γ(x))} for {@code x > 0}.
+     */
+    static double logGamma(double x) {
+        if (x < 0.5) {
+            // Reflection formula
+            return log(PI / abs(sin(PI * x))) - logGamma(1 - x);
+        }
+        x -= 1;
+        double sum = 0.99999999999980993;
+        sum += 676.5203681218851 / (x + 1);
+        sum += -1259.1392167224028 / (x + 2);
+        sum += 771.32342877765313 / (x + 3);
+        sum += -176.61502916214059 / (x + 4);
+        sum += 12.507343278686905 / (x + 5);
+        sum += -0.13857109526572012 / (x + 6);
+        sum += 9.9843695780195716e-6 / (x + 7);
+        sum += 1.5056327351493116e-7 / (x + 8);
+        double t = x + 7.5;
+        return 0.5 * log(2 * PI) + (x + 0.5) * log(t) - t + log(sum);
+    }
+
+    /**
+     * Regularized incomplete beta function {@code I_x(a, b)}.
+     *
+     * @param x the value
+     * @param y {@code 1 - x}, computed without cancellation by the caller
+     * @param a the first shape parameter
+     * @param b the second shape parameter
+     */
+    static double regularizedBeta(double x, double y, double a, double b) {
+        if (x <= 0) {
+            return 0.0;
+        }
+        if (y <= 0) {
+            return 1.0;
+        }
+        double front = exp(logGamma(a + b) - logGamma(a) - logGamma(b)
+                + a * log(x) + b * log(y));
+        if (x < (a + 1) / (a + b + 2)) {
+            return front * betaContinuedFraction(x, a, b) / a;
+        } else {
+            return 1 - front * betaContinuedFraction(y, b, a) / b;
+        }
+    }
+
+    /**
+     * Evaluates the continued fraction of the incomplete beta function
+     * with the modified Lentz method.
+     */
+    private static double betaContinuedFraction(double x, double a, double b) {
+        final double tiny = 1e-300;
+        double qab = a + b;
+        double qap = a + 1;
+        double qam = a - 1;
+        double c = 1;
+        double d = 1 - qab * x / qap;
+        if (abs(d) < tiny) {
+            d = tiny;
+        }
+        d = 1 / d;
+        double h = d;
+        for (int m = 1; m <= 1000; m++) {
+            int m2 = 2 * m;
+            double aa = m * (b - m) * x / ((qam + m2) * (a + m2));
+            d = 1 + aa * d;
+            if (abs(d) < tiny) {
+                d = tiny;
+            }
+            c = 1 + aa / c;
+            if (abs(c) < tiny) {
+                c = tiny;
+            }
+            d = 1 / d;
+            h *= d * c;
+            aa = -(a + m) * (qab + m) * x / ((a + m2) * (qap + m2));
+            d = 1 + aa * d;
+            if (abs(d) < tiny) {
+                d = tiny;
+            }
+            c = 1 + aa / c;
+            if (abs(c) < tiny) {
+                c = tiny;
+            }
+            d = 1 / d;
+            double del = d * c;
+            h *= del;
+            if (abs(del - 1) < 1e-16) {
+                break;
+            }
+        }
+        return h;
+    }
+
+    /**
+     * Regularized upper incomplete gamma function {@code Q(a, x)}.
+     */
+    static double regularizedGammaQ(double a, double x) {
+        if (x <= 0) {
+            return 1.0;
+        }
+        double logFront = -x + a * log(x) - logGamma(a);
+        if (x < a + 1) {
+            // Series representation of P(a, x)
+            double ap = a;
+            double del = 1 / a;
+            double sum = del;
+            for (int n = 1; n <= 1000; n++) {
+                ap += 1;
+                del *= x / ap;
+                sum += del;
+                if (abs(del) < abs(sum) * 1e-16) {
+                    break;
+                }
+            }
+            return 1 - sum * exp(logFront);
+        } else {
+            // Continued fraction representation of Q(a, x)
+            final double tiny = 1e-300;
+            double b = x + 1 - a;
+            double c = 1 / tiny;
+            double d = 1 / b;
+            double h = d;
+            for (int i = 1; i <= 1000; i++) {
+                double an = -i * (i - a);
+                b += 2;
+                d = an * d + b;
+                if (abs(d) < tiny) {
+                    d = tiny;
+                }
+                c = b + an / c;
+                if (abs(c) < tiny) {
+                    c = tiny;
+                }
+                d = 1 / d;
+                double del = d * c;
+                h *= del;
+                if (abs(del - 1) < 1e-16) {
+                    break;
+                }
+            }
+            return exp(logFront) * h;
+        }
+    }
+}
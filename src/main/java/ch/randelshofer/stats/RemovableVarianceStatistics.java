@@ -0,0 +1,237 @@
+/*
+ * @(#)RemovableVarianceStatistics.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.stats;
+
+import java.util.Arrays;
+import java.util.function.DoubleConsumer;
+
+import static java.lang.Math.sqrt;
+
+/**
+ * This collector computes count, sum, average, sample variance and
+ * population variance of a sample from which values can be removed again.
+ * <p>
+ * This is useful for rolling-window statistics over a series: each step
+ * adds the newest value and removes the oldest value in constant time.
+ * <p>
+ * The collector uses the "Computing shifted data" algorithm: it keeps
+ * {@code Σ(x-K)} and {@code Σ(x-K)²}, where the shift {@code K} is the
+ * first value of the sample. Both sums are computed with the Neumaier
+ * compensation algorithm, so that they stay accurate after millions of
+ * add and remove cycles.
+ * <p>
+ * Minimum and maximum can not be maintained when values are removed,
+ * and are therefore not provided.
+ * <p>
+ * Usage with a sliding window:
+ * <pre>
+ * RemovableVarianceStatistics stats = new RemovableVarianceStatistics();
+ * for (int i = 0; i &lt; series.length; i++) {
+ *     stats.accept(series[i]);
+ *     if (i &gt;= window) {
+ *         stats.remove(series[i - window]);
+ *     }
+ * }
+ * </pre>
+ *
+ * <p>
+ * References:
+ * <ul>
+ * <li>Algorithms for calculating variance.<br>
+ * Wikipedia.
+ * <a href="https://en.wikipedia.org/wiki/Algorithms_for_calculating_variance#Computing_shifted_data">link</a>
+ * </li>
+ * </ul>
+ * </p>
+ */
+public class RemovableVarianceStatistics implements DoubleConsumer {
+    private final static int SUM = 0, SQUARE = 1;
+    private long count;
+    /**
+     * The shift {@code K}.
+     */
+    private double shift;
+    /**
+     * The sums {@code Σ(x-K)} and {@code Σ(x-K)²}, and their compensations.
+     */
+    private final double[] sums = new double[2];
+    private final double[] compensations = new double[2];
+
+    /**
+     * Creates a new instance with an empty sample.
+     */
+    public RemovableVarianceStatistics() {
+    }
+
+    /**
+     * Adds a value to the sample.
+     *
+     * @param value a new value
+     */
+    @Override
+    public void accept(double value) {
+        if (count == 0) {
+            reset(value);
+        }
+        count++;
+        double d = value - shift;
+        addToSum(d);
+        addToSumOfSquare(d * d);
+    }
+
+    /**
+     * Removes a value from the sample.
+     *
+     * @param value a value that has been added before
+     */
+    public void remove(double value) {
+        count--;
+        if (count <= 0) {
+            reset(0.0);
+            count = 0;
+            return;
+        }
+        double d = value - shift;
+        addToSum(-d);
+        addToSumOfSquare(-d * d);
+    }
+
+    /**
+     * Combines the state of another {@code RemovableVarianceStatistics} into this one.
+     *
+     * @param other another {@code RemovableVarianceStatistics}
+     * @return this
+     */
+    public RemovableVarianceStatistics combine(RemovableVarianceStatistics other) {
+        if (other.count == 0) {
+            return this;
+        }
+        if (count == 0) {
+            reset(other.shift);
+        }
+        // Re-shift the sums of the other sample from its shift to our shift,
+        // see ShiftedVarianceStatistics.
+        double delta = other.shift - shift;
+        double otherSum = other.sums[SUM] + other.compensations[SUM];
+        addToSumOfSquare(other.sums[SQUARE]);
+        addToSumOfSquare(other.compensations[SQUARE]);
+        addToSumOfSquare(2 * delta * otherSum);
+        addToSumOfSquare(other.count * delta * delta);
+        addToSum(other.sums[SUM]);
+        addToSum(other.compensations[SUM]);
+        addToSum(other.count * delta);
+        count += other.count;
+        return this;
+    }
+
+    private void reset(double newShift) {
+        shift = newShift;
+        Arrays.fill(sums, 0.0);
+        Arrays.fill(compensations, 0.0);
+    }
+
+    /**
+     * Performs the Neumaier Sum algorithm on {@code Σ(x-K)}.
+     */
+    private void addToSum(double input) {
+        DoubleSum.sumWithCompensation(sums, compensations, SUM, input);
+    }
+
+    /**
+     * Performs the Neumaier Sum algorithm on {@code Σ(x-K)²}.
+     */
+    private void addToSumOfSquare(double input) {
+        DoubleSum.sumWithCompensation(sums, compensations, SQUARE, input);
+    }
+
+    /**
+     * Returns the number of values in the sample.
+     *
+     * @return the count
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the sum of the values in the sample.
+     *
+     * @return the sum, or zero if the sample is empty
+     */
+    public double getSum() {
+        return count * shift + (sums[SUM] + compensations[SUM]);
+    }
+
+    /**
+     * Returns the arithmetic mean of the sample.
+     *
+     * @return the average, or zero if the sample is empty
+     */
+    public double getAverage() {
+        return count > 0 ? shift + (sums[SUM] + compensations[SUM]) / count : 0.0d;
+    }
+
+    /**
+     * Returns the sum of the squared deviations from the mean.
+     */
+    private double getSumOfSquaredDeviations() {
+        double s = sums[SUM] + compensations[SUM];
+        return Math.max(0.0, (sums[SQUARE] + compensations[SQUARE]) - s * s / count);
+    }
+
+    /**
+     * Returns the (unbiased) variance {@code s^2} of the sample.
+     *
+     * @return the variance of the sample, or zero if the sample
+     * contains less than two values
+     */
+    public double getSampleVariance() {
+        return count > 1 ? getSumOfSquaredDeviations() / (count - 1) : 0.0d;
+    }
+
+    /**
+     * Returns the standard deviation {@code stdev} of the sample.
+     *
+     * @return the standard deviation of the sample
+     */
+    public double getSampleStandardDeviation() {
+        return sqrt(getSampleVariance());
+    }
+
+    /**
+     * Returns the variance {@code s^2} of the population.
+     * <p>
+     * Use this method only if the entire population has been sampled.
+     *
+     * @return the variance of the population
+     */
+    public double getPopulationVariance() {
+        return count > 0 ? getSumOfSquaredDeviations() / count : 0.0d;
+    }
+
+    /**
+     * Returns the standard deviation {@code stdev} of the population.
+     * <p>
+     * Use this method only if the entire population has been sampled.
+     *
+     * @return the standard deviation of the population
+     */
+    public double getPopulationStandardDeviation() {
+        return sqrt(getPopulationVariance());
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "%s{count=%d, sum=%f, avg=%f, stdevs=%f, stdevp=%f}",
+                this.getClass().getSimpleName(),
+                getCount(),
+                getSum(),
+                getAverage(),
+                getSampleStandardDeviation(),
+                getPopulationStandardDeviation()
+        );
+    }
+}
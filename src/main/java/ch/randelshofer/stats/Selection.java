@@ -0,0 +1,134 @@
+/*
+ * @(#)Selection.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.stats;
+
+import java.util.Arrays;
+
+/**
+ * Selection algorithms for order statistics of an array of doubles.
+ * <p>
+ * The algorithms rearrange the values in place. NaN values are not
+ * supported.
+ * <p>
+ * References:
+ * <ul>
+ * <li>C. A. R. Hoare. Algorithm 65: find.<br>
+ * Communications of the ACM 4(7), 321–322 (1961).
+ * </li>
+ * <li>David R. Musser. Introspective Sorting and Selection Algorithms.<br>
+ * Software: Practice and Experience 27(8), 983–993 (1997).
+ * </li>
+ * </ul>
+ * </p>
+ */
+final class Selection {
+    /**
+     * Ranges up to this size are sorted instead of partitioned.
+     */
+    private final static int SORT_THRESHOLD = 16;
+
+    private Selection() {
+        // prevent instantiation
+    }
+
+    /**
+     * Rearranges {@code a[from]} (inclusive) to {@code a[to]} (exclusive),
+     * so that {@code a[k]} is the value that would be at index {@code k}
+     * if the range was sorted. All values before {@code k} are less than
+     * or equal to {@code a[k]}, all values after {@code k} are greater
+     * than or equal to {@code a[k]}.
+     * <p>
+     * This is Hoare's quickselect with a median-of-three pivot. If the
+     * partitions do not shrink fast enough, the remaining range is sorted,
+     * so that the worst case is {@code O(n·log n)}.
+     *
+     * @param a    an array
+     * @param from the index of the first value (inclusive)
+     * @param to   the index of the last value (exclusive)
+     * @param k    the index of the value to select, in {@code [from, to)}
+     * @return {@code a[k]}
+     */
+    static double select(double[] a, int from, int to, int k) {
+        int lo = from, hi = to - 1;
+        int budget = 2 * (32 - Integer.numberOfLeadingZeros(to - from));
+        while (hi - lo >= SORT_THRESHOLD) {
+            if (--budget < 0) {
+                break;
+            }
+            int mid = (lo + hi) >>> 1;
+            // Median of three: a[lo] <= a[mid] <= a[hi]
+            if (a[mid] < a[lo]) {
+                swap(a, lo, mid);
+            }
+            if (a[hi] < a[lo]) {
+                swap(a, lo, hi);
+            }
+            if (a[hi] < a[mid]) {
+                swap(a, mid, hi);
+            }
+            double pivot = a[mid];
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (a[i] < pivot) {
+                    i++;
+                }
+                while (pivot < a[j]) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(a, i++, j--);
+                }
+            }
+            // Now a[lo..j] <= pivot, a[i..hi] >= pivot, and a[j+1..i-1] == pivot.
+            if (k <= j) {
+                hi = j;
+            } else if (k >= i) {
+                lo = i;
+            } else {
+                return a[k];
+            }
+        }
+        Arrays.sort(a, lo, hi + 1);
+        return a[k];
+    }
+
+    /**
+     * Returns the {@code p}-quantile of {@code a[from]} (inclusive) to
+     * {@code a[to]} (exclusive), and rearranges the values.
+     * <p>
+     * The quantile is interpolated linearly between the order statistics
+     * {@code x[floor(h)]} and {@code x[floor(h) + 1]} with
+     * {@code h = p·(n - 1)}. This is definition 7 of Hyndman and Fan,
+     * which is also used by R and NumPy by default.
+     *
+     * @param a    an array
+     * @param from the index of the first value (inclusive)
+     * @param to   the index of the last value (exclusive), greater than from
+     * @param p    the probability in [0, 1]
+     * @return the quantile
+     */
+    static double quantile(double[] a, int from, int to, double p) {
+        double h = p * (to - from - 1);
+        int k = from + (int) h;
+        double lower = select(a, from, to, k);
+        double fraction = h - (int) h;
+        if (fraction == 0.0) {
+            return lower;
+        }
+        // After the selection, the next order statistic is the minimum
+        // of the values after k.
+        double upper = a[k + 1];
+        for (int i = k + 2; i < to; i++) {
+            upper = Math.min(upper, a[i]);
+        }
+        return lower + fraction * (upper - lower);
+    }
+
+    private static void swap(double[] a, int i, int j) {
+        double t = a[i];
+        a[i] = a[j];
+        a[j] = t;
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * @(#)SequentialComparator.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.stats;
+
+/**
+ * Compares the means of two samples that grow incrementally, and decides
+ * when enough values have been collected.
+ * <p>
+ * The comparator is done when the confidence interval of the difference
+ * of the means excludes zero, or when the half-width of the confidence
+ * interval falls below a target width. The confidence interval is computed
+ * with Welch's t-test, see {@link WelchTest}.
+ * <p>
+ * Looking at the data after every new value, and stopping as soon as the
+ * interval excludes zero, would inflate the error rate far beyond
+ * {@code alpha}. Therefore, each call of {@link #test()} is a look that
+ * spends a part of {@code alpha}: look {@code k} uses the significance level
+ * {@code alpha / (k·(k+1))}. Since these levels add up to {@code alpha},
+ * the probability of deciding {@link Decision#DIFFERENT} for two samples
+ * with equal means is at most {@code alpha}, no matter how many looks are
+ * taken. Looks are cheap, but each one makes the following intervals a
+ * little wider, so it pays to look after batches of values.
+ * <p>
+ * Usage for an A/B comparison of two builds:
+ * <pre>
+ * SequentialComparator cmp = new SequentialComparator(0.05, 0.01 * baselineMean, 5);
+ * SequentialComparator.Decision decision;
+ * do {
+ *     for (int i = 0; i &lt; 5; i++) {
+ *         cmp.acceptA(runBaseline());
+ *         cmp.acceptB(runCandidate());
+ *     }
+ *     decision = cmp.test();
+ * } while (decision == SequentialComparator.Decision.CONTINUE &amp;&amp; cmp.getLooks() &lt; 50);
+ * </pre>
+ *
+ * <p>
+ * References:
+ * <ul>
+ * <li>Christopher Jennison, Bruce W. Turnbull. Group Sequential Methods
+ * with Applications to Clinical Trials.<br>
+ * Chapman &amp; Hall/CRC (2000).
+ * </li>
+ * </ul>
+ * </p>
+ */
+public class SequentialComparator {
+    /**
+     * The decision after a look at the samples.
+     */
+    public enum Decision {
+        /**
+         * More values are needed.
+         */
+        CONTINUE,
+        /**
+         * The confidence interval of the difference excludes zero:
+         * the means are different.
+         */
+        DIFFERENT,
+        /**
+         * The confidence interval of the difference includes zero, but
+         * is narrower than the target width: any difference is smaller
+         * than the target width.
+         */
+        PRECISE
+    }
+
+    private final double alpha;
+    private final double targetHalfWidth;
+    private final long minCount;
+    private final VarianceStatistics a = new VarianceStatistics();
+    private final VarianceStatistics b = new VarianceStatistics();
+    private int looks;
+    private double confidence = Double.POSITIVE_INFINITY;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param alpha           the overall significance level in (0, 1)
+     * @param targetHalfWidth the half-width of the confidence interval of
+     *                        the difference, below which the comparator is
+     *                        done; 0 to stop only on a difference
+     * @param minCount        the minimal number of values in each sample,
+     *                        before a look is taken; at least 2
+     * @throws IllegalArgumentException if a parameter is out of range
+     */
+    public SequentialComparator(double alpha, double targetHalfWidth, long minCount) {
+        if (!(alpha > 0 && alpha < 1)) {
+            throw new IllegalArgumentException("alpha must be in (0, 1), alpha=" + alpha);
+        }
+        if (!(targetHalfWidth >= 0)) {
+            throw new IllegalArgumentException("targetHalfWidth must not be negative, targetHalfWidth=" + targetHalfWidth);
+        }
+        if (minCount < 2) {
+            throw new IllegalArgumentException("minCount must be at least 2, minCount=" + minCount);
+        }
+        this.alpha = alpha;
+        this.targetHalfWidth = targetHalfWidth;
+        this.minCount = minCount;
+    }
+
+    /**
+     * Adds a value to sample A.
+     *
+     * @param value a new value
+     */
+    public void acceptA(double value) {
+        a.accept(value);
+    }
+
+    /**
+     * Adds a value to sample B.
+     *
+     * @param value a new value
+     */
+    public void acceptB(double value) {
+        b.accept(value);
+    }
+
+    /**
+     * Takes a look at the samples and decides whether more values are
+     * needed.
+     * <p>
+     * If one of the samples has less than {@code minCount} values, this
+     * method returns {@link Decision#CONTINUE} without taking a look.
+     *
+     * @return the decision
+     */
+    public Decision test() {
+        if (a.getCount() < minCount || b.getCount() < minCount) {
+            return Decision.CONTINUE;
+        }
+        looks++;
+        WelchTest welch = new WelchTest(a, b);
+        confidence = welch.getConfidence(getLookAlpha());
+        if (Math.abs(welch.getDifference()) > confidence) {
+            return Decision.DIFFERENT;
+        }
+        if (confidence < targetHalfWidth) {
+            return Decision.PRECISE;
+        }
+        return Decision.CONTINUE;
+    }
+
+    /**
+     * Returns the significance level of the last look:
+     * {@code alpha / (k·(k+1))} for look {@code k}.
+     *
+     * @return the significance level of the last look, or {@code alpha}
+     * if no look has been taken yet
+     */
+    public double getLookAlpha() {
+        return looks == 0 ? alpha : alpha / ((double) looks * (looks + 1));
+    }
+
+    /**
+     * Returns the number of looks that have been taken.
+     *
+     * @return the number of looks
+     */
+    public int getLooks() {
+        return looks;
+    }
+
+    /**
+     * Returns the confidence value of the last look.
+     *
+     * @return the value {@code c} for constructing the confidence interval
+     * {@code [ difference - c , difference + c ] }, or infinity if no look
+     * has been taken yet
+     */
+    public double getConfidence() {
+        return confidence;
+    }
+
+    /**
+     * Returns the difference of the means {@code meanA - meanB}.
+     *
+     * @return the difference
+     */
+    public double getDifference() {
+        return a.getAverage() - b.getAverage();
+    }
+
+    /**
+     * Returns sample A. The returned object is the live sample of this
+     * comparator.
+     *
+     * @return sample A
+     */
+    public VarianceStatistics getA() {
+        return a;
+    }
+
+    /**
+     * Returns sample B. The returned object is the live sample of this
+     * comparator.
+     *
+     * @return sample B
+     */
+    public VarianceStatistics getB() {
+        return b;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "%s{countA=%d, countB=%d, difference=%f, confidence=%f, looks=%d}",
+                this.getClass().getSimpleName(),
+                a.getCount(),
+                b.getCount(),
+                getDifference(),
+                getConfidence(),
+                getLooks()
+        );
+    }
+}
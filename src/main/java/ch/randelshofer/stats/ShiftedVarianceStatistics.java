@@ -0,0 +1,209 @@
+/*
+ * @(#)ShiftedVarianceStatistics.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.stats;
+
+import java.util.function.DoubleConsumer;
+
+import static java.lang.Math.sqrt;
+
+/**
+ * This collector computes count, sum, min, max, average, sample variance
+ * and population variance with the "Computing shifted data" algorithm.
+ * <p>
+ * The first value of the sample is used as the shift {@code K}.
+ * All state is kept in primitive fields: count, min, max, {@code K},
+ * {@code Σ(x-K)} and {@code Σ(x-K)²}. Since the shift is close to the mean,
+ * the variance does not suffer from catastrophic cancellation if the mean
+ * is large compared to the standard deviation.
+ * <p>
+ * Usage with a double stream:
+ * <pre>
+ * ShiftedVarianceStatistics stats = doubleStream.collect(ShiftedVarianceStatistics::new,
+ *                                               ShiftedVarianceStatistics::accept,
+ *                                               ShiftedVarianceStatistics::combine);
+ * </pre>
+ *
+ * <p>
+ * References:
+ * <ul>
+ * <li>Algorithms for calculating variance.<br>
+ * Wikipedia.
+ * <a href="https://en.wikipedia.org/wiki/Algorithms_for_calculating_variance#Computing_shifted_data">link</a>
+ * </li>
+ * </ul>
+ * </p>
+ */
+public class ShiftedVarianceStatistics implements DoubleConsumer {
+    private long count;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    /**
+     * The shift {@code K}.
+     */
+    private double shift;
+    /**
+     * The sum of {@code x - K}.
+     */
+    private double sumOfShifted;
+    /**
+     * The sum of {@code (x - K)²}.
+     */
+    private double sumOfShiftedSquare;
+
+    /**
+     * Creates a new instance with an empty sample.
+     */
+    public ShiftedVarianceStatistics() {
+    }
+
+    /**
+     * Adds a value to the sample.
+     *
+     * @param value a new value
+     */
+    @Override
+    public void accept(double value) {
+        if (count == 0) {
+            shift = value;
+        }
+        count++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        double d = value - shift;
+        sumOfShifted += d;
+        sumOfShiftedSquare += d * d;
+    }
+
+    /**
+     * Combines the state of another {@code ShiftedVarianceStatistics} into this one.
+     *
+     * @param other another {@code ShiftedVarianceStatistics}
+     * @return this
+     */
+    public ShiftedVarianceStatistics combine(ShiftedVarianceStatistics other) {
+        if (other.count == 0) {
+            return this;
+        }
+        if (count == 0) {
+            shift = other.shift;
+        }
+        // Re-shift the sums of the other sample from its shift to our shift:
+        // Σ(x-K) = Σ(x-Ko) + n·δ
+        // Σ(x-K)² = Σ(x-Ko)² + 2·δ·Σ(x-Ko) + n·δ²
+        // with δ = Ko - K.
+        double delta = other.shift - shift;
+        sumOfShiftedSquare += other.sumOfShiftedSquare
+                + 2 * delta * other.sumOfShifted
+                + other.count * delta * delta;
+        sumOfShifted += other.sumOfShifted + other.count * delta;
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        return this;
+    }
+
+    /**
+     * Returns the number of values in the sample.
+     *
+     * @return the count
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the sum of the values in the sample.
+     *
+     * @return the sum, or zero if the sample is empty
+     */
+    public double getSum() {
+        return count * shift + sumOfShifted;
+    }
+
+    /**
+     * Returns the minimum of the sample.
+     *
+     * @return the minimum, or {@code Double.POSITIVE_INFINITY} if the sample is empty
+     */
+    public double getMin() {
+        return min;
+    }
+
+    /**
+     * Returns the maximum of the sample.
+     *
+     * @return the maximum, or {@code Double.NEGATIVE_INFINITY} if the sample is empty
+     */
+    public double getMax() {
+        return max;
+    }
+
+    /**
+     * Returns the arithmetic mean of the sample.
+     *
+     * @return the average, or zero if the sample is empty
+     */
+    public double getAverage() {
+        return count > 0 ? shift + sumOfShifted / count : 0.0d;
+    }
+
+    /**
+     * Returns the (unbiased) variance {@code s^2} of the sample.
+     *
+     * @return the variance of the sample, or zero if the sample
+     * contains less than two values
+     */
+    public double getSampleVariance() {
+        long n = count;
+        return n > 1 ? (sumOfShiftedSquare - sumOfShifted * sumOfShifted / n) / (n - 1) : 0.0d;
+    }
+
+    /**
+     * Returns the standard deviation {@code stdev} of the sample.
+     *
+     * @return the standard deviation of the sample
+     */
+    public double getSampleStandardDeviation() {
+        return sqrt(getSampleVariance());
+    }
+
+    /**
+     * Returns the variance {@code s^2} of the population.
+     * <p>
+     * Use this method only if the entire population has been sampled.
+     *
+     * @return the variance of the population
+     */
+    public double getPopulationVariance() {
+        long n = count;
+        return n > 0 ? (sumOfShiftedSquare - sumOfShifted * sumOfShifted / n) / n : 0.0d;
+    }
+
+    /**
+     * Returns the standard deviation {@code stdev} of the population.
+     * <p>
+     * Use this method only if the entire population has been sampled.
+     *
+     * @return the standard deviation of the population
+     */
+    public double getPopulationStandardDeviation() {
+        return sqrt(getPopulationVariance());
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "%s{count=%d, sum=%f, min=%f, avg=%f, max=%f, stdevs=%f, stdevp=%f}",
+                this.getClass().getSimpleName(),
+                getCount(),
+                getSum(),
+                getMin(),
+                getAverage(),
+                getMax(),
+                getSampleStandardDeviation(),
+                getPopulationStandardDeviation()
+        );
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * @(#)Snapshots.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.stats;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Helper functions for the binary snapshot format of the accumulators.
+ * <p>
+ * A snapshot starts with a header of two big-endian shorts: the type of the
+ * accumulator and the version of the format. The header is followed by the
+ * fixed-width state of the accumulator as big-endian longs and doubles.
+ * The byte order of the buffer is ignored, so that snapshots can be
+ * exchanged between any two machines.
+ */
+final class Snapshots {
+    /**
+     * The current version of the snapshot format.
+     */
+    final static short VERSION = 1;
+    /**
+     * The number of bytes of the header.
+     */
+    final static int HEADER_BYTES = 2 * Short.BYTES;
+
+    private Snapshots() {
+        // prevent instantiation
+    }
+
+    /**
+     * Writes the header of a snapshot.
+     *
+     * @param buf   the buffer
+     * @param type  the type of the accumulator
+     * @param bytes the total number of bytes of the snapshot
+     * @throws BufferOverflowException if the buffer has not enough space
+     *                                 remaining for the entire snapshot
+     */
+    static void putHeader(ByteBuffer buf, short type, int bytes) {
+        if (buf.remaining() < bytes) {
+            throw new BufferOverflowException();
+        }
+        putShort(buf, type);
+        putShort(buf, VERSION);
+    }
+
+    /**
+     * Reads and checks the header of a snapshot.
+     * <p>
+     * The position of the buffer is only advanced if the header is valid.
+     *
+     * @param buf   the buffer
+     * @param type  the expected type of the accumulator
+     * @param bytes the total number of bytes of the snapshot
+     * @throws BufferUnderflowException if the buffer has fewer bytes remaining
+     *                                  than the entire snapshot
+     * @throws IllegalArgumentException if the type or the version do not match
+     */
+    static void getHeader(ByteBuffer buf, short type, int bytes) {
+        if (buf.remaining() < bytes) {
+            throw new BufferUnderflowException();
+        }
+        int position = buf.position();
+        short actualType = getShort(buf, position);
+        short actualVersion = getShort(buf, position + Short.BYTES);
+        if (actualType != type || actualVersion != VERSION) {
+            throw new IllegalArgumentException(String.format(
+                    "unsupported snapshot: type=0x%04x, version=%d, expected type=0x%04x, version=%d",
+                    actualType, actualVersion, type, VERSION));
+        }
+        buf.position(position + HEADER_BYTES);
+    }
+
+    static void putLong(ByteBuffer buf, long value) {
+        buf.putLong(buf.order() == ByteOrder.BIG_ENDIAN ? value : Long.reverseBytes(value));
+    }
+
+    static long getLong(ByteBuffer buf) {
+        long value = buf.getLong();
+        return buf.order() == ByteOrder.BIG_ENDIAN ? value : Long.reverseBytes(value);
+    }
+
+    static void putDouble(ByteBuffer buf, double value) {
+        putLong(buf, Double.doubleToRawLongBits(value));
+    }
+
+    static double getDouble(ByteBuffer buf) {
+        return Double.longBitsToDouble(getLong(buf));
+    }
+
+    private static void putShort(ByteBuffer buf, short value) {
+        buf.putShort(buf.order() == ByteOrder.BIG_ENDIAN ? value : Short.reverseBytes(value));
+    }
+
+    private static short getShort(ByteBuffer buf, int index) {
+        short value = buf.getShort(index);
+        return buf.order() == ByteOrder.BIG_ENDIAN ? value : Short.reverseBytes(value);
+    }
+}
@@ -0,0 +1,320 @@
+/*
+ * @(#)StatisticsAggregator.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.stats;
+
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Aggregates the values of many {@link Flow.Publisher}s into one
+ * {@link VarianceStatistics}, and publishes snapshots of it downstream.
+ * <p>
+ * Each upstream publisher gets its own {@link StatisticsSubscriber}, which
+ * adds the values into a local batch without synchronization. A batch is
+ * combined into the aggregate when it has reached the batch size, when an
+ * item arrives after the maximal batch delay has elapsed, or when the
+ * upstream publisher completes. Only these combines take a lock, so many
+ * producers aggregate with little contention.
+ * <p>
+ * After each combine, a snapshot of the aggregate is offered to the
+ * downstream subscribers. Each downstream subscriber has a slot for the
+ * latest snapshot: a new snapshot replaces a snapshot that has not been
+ * delivered yet, since it supersedes it. A slow subscriber therefore
+ * receives only the latest snapshot when it requests the next item, and
+ * never a backlog of stale ones. A new subscriber receives the current
+ * aggregate, if it is not empty.
+ * <p>
+ * Usage:
+ * <pre>
+ * StatisticsAggregator aggregator = new StatisticsAggregator(1024, 1, TimeUnit.SECONDS);
+ * aggregator.subscribe(dashboard);
+ * // for each connection:
+ * connectionPublisher.subscribe(aggregator.newDoubleSubscriber());
+ * </pre>
+ */
+public class StatisticsAggregator implements Flow.Publisher<VarianceStatistics>, AutoCloseable {
+    private final int batchSize;
+    private final long maxBatchDelayNanos;
+    private final int requestSize;
+    /**
+     * The aggregate. Guarded by itself.
+     */
+    private final VarianceStatistics aggregate = new VarianceStatistics();
+    private final Executor executor;
+    private final CopyOnWriteArrayList<SnapshotSubscription> subscriptions = new CopyOnWriteArrayList<>();
+    /**
+     * Whether the aggregator has been closed. Guarded by the aggregate.
+     */
+    private boolean closed;
+
+    /**
+     * Creates a new instance, which delivers snapshots with the common
+     * fork-join pool.
+     *
+     * @param batchSize     the maximal number of values in a batch
+     * @param maxBatchDelay the maximal time between the first value of a
+     *                      batch and the combine of the batch, see
+     *                      {@link #StatisticsAggregator(int, long, TimeUnit, Executor)}
+     * @param unit          the time unit of maxBatchDelay
+     * @throws IllegalArgumentException if batchSize or maxBatchDelay is not positive
+     */
+    public StatisticsAggregator(int batchSize, long maxBatchDelay, TimeUnit unit) {
+        this(batchSize, maxBatchDelay, unit, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a new instance.
+     * <p>
+     * The maximal batch delay is checked when an item arrives, since a
+     * {@link StatisticsSubscriber} only runs in the signals of its upstream
+     * publisher. If a publisher falls silent, its partial batch is combined
+     * with its next item, or when it completes or fails. Upstream publishers
+     * that may fall silent for long should complete, or send items at
+     * least once per delay.
+     *
+     * @param batchSize     the maximal number of values in a batch,
+     *                      also the number of items that a subscriber
+     *                      requests from its upstream publisher at a time
+     * @param maxBatchDelay the maximal time between the first value of a
+     *                      batch and the combine of the batch, while the
+     *                      upstream publisher keeps sending items
+     * @param unit          the time unit of maxBatchDelay
+     * @param executor      the executor that delivers snapshots downstream
+     * @throws IllegalArgumentException if batchSize or maxBatchDelay is not positive
+     */
+    public StatisticsAggregator(int batchSize, long maxBatchDelay, TimeUnit unit, Executor executor) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive, batchSize=" + batchSize);
+        }
+        if (maxBatchDelay <= 0) {
+            throw new IllegalArgumentException("maxBatchDelay must be positive, maxBatchDelay=" + maxBatchDelay);
+        }
+        this.batchSize = batchSize;
+        this.maxBatchDelayNanos = unit.toNanos(maxBatchDelay);
+        this.requestSize = batchSize;
+        this.executor = Objects.requireNonNull(executor, "executor");
+    }
+
+    /**
+     * Creates a new subscriber for a publisher of single values.
+     *
+     * @return a new subscriber
+     */
+    public StatisticsSubscriber<Double> newDoubleSubscriber() {
+        return new StatisticsSubscriber<>(this, (batch, value) -> {
+            batch.accept(value);
+            return 1;
+        }, batchSize, maxBatchDelayNanos, requestSize);
+    }
+
+    /**
+     * Creates a new subscriber for a publisher of arrays of values.
+     * <p>
+     * The values of an array are added with
+     * {@link VarianceStatistics#acceptAll(double[], int, int)}.
+     * The batch size counts values, not arrays.
+     *
+     * @return a new subscriber
+     */
+    public StatisticsSubscriber<double[]> newArraySubscriber() {
+        return new StatisticsSubscriber<>(this, (batch, values) -> {
+            batch.acceptAll(values, 0, values.length);
+            return values.length;
+        }, batchSize, maxBatchDelayNanos, requestSize);
+    }
+
+    /**
+     * Combines a batch into the aggregate, and offers a snapshot downstream.
+     *
+     * @param batch a batch
+     */
+    void combine(VarianceStatistics batch) {
+        synchronized (aggregate) {
+            aggregate.combine(batch);
+            if (!closed && !subscriptions.isEmpty()) {
+                // Offer under the lock, so that an older snapshot can not
+                // replace a newer one.
+                VarianceStatistics snapshot = new VarianceStatistics();
+                snapshot.combine(aggregate);
+                for (SnapshotSubscription subscription : subscriptions) {
+                    subscription.offer(snapshot);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns a snapshot of the aggregate. The snapshot contains all
+     * batches that have been combined so far.
+     *
+     * @return a new {@code VarianceStatistics}
+     */
+    public VarianceStatistics getSnapshot() {
+        VarianceStatistics snapshot = new VarianceStatistics();
+        synchronized (aggregate) {
+            snapshot.combine(aggregate);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Subscribes a downstream subscriber to the snapshots.
+     * <p>
+     * If the aggregator has been closed, the subscriber is completed.
+     *
+     * @param subscriber the subscriber
+     */
+    @Override
+    public void subscribe(Flow.Subscriber<? super VarianceStatistics> subscriber) {
+        SnapshotSubscription subscription = new SnapshotSubscription(Objects.requireNonNull(subscriber, "subscriber"));
+        synchronized (aggregate) {
+            if (closed) {
+                subscription.complete();
+            } else {
+                subscriptions.add(subscription);
+                if (aggregate.getCount() > 0) {
+                    VarianceStatistics snapshot = new VarianceStatistics();
+                    snapshot.combine(aggregate);
+                    subscription.offer(snapshot);
+                }
+            }
+        }
+        subscription.signal();
+    }
+
+    /**
+     * Completes the downstream subscribers. A snapshot that a subscriber
+     * has not requested yet is dropped. Batches that are combined later
+     * are still added to the aggregate, but no longer published.
+     */
+    @Override
+    public void close() {
+        synchronized (aggregate) {
+            closed = true;
+            for (SnapshotSubscription subscription : subscriptions) {
+                subscription.complete();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "%s{batchSize=%d, aggregate=%s}",
+                this.getClass().getSimpleName(),
+                batchSize,
+                getSnapshot()
+        );
+    }
+
+    /**
+     * The subscription of a downstream subscriber, with a slot for the
+     * latest snapshot.
+     * <p>
+     * All signals to the subscriber are sent by {@link #run()}, which is
+     * executed by the executor, and never runs concurrently with itself.
+     */
+    private final class SnapshotSubscription implements Flow.Subscription, Runnable {
+        private final Flow.Subscriber<? super VarianceStatistics> subscriber;
+        private final AtomicReference<VarianceStatistics> latest = new AtomicReference<>();
+        private final AtomicLong demand = new AtomicLong();
+        /**
+         * The number of signals that {@link #run()} has not processed yet.
+         */
+        private final AtomicInteger pendingSignals = new AtomicInteger();
+        private volatile boolean completed;
+        private volatile boolean cancelled;
+        private volatile IllegalArgumentException requestError;
+        /**
+         * Whether onSubscribe has been sent. Only accessed by {@link #run()}.
+         */
+        private boolean subscribed;
+
+        SnapshotSubscription(Flow.Subscriber<? super VarianceStatistics> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        void offer(VarianceStatistics snapshot) {
+            latest.set(snapshot);
+            signal();
+        }
+
+        void complete() {
+            completed = true;
+            signal();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                requestError = new IllegalArgumentException("n must be positive, n=" + n);
+            } else {
+                demand.getAndAccumulate(n, (d, m) -> d + m < 0 ? Long.MAX_VALUE : d + m);
+            }
+            signal();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+        }
+
+        void signal() {
+            if (pendingSignals.getAndIncrement() == 0) {
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            int signals = 1;
+            do {
+                try {
+                    drain();
+                } catch (Throwable t) {
+                    // The subscriber violated the rule that its methods
+                    // return normally.
+                    cancel();
+                }
+                signals = pendingSignals.addAndGet(-signals);
+            } while (signals != 0);
+        }
+
+        private void drain() {
+            if (cancelled) {
+                return;
+            }
+            if (!subscribed) {
+                subscribed = true;
+                subscriber.onSubscribe(this);
+            }
+            if (requestError != null) {
+                cancel();
+                subscriber.onError(requestError);
+                return;
+            }
+            while (!cancelled && demand.get() > 0) {
+                VarianceStatistics snapshot = latest.getAndSet(null);
+                if (snapshot == null) {
+                    break;
+                }
+                demand.getAndUpdate(d -> d == Long.MAX_VALUE ? d : d - 1);
+                subscriber.onNext(snapshot);
+            }
+            if (completed && !cancelled) {
+                cancel();
+                subscriber.onComplete();
+            }
+        }
+    }
+}
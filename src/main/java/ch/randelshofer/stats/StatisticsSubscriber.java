@@ -0,0 +1,133 @@
+/*
+ * @(#)StatisticsSubscriber.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.stats;
+
+import java.util.Objects;
+import java.util.concurrent.Flow;
+
+/**
+ * A subscriber that adds the values of one {@link Flow.Publisher} into
+ * local batches, and combines them into a {@link StatisticsAggregator}.
+ * <p>
+ * Instances are created with {@link StatisticsAggregator#newDoubleSubscriber()}
+ * and {@link StatisticsAggregator#newArraySubscriber()}. Like every
+ * {@code Flow.Subscriber}, an instance can only be subscribed to one
+ * publisher.
+ * <p>
+ * The subscriber requests a batch worth of items with
+ * {@link Flow.Subscription#request(long)}, and requests more items when
+ * half of them have been received, so that at most {@code batchSize}
+ * items are outstanding. The batch is combined into the aggregator
+ * when it is full, when the maximal batch delay has elapsed at the arrival
+ * of an item, and when the publisher completes or fails.
+ *
+ * @param <T> the item type
+ */
+public class StatisticsSubscriber<T> implements Flow.Subscriber<T> {
+    /**
+     * Adds an item to a batch.
+     */
+    interface Adder<T> {
+        /**
+         * Adds an item to a batch.
+         *
+         * @param batch the batch
+         * @param item  the item
+         * @return the number of values in the item
+         */
+        int add(VarianceStatistics batch, T item);
+    }
+
+    private final StatisticsAggregator aggregator;
+    private final Adder<T> adder;
+    private final int batchSize;
+    private final long maxBatchDelayNanos;
+    private final int requestSize;
+    private Flow.Subscription subscription;
+    private VarianceStatistics batch = new VarianceStatistics();
+    private long batchCount;
+    private long batchStartNanos;
+    private long outstanding;
+    private volatile boolean done;
+    private volatile Throwable error;
+
+    StatisticsSubscriber(StatisticsAggregator aggregator, Adder<T> adder,
+                         int batchSize, long maxBatchDelayNanos, int requestSize) {
+        this.aggregator = aggregator;
+        this.adder = adder;
+        this.batchSize = batchSize;
+        this.maxBatchDelayNanos = maxBatchDelayNanos;
+        this.requestSize = requestSize;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        Objects.requireNonNull(subscription, "subscription");
+        if (this.subscription != null) {
+            subscription.cancel();
+            return;
+        }
+        this.subscription = subscription;
+        outstanding = requestSize;
+        subscription.request(requestSize);
+    }
+
+    @Override
+    public void onNext(T item) {
+        Objects.requireNonNull(item, "item");
+        if (batchCount == 0) {
+            batchStartNanos = System.nanoTime();
+        }
+        batchCount += adder.add(batch, item);
+        if (batchCount >= batchSize || System.nanoTime() - batchStartNanos >= maxBatchDelayNanos) {
+            flush();
+        }
+        if (--outstanding <= requestSize / 2) {
+            long n = requestSize - outstanding;
+            outstanding = requestSize;
+            subscription.request(n);
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        flush();
+        error = throwable;
+        done = true;
+    }
+
+    @Override
+    public void onComplete() {
+        flush();
+        done = true;
+    }
+
+    private void flush() {
+        if (batchCount > 0) {
+            aggregator.combine(batch);
+            batch = new VarianceStatistics();
+            batchCount = 0;
+        }
+    }
+
+    /**
+     * Returns true if the publisher has completed or failed. All values
+     * have been combined into the aggregator when this method returns true.
+     *
+     * @return true if done
+     */
+    public boolean isDone() {
+        return done;
+    }
+
+    /**
+     * Returns the error with which the publisher has failed.
+     *
+     * @return the error, or null if the publisher has not failed
+     */
+    public Throwable getError() {
+        return error;
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * @(#)SummationMode.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.stats;
+
+/**
+ * The algorithm that a {@link DoubleSum} uses to add up values.
+ * <p>
+ * The modes trade speed for accuracy. In the error bounds below,
+ * {@code ε = 2^-53}, {@code n} is the number of values, and
+ * {@code Σ|x|} is the sum of the absolute values. The relative error
+ * of the sum is the absolute error divided by {@code |Σx|}, which can
+ * be arbitrarily large if the values cancel each other out.
+ * <p>
+ * References:
+ * <ul>
+ * <li>Nicholas J. Higham. The accuracy of floating point summation.<br>
+ * SIAM Journal on Scientific Computing 14(4), 783–799 (1993).
+ * </li>
+ * <li>Jonathan Richard Shewchuk. Adaptive Precision Floating-Point
+ * Arithmetic and Fast Robust Geometric Predicates.<br>
+ * Discrete &amp; Computational Geometry 18, 305–363 (1997).
+ * </li>
+ * <li>Raymond Hettinger. Binary floating point summation accurate to
+ * full precision.<br>
+ * Python Recipe 393090.
+ * <a href="https://code.activestate.com/recipes/393090/">link</a>
+ * </li>
+ * </ul>
+ * </p>
+ */
+public enum SummationMode {
+    /**
+     * Plain floating point addition.
+     * <p>
+     * The fastest mode. The absolute error is at most
+     * {@code (n-1)·ε·Σ|x|}.
+     */
+    NAIVE,
+    /**
+     * Pairwise summation.
+     * <p>
+     * Blocks of 128 values are added up naively, and the sums of the blocks
+     * are added up in a binary tree. The absolute error is at most
+     * {@code (128 + log2(n/128))·ε·Σ|x|}. For arrays, this is nearly as
+     * fast as {@link #NAIVE}. Adding values one by one gives bit-identical
+     * results to adding them as an array.
+     */
+    PAIRWISE,
+    /**
+     * Kahan compensated summation.
+     * <p>
+     * The absolute error is at most {@code 2·ε·Σ|x| + O(n·ε²)·Σ|x|}.
+     * The compensation is lost if a value is larger than the running sum.
+     */
+    KAHAN,
+    /**
+     * Neumaier compensated summation, the default.
+     * <p>
+     * The absolute error is at most {@code ε·|Σx| + O(n·ε²)·Σ|x|}.
+     * Unlike {@link #KAHAN}, the compensation also works if a value is
+     * larger than the running sum.
+     */
+    NEUMAIER,
+    /**
+     * Double-double summation.
+     * <p>
+     * The sum is kept as the unevaluated sum of two doubles, which is
+     * renormalized after every addition. This gives about 106 bits of
+     * precision for the running sum. Unlike the compensation of
+     * {@link #NEUMAIER}, the low part does not accumulate the rounding
+     * errors of plain additions.
+     */
+    DOUBLE_DOUBLE,
+    /**
+     * Exactly rounded summation with Shewchuk's algorithm.
+     * <p>
+     * The sum is kept as a list of non-overlapping partial sums, which
+     * represent the exact sum. The result is the exact sum rounded to the
+     * nearest double, unless an intermediate sum overflows, in which case
+     * the result is infinite. The list has a few partial sums for typical
+     * data, but can grow to about 40 partial sums if the values span the
+     * whole exponent range.
+     */
+    EXACT
+}
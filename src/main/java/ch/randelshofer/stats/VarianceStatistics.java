@@ -4,7 +4,12 @@
  */
 package ch.randelshofer.stats;
 
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
 import java.util.DoubleSummaryStatistics;
+import java.util.Objects;
 
 import static java.lang.Math.sqrt;
 
@@ -30,10 +35,100 @@ import static java.lang.Math.sqrt;
  * </p>
  */
 public class VarianceStatistics extends DoubleSummaryStatistics {
+    /**
+     * The number of bytes of a snapshot, see {@link #writeTo(ByteBuffer)}.
+     */
+    public final static int SNAPSHOT_BYTES = Snapshots.HEADER_BYTES + Long.BYTES + 5 * Double.BYTES;
+    /**
+     * The type of the snapshot: "VS".
+     */
+    private final static short SNAPSHOT_TYPE = 0x5653;
     /** We use e DoubleSummaryStatistics here, because it can sum
      * doubles with compensation.
      */
-    private final DoubleSum sumOfSquare = new DoubleSum();
+    private final DoubleSum sumOfSquare;
+
+    /**
+     * Creates a new instance with an empty sample, that adds up the
+     * squares with the {@link SummationMode#NEUMAIER} algorithm.
+     */
+    public VarianceStatistics() {
+        this(SummationMode.NEUMAIER);
+    }
+
+    /**
+     * Creates a new instance with an empty sample, that adds up the
+     * squares with the specified algorithm.
+     * <p>
+     * The sum of the values is always computed by
+     * {@link DoubleSummaryStatistics}. In {@link SummationMode#EXACT} mode,
+     * the squares are computed exactly with {@link Math#fma}, so that the
+     * sum of square is the exact sum of square rounded to the nearest double.
+     *
+     * @param mode the summation mode of the sum of square
+     */
+    public VarianceStatistics(SummationMode mode) {
+        sumOfSquare = new DoubleSum(mode);
+    }
+
+    /**
+     * Creates a new instance with the given state.
+     * <p>
+     * The values must satisfy the constraints of
+     * {@link DoubleSummaryStatistics#DoubleSummaryStatistics(long, double, double, double)}.
+     *
+     * @param count       the count
+     * @param min         the minimum
+     * @param max         the maximum
+     * @param sum         the sum
+     * @param sumOfSquare the sum of square
+     */
+    VarianceStatistics(long count, double min, double max, double sum, double sumOfSquare) {
+        super(count, min, max, sum);
+        this.sumOfSquare = new DoubleSum();
+        this.sumOfSquare.accept(sumOfSquare);
+    }
+
+    /**
+     * Creates a new instance from the state of a sample that has been
+     * accumulated with {@link DoubleSum#sumWithCompensation}.
+     * <p>
+     * Like {@link DoubleSummaryStatistics}, this falls back to the simple sum
+     * if the compensated sum is NaN, so that a sample with infinite values
+     * has the same sum, minimum and maximum as if the values had been added
+     * with {@link #accept(double)}.
+     *
+     * @param count        the count
+     * @param min          the minimum
+     * @param max          the maximum
+     * @param sum          the high part of the sum
+     * @param compensation the compensation of the sum
+     * @param simpleSum    the simple sum
+     * @param sumOfSquare  the sum of square, including its compensation
+     * @return a new instance
+     */
+    static VarianceStatistics fromSums(long count, double min, double max,
+                                       double sum, double compensation, double simpleSum,
+                                       double sumOfSquare) {
+        double s = sum + compensation;
+        if (Double.isNaN(s)) {
+            // The compensation is NaN if the sum is infinite.
+            s = simpleSum;
+        }
+        VarianceStatistics stats = new VarianceStatistics();
+        stats.combineSummary(count, min, max, s);
+        stats.sumOfSquare.accept(sumOfSquare);
+        return stats;
+    }
+
+    /**
+     * Returns the summation mode of the sum of square.
+     *
+     * @return the summation mode
+     */
+    public SummationMode getSummationMode() {
+        return sumOfSquare.getSummationMode();
+    }
 
     /**
      * Adds a value to the sample.
@@ -43,7 +138,295 @@ public class VarianceStatistics extends DoubleSummaryStatistics {
     @Override
     public void accept(double value) {
         super.accept(value);
-        sumOfSquare.accept(value*value);
+        sumOfSquare.acceptSquare(value);
+    }
+
+    /**
+     * Adds a value {@code count} times to the sample.
+     * <p>
+     * This takes constant time, regardless of the count. The count, the
+     * minimum and the maximum are identical to adding the value
+     * {@code count} times with {@link #accept(double)}. The sum and the sum
+     * of square are added as the products {@code count·value} and
+     * {@code count·value²}, which are rounded only once.
+     *
+     * @param value a new value
+     * @param count the number of occurrences of the value
+     * @throws IllegalArgumentException if count is negative
+     */
+    public void accept(double value, long count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("count must not be negative, count=" + count);
+        }
+        if (count == 0) {
+            return;
+        }
+        combineSummary(count, value, value, value * count);
+        sumOfSquare.acceptWeightedSquare(value, count);
+    }
+
+    /**
+     * Adds each value {@code values[i]} {@code counts[i]} times to the sample.
+     * <p>
+     * This takes linear time in the number of values, regardless of the
+     * counts. Values with a count of zero are ignored.
+     * See {@link #accept(double, long)}.
+     *
+     * @param values an array of values
+     * @param counts the number of occurrences of each value
+     * @throws IllegalArgumentException if the arrays have different lengths,
+     *                                  or if a count is negative
+     */
+    public void acceptAll(double[] values, long[] counts) {
+        if (values.length != counts.length) {
+            throw new IllegalArgumentException("values and counts must have the same length, values.length="
+                    + values.length + ", counts.length=" + counts.length);
+        }
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] < 0) {
+                throw new IllegalArgumentException("count must not be negative, counts[" + i + "]=" + counts[i]);
+            }
+        }
+        long count = 0;
+        double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+        DoubleSum sum = new DoubleSum();
+        double simpleSum = 0.0;
+        for (int i = 0; i < values.length; i++) {
+            long n = counts[i];
+            if (n == 0) {
+                continue;
+            }
+            double x = values[i];
+            double product = x * n;
+            count += n;
+            min = Math.min(min, x);
+            max = Math.max(max, x);
+            sum.sumWithCompensation(product);
+            simpleSum += product;
+            sumOfSquare.acceptWeightedSquare(x, n);
+        }
+        double s = sum.getSum();
+        if (Double.isNaN(s)) {
+            // Same as DoubleSummaryStatistics: the compensation is NaN if
+            // the sum is infinite.
+            s = simpleSum;
+        }
+        combineSummary(count, min, max, s);
+    }
+
+    /**
+     * Adds the values {@code a[from]} (inclusive) to {@code a[to]} (exclusive)
+     * to the sample.
+     * <p>
+     * The sum and the sum of square are computed in four independent lanes
+     * with the branch-free TwoSum algorithm, see
+     * {@link DoubleSum#acceptAll(double[], int, int)}. The result is not
+     * necessarily bit-identical to calling {@link #accept} for each value,
+     * but the sum and the sum of square have the same error bound:
+     * {@code 2·ε·|sum| + O(n·ε²)·Σ|a[i]|}, where {@code ε = 2^-53}.
+     * The count, the minimum and the maximum are exact.
+     * <p>
+     * If the sum of square uses a summation mode other than
+     * {@link SummationMode#NEUMAIER} or {@link SummationMode#DOUBLE_DOUBLE},
+     * the squares are added with the algorithm of that mode instead of the
+     * TwoSum lanes.
+     *
+     * @param a    an array of values
+     * @param from the index of the first value (inclusive)
+     * @param to   the index of the last value (exclusive)
+     * @throws IndexOutOfBoundsException if the range is out of bounds
+     */
+    public void acceptAll(double[] a, int from, int to) {
+        Objects.checkFromToIndex(from, to, a.length);
+        if (from == to) {
+            return;
+        }
+        double s0 = 0.0, s1 = 0.0, s2 = 0.0, s3 = 0.0;
+        double c0 = 0.0, c1 = 0.0, c2 = 0.0, c3 = 0.0;
+        double q0 = 0.0, q1 = 0.0, q2 = 0.0, q3 = 0.0;
+        double d0 = 0.0, d1 = 0.0, d2 = 0.0, d3 = 0.0;
+        double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+        int i = from;
+        for (int n = to - 3; i < n; i += 4) {
+            double x0 = a[i], x1 = a[i + 1], x2 = a[i + 2], x3 = a[i + 3];
+            min = Math.min(min, Math.min(Math.min(x0, x1), Math.min(x2, x3)));
+            max = Math.max(max, Math.max(Math.max(x0, x1), Math.max(x2, x3)));
+
+            double t0 = s0 + x0, t1 = s1 + x1, t2 = s2 + x2, t3 = s3 + x3;
+            double z0 = t0 - s0, z1 = t1 - s1, z2 = t2 - s2, z3 = t3 - s3;
+            c0 += (s0 - (t0 - z0)) + (x0 - z0);
+            c1 += (s1 - (t1 - z1)) + (x1 - z1);
+            c2 += (s2 - (t2 - z2)) + (x2 - z2);
+            c3 += (s3 - (t3 - z3)) + (x3 - z3);
+            s0 = t0;
+            s1 = t1;
+            s2 = t2;
+            s3 = t3;
+
+            double y0 = x0 * x0, y1 = x1 * x1, y2 = x2 * x2, y3 = x3 * x3;
+            double u0 = q0 + y0, u1 = q1 + y1, u2 = q2 + y2, u3 = q3 + y3;
+            double v0 = u0 - q0, v1 = u1 - q1, v2 = u2 - q2, v3 = u3 - q3;
+            d0 += (q0 - (u0 - v0)) + (y0 - v0);
+            d1 += (q1 - (u1 - v1)) + (y1 - v1);
+            d2 += (q2 - (u2 - v2)) + (y2 - v2);
+            d3 += (q3 - (u3 - v3)) + (y3 - v3);
+            q0 = u0;
+            q1 = u1;
+            q2 = u2;
+            q3 = u3;
+        }
+        for (; i < to; i++) {
+            double x0 = a[i];
+            min = Math.min(min, x0);
+            max = Math.max(max, x0);
+
+            double t0 = s0 + x0;
+            double z0 = t0 - s0;
+            c0 += (s0 - (t0 - z0)) + (x0 - z0);
+            s0 = t0;
+
+            double y0 = x0 * x0;
+            double u0 = q0 + y0;
+            double v0 = u0 - q0;
+            d0 += (q0 - (u0 - v0)) + (y0 - v0);
+            q0 = u0;
+        }
+
+        combineLanes(to - from, min, max, s0, s1, s2, s3, (c0 + c1) + (c2 + c3));
+
+        switch (sumOfSquare.getSummationMode()) {
+            case NEUMAIER:
+            case DOUBLE_DOUBLE:
+                sumOfSquare.accept(q0);
+                sumOfSquare.accept(q1);
+                sumOfSquare.accept(q2);
+                sumOfSquare.accept(q3);
+                sumOfSquare.accept(d0);
+                sumOfSquare.accept(d1);
+                sumOfSquare.accept(d2);
+                sumOfSquare.accept(d3);
+                break;
+            default:
+                sumOfSquare.acceptAllSquares(a, from, to);
+                break;
+        }
+    }
+
+    /**
+     * Adds all remaining values of the buffer to the sample.
+     * <p>
+     * Upon return, the position of the buffer is equal to its limit.
+     * If the buffer is not backed by an array, for example if it is a view
+     * of a memory mapped file, the values are read with
+     * {@link DoubleBuffer#get(int)} without copying them onto the heap.
+     * See {@link #acceptAll(double[], int, int)} for the error bound.
+     *
+     * @param b a buffer of values
+     */
+    public void acceptAll(DoubleBuffer b) {
+        int from = b.position(), to = b.limit();
+        if (b.hasArray()) {
+            int offset = b.arrayOffset();
+            acceptAll(b.array(), offset + from, offset + to);
+            b.position(to);
+            return;
+        }
+        if (from == to) {
+            return;
+        }
+        double s0 = 0.0, s1 = 0.0, s2 = 0.0, s3 = 0.0;
+        double c0 = 0.0, c1 = 0.0, c2 = 0.0, c3 = 0.0;
+        double q0 = 0.0, q1 = 0.0, q2 = 0.0, q3 = 0.0;
+        double d0 = 0.0, d1 = 0.0, d2 = 0.0, d3 = 0.0;
+        double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+        int i = from;
+        for (int n = to - 3; i < n; i += 4) {
+            double x0 = b.get(i), x1 = b.get(i + 1), x2 = b.get(i + 2), x3 = b.get(i + 3);
+            min = Math.min(min, Math.min(Math.min(x0, x1), Math.min(x2, x3)));
+            max = Math.max(max, Math.max(Math.max(x0, x1), Math.max(x2, x3)));
+
+            double t0 = s0 + x0, t1 = s1 + x1, t2 = s2 + x2, t3 = s3 + x3;
+            double z0 = t0 - s0, z1 = t1 - s1, z2 = t2 - s2, z3 = t3 - s3;
+            c0 += (s0 - (t0 - z0)) + (x0 - z0);
+            c1 += (s1 - (t1 - z1)) + (x1 - z1);
+            c2 += (s2 - (t2 - z2)) + (x2 - z2);
+            c3 += (s3 - (t3 - z3)) + (x3 - z3);
+            s0 = t0;
+            s1 = t1;
+            s2 = t2;
+            s3 = t3;
+
+            double y0 = x0 * x0, y1 = x1 * x1, y2 = x2 * x2, y3 = x3 * x3;
+            double u0 = q0 + y0, u1 = q1 + y1, u2 = q2 + y2, u3 = q3 + y3;
+            double v0 = u0 - q0, v1 = u1 - q1, v2 = u2 - q2, v3 = u3 - q3;
+            d0 += (q0 - (u0 - v0)) + (y0 - v0);
+            d1 += (q1 - (u1 - v1)) + (y1 - v1);
+            d2 += (q2 - (u2 - v2)) + (y2 - v2);
+            d3 += (q3 - (u3 - v3)) + (y3 - v3);
+            q0 = u0;
+            q1 = u1;
+            q2 = u2;
+            q3 = u3;
+        }
+        for (; i < to; i++) {
+            double x0 = b.get(i);
+            min = Math.min(min, x0);
+            max = Math.max(max, x0);
+
+            double t0 = s0 + x0;
+            double z0 = t0 - s0;
+            c0 += (s0 - (t0 - z0)) + (x0 - z0);
+            s0 = t0;
+
+            double y0 = x0 * x0;
+            double u0 = q0 + y0;
+            double v0 = u0 - q0;
+            d0 += (q0 - (u0 - v0)) + (y0 - v0);
+            q0 = u0;
+        }
+        combineLanes(to - from, min, max, s0, s1, s2, s3, (c0 + c1) + (c2 + c3));
+
+        switch (sumOfSquare.getSummationMode()) {
+            case NEUMAIER:
+            case DOUBLE_DOUBLE:
+                sumOfSquare.accept(q0);
+                sumOfSquare.accept(q1);
+                sumOfSquare.accept(q2);
+                sumOfSquare.accept(q3);
+                sumOfSquare.accept(d0);
+                sumOfSquare.accept(d1);
+                sumOfSquare.accept(d2);
+                sumOfSquare.accept(d3);
+                break;
+            default:
+                for (i = from; i < to; i++) {
+                    sumOfSquare.acceptSquare(b.get(i));
+                }
+                break;
+        }
+        b.position(to);
+    }
+
+    /**
+     * Folds the four lanes of the sum, and combines count, minimum, maximum
+     * and sum into the state of the super class.
+     *
+     * @param c the sum of the compensations of the lanes
+     */
+    private void combineLanes(long count, double min, double max,
+                              double s0, double s1, double s2, double s3, double c) {
+        // Add the rounding errors of the folding to the compensation.
+        double s01 = s0 + s1, s23 = s2 + s3, lanes = s01 + s23;
+        c += DoubleSum.twoSumError(s0, s1, s01)
+                + DoubleSum.twoSumError(s2, s3, s23)
+                + DoubleSum.twoSumError(s01, s23, lanes);
+        double sum = lanes + c;
+        if (Double.isNaN(sum)) {
+            // Same as DoubleSummaryStatistics: the compensation is NaN if
+            // the sum is infinite.
+            sum = lanes;
+        }
+        combineSummary(count, min, max, sum);
     }
 
     /**
@@ -58,6 +441,131 @@ public class VarianceStatistics extends DoubleSummaryStatistics {
         return this;
     }
 
+    /**
+     * Writes a snapshot of the state of this collector into the buffer.
+     * <p>
+     * The snapshot has a fixed width of {@link #SNAPSHOT_BYTES} bytes.
+     * It consists of a header with the type and the version of the format,
+     * followed by count, minimum, maximum, sum, and the sum of square with
+     * its compensation in big-endian byte order. The byte order of the
+     * buffer is ignored.
+     * <p>
+     * The compensation of the sum is private to
+     * {@link DoubleSummaryStatistics}. The sum is therefore written as
+     * {@link #getSum()}, which is the compensated sum rounded to a double.
+     * Count, minimum, maximum and the sum of square are written with their
+     * full internal state.
+     *
+     * @param buf the buffer
+     * @throws BufferOverflowException if the buffer has fewer than
+     *                                 {@link #SNAPSHOT_BYTES} bytes remaining
+     */
+    public void writeTo(ByteBuffer buf) {
+        Snapshots.putHeader(buf, SNAPSHOT_TYPE, SNAPSHOT_BYTES);
+        Snapshots.putLong(buf, getCount());
+        Snapshots.putDouble(buf, getMin());
+        Snapshots.putDouble(buf, getMax());
+        Snapshots.putDouble(buf, getSum());
+        sumOfSquare.writeState(buf);
+    }
+
+    /**
+     * Reads a snapshot that has been written by {@link #writeTo(ByteBuffer)}.
+     * <p>
+     * Combining the new instance gives bit-identical results to combining
+     * the instance that wrote the snapshot, except for the sum, where the
+     * rounding of the compensation may change the last bit.
+     *
+     * @param buf the buffer
+     * @return a new instance
+     * @throws BufferUnderflowException if the buffer has fewer than
+     *                                  {@link #SNAPSHOT_BYTES} bytes remaining
+     * @throws IllegalArgumentException if the buffer does not contain a
+     *                                  valid snapshot of this class and version
+     */
+    public static VarianceStatistics readFrom(ByteBuffer buf) {
+        Snapshots.getHeader(buf, SNAPSHOT_TYPE, SNAPSHOT_BYTES);
+        long count = Snapshots.getLong(buf);
+        double min = Snapshots.getDouble(buf);
+        double max = Snapshots.getDouble(buf);
+        double sum = Snapshots.getDouble(buf);
+        VarianceStatistics stats = new VarianceStatistics();
+        stats.combineSummary(count, min, max, sum);
+        stats.sumOfSquare.readState(buf);
+        return stats;
+    }
+
+    /**
+     * Reads all snapshots that remain in the buffer, and combines them
+     * into this collector.
+     * <p>
+     * This method allocates a constant number of objects, regardless of the
+     * number of snapshots. Count, minimum, maximum and the sum of square are
+     * bit-identical to combining each snapshot with
+     * {@code combine(VarianceStatistics.readFrom(buf))}. The sums of the
+     * snapshots are added up with the Neumaier algorithm before they are
+     * combined into this collector, this has the same error bound as
+     * combining them one by one.
+     *
+     * @param buf the buffer, must contain a sequence of snapshots
+     * @return this
+     * @throws BufferUnderflowException if the buffer ends with an incomplete snapshot
+     * @throws IllegalArgumentException if the buffer contains a snapshot
+     *                                  of another class or version
+     */
+    public VarianceStatistics combineAll(ByteBuffer buf) {
+        long count = 0;
+        double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+        DoubleSum sum = new DoubleSum();
+        double simpleSum = 0.0;
+        while (buf.hasRemaining()) {
+            Snapshots.getHeader(buf, SNAPSHOT_TYPE, SNAPSHOT_BYTES);
+            long n = Snapshots.getLong(buf);
+            if (n < 0) {
+                throw new IllegalArgumentException("negative count in snapshot: " + n);
+            }
+            count += n;
+            double snapshotMin = Snapshots.getDouble(buf);
+            double snapshotMax = Snapshots.getDouble(buf);
+            double snapshotSum = Snapshots.getDouble(buf);
+            min = Math.min(min, snapshotMin);
+            max = Math.max(max, snapshotMax);
+            sum.sumWithCompensation(snapshotSum);
+            simpleSum += snapshotSum;
+            sumOfSquare.accept(Snapshots.getDouble(buf));
+            sumOfSquare.accept(Snapshots.getDouble(buf));
+        }
+        double s = sum.getSum();
+        if (Double.isNaN(s)) {
+            // Same as DoubleSummaryStatistics: the compensation is NaN if
+            // the sum is infinite.
+            s = simpleSum;
+        }
+        combineSummary(count, min, max, s);
+        return this;
+    }
+
+    /**
+     * Combines count, minimum, maximum and sum into the state of the
+     * super class.
+     *
+     * @throws IllegalArgumentException if the values are inconsistent
+     */
+    private void combineSummary(long count, double min, double max, double sum) {
+        if (count == 0) {
+            return;
+        }
+        if (Double.isNaN(sum) && !Double.isNaN(min)) {
+            // The sample contains positive and negative infinity. We combine
+            // it as two parts with the sums +∞ and -∞, so that
+            // DoubleSummaryStatistics computes the NaN sum by itself.
+            super.combine(new DoubleSummaryStatistics(1, max, max, max));
+            super.combine(new DoubleSummaryStatistics(count - 1, min, max, min));
+        } else {
+            super.combine(new DoubleSummaryStatistics(count, min, max, sum));
+        }
+    }
+
     /**
      * Returns the sum of square of the sample.
      *
@@ -0,0 +1,394 @@
+/*
+ * @(#)WeightedVarianceStatistics.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.stats;
+
+import java.util.function.DoubleConsumer;
+
+import static java.lang.Math.sqrt;
+
+/**
+ * This collector computes the weighted mean, sample variance and population
+ * variance of values with non-negative weights.
+ * <p>
+ * The meaning of the weights determines the sample variance:
+ * <dl>
+ * <dt>{@link WeightType#FREQUENCY}</dt>
+ * <dd>A weight is the number of occurrences of a value, for example in a
+ * pre-aggregated histogram. The sample variance is the same as if each
+ * value had been added {@code weight} times, and the effective sample size
+ * is the sum of the weights {@code V1 = Σw}.</dd>
+ * <dt>{@link WeightType#RELIABILITY}</dt>
+ * <dd>A weight is the relative reliability of a value, for example the
+ * inverse of its variance. Only the ratios of the weights matter. The
+ * sample variance is {@code Σw(x-mean)² / (V1 - V2/V1)} with
+ * {@code V2 = Σw²}, and the effective sample size is Kish's
+ * {@code V1²/V2}.</dd>
+ * </dl>
+ * The population variance is {@code Σw(x-mean)² / V1} for both types.
+ * <p>
+ * The collector keeps the sums {@code Σw}, {@code Σw²}, {@code Σwx} and
+ * {@code Σwx²} with the Neumaier algorithm, like
+ * {@link VarianceStatistics}. Adding a weighted value takes constant
+ * time, regardless of the weight.
+ * <p>
+ * Usage:
+ * <pre>
+ * WeightedVarianceStatistics stats = new WeightedVarianceStatistics(WeightType.FREQUENCY);
+ * stats.acceptAll(values, weights);
+ * double c = stats.getConfidence(0.05);
+ * </pre>
+ * <p>
+ * References:
+ * <ul>
+ * <li>Weighted arithmetic mean.<br>
+ * Wikipedia.
+ * <a href="https://en.wikipedia.org/wiki/Weighted_arithmetic_mean#Weighted_sample_variance">link</a>
+ * </li>
+ * <li>Leslie Kish. Survey Sampling.<br>
+ * Wiley, New York (1965).
+ * </li>
+ * </ul>
+ * </p>
+ */
+public class WeightedVarianceStatistics implements DoubleConsumer {
+    /**
+     * The meaning of the weights.
+     */
+    public enum WeightType {
+        /**
+         * A weight is the number of occurrences of a value.
+         */
+        FREQUENCY,
+        /**
+         * A weight is the relative reliability of a value.
+         */
+        RELIABILITY
+    }
+
+    private final WeightType weightType;
+    private long count;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private final DoubleSum sumOfWeights = new DoubleSum();
+    private final DoubleSum sumOfSquaredWeights = new DoubleSum();
+    private final DoubleSum sum = new DoubleSum();
+    private final DoubleSum sumOfSquare = new DoubleSum();
+
+    /**
+     * Creates a new instance with an empty sample.
+     *
+     * @param weightType the meaning of the weights
+     */
+    public WeightedVarianceStatistics(WeightType weightType) {
+        this.weightType = weightType;
+    }
+
+    /**
+     * Returns the meaning of the weights.
+     *
+     * @return the weight type
+     */
+    public WeightType getWeightType() {
+        return weightType;
+    }
+
+    /**
+     * Adds a value with weight 1 to the sample.
+     *
+     * @param value a new value
+     */
+    @Override
+    public void accept(double value) {
+        accept(value, 1.0);
+    }
+
+    /**
+     * Adds a weighted value to the sample.
+     * <p>
+     * Values with weight zero are ignored.
+     *
+     * @param value  a new value
+     * @param weight the weight of the value
+     * @throws IllegalArgumentException if the weight is negative or not finite
+     */
+    public void accept(double value, double weight) {
+        if (!(weight >= 0 && weight < Double.POSITIVE_INFINITY)) {
+            throw new IllegalArgumentException("weight must be non-negative and finite, weight=" + weight);
+        }
+        if (weight == 0) {
+            return;
+        }
+        count++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        sumOfWeights.accept(weight);
+        sumOfSquaredWeights.acceptSquare(weight);
+        sum.acceptProduct(weight, value);
+        sumOfSquare.acceptWeightedSquare(value, weight);
+    }
+
+    /**
+     * Adds the values {@code values[i]} with the weights {@code weights[i]}
+     * to the sample.
+     *
+     * @param values  an array of values
+     * @param weights an array of weights
+     * @throws IllegalArgumentException if the arrays have different lengths,
+     *                                  or if a weight is negative or not finite
+     */
+    public void acceptAll(double[] values, double[] weights) {
+        if (values.length != weights.length) {
+            throw new IllegalArgumentException("values and weights must have the same length, values.length="
+                    + values.length + ", weights.length=" + weights.length);
+        }
+        for (int i = 0; i < weights.length; i++) {
+            double w = weights[i];
+            if (!(w >= 0 && w < Double.POSITIVE_INFINITY)) {
+                throw new IllegalArgumentException("weight must be non-negative and finite, weights[" + i + "]=" + w);
+            }
+        }
+        for (int i = 0; i < values.length; i++) {
+            accept(values[i], weights[i]);
+        }
+    }
+
+    /**
+     * Adds the values {@code values[i]} with the integer weights
+     * {@code counts[i]} to the sample.
+     *
+     * @param values an array of values
+     * @param counts an array of weights
+     * @throws IllegalArgumentException if the arrays have different lengths,
+     *                                  or if a weight is negative
+     */
+    public void acceptAll(double[] values, long[] counts) {
+        if (values.length != counts.length) {
+            throw new IllegalArgumentException("values and counts must have the same length, values.length="
+                    + values.length + ", counts.length=" + counts.length);
+        }
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] < 0) {
+                throw new IllegalArgumentException("count must not be negative, counts[" + i + "]=" + counts[i]);
+            }
+        }
+        for (int i = 0; i < values.length; i++) {
+            accept(values[i], counts[i]);
+        }
+    }
+
+    /**
+     * Combines the state of another {@code WeightedVarianceStatistics} into this one.
+     *
+     * @param other another {@code WeightedVarianceStatistics}
+     * @return this
+     * @throws IllegalArgumentException if the other instance has a different weight type
+     */
+    public WeightedVarianceStatistics combine(WeightedVarianceStatistics other) {
+        if (other.weightType != weightType) {
+            throw new IllegalArgumentException("other must have the same weight type, weightType="
+                    + weightType + ", other.weightType=" + other.weightType);
+        }
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        sumOfWeights.combine(other.sumOfWeights);
+        sumOfSquaredWeights.combine(other.sumOfSquaredWeights);
+        sum.combine(other.sum);
+        sumOfSquare.combine(other.sumOfSquare);
+        return this;
+    }
+
+    /**
+     * Returns the number of values with a positive weight in the sample.
+     *
+     * @return the count
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the minimum of the values with a positive weight.
+     *
+     * @return the minimum, or {@code Double.POSITIVE_INFINITY} if the sample is empty
+     */
+    public double getMin() {
+        return min;
+    }
+
+    /**
+     * Returns the maximum of the values with a positive weight.
+     *
+     * @return the maximum, or {@code Double.NEGATIVE_INFINITY} if the sample is empty
+     */
+    public double getMax() {
+        return max;
+    }
+
+    /**
+     * Returns the sum of the weights {@code V1 = Σw}.
+     *
+     * @return the sum of the weights
+     */
+    public double getSumOfWeights() {
+        return sumOfWeights.getSum();
+    }
+
+    /**
+     * Returns the sum of the squared weights {@code V2 = Σw²}.
+     *
+     * @return the sum of the squared weights
+     */
+    public double getSumOfSquaredWeights() {
+        return sumOfSquaredWeights.getSum();
+    }
+
+    /**
+     * Returns the weighted sum {@code Σwx}.
+     *
+     * @return the weighted sum
+     */
+    public double getSum() {
+        return sum.getSum();
+    }
+
+    /**
+     * Returns the weighted sum of square {@code Σwx²}.
+     *
+     * @return the weighted sum of square
+     */
+    public double getSumOfSquare() {
+        return sumOfSquare.getSum();
+    }
+
+    /**
+     * Returns the weighted arithmetic mean {@code Σwx / Σw}.
+     *
+     * @return the average, or zero if the sample is empty
+     */
+    public double getAverage() {
+        double v1 = getSumOfWeights();
+        return v1 > 0 ? getSum() / v1 : 0.0d;
+    }
+
+    /**
+     * Returns the weighted sum of the squared deviations from the mean
+     * {@code Σw(x-mean)²}.
+     */
+    private double getSumOfSquaredDeviations() {
+        double avg = getAverage();
+        return getSumOfSquare() - avg * avg * getSumOfWeights();
+    }
+
+    /**
+     * Returns the effective sample size.
+     * <p>
+     * For {@link WeightType#FREQUENCY} weights, this is the sum of the
+     * weights {@code V1}. For {@link WeightType#RELIABILITY} weights,
+     * this is Kish's effective sample size {@code V1²/V2}, which is equal
+     * to the count if all weights are equal, and smaller otherwise.
+     *
+     * @return the effective sample size, or zero if the sample is empty
+     */
+    public double getEffectiveSampleSize() {
+        double v1 = getSumOfWeights();
+        if (weightType == WeightType.FREQUENCY || v1 == 0) {
+            return v1;
+        }
+        return v1 * v1 / getSumOfSquaredWeights();
+    }
+
+    /**
+     * Returns the (unbiased) weighted variance {@code s^2} of the sample.
+     *
+     * @return the variance of the sample, or zero if the effective sample
+     * size is not larger than one
+     */
+    public double getSampleVariance() {
+        double v1 = getSumOfWeights();
+        double denominator = weightType == WeightType.FREQUENCY
+                ? v1 - 1
+                : v1 - (v1 > 0 ? getSumOfSquaredWeights() / v1 : 0.0d);
+        return getEffectiveSampleSize() > 1 ? getSumOfSquaredDeviations() / denominator : 0.0d;
+    }
+
+    /**
+     * Returns the weighted standard deviation {@code stdev} of the sample.
+     *
+     * @return the standard deviation of the sample
+     */
+    public double getSampleStandardDeviation() {
+        return sqrt(getSampleVariance());
+    }
+
+    /**
+     * Returns the weighted variance {@code s^2} of the population.
+     * <p>
+     * Use this method only if the entire population has been sampled.
+     *
+     * @return the variance of the population
+     */
+    public double getPopulationVariance() {
+        double v1 = getSumOfWeights();
+        return v1 > 0 ? getSumOfSquaredDeviations() / v1 : 0.0d;
+    }
+
+    /**
+     * Returns the weighted standard deviation {@code stdev} of the population.
+     * <p>
+     * Use this method only if the entire population has been sampled.
+     *
+     * @return the standard deviation of the population
+     */
+    public double getPopulationStandardDeviation() {
+        return sqrt(getPopulationVariance());
+    }
+
+    /**
+     * Returns the confidence value for the weighted mean, computed with
+     * the sample standard deviation and the effective sample size,
+     * see {@link Stats#confidence(double, double, double)}.
+     * <p>
+     * With reliability weights, a dominant weight makes the effective
+     * sample size small, for example {@code 1.41} for the weights
+     * {@code {10, 1, 1}}. The Student's t distribution is then evaluated
+     * with less than one degree of freedom, which gives a very wide, but
+     * finite interval. If the effective sample size is not larger than one,
+     * the spread of the sample is unknown, and the confidence value is
+     * infinite.
+     *
+     * @param alpha the significance level in (0, 1)
+     * @return the confidence value {@code c} for constructing the
+     * confidence interval {@code [mean - c, mean + c]}, or
+     * {@code Double.POSITIVE_INFINITY} if the effective sample size is
+     * not larger than one
+     * @throws IllegalArgumentException if alpha is not in (0, 1)
+     */
+    public double getConfidence(double alpha) {
+        Stats.checkAlpha(alpha);
+        double neff = getEffectiveSampleSize();
+        if (!(neff > 1)) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return Stats.confidence(alpha, getSampleStandardDeviation(), neff);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "%s{weightType=%s, count=%d, weights=%f, neff=%f, min=%f, avg=%f, max=%f, stdevs=%f, stdevp=%f}",
+                this.getClass().getSimpleName(),
+                getWeightType(),
+                getCount(),
+                getSumOfWeights(),
+                getEffectiveSampleSize(),
+                getMin(),
+                getAverage(),
+                getMax(),
+                getSampleStandardDeviation(),
+                getPopulationStandardDeviation()
+        );
+    }
+}
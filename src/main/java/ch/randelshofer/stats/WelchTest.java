@@ -0,0 +1,149 @@
+/*
+ * @(#)WelchTest.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.stats;
+
+import static java.lang.Math.abs;
+import static java.lang.Math.sqrt;
+
+/**
+ * The result of Welch's t-test, which tests whether two samples with
+ * possibly different variances have the same mean.
+ * <p>
+ * The test statistic is {@code t = (meanA - meanB) / se} with the standard
+ * error {@code se = sqrt(varA/nA + varB/nB)}. The degrees of freedom are
+ * estimated with the Welch–Satterthwaite equation, and are usually not
+ * integral. The p-value is computed from the cumulative Student's
+ * t-distribution with these degrees of freedom.
+ * <p>
+ * Usage:
+ * <pre>
+ * WelchTest test = Stats.welchTest(baseline, candidate);
+ * if (test.getPValue() &lt; 0.05) {
+ *     double c = test.getConfidence(0.05);
+ *     // the difference of the means is in [test.getDifference() - c, test.getDifference() + c]
+ * }
+ * </pre>
+ *
+ * <p>
+ * References:
+ * <ul>
+ * <li>Welch's t-test.<br>
+ * Wikipedia.
+ * <a href="https://en.wikipedia.org/wiki/Welch%27s_t-test">link</a>
+ * </li>
+ * </ul>
+ * </p>
+ */
+public final class WelchTest {
+    private final double difference;
+    private final double standardError;
+    private final double t;
+    private final double degreesOfFreedom;
+    private final double pValue;
+
+    /**
+     * Performs Welch's t-test on two samples.
+     *
+     * @param a the first sample
+     * @param b the second sample
+     * @throws IllegalArgumentException if a sample contains less than two values
+     */
+    WelchTest(VarianceStatistics a, VarianceStatistics b) {
+        if (a.getCount() < 2) {
+            throw new IllegalArgumentException("a must contain at least two values, a.count=" + a.getCount());
+        }
+        if (b.getCount() < 2) {
+            throw new IllegalArgumentException("b must contain at least two values, b.count=" + b.getCount());
+        }
+        long na = a.getCount(), nb = b.getCount();
+        double va = a.getSampleVariance() / na;
+        double vb = b.getSampleVariance() / nb;
+        difference = a.getAverage() - b.getAverage();
+        standardError = sqrt(va + vb);
+        if (va + vb > 0) {
+            degreesOfFreedom = (va + vb) * (va + vb) / (va * va / (na - 1) + vb * vb / (nb - 1));
+            t = difference / standardError;
+            pValue = Math.min(1.0, 2.0 * Quantiles.studentTTail(abs(t), degreesOfFreedom));
+        } else {
+            // Both samples are constant. The means are either equal or not.
+            degreesOfFreedom = na + nb - 2;
+            t = difference == 0 ? 0.0 : Math.copySign(Double.POSITIVE_INFINITY, difference);
+            pValue = difference == 0 ? 1.0 : 0.0;
+        }
+    }
+
+    /**
+     * Returns the difference of the means {@code meanA - meanB}.
+     *
+     * @return the difference
+     */
+    public double getDifference() {
+        return difference;
+    }
+
+    /**
+     * Returns the standard error of the difference of the means.
+     *
+     * @return the standard error
+     */
+    public double getStandardError() {
+        return standardError;
+    }
+
+    /**
+     * Returns the test statistic {@code t}.
+     *
+     * @return the test statistic
+     */
+    public double getT() {
+        return t;
+    }
+
+    /**
+     * Returns the Welch–Satterthwaite degrees of freedom.
+     *
+     * @return the degrees of freedom, may be non-integral
+     */
+    public double getDegreesOfFreedom() {
+        return degreesOfFreedom;
+    }
+
+    /**
+     * Returns the two-sided p-value: the probability of a test statistic
+     * at least as extreme as {@code t}, if the means are equal.
+     *
+     * @return the p-value in [0, 1]
+     */
+    public double getPValue() {
+        return pValue;
+    }
+
+    /**
+     * Returns the confidence value for the difference of the means.
+     *
+     * @param alpha the significance level.
+     *              The confidence level equals {@code 1 - alpha}.
+     *              Supported values: any value in (0, 1).
+     * @return the value {@code c} for constructing the confidence interval
+     * {@code [ difference - c , difference + c ] }.
+     * @throws IllegalArgumentException if alpha is not in (0, 1)
+     */
+    public double getConfidence(double alpha) {
+        Stats.checkAlpha(alpha);
+        return Quantiles.studentT(1.0 - alpha / 2, degreesOfFreedom) * standardError;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "%s{difference=%f, t=%f, df=%f, p=%f}",
+                this.getClass().getSimpleName(),
+                getDifference(),
+                getT(),
+                getDegreesOfFreedom(),
+                getPValue()
+        );
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * @(#)WindowedVarianceStatistics.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.stats;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.function.DoubleConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Computes a {@link VarianceStatistics} over a sliding time window, for
+ * example over "the last 60 seconds".
+ * <p>
+ * The window is divided into a fixed number of intervals. The state of each
+ * interval is kept in a ring buffer of primitive arrays. When time advances
+ * to a new interval, the oldest interval is evicted in constant time.
+ * Adding a value does not allocate any objects.
+ * <p>
+ * The clock is allowed to have gaps: if the clock jumps forward by more than
+ * the window, all intervals are evicted. Values with a timestamp that is
+ * older than the window, for example after the clock jumped backwards,
+ * are ignored.
+ * <p>
+ * This class is not thread-safe.
+ * <p>
+ * Usage:
+ * <pre>
+ * WindowedVarianceStatistics stats = new WindowedVarianceStatistics(Duration.ofSeconds(60), 60);
+ * stats.accept(latency);
+ * VarianceStatistics lastMinute = stats.getStatistics();
+ * </pre>
+ */
+public class WindowedVarianceStatistics implements DoubleConsumer {
+    private final long intervalNanos;
+    private final LongSupplier nanoClock;
+    private final long[] counts;
+    private final double[] sums;
+    private final double[] compensations;
+    private final double[] simpleSums;
+    private final double[] sumOfSquares;
+    private final double[] squareCompensations;
+    private final double[] mins;
+    private final double[] maxs;
+    /**
+     * The number of the most recent interval. The interval number is
+     * the time divided by the interval duration.
+     */
+    private long headInterval = Long.MIN_VALUE;
+
+    /**
+     * Creates a new instance that uses {@link System#nanoTime()} as its clock.
+     *
+     * @param window        the duration of the window
+     * @param intervalCount the number of intervals in the window
+     * @throws IllegalArgumentException if window is shorter than intervalCount nanoseconds,
+     *                                  or if intervalCount is not positive
+     */
+    public WindowedVarianceStatistics(Duration window, int intervalCount) {
+        this(intervalCount <= 0 ? 0 : window.toNanos() / intervalCount, intervalCount, System::nanoTime);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param intervalNanos the duration of an interval in nanoseconds
+     * @param intervalCount the number of intervals in the window
+     * @param nanoClock     the clock, returns the current time in nanoseconds
+     * @throws IllegalArgumentException if intervalNanos or intervalCount is not positive
+     */
+    public WindowedVarianceStatistics(long intervalNanos, int intervalCount, LongSupplier nanoClock) {
+        if (intervalNanos <= 0 || intervalCount <= 0) {
+            throw new IllegalArgumentException("intervalNanos and intervalCount must be positive, intervalNanos="
+                    + intervalNanos + ", intervalCount=" + intervalCount);
+        }
+        this.intervalNanos = intervalNanos;
+        this.nanoClock = nanoClock;
+        counts = new long[intervalCount];
+        sums = new double[intervalCount];
+        compensations = new double[intervalCount];
+        simpleSums = new double[intervalCount];
+        sumOfSquares = new double[intervalCount];
+        squareCompensations = new double[intervalCount];
+        mins = new double[intervalCount];
+        maxs = new double[intervalCount];
+        Arrays.fill(mins, Double.POSITIVE_INFINITY);
+        Arrays.fill(maxs, Double.NEGATIVE_INFINITY);
+    }
+
+    /**
+     * Adds a value to the current interval.
+     *
+     * @param value a new value
+     */
+    @Override
+    public void accept(double value) {
+        accept(nanoClock.getAsLong(), value);
+    }
+
+    /**
+     * Adds a value with the given timestamp.
+     *
+     * @param timeNanos the time of the value in nanoseconds, on the same
+     *                  time scale as the clock
+     * @param value     a new value
+     */
+    public void accept(long timeNanos, double value) {
+        long interval = Math.floorDiv(timeNanos, intervalNanos);
+        advanceTo(interval);
+        if (interval <= headInterval - counts.length) {
+            return;// The value is older than the window
+        }
+        int i = (int) Math.floorMod(interval, (long) counts.length);
+        counts[i]++;
+        mins[i] = Math.min(mins[i], value);
+        maxs[i] = Math.max(maxs[i], value);
+        DoubleSum.sumWithCompensation(sums, compensations, i, value);
+        simpleSums[i] += value;
+        DoubleSum.sumWithCompensation(sumOfSquares, squareCompensations, i, value * value);
+    }
+
+    /**
+     * Advances the head of the ring buffer to the given interval, and
+     * evicts the intervals that fall out of the window.
+     */
+    private void advanceTo(long interval) {
+        if (interval <= headInterval) {
+            return;
+        }
+        int n = counts.length;
+        if (headInterval == Long.MIN_VALUE || interval - headInterval >= n) {
+            for (int i = 0; i < n; i++) {
+                clear(i);
+            }
+        } else {
+            for (long k = headInterval + 1; k <= interval; k++) {
+                clear((int) Math.floorMod(k, (long) n));
+            }
+        }
+        headInterval = interval;
+    }
+
+    private void clear(int i) {
+        counts[i] = 0;
+        sums[i] = 0.0;
+        compensations[i] = 0.0;
+        simpleSums[i] = 0.0;
+        sumOfSquares[i] = 0.0;
+        squareCompensations[i] = 0.0;
+        mins[i] = Double.POSITIVE_INFINITY;
+        maxs[i] = Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * Returns the statistics of all values in the window that ends now.
+     *
+     * @return a new {@code VarianceStatistics}
+     */
+    public VarianceStatistics getStatistics() {
+        advanceTo(Math.floorDiv(nanoClock.getAsLong(), intervalNanos));
+        VarianceStatistics stats = new VarianceStatistics();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] != 0) {
+                stats.combine(VarianceStatistics.fromSums(counts[i], mins[i], maxs[i],
+                        sums[i], compensations[i], simpleSums[i],
+                        sumOfSquares[i] + squareCompensations[i]));
+            }
+        }
+        return stats;
+    }
+
+    @Override
+    public String toString() {
+        return getStatistics().toString().replaceFirst(VarianceStatistics.class.getSimpleName(),
+                getClass().getSimpleName());
+    }
+}
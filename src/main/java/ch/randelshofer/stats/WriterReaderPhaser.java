@@ -0,0 +1,119 @@
+/*
+ * @(#)WriterReaderPhaser.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.stats;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A phaser that lets a reader flip between two data structures, while
+ * writers keep on writing into the active one.
+ * <p>
+ * Writers enclose each write in {@link #writerCriticalSectionEnter()} and
+ * {@link #writerCriticalSectionExit(long)}. Each of these is a single
+ * atomic fetch-and-add, so writers are wait-free on platforms that
+ * have a fetch-and-add instruction, and lock-free otherwise.
+ * <p>
+ * The reader holds the reader lock, swaps the active and the inactive data
+ * structure, and then calls {@link #flipPhase()}. When {@code flipPhase}
+ * returns, all writers that could have seen the old active data structure
+ * have left their critical sections, and the reader can read it safely.
+ * <p>
+ * References:
+ * <ul>
+ * <li>Gil Tene. WriterReaderPhaser: A story about a new (?) synchronization
+ * primitive.<br>
+ * <a href="http://stuff-gil-says.blogspot.com/2014/11/writerreaderphaser-story-about-new.html">link</a>
+ * </li>
+ * </ul>
+ * </p>
+ */
+final class WriterReaderPhaser {
+    private final static VarHandle START_EPOCH;
+    private final static VarHandle EVEN_END_EPOCH;
+    private final static VarHandle ODD_END_EPOCH;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            START_EPOCH = lookup.findVarHandle(WriterReaderPhaser.class, "startEpoch", long.class);
+            EVEN_END_EPOCH = lookup.findVarHandle(WriterReaderPhaser.class, "evenEndEpoch", long.class);
+            ODD_END_EPOCH = lookup.findVarHandle(WriterReaderPhaser.class, "oddEndEpoch", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * The number of writers that have entered the current phase. The sign
+     * encodes the phase: non-negative values are even phases, negative
+     * values are odd phases.
+     */
+    private volatile long startEpoch = 0;
+    private volatile long evenEndEpoch = 0;
+    private volatile long oddEndEpoch = Long.MIN_VALUE;
+    private final ReentrantLock readerLock = new ReentrantLock();
+
+    /**
+     * Enters a writer critical section.
+     *
+     * @return the value that must be passed to {@link #writerCriticalSectionExit(long)}
+     */
+    long writerCriticalSectionEnter() {
+        return (long) START_EPOCH.getAndAdd(this, 1L);
+    }
+
+    /**
+     * Exits a writer critical section.
+     *
+     * @param criticalValueAtEnter the value returned by {@link #writerCriticalSectionEnter()}
+     */
+    void writerCriticalSectionExit(long criticalValueAtEnter) {
+        if (criticalValueAtEnter < 0) {
+            ODD_END_EPOCH.getAndAdd(this, 1L);
+        } else {
+            EVEN_END_EPOCH.getAndAdd(this, 1L);
+        }
+    }
+
+    /**
+     * Acquires the reader lock. Only one reader can flip the phase at a time.
+     */
+    void readerLock() {
+        readerLock.lock();
+    }
+
+    /**
+     * Releases the reader lock.
+     */
+    void readerUnlock() {
+        readerLock.unlock();
+    }
+
+    /**
+     * Flips the phase, and waits until all writers that entered the
+     * previous phase have exited their critical sections.
+     * The caller must hold the reader lock.
+     *
+     * @throws IllegalStateException if the caller does not hold the reader lock
+     */
+    void flipPhase() {
+        if (!readerLock.isHeldByCurrentThread()) {
+            throw new IllegalStateException("flipPhase must be called while holding the reader lock");
+        }
+        boolean nextPhaseIsEven = startEpoch < 0;
+        long initialStartValue = nextPhaseIsEven ? 0 : Long.MIN_VALUE;
+        if (nextPhaseIsEven) {
+            evenEndEpoch = initialStartValue;
+        } else {
+            oddEndEpoch = initialStartValue;
+        }
+        long startValueAtFlip = (long) START_EPOCH.getAndSet(this, initialStartValue);
+        while ((nextPhaseIsEven ? oddEndEpoch : evenEndEpoch) != startValueAtFlip) {
+            Thread.onSpinWait();
+        }
+    }
+}
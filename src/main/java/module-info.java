@@ -1,3 +1,4 @@
 module Stats {
+    requires transitive java.management;
     exports ch.randelshofer.stats;
 }
\ No newline at end of file
@@ -0,0 +1,133 @@
+/*
+ * @(#)BivariateStatisticsTest.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+
+package ch.randelshofer.stats;
+
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BivariateStatisticsTest {
+    /**
+     * Height (m) and weight (kg) of 15 women, from the Wikipedia article
+     * "Simple linear regression".
+     */
+    private final static double[] HEIGHTS = {
+            1.47, 1.50, 1.52, 1.55, 1.57, 1.60, 1.63, 1.65, 1.68, 1.70, 1.73, 1.75, 1.78, 1.80, 1.83};
+    private final static double[] WEIGHTS = {
+            52.21, 53.12, 54.48, 55.84, 57.20, 58.57, 59.93, 61.29, 63.11, 64.47, 66.28, 68.10, 69.92, 72.19, 74.46};
+
+    @TestFactory
+    public List<DynamicTest> testRegression() {
+        return List.of(
+                DynamicTest.dynamicTest("heights and weights", () -> doTestRegression(0.0)),
+                DynamicTest.dynamicTest("heights and weights with offset 1e6", () -> doTestRegression(1e6))
+        );
+    }
+
+    public void doTestRegression(double offset) {
+        BivariateStatistics stats = new BivariateStatistics();
+        for (int i = 0; i < HEIGHTS.length; i++) {
+            stats.accept(HEIGHTS[i] + offset, WEIGHTS[i]);
+        }
+        System.out.println(stats);
+        assertEquals(15, stats.getCount(), "count");
+        assertEquals(61.272, stats.getSlope(), 1e-3, "slope");
+        assertEquals(-39.062, stats.getIntercept() + stats.getSlope() * offset, 1e-3, "intercept");
+        assertEquals(0.9945, stats.getCorrelation(), 1e-4, "r");
+        assertEquals(0.9891, stats.getRSquare(), 1e-4, "r²");
+        assertEquals(1.776, stats.getSlopeStandardError(), 1e-3, "standard error of slope");
+        // t(0.975, 13) = 2.1604
+        assertEquals(2.1604 * 1.776, stats.getSlopeConfidence(0.05), 1e-2, "confidence of slope");
+        assertEquals(Stats.quantileT(0.975, 13) * stats.getSlopeStandardError(), stats.getSlopeConfidence(0.05), 1e-12, "confidence of slope");
+    }
+
+    @TestFactory
+    public List<DynamicTest> testCovariance() {
+        return List.of(
+                DynamicTest.dynamicTest("random", () -> doTestCovariance(0.0, 1)),
+                DynamicTest.dynamicTest("random with offset 1e9", () -> doTestCovariance(1e9, 1)),
+                DynamicTest.dynamicTest("random with offset 1e9, combined", () -> doTestCovariance(1e9, 7))
+        );
+    }
+
+    public void doTestCovariance(double offset, int parts) {
+        Random rnd = new Random(0);
+        int n = 10_000;
+        double[] xs = new double[n], ys = new double[n];
+        for (int i = 0; i < n; i++) {
+            double x = rnd.nextGaussian();
+            xs[i] = offset + x;
+            ys[i] = offset + 2 * x + rnd.nextGaussian();
+        }
+        // Two-pass reference on the data without offset
+        double mx = 0, my = 0;
+        for (int i = 0; i < n; i++) {
+            mx += xs[i] - offset;
+            my += ys[i] - offset;
+        }
+        mx /= n;
+        my /= n;
+        double sxy = 0, sxx = 0, syy = 0;
+        for (int i = 0; i < n; i++) {
+            double dx = xs[i] - offset - mx, dy = ys[i] - offset - my;
+            sxy += dx * dy;
+            sxx += dx * dx;
+            syy += dy * dy;
+        }
+
+        BivariateStatistics stats = new BivariateStatistics();
+        for (int p = 0; p < parts; p++) {
+            BivariateStatistics part = new BivariateStatistics();
+            part.acceptAll(xs, ys, p * n / parts, (p + 1) * n / parts);
+            stats.combine(part);
+        }
+        assertEquals(n, stats.getCount(), "count");
+        assertEquals(offset + mx, stats.getAverageX(), 1e-12 * Math.max(1, offset), "average x");
+        assertEquals(offset + my, stats.getAverageY(), 1e-12 * Math.max(1, offset), "average y");
+        assertEquals(sxy / (n - 1), stats.getSampleCovariance(), 1e-9, "sample covariance");
+        assertEquals(sxy / n, stats.getPopulationCovariance(), 1e-9, "population covariance");
+        assertEquals(sxx / (n - 1), stats.getSampleVarianceX(), 1e-9, "sample variance x");
+        assertEquals(syy / (n - 1), stats.getSampleVarianceY(), 1e-9, "sample variance y");
+        assertEquals(sxy / Math.sqrt(sxx * syy), stats.getCorrelation(), 1e-9, "r");
+        assertEquals(sxy / sxx, stats.getSlope(), 1e-9, "slope");
+
+        BivariateStatistics single = new BivariateStatistics();
+        for (int i = 0; i < n; i++) {
+            single.accept(xs[i], ys[i]);
+        }
+        assertEquals(single.getSampleCovariance(), stats.getSampleCovariance(), 1e-12, "accept vs acceptAll");
+        assertEquals(single.getSlope(), stats.getSlope(), 1e-12, "accept vs acceptAll");
+    }
+
+    @TestFactory
+    public List<DynamicTest> testEdgeCases() {
+        return List.of(
+                DynamicTest.dynamicTest("empty", () -> {
+                    BivariateStatistics stats = new BivariateStatistics();
+                    assertEquals(0, stats.getCount(), "count");
+                    assertEquals(0.0, stats.getSampleCovariance(), "covariance");
+                    assertTrue(Double.isNaN(stats.getSlopeConfidence(0.05)), "confidence");
+                    stats.combine(new BivariateStatistics());
+                    assertEquals(0, stats.getCount(), "count");
+                }),
+                DynamicTest.dynamicTest("no variance in x", () -> {
+                    BivariateStatistics stats = new BivariateStatistics();
+                    stats.acceptAll(new double[]{1, 1, 1}, new double[]{1, 2, 3});
+                    assertTrue(Double.isNaN(stats.getSlope()), "slope");
+                    assertTrue(Double.isNaN(stats.getCorrelation()), "r");
+                }),
+                DynamicTest.dynamicTest("different lengths", () ->
+                        assertThrows(IllegalArgumentException.class,
+                                () -> new BivariateStatistics().acceptAll(new double[2], new double[3])))
+        );
+    }
+}
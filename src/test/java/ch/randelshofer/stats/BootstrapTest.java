@@ -0,0 +1,138 @@
+/*
+ * @(#)BootstrapTest.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+
+package ch.randelshofer.stats;
+
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.DoubleStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BootstrapTest {
+    @TestFactory
+    public List<DynamicTest> testMean() {
+        return List.of(
+                DynamicTest.dynamicTest("normal", () -> doTestMean(normal(1000)))
+        );
+    }
+
+    private static double[] normal(int n) {
+        Random rnd = new Random(n);
+        double[] a = new double[n];
+        for (int i = 0; i < n; i++) {
+            a[i] = 10 + 2 * rnd.nextGaussian();
+        }
+        return a;
+    }
+
+    private static double[] exponential(int n) {
+        Random rnd = new Random(n);
+        double[] a = new double[n];
+        for (int i = 0; i < n; i++) {
+            a[i] = -Math.log(1 - rnd.nextDouble());
+        }
+        return a;
+    }
+
+    public void doTestMean(double[] sample) {
+        VarianceStatistics stats = DoubleStream.of(sample).collect(VarianceStatistics::new, VarianceStatistics::accept, VarianceStatistics::combine);
+        double[] copy = sample.clone();
+        Bootstrap.Result result = new Bootstrap(4000, 0).run(sample, Bootstrap.MEAN);
+        System.out.println(result);
+        assertEquals(Arrays.toString(copy), Arrays.toString(sample), "sample is not modified");
+        assertEquals(stats.getAverage(), result.getEstimate(), 1e-12, "estimate");
+        assertEquals(4000, result.getReplicates().length, "replicates");
+
+        // For normal data, the bootstrap intervals agree with the t interval.
+        double se = stats.getSampleStandardDeviation() / Math.sqrt(sample.length);
+        assertEquals(se, result.getStandardError(), 0.1 * se, "standard error");
+        double c = Stats.confidenceT(0.05, stats.getSampleStandardDeviation(), sample.length);
+        double[] percentile = result.getPercentileInterval(0.05);
+        double[] bca = result.getBcaInterval(0.05);
+        assertEquals(stats.getAverage() - c, percentile[0], 0.15 * c, "percentile lower");
+        assertEquals(stats.getAverage() + c, percentile[1], 0.15 * c, "percentile upper");
+        assertEquals(stats.getAverage() - c, bca[0], 0.15 * c, "bca lower");
+        assertEquals(stats.getAverage() + c, bca[1], 0.15 * c, "bca upper");
+    }
+
+    @TestFactory
+    public List<DynamicTest> testSkewed() {
+        return List.of(
+                DynamicTest.dynamicTest("exponential mean", () -> {
+                    Bootstrap.Result result = new Bootstrap(4000, 1).run(exponential(200), Bootstrap.MEAN);
+                    double[] bca = result.getBcaInterval(0.05);
+                    double[] percentile = result.getPercentileInterval(0.05);
+                    // The mean of exponential data is skewed to the right, so the
+                    // acceleration is positive, and BCa shifts the interval to the right.
+                    assertTrue(result.getAcceleration() > 0, "acceleration=" + result.getAcceleration());
+                    assertTrue(bca[1] - result.getEstimate() > result.getEstimate() - bca[0], "upper arm is longer");
+                    assertTrue(bca[1] > percentile[1], "bca upper > percentile upper");
+                }),
+                DynamicTest.dynamicTest("exponential p99", () -> {
+                    double[] sample = exponential(10_000);
+                    Bootstrap.Result result = new Bootstrap(1000, 2).run(sample, Bootstrap.quantile(0.99));
+                    double[] bca = result.getBcaInterval(0.05);
+                    double[] sorted = sample.clone();
+                    Arrays.sort(sorted);
+                    double p99 = sorted[9899] + 0.01 * (sorted[9900] - sorted[9899]);
+                    assertEquals(p99, result.getEstimate(), 1e-12, "estimate");
+                    assertTrue(bca[0] < p99 && p99 < bca[1], "interval contains estimate");
+                    // The true p99 of the exponential distribution is ln(100).
+                    assertTrue(bca[0] < Math.log(100) && Math.log(100) < bca[1], "interval contains true value");
+                })
+        );
+    }
+
+    @TestFactory
+    public List<DynamicTest> testReproducible() {
+        return List.of(
+                DynamicTest.dynamicTest("parallelism 1 vs 4", () -> {
+                    double[] sample = exponential(1000);
+                    ForkJoinPool single = new ForkJoinPool(1);
+                    ForkJoinPool quad = new ForkJoinPool(4);
+                    try {
+                        double[] a = new Bootstrap(1001, 42, single).run(sample, Bootstrap.quantile(0.5)).getReplicates();
+                        double[] b = new Bootstrap(1001, 42, quad).run(sample, Bootstrap.quantile(0.5)).getReplicates();
+                        double[] c = new Bootstrap(1001, 43, quad).run(sample, Bootstrap.quantile(0.5)).getReplicates();
+                        assertEquals(Arrays.toString(a), Arrays.toString(b), "same seed");
+                        assertTrue(!Arrays.equals(a, c), "different seed");
+                    } finally {
+                        single.shutdown();
+                        quad.shutdown();
+                    }
+                })
+        );
+    }
+
+    @TestFactory
+    public List<DynamicTest> testEdgeCases() {
+        return List.of(
+                DynamicTest.dynamicTest("constant sample", () -> {
+                    Bootstrap.Result result = new Bootstrap(100, 0).run(new double[]{3, 3, 3}, Bootstrap.MEAN);
+                    assertEquals(3.0, result.getEstimate(), "estimate");
+                    assertEquals(Arrays.toString(new double[]{3, 3}), Arrays.toString(result.getPercentileInterval(0.05)), "percentile");
+                    assertEquals(0.0, result.getAcceleration(), "acceleration");
+                }),
+                DynamicTest.dynamicTest("single value", () -> {
+                    Bootstrap.Result result = new Bootstrap(10, 0).run(new double[]{7}, Bootstrap.quantile(0.9));
+                    assertEquals(7.0, result.getEstimate(), "estimate");
+                }),
+                DynamicTest.dynamicTest("illegal arguments", () -> {
+                    assertThrows(IllegalArgumentException.class, () -> new Bootstrap(0, 0));
+                    assertThrows(IllegalArgumentException.class, () -> new Bootstrap(10, 0).run(new double[0], Bootstrap.MEAN));
+                    assertThrows(IllegalArgumentException.class, () -> Bootstrap.quantile(1.5));
+                    assertThrows(IllegalArgumentException.class, () -> new Bootstrap(10, 0).run(new double[]{1, 2}, Bootstrap.MEAN).getPercentileInterval(0));
+                })
+        );
+    }
+}
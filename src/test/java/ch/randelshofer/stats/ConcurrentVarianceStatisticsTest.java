@@ -0,0 +1,130 @@
+/*
+ * @(#)ConcurrentVarianceStatisticsTest.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+
+package ch.randelshofer.stats;
+
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConcurrentVarianceStatisticsTest {
+    @TestFactory
+    public List<DynamicTest> testAccept() {
+        return List.of(
+                DynamicTest.dynamicTest("1 thread", () -> doTestAccept(1)),
+                DynamicTest.dynamicTest("4 threads", () -> doTestAccept(4)),
+                DynamicTest.dynamicTest("16 threads", () -> doTestAccept(16))
+        );
+    }
+
+    public void doTestAccept(int threadCount) throws InterruptedException {
+        final int valuesPerThread = 10_000;
+        ConcurrentVarianceStatistics stats = new ConcurrentVarianceStatistics();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < valuesPerThread; i++) {
+                    stats.accept(i);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        VarianceStatistics expected = new VarianceStatistics();
+        for (int t = 0; t < threadCount; t++) {
+            for (int i = 0; i < valuesPerThread; i++) {
+                expected.accept(i);
+            }
+        }
+        VarianceStatistics actual = stats.snapshot();
+        System.out.println(stats);
+        assertEquals(expected.getCount(), actual.getCount(), "count");
+        assertEquals(expected.getMin(), actual.getMin(), "min");
+        assertEquals(expected.getMax(), actual.getMax(), "max");
+        assertEquals(expected.getSum(), actual.getSum(), "sum");
+        assertEquals(expected.getSumOfSquare(), actual.getSumOfSquare(), "sum of square");
+        assertEquals(expected.getSampleVariance(), actual.getSampleVariance(), 1e-6, "variance");
+    }
+
+    @Test
+    public void testThreadChurn() throws InterruptedException {
+        final int threadCount = 1000;
+        ConcurrentVarianceStatistics stats = new ConcurrentVarianceStatistics();
+        for (int t = 0; t < threadCount; t++) {
+            double value = t;
+            Thread thread = new Thread(() -> stats.accept(value));
+            thread.start();
+            thread.join();
+        }
+        assertEquals(1, stats.getCellCount(), "cells of terminated threads are reused");
+
+        VarianceStatistics expected = new VarianceStatistics();
+        for (int t = 0; t < threadCount; t++) {
+            expected.accept(t);
+        }
+        VarianceStatistics actual = stats.snapshot();
+        assertEquals(expected.getCount(), actual.getCount(), "count");
+        assertEquals(expected.getMin(), actual.getMin(), "min");
+        assertEquals(expected.getMax(), actual.getMax(), "max");
+        assertEquals(expected.getSum(), actual.getSum(), "sum");
+        assertEquals(expected.getSumOfSquare(), actual.getSumOfSquare(), "sum of square");
+    }
+
+    @Test
+    public void testSnapshotWhileWriting() throws InterruptedException {
+        final int threadCount = 4;
+        final int valuesPerThread = 100_000;
+        ConcurrentVarianceStatistics stats = new ConcurrentVarianceStatistics();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < valuesPerThread; i++) {
+                    stats.accept(1.0);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        long previousCount = 0;
+        boolean alive = true;
+        while (alive) {
+            alive = false;
+            for (Thread thread : threads) {
+                alive |= thread.isAlive();
+            }
+            VarianceStatistics snapshot = stats.snapshot();
+            assertTrue(snapshot.getCount() >= previousCount, "count must not decrease");
+            // every value is 1, so a torn read of a cell would break these
+            assertEquals((double) snapshot.getCount(), snapshot.getSum(), "sum");
+            assertEquals((double) snapshot.getCount(), snapshot.getSumOfSquare(), "sum of square");
+            previousCount = snapshot.getCount();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals((long) threadCount * valuesPerThread, stats.snapshot().getCount(), "count");
+    }
+
+    @TestFactory
+    public List<DynamicTest> testInfiniteValue() {
+        return VarianceStatisticsTest.infiniteValueTests(values -> {
+            ConcurrentVarianceStatistics stats = new ConcurrentVarianceStatistics();
+            for (double value : values) {
+                stats.accept(value);
+            }
+            return stats.snapshot();
+        });
+    }
+}
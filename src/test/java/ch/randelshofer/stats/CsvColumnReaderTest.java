@@ -0,0 +1,224 @@
+/*
+ * @(#)CsvColumnReaderTest.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+
+package ch.randelshofer.stats;
+
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CsvColumnReaderTest {
+    @TestFactory
+    public List<DynamicTest> testParse() {
+        return List.of(
+                DynamicTest.dynamicTest("integers", () -> doTestParse("0\n-0\n+7\n42\n-123456789\n9007199254740993\n",
+                        0.0, -0.0, 7.0, 42.0, -123456789.0, 9007199254740993.0)),
+                DynamicTest.dynamicTest("decimals", () -> doTestParse("0.1\n-.5\n3.\n1.7976931348623157e308\n4.9e-324\n",
+                        0.1, -0.5, 3.0, Double.MAX_VALUE, Double.MIN_VALUE)),
+                DynamicTest.dynamicTest("exponents", () -> doTestParse("1e22\n1e23\n1E-22\n2.5e+3\n0.000123e5\n",
+                        1e22, 1e23, 1e-22, 2500.0, 12.3)),
+                DynamicTest.dynamicTest("special values", () -> doTestParse("NaN\nInfinity\n-Infinity\n",
+                        Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY)),
+                DynamicTest.dynamicTest("not numbers", () -> doTestParse("value\n\n-\n.\n1e\n1.2.3\n0x10\n1f\n \"\" \n5\n",
+                        5.0)),
+                DynamicTest.dynamicTest("quotes, spaces and CRLF", () -> doTestParse("\"1.5\"\r\n  2 \r\n\t3\t\n4",
+                        1.5, 2.0, 3.0, 4.0))
+        );
+    }
+
+    public void doTestParse(String text, double... expected) {
+        CsvColumnReader reader = new CsvColumnReader(',', 0);
+        List<Double> actual = new ArrayList<>();
+        reader.read(text, (column, value) -> actual.add(value));
+        assertArrayEquals(expected, actual.stream().mapToDouble(Double::doubleValue).toArray());
+    }
+
+    @TestFactory
+    public List<DynamicTest> testParseIsCorrectlyRounded() {
+        return List.of(
+                DynamicTest.dynamicTest("toString", () -> doTestParseIsCorrectlyRounded("%s")),
+                DynamicTest.dynamicTest("%.3f", () -> doTestParseIsCorrectlyRounded("%.3f")),
+                DynamicTest.dynamicTest("%.6e", () -> doTestParseIsCorrectlyRounded("%.6e")),
+                DynamicTest.dynamicTest("%.17g", () -> doTestParseIsCorrectlyRounded("%.17g")),
+                DynamicTest.dynamicTest("%.18e", () -> doTestParseIsCorrectlyRounded("%.18e")),
+                DynamicTest.dynamicTest("all exponents", () -> {
+                    // 17 significant digits and more, normal and subnormal values
+                    Random rnd = new Random(1);
+                    StringBuilder buf = new StringBuilder();
+                    List<Double> expected = new ArrayList<>();
+                    for (int i = 0; i < 10_000; i++) {
+                        double d = Double.longBitsToDouble(rnd.nextLong());
+                        if (Double.isNaN(d)) {
+                            continue;
+                        }
+                        String str = i % 2 == 0 ? Double.toString(d) : String.format(Locale.ROOT, "%.18e", d);
+                        expected.add(Double.parseDouble(str));
+                        buf.append(str).append('\n');
+                    }
+                    List<Double> actual = new ArrayList<>();
+                    new CsvColumnReader(',', 0).read(buf, (column, value) -> actual.add(value));
+                    assertEquals(expected, actual);
+                }),
+                DynamicTest.dynamicTest("halfway and limits", () -> {
+                    String[] strs = {"9007199254740993", "9007199254740995", "1.8014398509481985e16",
+                            "9223372036854775807", "9999999999999999999", "1.7976931348623158e308",
+                            "1.7976931348623159e308", "2.2250738585072011e-308", "2.2250738585072012e-308",
+                            "4.9406564584124654e-324", "2.4703282292062328e-324", "1e-343", "1e309"};
+                    List<Double> expected = new ArrayList<>();
+                    for (String str : strs) {
+                        expected.add(Double.parseDouble(str));
+                    }
+                    List<Double> actual = new ArrayList<>();
+                    new CsvColumnReader(',', 0).read(String.join("\n", strs), (column, value) -> actual.add(value));
+                    assertEquals(expected, actual);
+                })
+        );
+    }
+
+    public void doTestParseIsCorrectlyRounded(String format) {
+        Random rnd = new Random(0);
+        StringBuilder buf = new StringBuilder();
+        List<Double> expected = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            double d = (rnd.nextDouble() - 0.5) * Math.pow(10, rnd.nextInt(40) - 20);
+            String str = String.format(Locale.ROOT, format, d);
+            expected.add(Double.parseDouble(str));
+            buf.append(str).append('\n');
+        }
+        List<Double> actual = new ArrayList<>();
+        new CsvColumnReader(',', 0).read(buf, (column, value) -> actual.add(value));
+        assertEquals(expected, actual);
+    }
+
+    @TestFactory
+    public List<DynamicTest> testColumns() {
+        return List.of(
+                DynamicTest.dynamicTest("selected columns", () -> {
+                    String text = "time;name;latency;size\n"
+                            + "1;a;0.5;10\n"
+                            + "2;b;1.5\n"
+                            + "3;c;2.5;30;extra\n";
+                    CsvColumnReader reader = new CsvColumnReader(';', 3, 2);
+                    VarianceStatistics[] stats = {new VarianceStatistics(), new VarianceStatistics()};
+                    reader.read(text, (column, value) -> stats[column].accept(value));
+                    assertEquals(2, stats[0].getCount(), "count of size");
+                    assertEquals(40.0, stats[0].getSum(), "sum of size");
+                    assertEquals(3, stats[1].getCount(), "count of latency");
+                    assertEquals(4.5, stats[1].getSum(), "sum of latency");
+                }),
+                DynamicTest.dynamicTest("quoted delimiters", () -> {
+                    String text = "\"x,y\",7,8\n"
+                            + "\"a \"\"b,c\"\"\",9,10\n"
+                            + "\"unterminated,11,12\n"
+                            + "1,2,3\n";
+                    CsvColumnReader reader = new CsvColumnReader(',', 2);
+                    VarianceStatistics stats = new VarianceStatistics();
+                    reader.read(text, (column, value) -> stats.accept(value));
+                    assertEquals(3, stats.getCount(), "count");
+                    assertEquals(10.0, stats.getMax(), "max");
+                    assertEquals(21.0, stats.getSum(), "sum");
+                }),
+                DynamicTest.dynamicTest("illegal arguments", () -> {
+                    assertThrows(IllegalArgumentException.class, () -> new CsvColumnReader(','));
+                    assertThrows(IllegalArgumentException.class, () -> new CsvColumnReader(',', -1));
+                    assertThrows(IllegalArgumentException.class, () -> new CsvColumnReader(',', 1, 1));
+                    assertThrows(IllegalArgumentException.class, () -> new CsvColumnReader('\n', 0));
+                })
+        );
+    }
+
+    @TestFactory
+    public List<DynamicTest> testReadChannel() {
+        return List.of(
+                DynamicTest.dynamicTest("short lines", () -> doTestReadChannel(100_000, 1)),
+                DynamicTest.dynamicTest("lines longer than the buffer", () -> doTestReadChannel(10, 100_000))
+        );
+    }
+
+    public void doTestReadChannel(int lines, int padding) throws IOException {
+        StringBuilder buf = new StringBuilder();
+        VarianceStatistics expected = new VarianceStatistics();
+        Random rnd = new Random(lines);
+        String pad = "x".repeat(padding);
+        for (int i = 0; i < lines; i++) {
+            double d = rnd.nextGaussian() * 100;
+            expected.accept(d);
+            buf.append(pad).append(',').append(d).append('\n');
+        }
+        VarianceStatistics actual = new VarianceStatistics();
+        new CsvColumnReader(',', 1).read(
+                Channels.newChannel(new ByteArrayInputStream(buf.toString().getBytes(StandardCharsets.UTF_8))),
+                (column, value) -> actual.accept(value));
+        assertEquals(expected.getCount(), actual.getCount(), "count");
+        assertEquals(expected.getSum(), actual.getSum(), "sum");
+        assertEquals(expected.getSumOfSquare(), actual.getSumOfSquare(), "sum of square");
+    }
+
+    @TestFactory
+    public List<DynamicTest> testSummarize() {
+        return List.of(
+                DynamicTest.dynamicTest("empty", () -> doTestSummarize(0)),
+                DynamicTest.dynamicTest("1000", () -> doTestSummarize(1000)),
+                DynamicTest.dynamicTest("2_000_000", () -> doTestSummarize(2_000_000)),
+                DynamicTest.dynamicTest("2_000_000 with pool", () -> {
+                    ForkJoinPool pool = new ForkJoinPool(3);
+                    try {
+                        doTestSummarize(2_000_000, pool);
+                    } finally {
+                        pool.shutdown();
+                    }
+                })
+        );
+    }
+
+    public void doTestSummarize(int lines) throws IOException {
+        doTestSummarize(lines, ForkJoinPool.commonPool());
+    }
+
+    public void doTestSummarize(int lines, ForkJoinPool pool) throws IOException {
+        Random rnd = new Random(lines);
+        VarianceStatistics expectedA = new VarianceStatistics();
+        VarianceStatistics expectedB = new VarianceStatistics();
+        Path file = Files.createTempFile("CsvColumnReaderTest", ".csv");
+        try {
+            try (BufferedWriter w = Files.newBufferedWriter(file)) {
+                w.write("a,b\n");
+                for (int i = 0; i < lines; i++) {
+                    double a = rnd.nextInt(1000) / 8.0;
+                    double b = rnd.nextGaussian();
+                    expectedA.accept(a);
+                    expectedB.accept(b);
+                    w.write(a + "," + b + "\n");
+                }
+            }
+            VarianceStatistics[] actual = new CsvColumnReader(',', 0, 1).summarize(file, pool);
+            assertEquals(expectedA.getCount(), actual[0].getCount(), "count a");
+            assertEquals(expectedA.getSum(), actual[0].getSum(), "sum a");
+            assertEquals(expectedA.getMin(), actual[0].getMin(), "min a");
+            assertEquals(expectedA.getMax(), actual[0].getMax(), "max a");
+            assertEquals(expectedB.getCount(), actual[1].getCount(), "count b");
+            assertEquals(expectedB.getSum(), actual[1].getSum(), 1e-9, "sum b");
+            assertEquals(expectedB.getSumOfSquare(), actual[1].getSumOfSquare(), 1e-6, "sum of square b");
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * @(#)DoubleSampleBufferTest.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+
+package ch.randelshofer.stats;
+
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.DoubleStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DoubleSampleBufferTest {
+    private final static double[] QS = {0, 0.01, 0.25, 0.5, 0.75, 0.9, 0.99, 0.999, 1};
+
+    @TestFactory
+    public List<DynamicTest> testQuantiles() {
+        return List.of(
+                DynamicTest.dynamicTest("1", () -> doTestQuantiles(new double[]{42})),
+                DynamicTest.dynamicTest("10", () -> doTestQuantiles(new double[]{
+                        200.0, 171.0, 176.0, 194.0, 148.0, 203.0, 182.0, 186.0, 176.0, 161.0})),
+                DynamicTest.dynamicTest("duplicates", () -> doTestQuantiles(
+                        new Random(0).ints(10_000, 0, 5).asDoubleStream().toArray())),
+                DynamicTest.dynamicTest("random", () -> doTestQuantiles(
+                        new Random(0).doubles(100_001).toArray())),
+                DynamicTest.dynamicTest("sorted", () -> doTestQuantiles(
+                        DoubleStream.iterate(0, x -> x + 1).limit(10_000).toArray()))
+        );
+    }
+
+    public void doTestQuantiles(double[] samples) {
+        double[] sorted = samples.clone();
+        Arrays.sort(sorted);
+
+        DoubleSampleBuffer single = new DoubleSampleBuffer();
+        for (double d : samples) {
+            single.accept(d);
+        }
+        DoubleSampleBuffer multi = new DoubleSampleBuffer(0);
+        multi.acceptAll(samples, 0, samples.length);
+        double[] actual = multi.quantiles(QS);
+        assertEquals(samples.length, single.getCount(), "count");
+        for (int i = 0; i < QS.length; i++) {
+            double expected = quantile(sorted, QS[i]);
+            assertEquals(expected, single.quantile(QS[i]), "quantile " + QS[i]);
+            assertEquals(expected, actual[i], "quantiles " + QS[i]);
+            assertEquals(expected, multi.quantile(QS[i]), "repeated quantile " + QS[i]);
+        }
+    }
+
+    /**
+     * Computes a type 7 quantile from a sorted array.
+     */
+    private static double quantile(double[] sorted, double q) {
+        double h = q * (sorted.length - 1);
+        int k = (int) h;
+        double fraction = h - k;
+        return fraction == 0 ? sorted[k] : sorted[k] + fraction * (sorted[k + 1] - sorted[k]);
+    }
+
+    @Test
+    public void testAcceptAfterQuery() {
+        Random r = new Random(1);
+        DoubleSampleBuffer buffer = new DoubleSampleBuffer();
+        double[] all = new double[0];
+        for (int round = 0; round < 5; round++) {
+            double[] chunk = r.doubles(1000, round, round + 2).toArray();
+            buffer.acceptAll(chunk, 0, chunk.length);
+            all = DoubleStream.concat(Arrays.stream(all), Arrays.stream(chunk)).toArray();
+            double[] sorted = all.clone();
+            Arrays.sort(sorted);
+            assertEquals(quantile(sorted, 0.5), buffer.quantile(0.5), "median after round " + round);
+            assertEquals(quantile(sorted, 0.95), buffer.quantiles(0.95)[0], "p95 after round " + round);
+        }
+    }
+
+    @Test
+    public void testCombine() {
+        double[] samples = new Random(2).doubles(10_000, -1, 1).toArray();
+        DoubleSampleBuffer expected = new DoubleSampleBuffer();
+        expected.acceptAll(samples, 0, samples.length);
+        DoubleSampleBuffer actual = DoubleStream.of(samples).parallel()
+                .collect(DoubleSampleBuffer::new, DoubleSampleBuffer::accept, DoubleSampleBuffer::combine);
+        assertEquals(expected.getCount(), actual.getCount(), "count");
+        assertArrayEquals(expected.quantiles(QS), actual.quantiles(QS), "quantiles");
+    }
+
+    @Test
+    public void testDirectBufferAndNaN() {
+        double[] samples = {3, Double.NaN, 1, 2, Double.NaN};
+        DoubleBuffer direct = ByteBuffer.allocateDirect(samples.length * Double.BYTES).asDoubleBuffer();
+        direct.put(samples).flip();
+        DoubleSampleBuffer buffer = new DoubleSampleBuffer(1);
+        buffer.acceptAll(direct);
+        buffer.accept(Double.NaN);
+        assertEquals(0, direct.remaining(), "remaining");
+        assertEquals(3, buffer.getCount(), "NaN values are not counted");
+        assertEquals(2.0, buffer.quantile(0.5), "median");
+        assertEquals(1.5, buffer.quantile(0.25), "p25");
+    }
+
+    @Test
+    public void testToVarianceStatistics() {
+        double[] samples = new Random(3).doubles(1001, 10, 20).toArray();
+        DoubleSampleBuffer buffer = new DoubleSampleBuffer();
+        buffer.acceptAll(samples, 0, samples.length);
+        buffer.quantiles(QS);// rearranges the values
+        VarianceStatistics expected = new VarianceStatistics();
+        expected.acceptAll(samples, 0, samples.length);
+        VarianceStatistics actual = buffer.toVarianceStatistics();
+        assertEquals(expected.getCount(), actual.getCount(), "count");
+        assertEquals(expected.getMin(), actual.getMin(), "min");
+        assertEquals(expected.getMax(), actual.getMax(), "max");
+        assertEquals(expected.getSum(), actual.getSum(), 1e-9, "sum");
+        assertEquals(expected.getSampleVariance(), actual.getSampleVariance(), 1e-9, "variance");
+    }
+
+    @Test
+    public void testEmptyAndIllegalArguments() {
+        DoubleSampleBuffer buffer = new DoubleSampleBuffer();
+        assertTrue(Double.isNaN(buffer.quantile(0.5)), "empty");
+        assertTrue(Double.isNaN(buffer.quantiles(0.1, 0.9)[1]), "empty quantiles");
+        assertThrows(IllegalArgumentException.class, () -> buffer.quantile(-0.1));
+        assertThrows(IllegalArgumentException.class, () -> buffer.quantiles(0.5, Double.NaN));
+        assertThrows(IllegalArgumentException.class, () -> new DoubleSampleBuffer(-1));
+        assertThrows(IndexOutOfBoundsException.class, () -> buffer.acceptAll(new double[2], 1, 3));
+    }
+}
@@ -8,9 +8,19 @@ package ch.randelshofer.stats;
 import org.junit.jupiter.api.DynamicTest;
 import org.junit.jupiter.api.TestFactory;
 
+import java.math.BigDecimal;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class DoubleSumTest {
     @TestFactory
@@ -63,4 +73,255 @@ public class DoubleSumTest {
             assertEquals(expectedSum, actualSum, "sum i=" + i);
         }
     }
+
+    @TestFactory
+    public List<DynamicTest> testAcceptAll() {
+        return List.of(
+                /* Example from: https://en.wikipedia.org/wiki/Kahan_summation_algorithm#Further_enhancements */
+                DynamicTest.dynamicTest("1", () -> doTestAcceptAll(
+                        new double[]{1.0, 10e100, 1.0, -10e100})
+                ),
+                DynamicTest.dynamicTest("2", () -> doTestAcceptAll(
+                        new double[]{1.0, 10e100, 1.0, -10e100, 1.0, 10e100, 1.0, -10e100, 0.5})
+                ),
+                DynamicTest.dynamicTest("empty", () -> doTestAcceptAll(
+                        new double[0])
+                ),
+                DynamicTest.dynamicTest("random", () -> doTestAcceptAll(
+                        new Random(0).doubles(10_003, -1e6, 1e6).toArray())
+                )
+        );
+    }
+
+    public void doTestAcceptAll(double[] input) {
+        DoubleSum expected = new DoubleSum();
+        for (double d : input) {
+            expected.accept(d);
+        }
+        double bound = 0;
+        for (double d : input) {
+            bound += Math.abs(d);
+        }
+        bound = 2 * Math.ulp(expected.getSum()) + bound * 0x1p-100;
+
+        DoubleSum array = new DoubleSum();
+        array.acceptAll(input, 0, input.length);
+        assertEquals(expected.getSum(), array.getSum(), bound, "array");
+
+        DoubleSum heap = new DoubleSum();
+        DoubleBuffer heapBuffer = DoubleBuffer.wrap(input);
+        heap.acceptAll(heapBuffer);
+        assertEquals(expected.getSum(), heap.getSum(), bound, "heap buffer");
+        assertEquals(0, heapBuffer.remaining(), "heap buffer remaining");
+
+        DoubleSum direct = new DoubleSum();
+        DoubleBuffer directBuffer = ByteBuffer.allocateDirect(input.length * Double.BYTES).asDoubleBuffer();
+        directBuffer.put(input).flip();
+        direct.acceptAll(directBuffer);
+        assertEquals(expected.getSum(), direct.getSum(), bound, "direct buffer");
+        assertEquals(0, directBuffer.remaining(), "direct buffer remaining");
+    }
+
+    @TestFactory
+    public List<DynamicTest> testRemove() {
+        return List.of(
+                DynamicTest.dynamicTest("1", () -> {
+                    DoubleSum stats = new DoubleSum();
+                    stats.accept(1.0);
+                    Random rnd = new Random(0);
+                    for (int i = 0; i < 1_000_000; i++) {
+                        double d = rnd.nextGaussian() * 1e10;
+                        stats.accept(d);
+                        stats.remove(d);
+                    }
+                    assertEquals(1.0, stats.getSum(), "sum");
+                })
+        );
+    }
+
+    @TestFactory
+    public List<DynamicTest> testSummationModes() {
+        List<DynamicTest> tests = new ArrayList<>();
+        for (SummationMode mode : SummationMode.values()) {
+            tests.add(DynamicTest.dynamicTest(mode + " random", () -> doTestSummationMode(mode,
+                    new Random(0).doubles(10_003, -1e6, 1e6).toArray())));
+            tests.add(DynamicTest.dynamicTest(mode + " ill-conditioned", () -> doTestSummationMode(mode,
+                    illConditioned(10_000))));
+            tests.add(DynamicTest.dynamicTest(mode + " Neumaier example", () -> doTestSummationMode(mode,
+                    new double[]{1.0, 10e100, 1.0, -10e100})));
+        }
+        return tests;
+    }
+
+    /**
+     * Creates values that cancel each other out: pairs of a large value
+     * {@code x} and {@code -x + u}, where {@code u} is small.
+     */
+    private static double[] illConditioned(int n) {
+        Random rnd = new Random(n);
+        double[] a = new double[n];
+        for (int i = 0; i < n; i += 2) {
+            double x = rnd.nextGaussian() * Math.scalb(1.0, rnd.nextInt(80));
+            a[i] = x;
+            a[i + 1] = -x + rnd.nextDouble();
+        }
+        for (int i = n - 1; i > 0; i--) {
+            int j = rnd.nextInt(i + 1);
+            double t = a[i];
+            a[i] = a[j];
+            a[j] = t;
+        }
+        return a;
+    }
+
+    public void doTestSummationMode(SummationMode mode, double[] input) {
+        BigDecimal exact = BigDecimal.ZERO;
+        double sumOfAbs = 0;
+        for (double d : input) {
+            exact = exact.add(new BigDecimal(d));
+            sumOfAbs += Math.abs(d);
+        }
+        double expected = exact.doubleValue();
+        int n = input.length;
+
+        DoubleSum single = new DoubleSum(mode);
+        for (double d : input) {
+            single.accept(d);
+        }
+        DoubleSum array = new DoubleSum(mode);
+        array.acceptAll(input, 0, n);
+        DoubleSum combined = new DoubleSum(mode);
+        for (int from = 0, size = 1; from < n; from += size, size *= 3) {
+            DoubleSum part = new DoubleSum(mode);
+            part.acceptAll(input, from, Math.min(n, from + size));
+            combined.combine(part);
+        }
+        assertEquals(mode, single.getSummationMode(), "mode");
+
+        double bound;
+        switch (mode) {
+            case NAIVE:
+                bound = n * 0x1p-53 * sumOfAbs;
+                break;
+            case PAIRWISE:
+                bound = (128 + 64) * 0x1p-53 * sumOfAbs;
+                break;
+            case KAHAN:
+                bound = 2 * 0x1p-53 * sumOfAbs + n * 0x1p-104 * sumOfAbs;
+                break;
+            case EXACT:
+                bound = 0.0;
+                break;
+            default:
+                bound = 2 * Math.ulp(expected) + n * 0x1p-104 * sumOfAbs;
+                break;
+        }
+        assertSum(expected, single.getSum(), bound, "accept");
+        assertSum(expected, array.getSum(), bound, "acceptAll");
+        assertSum(expected, combined.getSum(), bound, "combine");
+        if (mode == SummationMode.PAIRWISE || mode == SummationMode.KAHAN || mode == SummationMode.EXACT) {
+            assertEquals(Double.doubleToRawLongBits(single.getSum()), Double.doubleToRawLongBits(array.getSum()), "accept vs acceptAll");
+        }
+
+        // Sums of different modes can be combined.
+        DoubleSum exactOfMode = new DoubleSum(SummationMode.EXACT).combine(single);
+        assertSum(expected, exactOfMode.getSum(), bound, "combine into EXACT");
+        DoubleSum modeOfExact = new DoubleSum(mode).combine(new DoubleSum(SummationMode.EXACT).combine(array));
+        assertSum(expected, modeOfExact.getSum(), bound, "combine from EXACT");
+
+        // Snapshots preserve the sum of all modes.
+        ByteBuffer buf = ByteBuffer.allocate(DoubleSum.SNAPSHOT_BYTES);
+        single.writeTo(buf);
+        buf.flip();
+        assertEquals(single.getSum(), DoubleSum.readFrom(buf).getSum(), Math.ulp(single.getSum()), "snapshot");
+    }
+
+    private void assertSum(double expected, double actual, double bound, String message) {
+        if (bound == 0.0) {
+            assertEquals(expected, actual, message);
+        } else {
+            assertEquals(expected, actual, bound, message);
+        }
+    }
+
+    @TestFactory
+    public List<DynamicTest> testExactRounding() {
+        return List.of(
+                DynamicTest.dynamicTest("ties to even", () -> {
+                    // 1 + 2^-53 is a tie, which rounds to 1; 2^-106 breaks the tie.
+                    DoubleSum sum = new DoubleSum(SummationMode.EXACT);
+                    sum.accept(1.0);
+                    sum.accept(0x1p-53);
+                    assertEquals(1.0, sum.getSum(), "tie");
+                    sum.accept(0x1p-106);
+                    assertEquals(Math.nextUp(1.0), sum.getSum(), "tie broken");
+                }),
+                DynamicTest.dynamicTest("infinities", () -> {
+                    DoubleSum sum = new DoubleSum(SummationMode.EXACT);
+                    sum.accept(1.0);
+                    sum.accept(Double.POSITIVE_INFINITY);
+                    assertEquals(Double.POSITIVE_INFINITY, sum.getSum(), "infinity");
+                    sum.accept(Double.NEGATIVE_INFINITY);
+                    assertTrue(Double.isNaN(sum.getSum()), "NaN");
+                }),
+                DynamicTest.dynamicTest("overflow", () -> {
+                    DoubleSum sum = new DoubleSum(SummationMode.EXACT);
+                    sum.accept(Double.MAX_VALUE);
+                    sum.accept(Double.MAX_VALUE);
+                    assertEquals(Double.POSITIVE_INFINITY, sum.getSum(), "overflow");
+                }),
+                DynamicTest.dynamicTest("many exponents", () -> {
+                    DoubleSum sum = new DoubleSum(SummationMode.EXACT);
+                    for (int e = -1000; e <= 1000; e += 7) {
+                        sum.accept(Math.scalb(1.0, e));
+                    }
+                    for (int e = -1000; e <= 1000; e += 7) {
+                        sum.remove(Math.scalb(1.0, e));
+                    }
+                    assertEquals(0.0, sum.getSum(), "sum");
+                })
+        );
+    }
+
+    @TestFactory
+    public List<DynamicTest> testSnapshot() {
+        return List.of(
+                DynamicTest.dynamicTest("big endian", () -> doTestSnapshot(ByteOrder.BIG_ENDIAN)),
+                DynamicTest.dynamicTest("little endian", () -> doTestSnapshot(ByteOrder.LITTLE_ENDIAN)),
+                DynamicTest.dynamicTest("illegal snapshots", () -> {
+                    ByteBuffer buf = ByteBuffer.allocate(DoubleSum.SNAPSHOT_BYTES);
+                    assertThrows(IllegalArgumentException.class, () -> DoubleSum.readFrom(buf));
+                    assertEquals(0, buf.position(), "position");
+                    buf.clear().limit(DoubleSum.SNAPSHOT_BYTES - 1);
+                    assertThrows(BufferUnderflowException.class, () -> DoubleSum.readFrom(buf));
+                    assertThrows(BufferOverflowException.class, () -> new DoubleSum().writeTo(buf));
+                })
+        );
+    }
+
+    public void doTestSnapshot(ByteOrder order) {
+        Random rnd = new Random(0);
+        int nodes = 1000;
+        ByteBuffer buf = ByteBuffer.allocate(nodes * DoubleSum.SNAPSHOT_BYTES).order(order);
+        DoubleSum inProcess = new DoubleSum();
+        DoubleSum fromSnapshots = new DoubleSum();
+        for (int i = 0; i < nodes; i++) {
+            DoubleSum node = new DoubleSum();
+            for (int j = 0; j < 100; j++) {
+                node.accept(rnd.nextGaussian() * Math.pow(10, rnd.nextInt(30)));
+            }
+            inProcess.combine(node);
+            int position = buf.position();
+            node.writeTo(buf);
+            assertEquals(DoubleSum.SNAPSHOT_BYTES, buf.position() - position, "snapshot bytes");
+            buf.position(position);
+            fromSnapshots.combine(DoubleSum.readFrom(buf));
+        }
+        assertEquals(Double.doubleToRawLongBits(inProcess.getSum()), Double.doubleToRawLongBits(fromSnapshots.getSum()), "readFrom");
+
+        buf.flip();
+        DoubleSum bulk = new DoubleSum().combineAll(buf);
+        assertEquals(Double.doubleToRawLongBits(inProcess.getSum()), Double.doubleToRawLongBits(bulk.getSum()), "combineAll");
+        assertEquals(0, buf.remaining(), "remaining");
+    }
 }
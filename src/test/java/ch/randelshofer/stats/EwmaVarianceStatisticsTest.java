@@ -0,0 +1,59 @@
+/*
+ * @(#)EwmaVarianceStatisticsTest.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+
+package ch.randelshofer.stats;
+
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class EwmaVarianceStatisticsTest {
+    @TestFactory
+    public List<DynamicTest> testEwma() {
+        return List.of(
+                DynamicTest.dynamicTest("no decay", () -> {
+                    // all values have the same timestamp, so they have the same weight
+                    EwmaVarianceStatistics stats = new EwmaVarianceStatistics(100, () -> 0);
+                    VarianceStatistics expected = new VarianceStatistics();
+                    for (double d : new double[]{200.0, 171.0, 176.0, 194.0, 148.0, 203.0, 182.0, 186.0, 176.0, 161.0}) {
+                        stats.accept(d + 1e9);
+                        expected.accept(d);
+                    }
+                    System.out.println(stats);
+                    assertEquals(10, stats.getWeight(), 1e-12, "weight");
+                    assertEquals(expected.getAverage() + 1e9, stats.getAverage(), 1e-6, "average");
+                    assertEquals(expected.getPopulationVariance(), stats.getVariance(), 1e-6, "variance");
+                }),
+                DynamicTest.dynamicTest("decay", () -> {
+                    long[] clock = {0};
+                    EwmaVarianceStatistics stats = new EwmaVarianceStatistics(100, () -> clock[0]);
+                    stats.accept(1.0);
+                    clock[0] = 100;
+                    stats.accept(3.0);
+                    // weights: exp(-1) for the first value, 1 for the second value
+                    double w = Math.exp(-1);
+                    double mean = (w * 1.0 + 3.0) / (w + 1);
+                    double variance = (w * (1 - mean) * (1 - mean) + (3 - mean) * (3 - mean)) / (w + 1);
+                    assertEquals(w + 1, stats.getWeight(), 1e-12, "weight");
+                    assertEquals(mean, stats.getAverage(), 1e-12, "average");
+                    assertEquals(variance, stats.getVariance(), 1e-12, "variance");
+                }),
+                DynamicTest.dynamicTest("clock gap and clock going backwards", () -> {
+                    long[] clock = {0};
+                    EwmaVarianceStatistics stats = new EwmaVarianceStatistics(100, () -> clock[0]);
+                    stats.accept(1.0);
+                    clock[0] = Long.MAX_VALUE / 2;
+                    stats.accept(5.0);
+                    clock[0] = 0;
+                    stats.accept(5.0);
+                    assertEquals(5.0, stats.getAverage(), 1e-12, "average");
+                    assertEquals(0.0, stats.getVariance(), 1e-12, "variance");
+                })
+        );
+    }
+}
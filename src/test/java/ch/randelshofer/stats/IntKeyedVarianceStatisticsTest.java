@@ -0,0 +1,76 @@
+/*
+ * @(#)IntKeyedVarianceStatisticsTest.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+
+package ch.randelshofer.stats;
+
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class IntKeyedVarianceStatisticsTest {
+    @TestFactory
+    public List<DynamicTest> testAccept() {
+        return List.of(
+                DynamicTest.dynamicTest("1 group", () -> doTestAccept(1, 1000, 0)),
+                DynamicTest.dynamicTest("100 groups", () -> doTestAccept(100, 10_000, 0)),
+                DynamicTest.dynamicTest("10000 groups", () -> doTestAccept(10_000, 100_000, 0)),
+                DynamicTest.dynamicTest("100 groups, combine at 5000", () -> doTestAccept(100, 10_000, 5000))
+        );
+    }
+
+    public void doTestAccept(int groupCount, int valueCount, int combineAt) {
+        Random rnd = new Random(0);
+        int[] groupKeys = rnd.ints(groupCount).toArray();
+        Map<Integer, VarianceStatistics> expected = new HashMap<>();
+        IntKeyedVarianceStatistics actual = new IntKeyedVarianceStatistics();
+        IntKeyedVarianceStatistics other = new IntKeyedVarianceStatistics();
+        for (int i = 0; i < valueCount; i++) {
+            int key = groupKeys[rnd.nextInt(groupCount)];
+            double value = rnd.nextDouble() * 100;
+            expected.computeIfAbsent(key, k -> new VarianceStatistics()).accept(value);
+            (i < combineAt ? other : actual).accept(key, value);
+        }
+        actual.combine(other);
+
+        assertEquals(expected.size(), actual.size(), "size");
+        int cursorCount = 0;
+        IntKeyedVarianceStatistics.Cursor cursor = actual.cursor();
+        while (cursor.next()) {
+            cursorCount++;
+            VarianceStatistics e = expected.get(cursor.getKey());
+            assertNotNull(e, "key " + cursor.getKey());
+            assertEquals(e.getCount(), cursor.getCount(), "count");
+            assertEquals(e.getMin(), cursor.getMin(), "min");
+            assertEquals(e.getMax(), cursor.getMax(), "max");
+            assertEquals(e.getSum(), cursor.getSum(), 1e-9, "sum");
+            assertEquals(e.getSampleVariance(), cursor.getSampleVariance(), 1e-6, "variance");
+            assertEquals(e.getSum(), actual.get(cursor.getKey()).getSum(), 1e-9, "get");
+        }
+        assertEquals(expected.size(), cursorCount, "cursor count");
+        assertNull(actual.get(42), "missing key");
+    }
+
+    @TestFactory
+    public List<DynamicTest> testInfiniteValue() {
+        return VarianceStatisticsTest.infiniteValueTests(values -> {
+            IntKeyedVarianceStatistics stats = new IntKeyedVarianceStatistics();
+            for (double value : values) {
+                stats.accept(7, value);
+            }
+            IntKeyedVarianceStatistics.Cursor cursor = stats.cursor();
+            cursor.next();
+            assertEquals(stats.get(7).getSum(), cursor.getSum(), "cursor sum");
+            return cursor.toVarianceStatistics();
+        });
+    }
+}
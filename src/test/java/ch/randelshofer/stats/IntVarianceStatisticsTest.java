@@ -0,0 +1,94 @@
+/*
+ * @(#)IntVarianceStatisticsTest.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+
+package ch.randelshofer.stats;
+
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class IntVarianceStatisticsTest {
+    @TestFactory
+    public List<DynamicTest> testExact() {
+        return List.of(
+                DynamicTest.dynamicTest("small values", () -> doTestExact(new int[]{1, 2, 3, 4, 5}, 1)),
+                DynamicTest.dynamicTest("negative values", () -> doTestExact(new int[]{-7, 3, -2, 0, 11, -5}, 2)),
+                DynamicTest.dynamicTest("random", () -> doTestExact(random(10_000), 3)),
+                DynamicTest.dynamicTest("Integer.MIN_VALUE and Integer.MAX_VALUE", () -> doTestExact(
+                        new int[]{Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE, 0}, 2))
+        );
+    }
+
+    private static int[] random(int n) {
+        Random rnd = new Random(n);
+        int[] a = new int[n];
+        for (int i = 0; i < n; i++) {
+            a[i] = rnd.nextInt();
+        }
+        return a;
+    }
+
+    public void doTestExact(int[] a, int parts) {
+        int n = a.length;
+        LongVarianceStatistics expected = new LongVarianceStatistics();
+        for (int x : a) {
+            expected.accept(x);
+        }
+
+        IntVarianceStatistics single = new IntVarianceStatistics();
+        for (int x : a) {
+            single.accept(x);
+        }
+        IntVarianceStatistics combined = new IntVarianceStatistics();
+        for (int p = 0; p < parts; p++) {
+            IntVarianceStatistics part = new IntVarianceStatistics();
+            part.acceptAll(a, p * n / parts, (p + 1) * n / parts);
+            combined.combine(part);
+        }
+        for (IntVarianceStatistics stats : List.of(single, combined)) {
+            assertEquals(n, stats.getCount(), "count");
+            assertEquals(expected.getMin(), stats.getMin(), "min");
+            assertEquals(expected.getMax(), stats.getMax(), "max");
+            assertEquals(expected.getExactSum(), stats.getExactSum(), "sum");
+            assertEquals(expected.getExactSumOfSquare(), stats.getExactSumOfSquare(), "sum of square");
+            assertEquals(expected.getSampleVariance(), stats.getSampleVariance(), "sample variance");
+            assertEquals(expected.getPopulationVariance(), stats.getPopulationVariance(), "population variance");
+        }
+    }
+
+    @TestFactory
+    public List<DynamicTest> testEdgeCases() {
+        return List.of(
+                DynamicTest.dynamicTest("empty", () -> {
+                    IntVarianceStatistics stats = new IntVarianceStatistics();
+                    stats.combine(new IntVarianceStatistics());
+                    stats.acceptAll(new int[0]);
+                    assertEquals(0, stats.getCount(), "count");
+                    assertEquals(BigInteger.ZERO, stats.getExactSum(), "sum");
+                    assertEquals(0.0, stats.getSampleVariance(), "sample variance");
+                    assertEquals(Integer.MAX_VALUE, stats.getMin(), "min");
+                    assertEquals(Integer.MIN_VALUE, stats.getMax(), "max");
+                }),
+                DynamicTest.dynamicTest("sum of square above 2^64", () -> {
+                    int[] a = new int[8];
+                    Arrays.fill(a, Integer.MIN_VALUE);
+                    IntVarianceStatistics stats = new IntVarianceStatistics();
+                    stats.acceptAll(a);
+                    assertEquals(BigInteger.ONE.shiftLeft(65), stats.getExactSumOfSquare(), "sum of square");
+                    assertEquals(0.0, stats.getSampleVariance(), "sample variance");
+                }),
+                DynamicTest.dynamicTest("illegal range", () ->
+                        assertThrows(IndexOutOfBoundsException.class,
+                                () -> new IntVarianceStatistics().acceptAll(new int[2], -1, 1)))
+        );
+    }
+}
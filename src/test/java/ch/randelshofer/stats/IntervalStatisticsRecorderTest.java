@@ -0,0 +1,125 @@
+/*
+ * @(#)IntervalStatisticsRecorderTest.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+
+package ch.randelshofer.stats;
+
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IntervalStatisticsRecorderTest {
+    @Test
+    public void testSingleThread() {
+        IntervalStatisticsRecorder recorder = new IntervalStatisticsRecorder();
+        VarianceStatistics expected = new VarianceStatistics();
+        for (int i = 1; i <= 100; i++) {
+            recorder.accept(i);
+            expected.accept(i);
+        }
+        IntervalStatistics actual = recorder.getIntervalStatistics();
+        assertEquals(expected.getCount(), actual.getCount(), "count");
+        assertEquals(expected.getMin(), actual.getMin(), "min");
+        assertEquals(expected.getMax(), actual.getMax(), "max");
+        assertEquals(expected.getSum(), actual.getSum(), "sum");
+        assertEquals(expected.getSampleVariance(), actual.getSampleVariance(), 1e-9, "variance");
+        assertEquals(Stats.confidence(0.05, expected.getSampleStandardDeviation(), expected.getCount()),
+                actual.getConfidence(0.05), 1e-9, "confidence");
+        assertTrue(actual.getStartTimeMillis() <= actual.getEndTimeMillis(), "interval");
+
+        recorder.accept(1000);
+        IntervalStatistics next = recorder.getIntervalStatistics();
+        assertSame(actual, next, "snapshot is reused");
+        assertEquals(1, next.getCount(), "count of next interval");
+        assertEquals(1000, next.getMin(), "min of next interval");
+
+        IntervalStatistics empty = recorder.getIntervalStatistics();
+        assertEquals(0, empty.getCount(), "count of empty interval");
+        assertEquals(Double.POSITIVE_INFINITY, empty.getMin(), "min of empty interval");
+    }
+
+    @TestFactory
+    public List<DynamicTest> testConcurrentHarvest() {
+        return List.of(
+                DynamicTest.dynamicTest("1 thread", () -> doTestConcurrentHarvest(1)),
+                DynamicTest.dynamicTest("4 threads", () -> doTestConcurrentHarvest(4)),
+                DynamicTest.dynamicTest("16 threads", () -> doTestConcurrentHarvest(16))
+        );
+    }
+
+    /**
+     * Harvests intervals while the writers are recording, and checks that
+     * no value is lost or counted twice.
+     */
+    public void doTestConcurrentHarvest(int threadCount) throws InterruptedException {
+        final int valuesPerThread = 20_000;
+        IntervalStatisticsRecorder recorder = new IntervalStatisticsRecorder();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < valuesPerThread; i++) {
+                    recorder.accept(i);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        VarianceStatistics actual = new VarianceStatistics();
+        AtomicBoolean done = new AtomicBoolean();
+        Thread joiner = new Thread(() -> {
+            for (Thread thread : threads) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            done.set(true);
+        });
+        joiner.start();
+        while (!done.get()) {
+            actual.combine(recorder.getIntervalStatistics().toVarianceStatistics());
+            Thread.yield();
+        }
+        actual.combine(recorder.getIntervalStatistics().toVarianceStatistics());
+
+        VarianceStatistics expected = new VarianceStatistics();
+        for (int t = 0; t < threadCount; t++) {
+            for (int i = 0; i < valuesPerThread; i++) {
+                expected.accept(i);
+            }
+        }
+        assertEquals(expected.getCount(), actual.getCount(), "count");
+        assertEquals(expected.getMin(), actual.getMin(), "min");
+        assertEquals(expected.getMax(), actual.getMax(), "max");
+        assertEquals(expected.getSum(), actual.getSum(), "sum");
+        assertEquals(expected.getSumOfSquare(), actual.getSumOfSquare(), expected.getSumOfSquare() * 1e-12, "sum of square");
+
+        // the slots of the terminated threads are harvested and dropped
+        assertEquals(0, recorder.getIntervalStatistics().getCount(), "count after termination");
+    }
+
+    @TestFactory
+    public List<DynamicTest> testInfiniteValue() {
+        return VarianceStatisticsTest.infiniteValueTests(values -> {
+            IntervalStatisticsRecorder recorder = new IntervalStatisticsRecorder();
+            for (double value : values) {
+                recorder.accept(value);
+            }
+            IntervalStatistics interval = recorder.getIntervalStatistics();
+            VarianceStatistics stats = interval.toVarianceStatistics();
+            assertEquals(stats.getSum(), interval.getSum(), "interval sum");
+            return stats;
+        });
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * @(#)IntervalStatisticsRegistryTest.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+
+package ch.randelshofer.stats;
+
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IntervalStatisticsRegistryTest {
+    @Test
+    public void testAttributes() throws Exception {
+        MBeanServer server = MBeanServerFactory.newMBeanServer();
+        try (IntervalStatisticsRegistry registry = new IntervalStatisticsRegistry(server, 0.05)) {
+            IntervalStatisticsRecorder recorder = registry.register("latency, \"ms\"");
+            assertSame(recorder, registry.register("latency, \"ms\""), "register is idempotent");
+            ObjectName name = IntervalStatisticsRegistry.getObjectName("latency, \"ms\"");
+            assertTrue(server.isRegistered(name), "registered");
+
+            VarianceStatistics expected = new VarianceStatistics();
+            for (int i = 1; i <= 10; i++) {
+                recorder.accept(i);
+                expected.accept(i);
+            }
+            assertEquals(0L, server.getAttribute(name, "Count"), "count before harvest");
+            registry.harvest();
+            assertEquals(10L, server.getAttribute(name, "Count"), "count");
+            assertEquals(expected.getAverage(), (double) server.getAttribute(name, "Average"), 1e-12, "average");
+            assertEquals(expected.getSampleStandardDeviation(), (double) server.getAttribute(name, "StandardDeviation"), 1e-12, "stdev");
+            assertEquals(Stats.confidence(0.05, expected.getSampleStandardDeviation(), 10),
+                    (double) server.getAttribute(name, "Confidence"), 1e-12, "confidence");
+            assertEquals(1.0, server.getAttribute(name, "Min"), "min");
+            assertEquals(10.0, server.getAttribute(name, "Max"), "max");
+
+            registry.harvest();
+            assertEquals(0L, server.getAttribute(name, "Count"), "count of empty interval");
+
+            assertTrue(registry.unregister("latency, \"ms\""), "unregister");
+            assertFalse(registry.unregister("latency, \"ms\""), "unregister twice");
+            assertFalse(server.isRegistered(name), "unregistered");
+        }
+    }
+
+    @Test
+    public void testIllegalAlpha() {
+        MBeanServer server = MBeanServerFactory.newMBeanServer();
+        assertThrows(IllegalArgumentException.class, () -> new IntervalStatisticsRegistry(server, 0));
+        assertThrows(IllegalArgumentException.class, () -> new IntervalStatisticsRegistry(server, 1));
+    }
+}
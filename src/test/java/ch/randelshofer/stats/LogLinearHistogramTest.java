@@ -0,0 +1,95 @@
+/*
+ * @(#)LogLinearHistogramTest.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+
+package ch.randelshofer.stats;
+
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.DoubleStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LogLinearHistogramTest {
+    @TestFactory
+    public List<DynamicTest> testStatistics() {
+        return List.of(
+                DynamicTest.dynamicTest("uniform 2 digits", () -> doTestStatistics(
+                        new Random(0).doubles(100_000, 1e-3, 10).toArray(), 2)),
+                DynamicTest.dynamicTest("uniform 3 digits", () -> doTestStatistics(
+                        new Random(0).doubles(100_000, 1e-3, 10).toArray(), 3)),
+                DynamicTest.dynamicTest("exponential 3 digits", () -> doTestStatistics(
+                        new Random(0).doubles(100_000).map(d -> -Math.log(1 - d) * 0.01).toArray(), 3))
+        );
+    }
+
+    public void doTestStatistics(double[] samples, int significantDigits) {
+        double precision = Math.pow(10, -significantDigits);
+        LogLinearHistogram histogram = DoubleStream.of(samples).parallel()
+                .collect(() -> new LogLinearHistogram(1e-6, 3600, significantDigits),
+                        LogLinearHistogram::accept, LogLinearHistogram::combine);
+        VarianceStatistics expected = DoubleStream.of(samples)
+                .collect(VarianceStatistics::new, VarianceStatistics::accept, VarianceStatistics::combine);
+        System.out.println(histogram);
+
+        assertEquals(expected.getCount(), histogram.getCount(), "count");
+        assertEquals(expected.getMin(), histogram.getMin(), "min");
+        assertEquals(expected.getMax(), histogram.getMax(), "max");
+        assertEquals(expected.getAverage(), histogram.getAverage(), precision * expected.getAverage(), "average");
+        assertEquals(expected.getSampleStandardDeviation(), histogram.getSampleStandardDeviation(),
+                precision * expected.getAverage(), "stdev");
+
+        double[] sorted = samples.clone();
+        Arrays.sort(sorted);
+        for (double q : new double[]{0.01, 0.5, 0.9, 0.99, 0.999}) {
+            double exact = sorted[(int) Math.ceil(q * sorted.length) - 1];
+            assertEquals(exact, histogram.quantile(q), precision * exact, "quantile " + q);
+            assertEquals(q, histogram.cdf(exact), 0.005, "cdf at " + exact);
+        }
+    }
+
+    @TestFactory
+    public List<DynamicTest> testIllegalArguments() {
+        return List.of(
+                DynamicTest.dynamicTest("negative value", () -> assertThrows(IllegalArgumentException.class,
+                        () -> new LogLinearHistogram(1, 1000, 3).accept(-1))),
+                DynamicTest.dynamicTest("NaN", () -> assertThrows(IllegalArgumentException.class,
+                        () -> new LogLinearHistogram(1, 1000, 3).accept(Double.NaN))),
+                DynamicTest.dynamicTest("digits", () -> assertThrows(IllegalArgumentException.class,
+                        () -> new LogLinearHistogram(1, 1000, 6))),
+                DynamicTest.dynamicTest("range", () -> assertThrows(IllegalArgumentException.class,
+                        () -> new LogLinearHistogram(0, 1000, 3))),
+                DynamicTest.dynamicTest("subnormal range", () -> assertThrows(IllegalArgumentException.class,
+                        () -> new LogLinearHistogram(1e-310, 1.0, 2))),
+                DynamicTest.dynamicTest("smallest normal range", () -> {
+                    LogLinearHistogram h = new LogLinearHistogram(Double.MIN_NORMAL, 1.0, 2);
+                    h.accept(1e-309);
+                    h.accept(Double.MIN_NORMAL * 3);
+                    h.accept(0.5);
+                    assertEquals(3, h.getCount(), "count");
+                }),
+                DynamicTest.dynamicTest("combine", () -> assertThrows(IllegalArgumentException.class,
+                        () -> new LogLinearHistogram(1, 1000, 3).combine(new LogLinearHistogram(1, 1000, 2))))
+        );
+    }
+
+    @TestFactory
+    public List<DynamicTest> testOutOfRange() {
+        return List.of(
+                DynamicTest.dynamicTest("below and above", () -> {
+                    LogLinearHistogram histogram = new LogLinearHistogram(1, 1000, 3);
+                    histogram.accept(0);
+                    histogram.accept(5000);
+                    assertEquals(2, histogram.getCount(), "count");
+                    assertEquals(0, histogram.quantile(0), "min");
+                    assertEquals(5000, histogram.quantile(1), "max");
+                })
+        );
+    }
+}
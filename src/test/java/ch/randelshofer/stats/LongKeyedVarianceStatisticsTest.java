@@ -0,0 +1,74 @@
+/*
+ * @(#)LongKeyedVarianceStatisticsTest.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+
+package ch.randelshofer.stats;
+
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class LongKeyedVarianceStatisticsTest {
+    @TestFactory
+    public List<DynamicTest> testAccept() {
+        return List.of(
+                DynamicTest.dynamicTest("1 group", () -> doTestAccept(1, 1000, 0)),
+                DynamicTest.dynamicTest("100 groups", () -> doTestAccept(100, 10_000, 0)),
+                DynamicTest.dynamicTest("10000 groups", () -> doTestAccept(10_000, 100_000, 0)),
+                DynamicTest.dynamicTest("100 groups, combine at 5000", () -> doTestAccept(100, 10_000, 5000))
+        );
+    }
+
+    public void doTestAccept(int groupCount, int valueCount, int combineAt) {
+        Random rnd = new Random(0);
+        long[] groupKeys = rnd.longs(groupCount).toArray();
+        Map<Long, VarianceStatistics> expected = new HashMap<>();
+        LongKeyedVarianceStatistics actual = new LongKeyedVarianceStatistics();
+        LongKeyedVarianceStatistics other = new LongKeyedVarianceStatistics();
+        for (int i = 0; i < valueCount; i++) {
+            long key = groupKeys[rnd.nextInt(groupCount)];
+            double value = rnd.nextDouble() * 100;
+            expected.computeIfAbsent(key, k -> new VarianceStatistics()).accept(value);
+            (i < combineAt ? other : actual).accept(key, value);
+        }
+        actual.combine(other);
+
+        assertEquals(expected.size(), actual.size(), "size");
+        int cursorCount = 0;
+        LongKeyedVarianceStatistics.Cursor cursor = actual.cursor();
+        while (cursor.next()) {
+            cursorCount++;
+            VarianceStatistics e = expected.get(cursor.getKey());
+            assertNotNull(e, "key " + cursor.getKey());
+            assertEquals(e.getCount(), cursor.getCount(), "count");
+            assertEquals(e.getMin(), cursor.getMin(), "min");
+            assertEquals(e.getMax(), cursor.getMax(), "max");
+            assertEquals(e.getSum(), cursor.getSum(), 1e-9, "sum");
+            assertEquals(e.getSampleVariance(), cursor.getSampleVariance(), 1e-6, "variance");
+            assertEquals(e.getSum(), actual.get(cursor.getKey()).getSum(), 1e-9, "get");
+        }
+        assertEquals(expected.size(), cursorCount, "cursor count");
+        assertNull(actual.get(42), "missing key");
+    }
+
+    @TestFactory
+    public List<DynamicTest> testInfiniteValue() {
+        return VarianceStatisticsTest.infiniteValueTests(values -> {
+            LongKeyedVarianceStatistics stats = new LongKeyedVarianceStatistics();
+            LongKeyedVarianceStatistics other = new LongKeyedVarianceStatistics();
+            for (int i = 0; i < values.length; i++) {
+                (i % 2 == 0 ? stats : other).accept(7L, values[i]);
+            }
+            return stats.combine(other).get(7L);
+        });
+    }
+}
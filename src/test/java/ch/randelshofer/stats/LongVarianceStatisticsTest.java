@@ -0,0 +1,138 @@
+/*
+ * @(#)LongVarianceStatisticsTest.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+
+package ch.randelshofer.stats;
+
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LongVarianceStatisticsTest {
+    @TestFactory
+    public List<DynamicTest> testExact() {
+        return List.of(
+                DynamicTest.dynamicTest("small values", () -> doTestExact(new long[]{1, 2, 3, 4, 5}, 1)),
+                DynamicTest.dynamicTest("negative values", () -> doTestExact(new long[]{-7, 3, -2, 0, 11, -5}, 2)),
+                DynamicTest.dynamicTest("nanoseconds with offset 2^52", () -> doTestExact(random(10_000, 1L << 52, 1000), 3)),
+                DynamicTest.dynamicTest("large magnitudes", () -> doTestExact(random(1000, 0, 1L << 56), 4)),
+                DynamicTest.dynamicTest("Long.MIN_VALUE and Long.MAX_VALUE", () -> doTestExact(
+                        new long[]{Long.MIN_VALUE, Long.MAX_VALUE, 0}, 2))
+        );
+    }
+
+    private static long[] random(int n, long offset, long range) {
+        Random rnd = new Random(n);
+        long[] a = new long[n];
+        for (int i = 0; i < n; i++) {
+            a[i] = offset + (long) (rnd.nextGaussian() * range);
+        }
+        return a;
+    }
+
+    public void doTestExact(long[] a, int parts) {
+        int n = a.length;
+        BigInteger sum = BigInteger.ZERO, sumOfSquare = BigInteger.ZERO;
+        long min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+        for (long x : a) {
+            BigInteger bx = BigInteger.valueOf(x);
+            sum = sum.add(bx);
+            sumOfSquare = sumOfSquare.add(bx.multiply(bx));
+            min = Math.min(min, x);
+            max = Math.max(max, x);
+        }
+        BigDecimal scaled = new BigDecimal(sumOfSquare.multiply(BigInteger.valueOf(n)).subtract(sum.multiply(sum)));
+        double sampleVariance = scaled.divide(BigDecimal.valueOf((long) n * (n - 1)), MathContext.DECIMAL128).doubleValue();
+        double populationVariance = scaled.divide(BigDecimal.valueOf((long) n * n), MathContext.DECIMAL128).doubleValue();
+
+        LongVarianceStatistics single = new LongVarianceStatistics();
+        for (long x : a) {
+            single.accept(x);
+        }
+        LongVarianceStatistics combined = new LongVarianceStatistics();
+        for (int p = 0; p < parts; p++) {
+            LongVarianceStatistics part = new LongVarianceStatistics();
+            part.acceptAll(a, p * n / parts, (p + 1) * n / parts);
+            combined.combine(part);
+        }
+        for (LongVarianceStatistics stats : List.of(single, combined)) {
+            assertEquals(n, stats.getCount(), "count");
+            assertEquals(min, stats.getMin(), "min");
+            assertEquals(max, stats.getMax(), "max");
+            assertEquals(sum, stats.getExactSum(), "sum");
+            assertEquals(sumOfSquare, stats.getExactSumOfSquare(), "sum of square");
+            assertEquals(sum.doubleValue(), stats.getSum(), "sum");
+            assertEquals(sampleVariance, stats.getSampleVariance(), Math.ulp(sampleVariance), "sample variance");
+            assertEquals(populationVariance, stats.getPopulationVariance(), Math.ulp(populationVariance), "population variance");
+        }
+    }
+
+    @TestFactory
+    public List<DynamicTest> testEdgeCases() {
+        return List.of(
+                DynamicTest.dynamicTest("empty", () -> {
+                    LongVarianceStatistics stats = new LongVarianceStatistics();
+                    stats.combine(new LongVarianceStatistics());
+                    stats.acceptAll(new long[0]);
+                    assertEquals(0, stats.getCount(), "count");
+                    assertEquals(0.0, stats.getAverage(), "average");
+                    assertEquals(0.0, stats.getSampleVariance(), "sample variance");
+                    assertEquals(0.0, stats.getPopulationVariance(), "population variance");
+                    assertEquals(Long.MAX_VALUE, stats.getMin(), "min");
+                    assertEquals(Long.MIN_VALUE, stats.getMax(), "max");
+                }),
+                DynamicTest.dynamicTest("no cancellation", () -> {
+                    // The double-based two-pass formula loses all digits here.
+                    LongVarianceStatistics stats = new LongVarianceStatistics();
+                    stats.acceptAll(new long[]{(1L << 60) + 1, (1L << 60) + 2, (1L << 60) + 3});
+                    assertEquals(1.0, stats.getSampleVariance(), "sample variance");
+                }),
+                DynamicTest.dynamicTest("overflow", () -> {
+                    // Long.MIN_VALUE² = 2^126
+                    LongVarianceStatistics stats = new LongVarianceStatistics();
+                    stats.accept(Long.MIN_VALUE);
+                    assertThrows(ArithmeticException.class, () -> stats.combine(stats));
+                    assertThrows(ArithmeticException.class, () -> new LongVarianceStatistics().acceptAll(new long[]{Long.MIN_VALUE, Long.MIN_VALUE}));
+                    assertThrows(ArithmeticException.class, () -> stats.accept(Long.MIN_VALUE));
+                }),
+                DynamicTest.dynamicTest("overflow past 2^128", () -> {
+                    // 4·2^126 = 2^128 wraps the 128-bit sum of square to zero
+                    LongVarianceStatistics stats = new LongVarianceStatistics();
+                    long[] a = {Long.MIN_VALUE, Long.MIN_VALUE, Long.MIN_VALUE, Long.MIN_VALUE};
+                    assertThrows(ArithmeticException.class, () -> stats.acceptAll(a));
+                    assertEquals(0, stats.getCount(), "state is not changed");
+                    assertThrows(ArithmeticException.class, () -> {
+                        for (long x : a) {
+                            stats.accept(x);
+                        }
+                    });
+                }),
+                DynamicTest.dynamicTest("state after overflow", () -> {
+                    LongVarianceStatistics stats = new LongVarianceStatistics();
+                    stats.accept(Long.MIN_VALUE);
+                    assertThrows(ArithmeticException.class, () -> stats.acceptAll(new long[]{Long.MIN_VALUE}));
+                    assertThrows(ArithmeticException.class, () -> stats.accept(Long.MIN_VALUE));
+                    assertThrows(ArithmeticException.class, () -> stats.combine(stats));
+                    assertEquals(1, stats.getCount(), "count");
+                    assertEquals(Long.MIN_VALUE, stats.getMin(), "min");
+                    assertEquals(Long.MIN_VALUE, stats.getMax(), "max");
+                    assertEquals(BigInteger.valueOf(Long.MIN_VALUE), stats.getExactSum(), "sum");
+                    assertEquals(BigInteger.ONE.shiftLeft(126), stats.getExactSumOfSquare(), "sum of square");
+                    stats.accept(3);
+                    assertEquals(BigInteger.ONE.shiftLeft(126).add(BigInteger.valueOf(9)), stats.getExactSumOfSquare(), "sum of square");
+                }),
+                DynamicTest.dynamicTest("illegal range", () ->
+                        assertThrows(IndexOutOfBoundsException.class,
+                                () -> new LongVarianceStatistics().acceptAll(new long[2], 1, 3)))
+        );
+    }
+}
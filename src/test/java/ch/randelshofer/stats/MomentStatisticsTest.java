@@ -0,0 +1,75 @@
+/*
+ * @(#)MomentStatisticsTest.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+
+package ch.randelshofer.stats;
+
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+
+import java.util.List;
+import java.util.stream.DoubleStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MomentStatisticsTest {
+    private final static double[] SAMPLES_10 = {
+            200.0, 171.0, 176.0, 194.0, 148.0, 203.0, 182.0, 186.0, 176.0, 161.0};
+
+    @TestFactory
+    public List<DynamicTest> testMoments() {
+        return List.of(
+                DynamicTest.dynamicTest("10", () -> doTestMoments(SAMPLES_10, 0, 1e-9)),
+                DynamicTest.dynamicTest("10 with offset 1e9", () -> doTestMoments(SAMPLES_10, 1e9, 1e-6)),
+                DynamicTest.dynamicTest("10 with offset 1e12", () -> doTestMoments(SAMPLES_10, 1e12, 1e-3))
+        );
+    }
+
+    public void doTestMoments(double[] samples, double offset, double delta) {
+        MomentStatistics stats = DoubleStream.of(samples).map(d -> d + offset)
+                .collect(MomentStatistics::new, MomentStatistics::accept, MomentStatistics::combine);
+        System.out.println(stats);
+        assertEquals(179.7 + offset, stats.getAverage(), 1e-9 * (179.7 + offset), "mean");
+        assertEquals(295.7888888888889, stats.getSampleVariance(), delta, "variance");
+        assertEquals(266.21, stats.getPopulationVariance(), delta, "variance of population");
+        assertEquals(-0.3442604547623067, stats.getPopulationSkewness(), delta, "skewness of population");
+        assertEquals(-0.40824267951534354, stats.getSampleSkewness(), delta, "skewness");
+        assertEquals(-0.6771413661687697, stats.getPopulationKurtosis(), delta, "kurtosis of population");
+        assertEquals(-0.2328034866197894, stats.getSampleKurtosis(), delta, "kurtosis");
+    }
+
+    @TestFactory
+    public List<DynamicTest> testCombine() {
+        return List.of(
+                DynamicTest.dynamicTest("10", () -> doTestCombine(SAMPLES_10, 0)),
+                DynamicTest.dynamicTest("10 with offset 1e9", () -> doTestCombine(SAMPLES_10, 1e9))
+        );
+    }
+
+    public void doTestCombine(double[] samples, double offset) {
+        MomentStatistics expected = new MomentStatistics();
+        for (double d : samples) {
+            expected.accept(d + offset);
+        }
+        for (int i = 0; i <= samples.length; i++) {
+            MomentStatistics statsA = new MomentStatistics();
+            MomentStatistics statsB = new MomentStatistics();
+            for (int j = 0; j < i; j++) {
+                statsA.accept(samples[j] + offset);
+            }
+            for (int j = i; j < samples.length; j++) {
+                statsB.accept(samples[j] + offset);
+            }
+            statsA.combine(statsB);
+
+            assertEquals(expected.getCount(), statsA.getCount(), "count i=" + i);
+            assertEquals(expected.getMin(), statsA.getMin(), "min i=" + i);
+            assertEquals(expected.getMax(), statsA.getMax(), "max i=" + i);
+            assertEquals(expected.getAverage(), statsA.getAverage(), 1e-9 * Math.abs(expected.getAverage()), "mean i=" + i);
+            assertEquals(expected.getSampleVariance(), statsA.getSampleVariance(), 1e-6, "variance i=" + i);
+            assertEquals(expected.getSampleSkewness(), statsA.getSampleSkewness(), 1e-6, "skewness i=" + i);
+            assertEquals(expected.getSampleKurtosis(), statsA.getSampleKurtosis(), 1e-6, "kurtosis i=" + i);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * @(#)MultivariateStatisticsTest.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+
+package ch.randelshofer.stats;
+
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MultivariateStatisticsTest {
+    @TestFactory
+    public List<DynamicTest> testCovariance() {
+        return List.of(
+                DynamicTest.dynamicTest("1 dim", () -> doTestCovariance(1, 1000, 0.0)),
+                DynamicTest.dynamicTest("5 dims", () -> doTestCovariance(5, 1000, 0.0)),
+                DynamicTest.dynamicTest("5 dims with offset 1e9", () -> doTestCovariance(5, 1000, 1e9)),
+                DynamicTest.dynamicTest("17 dims, 1001 rows", () -> doTestCovariance(17, 1001, 1e3))
+        );
+    }
+
+    public void doTestCovariance(int dims, int n, double offset) {
+        Random rnd = new Random(dims);
+        double[][] rows = new double[n][dims];
+        for (int r = 0; r < n; r++) {
+            double common = rnd.nextGaussian();
+            for (int j = 0; j < dims; j++) {
+                rows[r][j] = offset + j + common * (j + 1) + rnd.nextGaussian();
+            }
+        }
+        // Two-pass reference
+        double[] mean = new double[dims];
+        for (double[] row : rows) {
+            for (int j = 0; j < dims; j++) {
+                mean[j] += (row[j] - offset) / n;
+            }
+        }
+        double[][] cov = new double[dims][dims];
+        for (double[] row : rows) {
+            for (int i = 0; i < dims; i++) {
+                for (int j = 0; j < dims; j++) {
+                    cov[i][j] += (row[i] - offset - mean[i]) * (row[j] - offset - mean[j]) / (n - 1);
+                }
+            }
+        }
+
+        MultivariateStatistics byRow = new MultivariateStatistics(dims);
+        for (double[] row : rows) {
+            byRow.accept(row);
+        }
+        assertCovariance(offset, mean, cov, byRow, "by row");
+
+        // Column-major blocks of different sizes, combined
+        MultivariateStatistics byBlock = new MultivariateStatistics(dims);
+        int from = 0;
+        for (int size : new int[]{1, 7, 300, n}) {
+            int to = Math.min(n, from + size);
+            double[] block = new double[(to - from) * dims];
+            for (int r = from; r < to; r++) {
+                for (int j = 0; j < dims; j++) {
+                    block[j * (to - from) + r - from] = rows[r][j];
+                }
+            }
+            MultivariateStatistics part = new MultivariateStatistics(dims);
+            part.acceptAll(block, to - from);
+            byBlock.combine(part);
+            from = to;
+        }
+        assertCovariance(offset, mean, cov, byBlock, "by block");
+    }
+
+    private void assertCovariance(double offset, double[] mean, double[][] cov, MultivariateStatistics actual, String message) {
+        int dims = mean.length;
+        double[][] matrix = actual.getSampleCovarianceMatrix();
+        for (int i = 0; i < dims; i++) {
+            assertEquals(offset + mean[i], actual.getAverage(i), 1e-12 * Math.max(1, offset), message + " mean " + i);
+            for (int j = 0; j < dims; j++) {
+                assertEquals(cov[i][j], actual.getSampleCovariance(i, j), 1e-9 * Math.max(1, Math.abs(cov[i][j])), message + " cov " + i + "," + j);
+                assertEquals(cov[i][j], matrix[i][j], 1e-9 * Math.max(1, Math.abs(cov[i][j])), message + " matrix " + i + "," + j);
+                assertEquals(cov[i][j] / Math.sqrt(cov[i][i] * cov[j][j]), actual.getCorrelation(i, j), 1e-9, message + " r " + i + "," + j);
+            }
+        }
+    }
+
+    @TestFactory
+    public List<DynamicTest> testEdgeCases() {
+        return List.of(
+                DynamicTest.dynamicTest("empty", () -> {
+                    MultivariateStatistics stats = new MultivariateStatistics(3);
+                    stats.combine(new MultivariateStatistics(3));
+                    stats.acceptAll(new double[0], 0);
+                    assertEquals(0, stats.getCount(), "count");
+                    assertEquals(0.0, stats.getSampleCovariance(0, 1), "covariance");
+                    assertEquals(0.0, stats.getPopulationCovariance(0, 1), "covariance");
+                    assertEquals(Arrays.toString(new double[3]), Arrays.toString(stats.getAverages()), "averages");
+                }),
+                DynamicTest.dynamicTest("population covariance", () -> {
+                    MultivariateStatistics stats = new MultivariateStatistics(2);
+                    stats.accept(new double[]{1, 2});
+                    stats.accept(new double[]{3, 6});
+                    assertEquals(1.0, stats.getPopulationCovariance(0, 0), "var x");
+                    assertEquals(2.0, stats.getPopulationCovariance(0, 1), "cov");
+                    assertEquals(2.0, stats.getPopulationCovariance(1, 0), "cov");
+                    assertEquals(4.0, stats.getPopulationCovariance(1, 1), "var y");
+                    assertEquals(1.0, stats.getCorrelation(0, 1), "r");
+                }),
+                DynamicTest.dynamicTest("illegal arguments", () -> {
+                    assertThrows(IllegalArgumentException.class, () -> new MultivariateStatistics(0));
+                    assertThrows(IllegalArgumentException.class, () -> new MultivariateStatistics(2).accept(new double[3]));
+                    assertThrows(IllegalArgumentException.class, () -> new MultivariateStatistics(2).combine(new MultivariateStatistics(3)));
+                    assertThrows(IndexOutOfBoundsException.class, () -> new MultivariateStatistics(2).acceptAll(new double[3], 2));
+                    assertThrows(IndexOutOfBoundsException.class, () -> new MultivariateStatistics(2).getAverage(2));
+                })
+        );
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * @(#)QuantileSketchTest.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+
+package ch.randelshofer.stats;
+
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+
+import java.util.List;
+import java.util.Random;
+import java.util.stream.DoubleStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QuantileSketchTest {
+    /**
+     * Rank error that must not be exceeded. This is larger than the
+     * documented error of 0.017 for k=200, so that the test does not fail
+     * randomly.
+     */
+    private final static double MAX_RANK_ERROR = 0.03;
+
+    @TestFactory
+    public List<DynamicTest> testQuantile() {
+        return List.of(
+                DynamicTest.dynamicTest("10", () -> doTestQuantile(10, 1)),
+                DynamicTest.dynamicTest("1000", () -> doTestQuantile(1000, 1)),
+                DynamicTest.dynamicTest("100000", () -> doTestQuantile(100_000, 1)),
+                DynamicTest.dynamicTest("100000 in 7 parts", () -> doTestQuantile(100_000, 7)),
+                DynamicTest.dynamicTest("1000000 in 64 parts", () -> doTestQuantile(1_000_000, 64))
+        );
+    }
+
+    public void doTestQuantile(int n, int parts) {
+        // The values are a random permutation of 0..n-1, so that the
+        // rank of a value is equal to the value.
+        double[] values = new double[n];
+        for (int i = 0; i < n; i++) {
+            values[i] = i;
+        }
+        Random rnd = new Random(n);
+        for (int i = n - 1; i > 0; i--) {
+            int j = rnd.nextInt(i + 1);
+            double t = values[i];
+            values[i] = values[j];
+            values[j] = t;
+        }
+
+        QuantileSketch sketch = new QuantileSketch();
+        for (int p = 0; p < parts; p++) {
+            QuantileSketch part = new QuantileSketch();
+            for (int i = p * n / parts, end = (p + 1) * n / parts; i < end; i++) {
+                part.accept(values[i]);
+            }
+            sketch.combine(part);
+        }
+        System.out.println(sketch);
+
+        assertEquals(n, sketch.getCount(), "count");
+        assertEquals(0.0, sketch.quantile(0), "min");
+        assertEquals(n - 1, sketch.quantile(1), "max");
+        assertTrue(sketch.getRetainedItems() <= 3 * sketch.getK() + 64, "retained items " + sketch.getRetainedItems());
+        for (double q : new double[]{0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99, 0.999}) {
+            double rank = (sketch.quantile(q) + 1) / n;
+            assertEquals(q, rank, MAX_RANK_ERROR + 1.0 / n, "rank of quantile " + q);
+            assertEquals(q, sketch.cdf(n * q), MAX_RANK_ERROR + 1.0 / n, "cdf at " + n * q);
+        }
+    }
+
+    @TestFactory
+    public List<DynamicTest> testCollect() {
+        return List.of(
+                DynamicTest.dynamicTest("empty", () -> {
+                    QuantileSketch sketch = DoubleStream.empty().collect(QuantileSketch::new, QuantileSketch::accept, QuantileSketch::combine);
+                    assertEquals(Double.NaN, sketch.quantile(0.5), "median");
+                }),
+                DynamicTest.dynamicTest("parallel", () -> {
+                    QuantileSketch sketch = new Random(0).doubles(100_000).parallel()
+                            .collect(QuantileSketch::new, QuantileSketch::accept, QuantileSketch::combine);
+                    assertEquals(100_000, sketch.getCount(), "count");
+                    assertEquals(0.5, sketch.quantile(0.5), MAX_RANK_ERROR, "median");
+                })
+        );
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * @(#)RemovableVarianceStatisticsTest.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+
+package ch.randelshofer.stats;
+
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RemovableVarianceStatisticsTest {
+    private final static double[] SAMPLES_10 = {
+            200.0, 171.0, 176.0, 194.0, 148.0, 203.0, 182.0, 186.0, 176.0, 161.0};
+
+    @TestFactory
+    public List<DynamicTest> testAcceptAndRemove() {
+        return List.of(
+                DynamicTest.dynamicTest("10", () -> doTestAcceptAndRemove(0, 1_000)),
+                DynamicTest.dynamicTest("10 with offset 1e9", () -> doTestAcceptAndRemove(1e9, 1_000)),
+                DynamicTest.dynamicTest("10 after a million cycles", () -> doTestAcceptAndRemove(1e6, 1_000_000))
+        );
+    }
+
+    public void doTestAcceptAndRemove(double offset, int cycles) {
+        RemovableVarianceStatistics stats = new RemovableVarianceStatistics();
+        for (double d : SAMPLES_10) {
+            stats.accept(d + offset);
+        }
+        Random rnd = new Random(0);
+        for (int i = 0; i < cycles; i++) {
+            double noise = offset + rnd.nextGaussian() * 1e3;
+            stats.accept(noise);
+            stats.remove(noise);
+        }
+        System.out.println(stats);
+        assertEquals(10, stats.getCount(), "count");
+        assertEquals(179.7 + offset, stats.getAverage(), 1e-9 * (179.7 + offset), "mean");
+        assertEquals(295.7888888888889, stats.getSampleVariance(), 1e-6, "variance");
+        assertEquals(266.21, stats.getPopulationVariance(), 1e-6, "variance of population");
+    }
+
+    @TestFactory
+    public List<DynamicTest> testCombine() {
+        return List.of(
+                DynamicTest.dynamicTest("10", () -> {
+                    for (int i = 0; i <= SAMPLES_10.length; i++) {
+                        RemovableVarianceStatistics statsA = new RemovableVarianceStatistics();
+                        RemovableVarianceStatistics statsB = new RemovableVarianceStatistics();
+                        for (int j = 0; j < i; j++) {
+                            statsA.accept(SAMPLES_10[j]);
+                        }
+                        for (int j = i; j < SAMPLES_10.length; j++) {
+                            statsB.accept(SAMPLES_10[j]);
+                        }
+                        statsA.combine(statsB);
+                        assertEquals(10, statsA.getCount(), "count i=" + i);
+                        assertEquals(179.7, statsA.getAverage(), 1e-9, "mean i=" + i);
+                        assertEquals(295.7888888888889, statsA.getSampleVariance(), 1e-9, "variance i=" + i);
+                    }
+                })
+        );
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * @(#)SelectionTest.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+
+package ch.randelshofer.stats;
+
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SelectionTest {
+    @TestFactory
+    public List<DynamicTest> testSelect() {
+        return List.of(
+                DynamicTest.dynamicTest("random", () -> doTestSelect(new Random(0).doubles(1001).toArray())),
+                DynamicTest.dynamicTest("small", () -> doTestSelect(new double[]{3, 1, 2})),
+                DynamicTest.dynamicTest("duplicates", () -> doTestSelect(new Random(1).ints(1000, 0, 5).asDoubleStream().toArray())),
+                DynamicTest.dynamicTest("sorted", () -> doTestSelect(sorted(1000, false))),
+                DynamicTest.dynamicTest("reversed", () -> doTestSelect(sorted(1000, true)))
+        );
+    }
+
+    private static double[] sorted(int n, boolean reversed) {
+        double[] a = new double[n];
+        for (int i = 0; i < n; i++) {
+            a[i] = reversed ? n - i : i;
+        }
+        return a;
+    }
+
+    public void doTestSelect(double[] input) {
+        double[] expected = input.clone();
+        Arrays.sort(expected);
+        int n = input.length;
+        for (int k : new int[]{0, 1, n / 3, n / 2, n - 2, n - 1}) {
+            double[] a = input.clone();
+            assertEquals(expected[k], Selection.select(a, 0, n, k), "k=" + k);
+            for (int i = 0; i < n; i++) {
+                assertTrue(i <= k ? a[i] <= a[k] : a[i] >= a[k], "partition k=" + k + " i=" + i);
+            }
+            double[] sortedCopy = a.clone();
+            Arrays.sort(sortedCopy);
+            assertEquals(Arrays.toString(expected), Arrays.toString(sortedCopy), "permutation");
+        }
+    }
+
+    @TestFactory
+    public List<DynamicTest> testQuantile() {
+        return List.of(
+                DynamicTest.dynamicTest("1..5", () -> {
+                    double[] a = {5, 3, 1, 4, 2};
+                    assertEquals(1.0, Selection.quantile(a.clone(), 0, 5, 0.0), "p=0");
+                    assertEquals(3.0, Selection.quantile(a.clone(), 0, 5, 0.5), "p=0.5");
+                    assertEquals(4.6, Selection.quantile(a.clone(), 0, 5, 0.9), 1e-12, "p=0.9");
+                    assertEquals(5.0, Selection.quantile(a.clone(), 0, 5, 1.0), "p=1");
+                }),
+                DynamicTest.dynamicTest("sub range", () -> {
+                    double[] a = {100, 4, 1, 3, 2, -100};
+                    assertEquals(2.5, Selection.quantile(a, 1, 5, 0.5), "median");
+                    assertEquals(100.0, a[0], "a[0]");
+                    assertEquals(-100.0, a[5], "a[5]");
+                })
+        );
+    }
+}
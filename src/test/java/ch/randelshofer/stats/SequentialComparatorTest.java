@@ -0,0 +1,95 @@
+/*
+ * @(#)SequentialComparatorTest.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+
+package ch.randelshofer.stats;
+
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SequentialComparatorTest {
+    @TestFactory
+    public List<DynamicTest> testDecision() {
+        return List.of(
+                DynamicTest.dynamicTest("different means", () -> doTestDecision(100.0, 103.0, 0.0, SequentialComparator.Decision.DIFFERENT)),
+                DynamicTest.dynamicTest("equal means", () -> doTestDecision(100.0, 100.0, 1.0, SequentialComparator.Decision.PRECISE))
+        );
+    }
+
+    public void doTestDecision(double meanA, double meanB, double targetHalfWidth, SequentialComparator.Decision expected) {
+        Random rnd = new Random(0);
+        SequentialComparator cmp = new SequentialComparator(0.05, targetHalfWidth, 5);
+        SequentialComparator.Decision decision;
+        do {
+            for (int i = 0; i < 5; i++) {
+                cmp.acceptA(meanA + 5 * rnd.nextGaussian());
+                cmp.acceptB(meanB + 5 * rnd.nextGaussian());
+            }
+            decision = cmp.test();
+        } while (decision == SequentialComparator.Decision.CONTINUE && cmp.getLooks() < 1000);
+        System.out.println(cmp);
+        assertEquals(expected, decision, "decision");
+        assertEquals(cmp.getLooks() * 5L, cmp.getA().getCount(), "count");
+        assertEquals(0.05 / (cmp.getLooks() * (cmp.getLooks() + 1.0)), cmp.getLookAlpha(), 1e-15, "alpha of the last look");
+        if (expected == SequentialComparator.Decision.PRECISE) {
+            assertTrue(cmp.getConfidence() < targetHalfWidth, "confidence");
+            assertTrue(Math.abs(cmp.getDifference()) <= cmp.getConfidence(), "difference");
+        } else {
+            assertTrue(Math.abs(cmp.getDifference()) > cmp.getConfidence(), "difference");
+        }
+    }
+
+    @TestFactory
+    public List<DynamicTest> testErrorRate() {
+        return List.of(
+                DynamicTest.dynamicTest("equal means", () -> {
+                    // With equal means, DIFFERENT must not be decided in more
+                    // than alpha of the runs, although we look 50 times.
+                    Random rnd = new Random(1);
+                    int runs = 400, different = 0;
+                    for (int r = 0; r < runs; r++) {
+                        SequentialComparator cmp = new SequentialComparator(0.05, 0.0, 2);
+                        for (int look = 0; look < 50; look++) {
+                            cmp.acceptA(rnd.nextGaussian());
+                            cmp.acceptB(rnd.nextGaussian());
+                            if (cmp.test() == SequentialComparator.Decision.DIFFERENT) {
+                                different++;
+                                break;
+                            }
+                        }
+                    }
+                    assertTrue(different <= 0.05 * runs, "different=" + different);
+                })
+        );
+    }
+
+    @TestFactory
+    public List<DynamicTest> testEdgeCases() {
+        return List.of(
+                DynamicTest.dynamicTest("too few values", () -> {
+                    SequentialComparator cmp = new SequentialComparator(0.05, 1.0, 3);
+                    cmp.acceptA(1);
+                    cmp.acceptA(2);
+                    cmp.acceptA(3);
+                    cmp.acceptB(1);
+                    cmp.acceptB(2);
+                    assertEquals(SequentialComparator.Decision.CONTINUE, cmp.test(), "decision");
+                    assertEquals(0, cmp.getLooks(), "looks");
+                    assertEquals(Double.POSITIVE_INFINITY, cmp.getConfidence(), "confidence");
+                }),
+                DynamicTest.dynamicTest("illegal arguments", () -> {
+                    assertThrows(IllegalArgumentException.class, () -> new SequentialComparator(0.0, 1.0, 2));
+                    assertThrows(IllegalArgumentException.class, () -> new SequentialComparator(0.05, -1.0, 2));
+                    assertThrows(IllegalArgumentException.class, () -> new SequentialComparator(0.05, 1.0, 1));
+                })
+        );
+    }
+}
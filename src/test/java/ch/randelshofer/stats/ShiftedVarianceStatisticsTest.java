@@ -0,0 +1,79 @@
+/*
+ * @(#)ShiftedVarianceStatisticsTest.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+
+package ch.randelshofer.stats;
+
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+
+import java.util.List;
+import java.util.stream.DoubleStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ShiftedVarianceStatisticsTest {
+    private final static double[] SAMPLES_10 = {
+            200.0, 171.0, 176.0, 194.0, 148.0, 203.0, 182.0, 186.0, 176.0, 161.0};
+
+    @TestFactory
+    public List<DynamicTest> testVariance() {
+        return List.of(
+                DynamicTest.dynamicTest("10", () -> doTestVariance(
+                        SAMPLES_10, 0, 179.7, 266.21, 295.7888888888889)
+                ),
+                DynamicTest.dynamicTest("10 with offset 1e9", () -> doTestVariance(
+                        SAMPLES_10, 1e9, 1e9 + 179.7, 266.21, 295.7888888888889)
+                ),
+                DynamicTest.dynamicTest("10 with offset 1e12", () -> doTestVariance(
+                        SAMPLES_10, 1e12, 1e12 + 179.7, 266.21, 295.7888888888889)
+                )
+        );
+    }
+
+    public void doTestVariance(double[] samples, double offset,
+                               double mean, double varPop, double var) {
+        ShiftedVarianceStatistics stats = DoubleStream.of(samples).map(d -> d + offset)
+                .collect(ShiftedVarianceStatistics::new, ShiftedVarianceStatistics::accept, ShiftedVarianceStatistics::combine);
+        System.out.println(stats);
+        assertEquals(samples.length, stats.getCount(), "count");
+        assertEquals(mean, stats.getAverage(), 1e-9 * Math.abs(mean), "mean");
+        assertEquals(varPop, stats.getPopulationVariance(), 1e-9, "variance of population");
+        assertEquals(var, stats.getSampleVariance(), 1e-9, "variance");
+        assertEquals(148.0 + offset, stats.getMin(), "min");
+        assertEquals(203.0 + offset, stats.getMax(), "max");
+    }
+
+    @TestFactory
+    public List<DynamicTest> testCombine() {
+        return List.of(
+                DynamicTest.dynamicTest("10", () -> doTestCombine(SAMPLES_10, 0)),
+                DynamicTest.dynamicTest("10 with offset 1e9", () -> doTestCombine(SAMPLES_10, 1e9))
+        );
+    }
+
+    public void doTestCombine(double[] samples, double offset) {
+        ShiftedVarianceStatistics expected = new ShiftedVarianceStatistics();
+        for (double d : samples) {
+            expected.accept(d + offset);
+        }
+        for (int i = 0; i <= samples.length; i++) {
+            ShiftedVarianceStatistics statsA = new ShiftedVarianceStatistics();
+            ShiftedVarianceStatistics statsB = new ShiftedVarianceStatistics();
+            for (int j = 0; j < i; j++) {
+                statsA.accept(samples[j] + offset);
+            }
+            for (int j = i; j < samples.length; j++) {
+                statsB.accept(samples[j] + offset);
+            }
+            statsA.combine(statsB);
+
+            assertEquals(expected.getCount(), statsA.getCount(), "count i=" + i);
+            assertEquals(expected.getMin(), statsA.getMin(), "min i=" + i);
+            assertEquals(expected.getMax(), statsA.getMax(), "max i=" + i);
+            assertEquals(expected.getAverage(), statsA.getAverage(), 1e-9 * Math.abs(expected.getAverage()), "mean i=" + i);
+            assertEquals(expected.getSampleVariance(), statsA.getSampleVariance(), 1e-9, "variance i=" + i);
+        }
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * @(#)StatisticsAggregatorTest.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+
+package ch.randelshofer.stats;
+
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StatisticsAggregatorTest {
+    @TestFactory
+    public List<DynamicTest> testManyPublishers() {
+        return List.of(
+                DynamicTest.dynamicTest("1 publisher", () -> doTestManyPublishers(1, 1000)),
+                DynamicTest.dynamicTest("16 publishers", () -> doTestManyPublishers(16, 1000)),
+                DynamicTest.dynamicTest("256 publishers", () -> doTestManyPublishers(256, 100))
+        );
+    }
+
+    public void doTestManyPublishers(int publisherCount, int valuesPerPublisher) throws InterruptedException {
+        StatisticsAggregator aggregator = new StatisticsAggregator(64, 1, TimeUnit.SECONDS);
+        List<Thread> producers = new ArrayList<>();
+        List<StatisticsSubscriber<?>> subscribers = new ArrayList<>();
+        for (int p = 0; p < publisherCount; p++) {
+            boolean arrays = p % 2 == 1;
+            SubmissionPublisher<Object> publisher = new SubmissionPublisher<>();
+            StatisticsSubscriber<?> subscriber;
+            if (arrays) {
+                StatisticsSubscriber<double[]> s = aggregator.newArraySubscriber();
+                subscribeUnchecked(publisher, s);
+                subscriber = s;
+            } else {
+                StatisticsSubscriber<Double> s = aggregator.newDoubleSubscriber();
+                subscribeUnchecked(publisher, s);
+                subscriber = s;
+            }
+            subscribers.add(subscriber);
+            Thread producer = new Thread(() -> {
+                for (int i = 0; i < valuesPerPublisher; i++) {
+                    publisher.submit(arrays ? new double[]{i} : (Object) (double) i);
+                }
+                publisher.close();
+            });
+            producers.add(producer);
+            producer.start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        for (StatisticsSubscriber<?> subscriber : subscribers) {
+            while (!subscriber.isDone() && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            assertTrue(subscriber.isDone(), "subscriber is done");
+        }
+
+        VarianceStatistics expected = new VarianceStatistics();
+        for (int p = 0; p < publisherCount; p++) {
+            for (int i = 0; i < valuesPerPublisher; i++) {
+                expected.accept(i);
+            }
+        }
+        VarianceStatistics actual = aggregator.getSnapshot();
+        assertEquals(expected.getCount(), actual.getCount(), "count");
+        assertEquals(expected.getMin(), actual.getMin(), "min");
+        assertEquals(expected.getMax(), actual.getMax(), "max");
+        assertEquals(expected.getSum(), actual.getSum(), "sum");
+        assertEquals(expected.getSampleVariance(), actual.getSampleVariance(), 1e-6, "variance");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void subscribeUnchecked(SubmissionPublisher<Object> publisher, Flow.Subscriber<T> subscriber) {
+        publisher.subscribe((Flow.Subscriber<Object>) subscriber);
+    }
+
+    @Test
+    public void testDownstreamSnapshots() throws Exception {
+        StatisticsAggregator aggregator = new StatisticsAggregator(2, 1, TimeUnit.DAYS);
+        CountDownLatch received = new CountDownLatch(1);
+        AtomicReference<VarianceStatistics> last = new AtomicReference<>();
+        aggregator.subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(VarianceStatistics item) {
+                last.set(item);
+                if (item.getCount() == 4) {
+                    received.countDown();
+                }
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+
+        SubmissionPublisher<Double> publisher = new SubmissionPublisher<>();
+        StatisticsSubscriber<Double> subscriber = aggregator.newDoubleSubscriber();
+        CompletableFuture<Void> consumed = publisher.consume(x -> {
+        });
+        publisher.subscribe(subscriber);
+        for (double d : new double[]{1, 2, 3, 4}) {
+            publisher.submit(d);
+        }
+        publisher.close();
+        consumed.get(30, TimeUnit.SECONDS);
+        assertTrue(received.await(30, TimeUnit.SECONDS), "snapshot received");
+        assertEquals(2.5, last.get().getAverage(), "average");
+        aggregator.close();
+    }
+
+    /**
+     * A downstream subscriber that records its signals, and requests items
+     * only when the test asks it to.
+     */
+    private static class RecordingSubscriber implements Flow.Subscriber<VarianceStatistics> {
+        Flow.Subscription subscription;
+        final List<Long> counts = new ArrayList<>();
+        Throwable error;
+        boolean complete;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(VarianceStatistics item) {
+            counts.add(item.getCount());
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            complete = true;
+        }
+    }
+
+    @Test
+    public void testSlowSubscriberReceivesLatestSnapshot() {
+        StatisticsAggregator aggregator = new StatisticsAggregator(1, 1, TimeUnit.DAYS, Runnable::run);
+        RecordingSubscriber slow = new RecordingSubscriber();
+        aggregator.subscribe(slow);
+        slow.subscription.request(1);
+        for (int i = 0; i < 1000; i++) {
+            aggregator.combine(batchOf(i));
+        }
+        assertEquals(List.of(1L), slow.counts, "first snapshot, then no request");
+
+        slow.subscription.request(1);
+        assertEquals(List.of(1L, 1000L), slow.counts, "only the latest snapshot is delivered");
+
+        slow.subscription.request(1);
+        aggregator.close();
+        assertEquals(List.of(1L, 1000L), slow.counts, "no snapshot after close");
+        assertTrue(slow.complete, "complete");
+    }
+
+    @Test
+    public void testSubscribeAfterCombineAndClose() {
+        StatisticsAggregator aggregator = new StatisticsAggregator(1, 1, TimeUnit.DAYS, Runnable::run);
+        aggregator.combine(batchOf(1));
+        RecordingSubscriber late = new RecordingSubscriber();
+        aggregator.subscribe(late);
+        late.subscription.request(1);
+        assertEquals(List.of(1L), late.counts, "current aggregate");
+
+        aggregator.close();
+        RecordingSubscriber closed = new RecordingSubscriber();
+        aggregator.subscribe(closed);
+        assertTrue(closed.complete, "subscribed after close");
+    }
+
+    @Test
+    public void testIllegalRequest() {
+        StatisticsAggregator aggregator = new StatisticsAggregator(1, 1, TimeUnit.DAYS, Runnable::run);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        aggregator.subscribe(subscriber);
+        subscriber.subscription.request(0);
+        assertTrue(subscriber.error instanceof IllegalArgumentException, "error");
+        subscriber.subscription.request(1);
+        aggregator.combine(batchOf(1));
+        assertEquals(List.of(), subscriber.counts, "no snapshot after error");
+    }
+
+    private static VarianceStatistics batchOf(double value) {
+        VarianceStatistics batch = new VarianceStatistics();
+        batch.accept(value);
+        return batch;
+    }
+
+    @Test
+    public void testIllegalArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new StatisticsAggregator(0, 1, TimeUnit.SECONDS));
+        assertThrows(IllegalArgumentException.class, () -> new StatisticsAggregator(1, 0, TimeUnit.SECONDS));
+    }
+}
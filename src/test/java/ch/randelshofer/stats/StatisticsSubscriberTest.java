@@ -0,0 +1,87 @@
+/*
+ * @(#)StatisticsSubscriberTest.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+
+package ch.randelshofer.stats;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StatisticsSubscriberTest {
+    /**
+     * A subscription that records the requests of the subscriber.
+     */
+    private static class TestSubscription implements Flow.Subscription {
+        long requested;
+        boolean cancelled;
+
+        @Override
+        public void request(long n) {
+            assertTrue(n > 0, "n must be positive");
+            requested += n;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+
+    @Test
+    public void testBackpressureAndBatching() {
+        StatisticsAggregator aggregator = new StatisticsAggregator(10, 1, TimeUnit.DAYS);
+        StatisticsSubscriber<Double> subscriber = aggregator.newDoubleSubscriber();
+        TestSubscription subscription = new TestSubscription();
+        subscriber.onSubscribe(subscription);
+        assertEquals(10, subscription.requested, "initial request");
+
+        long delivered = 0;
+        for (int i = 0; i < 25; i++) {
+            assertTrue(delivered < subscription.requested, "item was requested");
+            subscriber.onNext((double) i);
+            delivered++;
+            assertTrue(subscription.requested - delivered <= 10, "outstanding requests");
+            assertEquals((i + 1) / 10 * 10, aggregator.getSnapshot().getCount(), "combined after " + (i + 1));
+        }
+        assertFalse(subscriber.isDone(), "done");
+        subscriber.onComplete();
+        assertTrue(subscriber.isDone(), "done");
+        assertEquals(25, aggregator.getSnapshot().getCount(), "combined on complete");
+
+        TestSubscription second = new TestSubscription();
+        subscriber.onSubscribe(second);
+        assertTrue(second.cancelled, "second subscription is cancelled");
+    }
+
+    @Test
+    public void testMaxBatchDelay() throws InterruptedException {
+        StatisticsAggregator aggregator = new StatisticsAggregator(1000, 200, TimeUnit.MILLISECONDS);
+        StatisticsSubscriber<double[]> subscriber = aggregator.newArraySubscriber();
+        subscriber.onSubscribe(new TestSubscription());
+        subscriber.onNext(new double[]{1, 2});
+        Thread.sleep(400);
+        subscriber.onNext(new double[]{3});
+        assertEquals(3, aggregator.getSnapshot().getCount(), "combined after delay");
+    }
+
+    @Test
+    public void testError() {
+        StatisticsAggregator aggregator = new StatisticsAggregator(1000, 1, TimeUnit.DAYS);
+        StatisticsSubscriber<double[]> subscriber = aggregator.newArraySubscriber();
+        subscriber.onSubscribe(new TestSubscription());
+        subscriber.onNext(new double[]{1, 2, 3});
+        IllegalStateException error = new IllegalStateException();
+        subscriber.onError(error);
+        assertTrue(subscriber.isDone(), "done");
+        assertSame(error, subscriber.getError(), "error");
+        assertEquals(3, aggregator.getSnapshot().getCount(), "combined on error");
+    }
+}
@@ -8,11 +8,21 @@ package ch.randelshofer.stats;
 import org.junit.jupiter.api.DynamicTest;
 import org.junit.jupiter.api.TestFactory;
 
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
 import java.util.stream.DoubleStream;
 
 import static java.lang.Math.sqrt;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class VarianceStatisticsTest {
     @TestFactory
@@ -54,7 +64,203 @@ class VarianceStatisticsTest {
         assertEquals(var,actualVariance,"variance");
         assertEquals(sqrt(varPop),actualPopStdev,"stdev of population");
         assertEquals(sqrt(var),actualStdev,"stdev");
-        assertEquals(confidence,actualConfidence,"confidence");
+        assertEquals(confidence,actualConfidence,1e-9,"confidence");
     }
 
-}
\ No newline at end of file
+    @TestFactory
+    public List<DynamicTest> testAcceptAll() {
+        return List.of(
+                DynamicTest.dynamicTest("10", () -> doTestAcceptAll(
+                        new double[]{
+                                200.0, 171.0, 176.0, 194.0, 148.0, 203.0, 182.0, 186.0, 176.0, 161.0})
+                ),
+                DynamicTest.dynamicTest("infinities", () -> doTestAcceptAll(
+                        new double[]{1.0, Double.POSITIVE_INFINITY, 3.0, Double.NEGATIVE_INFINITY, 5.0})
+                ),
+                DynamicTest.dynamicTest("NaN", () -> doTestAcceptAll(
+                        new double[]{1.0, 2.0, Double.NaN, 4.0, 5.0})
+                ),
+                DynamicTest.dynamicTest("random", () -> doTestAcceptAll(
+                        new Random(0).doubles(10_003, 1e6, 1e6 + 1).toArray())
+                )
+        );
+    }
+
+    public void doTestAcceptAll(double[] samples) {
+        VarianceStatistics expected = DoubleStream.of(samples).collect(VarianceStatistics::new, VarianceStatistics::accept, VarianceStatistics::combine);
+
+        VarianceStatistics array = new VarianceStatistics();
+        array.acceptAll(samples, 0, samples.length);
+        assertAcceptAll(expected, array);
+
+        VarianceStatistics direct = new VarianceStatistics();
+        DoubleBuffer buffer = ByteBuffer.allocateDirect(samples.length * Double.BYTES).asDoubleBuffer();
+        buffer.put(samples).flip();
+        direct.acceptAll(buffer);
+        assertAcceptAll(expected, direct);
+        assertFalse(buffer.hasRemaining(), "buffer has remaining");
+        assertEquals(array.getSum(), direct.getSum(), "direct sum equals array sum");
+        assertEquals(array.getSumOfSquare(), direct.getSumOfSquare(), "direct sum of square equals array sum of square");
+
+        VarianceStatistics kahan = new VarianceStatistics(SummationMode.KAHAN);
+        buffer.rewind();
+        kahan.acceptAll(buffer);
+        assertAcceptAll(expected, kahan);
+    }
+
+    private void assertAcceptAll(VarianceStatistics expected, VarianceStatistics actual) {
+        assertEquals(expected.getCount(), actual.getCount(), "count");
+        assertEquals(expected.getMin(), actual.getMin(), "min");
+        assertEquals(expected.getMax(), actual.getMax(), "max");
+        assertUlps(expected.getSum(), actual.getSum(), "sum");
+        assertUlps(expected.getSumOfSquare(), actual.getSumOfSquare(), "sum of square");
+    }
+
+    private void assertUlps(double expected, double actual, String message) {
+        if (Double.isFinite(expected)) {
+            assertEquals(expected, actual, 4 * Math.ulp(expected), message);
+        } else {
+            assertEquals(expected, actual, message);
+        }
+    }
+
+    @TestFactory
+    public List<DynamicTest> testAcceptCount() {
+        return List.of(
+                DynamicTest.dynamicTest("histogram", () -> doTestAcceptCount(
+                        new double[]{1.5, 2.0, -3.25, 4.0, 1.5}, new long[]{3, 0, 7, 1, 2})),
+                DynamicTest.dynamicTest("infinity", () -> doTestAcceptCount(
+                        new double[]{1.0, Double.POSITIVE_INFINITY}, new long[]{2, 3})),
+                DynamicTest.dynamicTest("empty", () -> doTestAcceptCount(
+                        new double[]{1.0}, new long[]{0}))
+        );
+    }
+
+    public void doTestAcceptCount(double[] values, long[] counts) {
+        VarianceStatistics expected = new VarianceStatistics();
+        VarianceStatistics single = new VarianceStatistics();
+        for (int i = 0; i < values.length; i++) {
+            for (long j = 0; j < counts[i]; j++) {
+                expected.accept(values[i]);
+            }
+            single.accept(values[i], counts[i]);
+        }
+        VarianceStatistics array = new VarianceStatistics();
+        array.acceptAll(values, counts);
+        for (VarianceStatistics actual : List.of(single, array)) {
+            assertAcceptAll(expected, actual);
+            assertUlps(expected.getSampleVariance(), actual.getSampleVariance(), "variance");
+        }
+        assertThrows(IllegalArgumentException.class, () -> array.accept(1.0, -1), "negative count");
+        assertThrows(IllegalArgumentException.class, () -> array.acceptAll(new double[2], new long[1]), "length mismatch");
+    }
+
+    @TestFactory
+    public List<DynamicTest> testSummationModes() {
+        List<DynamicTest> tests = new ArrayList<>();
+        for (SummationMode mode : SummationMode.values()) {
+            tests.add(DynamicTest.dynamicTest(mode.toString(), () -> doTestSummationMode(mode,
+                    new Random(0).doubles(10_003, 1e6, 1e6 + 1).toArray())));
+        }
+        return tests;
+    }
+
+    public void doTestSummationMode(SummationMode mode, double[] samples) {
+        BigDecimal exact = BigDecimal.ZERO;
+        for (double d : samples) {
+            BigDecimal x = new BigDecimal(d);
+            exact = exact.add(x.multiply(x));
+        }
+        double expected = exact.doubleValue();
+
+        VarianceStatistics single = new VarianceStatistics(mode);
+        for (double d : samples) {
+            single.accept(d);
+        }
+        VarianceStatistics array = new VarianceStatistics(mode);
+        array.acceptAll(samples, 0, samples.length);
+        assertEquals(mode, single.getSummationMode(), "mode");
+        assertEquals(samples.length, array.getCount(), "count");
+        if (mode == SummationMode.EXACT) {
+            assertEquals(expected, single.getSumOfSquare(), "accept");
+            assertEquals(expected, array.getSumOfSquare(), "acceptAll");
+        } else {
+            double bound = samples.length * 0x1p-53 * expected;
+            assertEquals(expected, single.getSumOfSquare(), bound, "accept");
+            assertEquals(expected, array.getSumOfSquare(), bound, "acceptAll");
+        }
+    }
+
+    @TestFactory
+    public List<DynamicTest> testSnapshot() {
+        return List.of(
+                DynamicTest.dynamicTest("random", () -> doTestSnapshot(new Random(0).doubles(10_000, -1e6, 1e6).toArray())),
+                DynamicTest.dynamicTest("empty", () -> doTestSnapshot(new double[0])),
+                DynamicTest.dynamicTest("cancellation", () -> doTestSnapshot(
+                        new Random(1).doubles(10_000).map(d -> d * 0x1p60 - 0x1p59 + 0.1).toArray())),
+                DynamicTest.dynamicTest("infinities", () -> doTestSnapshot(
+                        new double[]{1.0, Double.POSITIVE_INFINITY, 3.0, Double.NEGATIVE_INFINITY, 5.0}))
+        );
+    }
+
+    public void doTestSnapshot(double[] samples) {
+        int nodes = 100;
+        ByteBuffer buf = ByteBuffer.allocate(nodes * VarianceStatistics.SNAPSHOT_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        VarianceStatistics inProcess = new VarianceStatistics();
+        VarianceStatistics fromSnapshots = new VarianceStatistics();
+        for (int i = 0; i < nodes; i++) {
+            VarianceStatistics node = new VarianceStatistics();
+            for (int j = i; j < samples.length; j += nodes) {
+                node.accept(samples[j]);
+            }
+            inProcess.combine(node);
+            int position = buf.position();
+            node.writeTo(buf);
+            assertEquals(VarianceStatistics.SNAPSHOT_BYTES, buf.position() - position, "snapshot bytes");
+            buf.position(position);
+            fromSnapshots.combine(VarianceStatistics.readFrom(buf));
+        }
+        assertSnapshot(inProcess, fromSnapshots);
+
+        buf.flip();
+        VarianceStatistics bulk = new VarianceStatistics().combineAll(buf);
+        assertSnapshot(inProcess, bulk);
+        assertEquals(0, buf.remaining(), "remaining");
+    }
+
+    private void assertSnapshot(VarianceStatistics expected, VarianceStatistics actual) {
+        assertEquals(expected.getCount(), actual.getCount(), "count");
+        assertEquals(expected.getMin(), actual.getMin(), "min");
+        assertEquals(expected.getMax(), actual.getMax(), "max");
+        assertUlps(expected.getSum(), actual.getSum(), "sum");
+        assertEquals(Double.doubleToRawLongBits(expected.getSumOfSquare()), Double.doubleToRawLongBits(actual.getSumOfSquare()), "sum of square");
+    }
+
+    /**
+     * Creates tests that compare count, minimum, maximum and sum of samples
+     * with infinite values against {@link VarianceStatistics#accept(double)}.
+     *
+     * @param collector adds the values to the class under test, and returns
+     *                  its statistics
+     * @return the tests
+     */
+    static List<DynamicTest> infiniteValueTests(Function<double[], VarianceStatistics> collector) {
+        List<DynamicTest> tests = new ArrayList<>();
+        for (double[] values : new double[][]{
+                {1, Double.POSITIVE_INFINITY, 2},
+                {Double.NEGATIVE_INFINITY, 1},
+                {1, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY},
+                {1, Double.NaN}}) {
+            tests.add(DynamicTest.dynamicTest(Arrays.toString(values), () -> {
+                VarianceStatistics expected = new VarianceStatistics();
+                DoubleStream.of(values).forEach(expected);
+                VarianceStatistics actual = collector.apply(values);
+                assertEquals(expected.getCount(), actual.getCount(), "count");
+                assertEquals(expected.getMin(), actual.getMin(), "min");
+                assertEquals(expected.getMax(), actual.getMax(), "max");
+                assertEquals(expected.getSum(), actual.getSum(), "sum");
+            }));
+        }
+        return tests;
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * @(#)WeightedVarianceStatisticsTest.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+
+package ch.randelshofer.stats;
+
+import ch.randelshofer.stats.WeightedVarianceStatistics.WeightType;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WeightedVarianceStatisticsTest {
+    @TestFactory
+    public List<DynamicTest> testFrequencyWeights() {
+        return List.of(
+                DynamicTest.dynamicTest("histogram", () -> doTestFrequencyWeights(
+                        new double[]{200.0, 171.0, 176.0, 194.0, 148.0}, new long[]{1, 4, 0, 2, 3})),
+                DynamicTest.dynamicTest("single", () -> doTestFrequencyWeights(
+                        new double[]{5.0}, new long[]{1})),
+                DynamicTest.dynamicTest("large counts", () -> doTestFrequencyWeights(
+                        new double[]{1.0, 2.0, 4.0}, new long[]{100_000, 250_000, 1_000}))
+        );
+    }
+
+    /**
+     * Frequency weights must give the same results as repeating each value.
+     */
+    public void doTestFrequencyWeights(double[] values, long[] counts) {
+        VarianceStatistics expected = new VarianceStatistics();
+        for (int i = 0; i < values.length; i++) {
+            for (long j = 0; j < counts[i]; j++) {
+                expected.accept(values[i]);
+            }
+        }
+        WeightedVarianceStatistics actual = new WeightedVarianceStatistics(WeightType.FREQUENCY);
+        actual.acceptAll(values, counts);
+
+        double n = expected.getCount();
+        assertEquals(n, actual.getSumOfWeights(), "sum of weights");
+        assertEquals(n, actual.getEffectiveSampleSize(), "effective sample size");
+        assertEquals(expected.getMin(), actual.getMin(), "min");
+        assertEquals(expected.getMax(), actual.getMax(), "max");
+        assertEquals(expected.getAverage(), actual.getAverage(), 1e-12 * Math.abs(expected.getAverage()), "average");
+        assertEquals(expected.getPopulationVariance(), actual.getPopulationVariance(), 1e-9, "population variance");
+        if (n > 1) {
+            assertEquals(expected.getSampleVariance(), actual.getSampleVariance(), 1e-9, "sample variance");
+            assertEquals(Stats.confidence(0.05, expected.getSampleStandardDeviation(), expected.getCount()),
+                    actual.getConfidence(0.05), 1e-9, "confidence");
+        }
+    }
+
+    @Test
+    public void testReliabilityWeights() {
+        Random r = new Random(0);
+        double[] values = r.doubles(1000, -10, 10).toArray();
+        double[] weights = r.doubles(1000, 0, 3).toArray();
+
+        // two-pass reference
+        double v1 = 0, v2 = 0, s = 0;
+        for (int i = 0; i < values.length; i++) {
+            v1 += weights[i];
+            v2 += weights[i] * weights[i];
+            s += weights[i] * values[i];
+        }
+        double mean = s / v1;
+        double m2 = 0;
+        for (int i = 0; i < values.length; i++) {
+            double d = values[i] - mean;
+            m2 += weights[i] * d * d;
+        }
+        double neff = v1 * v1 / v2;
+
+        WeightedVarianceStatistics actual = new WeightedVarianceStatistics(WeightType.RELIABILITY);
+        actual.acceptAll(values, weights);
+        assertEquals(mean, actual.getAverage(), 1e-12, "average");
+        assertEquals(m2 / (v1 - v2 / v1), actual.getSampleVariance(), 1e-9, "sample variance");
+        assertEquals(m2 / v1, actual.getPopulationVariance(), 1e-9, "population variance");
+        assertEquals(neff, actual.getEffectiveSampleSize(), 1e-9, "effective sample size");
+        assertEquals(Stats.confidence(0.05, Math.sqrt(m2 / (v1 - v2 / v1)), neff), actual.getConfidence(0.05), 1e-9, "confidence");
+
+        // scaling all weights must not change the results
+        WeightedVarianceStatistics scaled = new WeightedVarianceStatistics(WeightType.RELIABILITY);
+        for (int i = 0; i < values.length; i++) {
+            scaled.accept(values[i], weights[i] * 8);
+        }
+        assertEquals(actual.getSampleVariance(), scaled.getSampleVariance(), 1e-9, "scaled sample variance");
+        assertEquals(actual.getEffectiveSampleSize(), scaled.getEffectiveSampleSize(), 1e-9, "scaled effective sample size");
+    }
+
+    @Test
+    public void testDominantWeight() {
+        WeightedVarianceStatistics stats = new WeightedVarianceStatistics(WeightType.RELIABILITY);
+        stats.acceptAll(new double[]{1, 2, 4}, new double[]{10, 1, 1});
+        assertEquals(144.0 / 102.0, stats.getEffectiveSampleSize(), 1e-12, "effective sample size");
+        double c = stats.getConfidence(0.05);
+        assertTrue(Double.isFinite(c) && c > 0, "confidence=" + c);
+        assertEquals(Stats.quantileT(0.975, 144.0 / 102.0 - 1) * stats.getSampleStandardDeviation()
+                / Math.sqrt(144.0 / 102.0), c, 1e-9 * c, "confidence");
+
+        WeightedVarianceStatistics single = new WeightedVarianceStatistics(WeightType.RELIABILITY);
+        single.accept(1, 5);
+        assertEquals(Double.POSITIVE_INFINITY, single.getConfidence(0.05), "single value");
+        assertEquals(Double.POSITIVE_INFINITY, new WeightedVarianceStatistics(WeightType.FREQUENCY).getConfidence(0.05), "empty");
+    }
+
+    @Test
+    public void testCombine() {
+        Random r = new Random(1);
+        double[] values = r.doubles(100, 0, 1).toArray();
+        double[] weights = r.doubles(100, 0, 1).toArray();
+        WeightedVarianceStatistics expected = new WeightedVarianceStatistics(WeightType.RELIABILITY);
+        expected.acceptAll(values, weights);
+        WeightedVarianceStatistics a = new WeightedVarianceStatistics(WeightType.RELIABILITY);
+        WeightedVarianceStatistics b = new WeightedVarianceStatistics(WeightType.RELIABILITY);
+        for (int i = 0; i < values.length; i++) {
+            (i % 3 == 0 ? a : b).accept(values[i], weights[i]);
+        }
+        WeightedVarianceStatistics actual = a.combine(b);
+        assertEquals(expected.getCount(), actual.getCount(), "count");
+        assertEquals(expected.getMin(), actual.getMin(), "min");
+        assertEquals(expected.getMax(), actual.getMax(), "max");
+        assertEquals(expected.getSampleVariance(), actual.getSampleVariance(), 1e-12, "sample variance");
+        assertEquals(expected.getEffectiveSampleSize(), actual.getEffectiveSampleSize(), 1e-9, "effective sample size");
+
+        assertThrows(IllegalArgumentException.class,
+                () -> actual.combine(new WeightedVarianceStatistics(WeightType.FREQUENCY)), "weight type");
+    }
+
+    @Test
+    public void testIllegalWeights() {
+        WeightedVarianceStatistics stats = new WeightedVarianceStatistics(WeightType.FREQUENCY);
+        assertThrows(IllegalArgumentException.class, () -> stats.accept(1.0, -1.0), "negative");
+        assertThrows(IllegalArgumentException.class, () -> stats.accept(1.0, Double.NaN), "NaN");
+        assertThrows(IllegalArgumentException.class, () -> stats.accept(1.0, Double.POSITIVE_INFINITY), "infinite");
+        assertThrows(IllegalArgumentException.class, () -> stats.acceptAll(new double[2], new double[]{1, -1}), "array");
+        assertThrows(IllegalArgumentException.class, () -> stats.acceptAll(new double[2], new long[1]), "length mismatch");
+        assertEquals(0, stats.getCount(), "count after illegal weights");
+        stats.accept(3.0, 0.0);
+        assertEquals(0, stats.getCount(), "zero weight is ignored");
+        assertEquals(Double.POSITIVE_INFINITY, stats.getMin(), "min");
+    }
+}
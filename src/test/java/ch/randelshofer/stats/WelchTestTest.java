@@ -0,0 +1,85 @@
+/*
+ * @(#)WelchTestTest.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+
+package ch.randelshofer.stats;
+
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+
+import java.util.List;
+import java.util.stream.DoubleStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class WelchTestTest {
+    @TestFactory
+    public List<DynamicTest> testWelchTest() {
+        return List.of(
+                /* Example 1 from: https://en.wikipedia.org/wiki/Welch%27s_t-test */
+                DynamicTest.dynamicTest("wikipedia 1", () -> doTestWelchTest(
+                        new double[]{27.5, 21.0, 19.0, 23.6, 17.0, 17.9, 16.9, 20.1, 21.9, 22.6, 23.1, 19.6, 19.0, 21.7, 21.4},
+                        new double[]{27.1, 22.0, 20.8, 23.4, 23.4, 23.5, 25.8, 22.0, 24.8, 20.2, 21.9, 22.1, 22.9, 20.5, 24.4},
+                        -2.455356398286006, 24.98852929023142, 0.021378)
+                ),
+                DynamicTest.dynamicTest("swapped", () -> doTestWelchTest(
+                        new double[]{27.1, 22.0, 20.8, 23.4, 23.4, 23.5, 25.8, 22.0, 24.8, 20.2, 21.9, 22.1, 22.9, 20.5, 24.4},
+                        new double[]{27.5, 21.0, 19.0, 23.6, 17.0, 17.9, 16.9, 20.1, 21.9, 22.6, 23.1, 19.6, 19.0, 21.7, 21.4},
+                        2.455356398286006, 24.98852929023142, 0.021378)
+                ),
+                DynamicTest.dynamicTest("equal means", () -> doTestWelchTest(
+                        new double[]{1, 2, 3},
+                        new double[]{0, 2, 4},
+                        0.0, 50.0 / 17, 1.0)
+                )
+        );
+    }
+
+    public void doTestWelchTest(double[] a, double[] b, double expectedT, double expectedDf, double expectedP) {
+        WelchTest test = Stats.welchTest(summarize(a), summarize(b));
+        System.out.println(test);
+        assertEquals(expectedT, test.getT(), 1e-12, "t");
+        assertEquals(expectedDf, test.getDegreesOfFreedom(), 1e-12, "df");
+        assertEquals(expectedP, test.getPValue(), 1e-6, "p");
+        assertEquals(test.getDifference() / test.getStandardError(), test.getT(), 1e-12, "t");
+        // The confidence interval at level p just touches zero.
+        if (test.getPValue() < 1) {
+            assertEquals(Math.abs(test.getDifference()), test.getConfidence(test.getPValue()), 1e-9, "confidence");
+        }
+    }
+
+    private static VarianceStatistics summarize(double[] a) {
+        return DoubleStream.of(a).collect(VarianceStatistics::new, VarianceStatistics::accept, VarianceStatistics::combine);
+    }
+
+    @TestFactory
+    public List<DynamicTest> testEdgeCases() {
+        return List.of(
+                DynamicTest.dynamicTest("small p", () -> {
+                    WelchTest test = Stats.welchTest(summarize(new double[]{1, 2, 3, 4, 5, 6}), summarize(new double[]{101, 102, 103, 104, 105, 106}));
+                    assertEquals(-100 / Math.sqrt(3.5 / 3), test.getT(), 1e-9, "t");
+                    assertEquals(10.0, test.getDegreesOfFreedom(), 1e-12, "df");
+                    assertEquals(true, test.getPValue() > 0 && test.getPValue() < 1e-12, "p=" + test.getPValue());
+                }),
+                DynamicTest.dynamicTest("no variance", () -> {
+                    WelchTest equal = Stats.welchTest(summarize(new double[]{1, 1}), summarize(new double[]{1, 1, 1}));
+                    assertEquals(0.0, equal.getT(), "t");
+                    assertEquals(1.0, equal.getPValue(), "p");
+                    WelchTest different = Stats.welchTest(summarize(new double[]{1, 1}), summarize(new double[]{2, 2, 2}));
+                    assertEquals(Double.NEGATIVE_INFINITY, different.getT(), "t");
+                    assertEquals(0.0, different.getPValue(), "p");
+                }),
+                DynamicTest.dynamicTest("too few values", () -> {
+                    assertThrows(IllegalArgumentException.class, () -> Stats.welchTest(summarize(new double[]{1}), summarize(new double[]{1, 2})));
+                    assertThrows(IllegalArgumentException.class, () -> Stats.welchTest(summarize(new double[]{1, 2}), summarize(new double[0])));
+                }),
+                DynamicTest.dynamicTest("illegal alpha", () -> {
+                    WelchTest test = Stats.welchTest(summarize(new double[]{1, 2, 3}), summarize(new double[]{0, 2, 4}));
+                    assertThrows(IllegalArgumentException.class, () -> test.getConfidence(1.5));
+                    assertThrows(IllegalArgumentException.class, () -> test.getConfidence(0));
+                })
+        );
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * @(#)WindowedVarianceStatisticsTest.java
+ * Copyright © 2021 Werner Randelshofer, Switzerland. MIT License.
+ */
+
+package ch.randelshofer.stats;
+
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class WindowedVarianceStatisticsTest {
+    @TestFactory
+    public List<DynamicTest> testWindow() {
+        return List.of(
+                DynamicTest.dynamicTest("sliding", () -> {
+                    long[] clock = {0};
+                    WindowedVarianceStatistics stats = new WindowedVarianceStatistics(10, 6, () -> clock[0]);
+                    // one value per time unit, interval = 10 time units, window = 60 time units
+                    for (int t = 0; t < 200; t++) {
+                        clock[0] = t;
+                        stats.accept(t);
+                    }
+                    // the window contains the intervals 14..19, i.e. the values 140..199
+                    VarianceStatistics actual = stats.getStatistics();
+                    System.out.println(stats);
+                    assertEquals(60, actual.getCount(), "count");
+                    assertEquals(140, actual.getMin(), "min");
+                    assertEquals(199, actual.getMax(), "max");
+                    assertEquals(169.5, actual.getAverage(), "average");
+                }),
+                DynamicTest.dynamicTest("eviction on query", () -> {
+                    long[] clock = {0};
+                    WindowedVarianceStatistics stats = new WindowedVarianceStatistics(10, 6, () -> clock[0]);
+                    stats.accept(1.0);
+                    clock[0] = 59;
+                    assertEquals(1, stats.getStatistics().getCount(), "count before eviction");
+                    clock[0] = 60;
+                    assertEquals(0, stats.getStatistics().getCount(), "count after eviction");
+                }),
+                DynamicTest.dynamicTest("clock gap", () -> {
+                    long[] clock = {0};
+                    WindowedVarianceStatistics stats = new WindowedVarianceStatistics(10, 6, () -> clock[0]);
+                    stats.accept(1.0);
+                    clock[0] = Long.MAX_VALUE / 2;
+                    stats.accept(2.0);
+                    VarianceStatistics actual = stats.getStatistics();
+                    assertEquals(1, actual.getCount(), "count");
+                    assertEquals(2.0, actual.getSum(), "sum");
+                }),
+                DynamicTest.dynamicTest("late values", () -> {
+                    WindowedVarianceStatistics stats = new WindowedVarianceStatistics(10, 6, () -> 100);
+                    stats.accept(100, 1.0);
+                    stats.accept(55, 2.0);// within the window
+                    stats.accept(49, 4.0);// older than the window
+                    VarianceStatistics actual = stats.getStatistics();
+                    assertEquals(2, actual.getCount(), "count");
+                    assertEquals(3.0, actual.getSum(), "sum");
+                })
+        );
+    }
+
+    @TestFactory
+    public List<DynamicTest> testInfiniteValue() {
+        return VarianceStatisticsTest.infiniteValueTests(values -> {
+            long[] clock = {0};
+            WindowedVarianceStatistics stats = new WindowedVarianceStatistics(10, 6, () -> clock[0]);
+            for (double value : values) {
+                stats.accept(value);
+                clock[0] += 10;
+            }
+            return stats.getStatistics();
+        });
+    }
+}